@@ -1,16 +1,26 @@
 package com.falcon.controller;
 
+import com.falcon.index.BannerInventory;
 import com.falcon.model.AdRequest;
 import com.falcon.model.AdResponse;
 import com.falcon.model.Banner;
+import com.falcon.model.Placement;
 import com.falcon.model.SuppressionCheckResult;
 import com.falcon.service.AdServer;
+import com.falcon.service.ServingMetrics;
+import com.falcon.service.StartupService;
+import com.falcon.service.SuppressionGuard;
 import com.falcon.service.SuppressionService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * REST Controller for Ad Serving with Suppression Integration (Part 2).
@@ -25,10 +35,18 @@ public class AdController {
 
     private final AdServer adServer;
     private final SuppressionService suppressionService;
+    private final StartupService startupService;
+    private final SuppressionGuard suppressionGuard;
+    private final ServingMetrics servingMetrics;
 
-    public AdController(AdServer adServer, SuppressionService suppressionService) {
+    public AdController(AdServer adServer, SuppressionService suppressionService,
+                        StartupService startupService, SuppressionGuard suppressionGuard,
+                        ServingMetrics servingMetrics) {
         this.adServer = adServer;
         this.suppressionService = suppressionService;
+        this.startupService = startupService;
+        this.suppressionGuard = suppressionGuard;
+        this.servingMetrics = servingMetrics;
     }
 
     /**
@@ -43,7 +61,9 @@ public class AdController {
      * 5. Return selected banner (or no ad if all eligible banners suppressed)
      */
     @PostMapping("/serve-ad")
-    public ResponseEntity<?> serveAd(@RequestBody AdRequest request) {
+    public ResponseEntity<?> serveAd(@RequestBody AdRequest request,
+                                     @RequestHeader(value = StartupService.WARMUP_HEADER, required = false)
+                                     String warmupHeader) {
         try {
             // Validate request
             if (request.getPlacementId() == null) {
@@ -54,12 +74,16 @@ public class AdController {
             // PART 2: Check suppression for this user
             SuppressionCheckResult suppressionResult = null;
             if (request.getUserEmailHash() != null && !request.getUserEmailHash().isEmpty()) {
+                String emailHash;
                 try {
-                    suppressionResult = suppressionService.checkSuppression(request.getUserEmailHash());
-                } catch (UnsupportedOperationException e) {
-                    // Suppression check not implemented yet - serve ad without suppression
-                    System.out.println("⚠ Warning: Suppression check not implemented, serving ad without suppression");
+                    emailHash = suppressionService.normalizeEmailHash(request.getUserEmailHash());
+                } catch (IllegalArgumentException e) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("error", "user_email_hash must be 64 hex characters"));
                 }
+                // Answered locally or by the owning shard within the lookup deadline;
+                // on timeout or failure a fail-safe fallback decides instead
+                suppressionResult = suppressionGuard.check(emailHash);
             }
 
             // Prepare custom parameters for ad server
@@ -70,9 +94,19 @@ public class AdController {
 
             // Call ad server to select a banner
             Banner selectedBanner = adServer.serveAd(request.getPlacementId(), customParams);
+            startupService.recordServed();
+            // Warmup requests exercise the full path but are not counted as ad traffic
+            boolean counted = !startupService.isWarmup(warmupHeader);
+            Set<String> suppressedAdvertisers = suppressionResult != null
+                    ? suppressionResult.getSuppressedAdvertisers()
+                    : null;
 
             // Build response
             if (selectedBanner != null) {
+                if (counted) {
+                    servingMetrics.recordFill(selectedBanner, suppressedAdvertisers);
+                }
+
                 AdResponse response = new AdResponse();
                 response.setBanner(selectedBanner);
 
@@ -80,7 +114,8 @@ public class AdController {
                 if (suppressionResult != null) {
                     AdResponse.SuppressionInfo info = new AdResponse.SuppressionInfo(
                             suppressionResult.getSuppressedAdvertisers(),
-                            suppressionResult.getCheckTimeMs()
+                            suppressionResult.getCheckTimeMs(),
+                            suppressionResult.getFallback()
                     );
                     response.setSuppressionInfo(info);
                 }
@@ -88,11 +123,17 @@ public class AdController {
                 return ResponseEntity.ok(response);
             } else {
                 // No eligible banner found (all suppressed or no matching banners)
+                if (counted) {
+                    servingMetrics.recordNoFill(adServer.getCandidateCount(request.getPlacementId()) > 0
+                            ? ServingMetrics.NoFillReason.ALL_SUPPRESSED
+                            : ServingMetrics.NoFillReason.NO_INVENTORY, suppressedAdvertisers);
+                }
                 AdResponse response = new AdResponse("No eligible ad found for this placement and user");
                 if (suppressionResult != null) {
                     AdResponse.SuppressionInfo info = new AdResponse.SuppressionInfo(
                             suppressionResult.getSuppressedAdvertisers(),
-                            suppressionResult.getCheckTimeMs()
+                            suppressionResult.getCheckTimeMs(),
+                            suppressionResult.getFallback()
                     );
                     response.setSuppressionInfo(info);
                 }
@@ -113,7 +154,45 @@ public class AdController {
     public ResponseEntity<?> getBanners() {
         return ResponseEntity.ok(Map.of(
                 "banners", adServer.getAllBanners(),
-                "count_by_advertiser", adServer.getBannerCountByAdvertiser()
+                "count_by_advertiser", adServer.getBannerCountByAdvertiser(),
+                "generation", adServer.getInventoryGeneration()
         ));
     }
+
+    /**
+     * Reload ad_server_config.json and atomically swap in the new inventory.
+     * POST /api/banners/reload
+     *
+     * On a parse failure the current inventory keeps serving and 500 is returned.
+     */
+    @PostMapping("/banners/reload")
+    public ResponseEntity<?> reloadBanners() {
+        try {
+            BannerInventory loaded = adServer.reloadConfig();
+            return ResponseEntity.ok(Map.of(
+                    "generation", loaded.getGeneration(),
+                    "banners", loaded.getBanners().size(),
+                    "placements", loaded.getPlacements().size()
+            ));
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to reload ad server config: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Get configured placements and how many candidate banners each can serve.
+     * GET /api/placements
+     */
+    @GetMapping("/placements")
+    public ResponseEntity<?> getPlacements() {
+        List<Map<String, Object>> placements = new ArrayList<>();
+        for (Placement placement : adServer.getPlacements()) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("placement", placement);
+            entry.put("candidate_banners", adServer.getCandidateCount(placement.getId()));
+            placements.add(entry);
+        }
+        return ResponseEntity.ok(Map.of("placements", placements));
+    }
 }
@@ -0,0 +1,108 @@
+package com.falcon.controller;
+
+import com.falcon.service.AdmissionControl;
+import com.falcon.service.AdmissionControl.RequestClass;
+import com.falcon.service.ServingMetrics;
+import com.falcon.service.StartupService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Applies {@link AdmissionControl} before a request reaches its controller.
+ *
+ * A shed POST /api/serve-ad is answered with a canned no-fill (200, no banner) or,
+ * with {@code falcon.admission.serving.shed-response=unavailable}, a 503; a shed
+ * suppression check or list write always gets a 503 with Retry-After, since there
+ * is no safe answer to make up for them. Every other request passes untouched.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    private static final byte[] NO_FILL = "{\"message\":\"No eligible ad found: server overloaded\",\"shed\":true}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OVERLOADED = "{\"error\":\"Server overloaded, retry later\"}"
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final AdmissionControl admissionControl;
+    private final ServingMetrics servingMetrics;
+    private final StartupService startupService;
+    private final boolean noFill;
+
+    public AdmissionFilter(AdmissionControl admissionControl, ServingMetrics servingMetrics,
+                           StartupService startupService,
+                           @Value("${falcon.admission.serving.shed-response:no-fill}") String shedResponse) {
+        this.admissionControl = admissionControl;
+        this.servingMetrics = servingMetrics;
+        this.startupService = startupService;
+        this.noFill = switch (shedResponse.trim()) {
+            case "no-fill" -> true;
+            case "unavailable" -> false;
+            default -> throw new IllegalArgumentException(
+                    "falcon.admission.serving.shed-response must be no-fill or unavailable");
+        };
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestClass requestClass = admissionControl.isEnabled() ? classify(request) : null;
+        if (requestClass == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        if (!admissionControl.tryAcquire(requestClass)) {
+            shed(request, response, requestClass);
+            return;
+        }
+        long startTime = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            admissionControl.release(requestClass, System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * @return the request's class, or null if admission control does not apply to it
+     */
+    private static RequestClass classify(HttpServletRequest request) {
+        String method = request.getMethod();
+        String path = request.getRequestURI();
+        if ("POST".equals(method) && ("/api/serve-ad".equals(path) || "/api/check-suppression".equals(path))) {
+            return RequestClass.SERVING;
+        }
+        if (!"GET".equals(method) && !"HEAD".equals(method) && !"OPTIONS".equals(method)
+                && path.startsWith("/api/suppression-lists")) {
+            return RequestClass.WRITES;
+        }
+        return null;
+    }
+
+    private void shed(HttpServletRequest request, HttpServletResponse response, RequestClass requestClass)
+            throws IOException {
+        boolean adRequest = requestClass == RequestClass.SERVING && "/api/serve-ad".equals(request.getRequestURI());
+        if (adRequest && !startupService.isWarmup(request.getHeader(StartupService.WARMUP_HEADER))) {
+            servingMetrics.recordNoFill(ServingMetrics.NoFillReason.SHED, null);
+        }
+        boolean answerNoFill = noFill && adRequest;
+        if (!answerNoFill) {
+            response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            response.setHeader("Retry-After", "1");
+        }
+        response.setContentType("application/json");
+        byte[] body = answerNoFill ? NO_FILL : OVERLOADED;
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
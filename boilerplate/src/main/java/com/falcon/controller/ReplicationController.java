@@ -0,0 +1,154 @@
+package com.falcon.controller;
+
+import com.falcon.model.ChangeBatch;
+import com.falcon.service.ReplicationFollower;
+import com.falcon.service.ReplicationLog;
+import com.falcon.service.SnapshotService;
+import com.falcon.service.SuppressionService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Change stream endpoints served by the replication leader, and index snapshots
+ * for bootstrapping new nodes.
+ */
+@RestController
+@RequestMapping("/api/replication")
+public class ReplicationController {
+
+    private static final long MAX_WAIT_MS = 30_000;
+    private static final int MAX_BATCH = 10_000;
+
+    public static final String SNAPSHOT_SEQ_HEADER = "X-Falcon-Snapshot-Seq";
+    public static final String SNAPSHOT_EPOCH_HEADER = "X-Falcon-Snapshot-Epoch";
+
+    // Tomcat's sendfile request attributes (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final ReplicationLog replicationLog;
+    private final ReplicationFollower replicationFollower;
+    private final SuppressionService suppressionService;
+    private final SnapshotService snapshotService;
+
+    public ReplicationController(ReplicationLog replicationLog, ReplicationFollower replicationFollower,
+                                 SuppressionService suppressionService, SnapshotService snapshotService) {
+        this.replicationLog = replicationLog;
+        this.replicationFollower = replicationFollower;
+        this.suppressionService = suppressionService;
+        this.snapshotService = snapshotService;
+    }
+
+    /**
+     * Long-poll for change events after a sequence number.
+     * GET /api/replication/changes?after=120&max=500&wait_ms=5000&follower=replica-1
+     *
+     * Returns as soon as at least one event is available, or empty after wait_ms.
+     * Response: { "events": [...], "last_seq": 130, "truncated": false }
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<?> getChanges(@RequestParam(defaultValue = "0") long after,
+                                        @RequestParam(defaultValue = "500") int max,
+                                        @RequestParam(name = "wait_ms", defaultValue = "0") long waitMs,
+                                        @RequestParam(required = false) String follower) {
+        if (!replicationLog.isLeader()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "This node is not the replication leader"));
+        }
+        if (after < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "after must be >= 0"));
+        }
+        try {
+            ChangeBatch batch = replicationLog.read(after, Math.min(Math.max(max, 1), MAX_BATCH),
+                    Math.min(Math.max(waitMs, 0), MAX_WAIT_MS), follower);
+            return ResponseEntity.ok(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Interrupted while waiting for changes"));
+        }
+    }
+
+    /**
+     * Binary snapshot of every list, for bootstrapping a follower or new node.
+     * GET /api/replication/snapshot
+     *
+     * Served by any node; the X-Falcon-Snapshot-Seq header carries the change-stream
+     * sequence to tail the leader from and X-Falcon-Snapshot-Epoch the leader run it
+     * counts in (absent if unknown). The file goes out via the connector's sendfile
+     * when available, otherwise through FileChannel.transferTo.
+     */
+    @GetMapping("/snapshot")
+    public void getSnapshot(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        SnapshotService.SnapshotFile snapshot = snapshotService.export();
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setContentLengthLong(snapshot.bytes());
+        response.setHeader(SNAPSHOT_SEQ_HEADER, Long.toString(snapshot.seq()));
+        if (snapshot.epoch() != null) {
+            response.setHeader(SNAPSHOT_EPOCH_HEADER, snapshot.epoch());
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, snapshot.path().toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, snapshot.bytes());
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(snapshot.path(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < snapshot.bytes()) {
+                position += channel.transferTo(position, snapshot.bytes() - position, out);
+            }
+        }
+    }
+
+    /**
+     * Replace every list on this node with an uploaded snapshot.
+     * PUT /api/replication/snapshot (application/octet-stream)
+     *
+     * Standalone nodes only: a leader's followers and a follower's leader would
+     * otherwise disagree about the data behind each sequence number.
+     */
+    @PutMapping(value = "/snapshot", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> putSnapshot(HttpServletRequest request) {
+        if (!"standalone".equals(replicationLog.role())) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Snapshots can only be imported on standalone nodes"));
+        }
+        try (InputStream in = request.getInputStream()) {
+            long seq = snapshotService.load(in, "upload from " + request.getRemoteAddr());
+            return ResponseEntity.ok(Map.of("seq", seq, "stats", suppressionService.getStatistics()));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid snapshot: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Replication role and progress of this node.
+     * GET /api/replication/status
+     */
+    @GetMapping("/status")
+    public ResponseEntity<Map<String, Object>> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>(replicationFollower.isFollower()
+                ? replicationFollower.status()
+                : replicationLog.status());
+        status.put("snapshot", snapshotService.status());
+        return ResponseEntity.ok(status);
+    }
+}
@@ -0,0 +1,158 @@
+package com.falcon.controller;
+
+import com.falcon.model.SuppressionCheckResult;
+import com.falcon.service.ShardMembership;
+import com.falcon.service.ShardRouter;
+import com.falcon.service.SuppressionService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+
+/**
+ * Node-to-node endpoints for sharded mode.
+ *
+ * These are called by {@link ShardRouter} on other nodes (lookups, partition
+ * export) and by operators (membership changes).
+ */
+@RestController
+@RequestMapping("/api/shard")
+public class ShardController {
+
+    private final ShardRouter shardRouter;
+    private final ShardMembership membership;
+    private final SuppressionService suppressionService;
+
+    public ShardController(ShardRouter shardRouter, ShardMembership membership, SuppressionService suppressionService) {
+        this.shardRouter = shardRouter;
+        this.membership = membership;
+        this.suppressionService = suppressionService;
+    }
+
+    /**
+     * Lookup on the owning node.
+     * GET /api/shard/lookup/{hash}
+     *
+     * Response (text/plain): comma-separated advertiser IDs, empty if none; with
+     * {@code detail=true} a second line holds the comma-separated matching list IDs.
+     */
+    @GetMapping(value = "/lookup/{hash}", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> lookup(@PathVariable String hash,
+                                         @RequestParam(defaultValue = "false") boolean detail) {
+        String emailHash;
+        try {
+            emailHash = suppressionService.normalizeEmailHash(hash);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        try {
+            SuppressionCheckResult result = shardRouter.checkOwned(emailHash, detail);
+            String advertisers = String.join(",", result.getSuppressedAdvertisers());
+            return ResponseEntity.ok(detail
+                    ? advertisers + "\n" + String.join(",", result.getMatchedListIds())
+                    : advertisers);
+        } catch (UncheckedIOException e) {
+            return ResponseEntity.status(503).body(e.getMessage());
+        }
+    }
+
+    /**
+     * Current membership and ownership.
+     * GET /api/shard/members
+     */
+    @GetMapping("/members")
+    public ResponseEntity<Map<String, Object>> getMembers() {
+        Map<String, Object> members = new LinkedHashMap<>();
+        members.put("enabled", membership.isEnabled());
+        members.put("self", membership.self());
+        members.put("nodes", membership.nodes());
+        members.put("owned_partitions", membership.ownedPartitionCount());
+        members.put("pending_handoffs", membership.pendingHandoffCount());
+        members.put("forwarding", shardRouter.forwardStatus());
+        return ResponseEntity.ok(members);
+    }
+
+    /**
+     * Change membership and rebalance. The change is passed on to every new
+     * member, so it only needs to be sent to one node; removed nodes keep their
+     * data until they are shut down.
+     * PUT /api/shard/members
+     *
+     * Request body: { "nodes": ["http://localhost:8080", "http://localhost:8081"] }
+     */
+    @PutMapping("/members")
+    public ResponseEntity<?> updateMembers(@RequestBody Map<String, List<String>> body,
+                                           @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        List<String> nodes = body.get("nodes");
+        if (nodes == null || nodes.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "nodes is required"));
+        }
+        if (!membership.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Sharding is not enabled on this node (falcon.shard.nodes)"));
+        }
+        try {
+            Map<String, Object> result = shardRouter.rebalance(nodes);
+            if (forwardedBy == null) {
+                result.put("forward_pending", shardRouter.forward("PUT", "/api/shard/members", body));
+            }
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Export list slices for the given partitions (used by rebalancing).
+     * GET /api/shard/partitions?ids=0,1,2
+     */
+    @GetMapping("/partitions")
+    public ResponseEntity<?> exportPartitions(@RequestParam("ids") List<Integer> ids) {
+        Set<Integer> partitions = new HashSet<>();
+        for (Integer id : ids) {
+            if (id == null || id < 0 || id >= ShardMembership.PARTITIONS) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "partition ids must be in [0, " + ShardMembership.PARTITIONS + ")"));
+            }
+            partitions.add(id);
+        }
+        for (int partition : partitions) {
+            // Released, or never fully imported here: an empty export would pass for the real contents
+            if (!membership.storesPartition(partition)) {
+                return ResponseEntity.status(HttpStatus.CONFLICT)
+                        .body(Map.of("error", "Partition " + partition + " is not stored on this node"));
+            }
+        }
+        return ResponseEntity.ok(suppressionService.exportPartitions(partitions));
+    }
+
+    /**
+     * A new owner confirms it imported these partitions from this node, which
+     * releases them after the handoff grace period.
+     * POST /api/shard/handoffs/complete?ids=0,1,2
+     */
+    @PostMapping("/handoffs/complete")
+    public ResponseEntity<?> handoffCompleted(@RequestParam("ids") List<Integer> ids) {
+        for (Integer id : ids) {
+            if (id == null || id < 0 || id >= ShardMembership.PARTITIONS) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "partition ids must be in [0, " + ShardMembership.PARTITIONS + ")"));
+            }
+        }
+        shardRouter.handoffCompleted(List.copyOf(ids));
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Stop waiting for imports from previous owners and serve those partitions from
+     * what this node has. Only for a previous owner that is gone for good, after the
+     * affected lists have been re-uploaded; until then its partitions fail closed.
+     * POST /api/shard/handoffs/abandon
+     */
+    @PostMapping("/handoffs/abandon")
+    public ResponseEntity<?> abandonHandoffs() {
+        return ResponseEntity.ok(Map.of("abandoned_partitions", membership.abandonHandoffs()));
+    }
+}
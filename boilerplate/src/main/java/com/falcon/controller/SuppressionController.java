@@ -3,13 +3,39 @@ package com.falcon.controller;
 import com.falcon.model.SuppressionCheckRequest;
 import com.falcon.model.SuppressionCheckResult;
 import com.falcon.model.SuppressionList;
+import com.falcon.model.SuppressionListSummary;
+import com.falcon.service.AdmissionControl;
+import com.falcon.service.BinaryCheckServer;
+import com.falcon.service.ReplicationFollower;
+import com.falcon.service.ReplicationLog;
+import com.falcon.service.ServingMetrics;
+import com.falcon.service.ShardRouter;
+import com.falcon.service.StartupService;
+import com.falcon.service.SuppressionGuard;
 import com.falcon.service.SuppressionService;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Base64;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * REST Controller for Suppression List Management (Part 1) and
@@ -22,10 +48,71 @@ import java.util.Map;
 @RequestMapping("/api")
 public class SuppressionController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final String IDENTIFIER_COUNT_HEADER = "X-Identifier-Count";
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final SuppressionService suppressionService;
+    private final ShardRouter shardRouter;
+    private final ReplicationLog replicationLog;
+    private final ReplicationFollower replicationFollower;
+    private final StartupService startupService;
+    private final SuppressionGuard suppressionGuard;
+    private final BinaryCheckServer binaryCheckServer;
+    private final AdmissionControl admissionControl;
+    private final ServingMetrics servingMetrics;
 
-    public SuppressionController(SuppressionService suppressionService) {
+    public SuppressionController(SuppressionService suppressionService, ShardRouter shardRouter,
+                                 ReplicationLog replicationLog, ReplicationFollower replicationFollower,
+                                 StartupService startupService, SuppressionGuard suppressionGuard,
+                                 BinaryCheckServer binaryCheckServer, AdmissionControl admissionControl,
+                                 ServingMetrics servingMetrics) {
         this.suppressionService = suppressionService;
+        this.shardRouter = shardRouter;
+        this.replicationLog = replicationLog;
+        this.replicationFollower = replicationFollower;
+        this.startupService = startupService;
+        this.suppressionGuard = suppressionGuard;
+        this.binaryCheckServer = binaryCheckServer;
+        this.admissionControl = admissionControl;
+        this.servingMetrics = servingMetrics;
+    }
+
+    /**
+     * Followers are read-only; list writes must go to the replication leader. A shard
+     * node whose outbox to some peer is full takes no new writes until it drains.
+     *
+     * @param forwardedBy the forwarding node for a write replayed by a peer, else null
+     * @return a 409 response on followers, a 503 while a peer is backlogged, null otherwise
+     */
+    private ResponseEntity<?> rejectWrite(String forwardedBy) {
+        if (replicationLog.isFollower()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                    "error", "This node is a read-only replica; send list writes to the leader",
+                    "leader", replicationFollower.leaderUrl()
+            ));
+        }
+        String backlogged = forwardedBy == null && shardRouter.isEnabled() ? shardRouter.backloggedPeer() : null;
+        if (backlogged != null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header("Retry-After", "5").body(Map.of(
+                    "error", "Shard peer " + backlogged + " is not taking writes; restore it or remove it from the membership"
+            ));
+        }
+        return null;
+    }
+
+    /**
+     * A write's response; 202 Accepted instead while some peers do not have the write
+     * yet (it stays queued for them), named in {@link ShardRouter#PENDING_PEERS_HEADER}.
+     */
+    private static ResponseEntity<?> replicated(HttpStatus status, Object body, List<String> pendingPeers) {
+        ResponseEntity.BodyBuilder response = pendingPeers.isEmpty()
+                ? ResponseEntity.status(status)
+                : ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .header(ShardRouter.PENDING_PEERS_HEADER, String.join(",", pendingPeers));
+        return body != null ? response.body(body) : response.build();
     }
 
     // ==================== PART 1: CRUD ENDPOINTS ====================
@@ -35,31 +122,80 @@ public class SuppressionController {
      * POST /api/suppression-lists
      */
     @PostMapping("/suppression-lists")
-    public ResponseEntity<?> createSuppressionList(@RequestBody SuppressionList list) {
+    public ResponseEntity<?> createSuppressionList(
+            @RequestBody SuppressionList list,
+            @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        ResponseEntity<?> rejected = rejectWrite(forwardedBy);
+        if (rejected != null) {
+            return rejected;
+        }
         try {
+            if (forwardedBy != null && list != null && list.getId() != null
+                    && suppressionService.getSuppressionListById(list.getId()) != null) {
+                // A forward retried after this node applied it already: replace, so replays are idempotent
+                return ResponseEntity.ok(suppressionService.updateSuppressionList(list.getId(), list));
+            }
+            List<String> allIdentifiers = list != null ? list.getIdentifiers() : null;
             SuppressionList created = suppressionService.createSuppressionList(list);
-            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+            if (forwardedBy != null || !shardRouter.isEnabled()) {
+                return ResponseEntity.status(HttpStatus.CREATED).body(created);
+            }
+            // Peers get the full identifier list under the ID assigned here and keep their own partitions;
+            // the client gets it in the same stored form a single node returns
+            SuppressionList full = new SuppressionList(created.getId(), created.getAdvertiserId(), created.getName(),
+                    suppressionService.canonicalIdentifiers(allIdentifiers), created.getCreatedAt());
+            List<String> pending = shardRouter.forward("POST", "/api/suppression-lists", full);
+            return replicated(HttpStatus.CREATED, full, pending);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        } catch (UnsupportedOperationException e) {
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("error", "This endpoint is not implemented yet. See SuppressionService.createSuppressionList()"));
         }
     }
 
     /**
      * Get all suppression lists.
      * GET /api/suppression-lists
+     *
+     * Without parameters: every list with its identifiers, as a plain array.
+     * With any of {@code limit}, {@code cursor} or {@code view}: one page of lists ordered by ID,
+     * GET /api/suppression-lists?view=summary&limit=100&cursor=...
+     * Response: { "lists": [...], "next_cursor": "..." } (no next_cursor on the last page)
+     *
+     * {@code view=summary} leaves out identifiers and reports identifier_count instead;
+     * identifiers of a single list can be streamed from /api/suppression-lists/{id}/identifiers.
      */
     @GetMapping("/suppression-lists")
-    public ResponseEntity<?> getAllSuppressionLists() {
-        try {
+    public ResponseEntity<?> getAllSuppressionLists(@RequestParam(required = false) Integer limit,
+                                                    @RequestParam(required = false) String cursor,
+                                                    @RequestParam(required = false) String view) {
+        if (limit == null && cursor == null && view == null) {
             List<SuppressionList> lists = suppressionService.getAllSuppressionLists();
             return ResponseEntity.ok(lists);
-        } catch (UnsupportedOperationException e) {
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("error", "This endpoint is not implemented yet. See SuppressionService.getAllSuppressionLists()"));
         }
+        boolean summary = "summary".equals(view);
+        if (view != null && !summary && !"full".equals(view)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "view must be summary or full"));
+        }
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(Map.of("error", "limit must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        String afterId;
+        try {
+            afterId = cursor == null ? null : new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Invalid cursor"));
+        }
+
+        List<SuppressionList> lists = suppressionService.getSuppressionListsAfter(afterId, pageSize);
+        String lastId = lists.isEmpty() ? null : lists.get(lists.size() - 1).getId();
+        String nextCursor = lists.size() == pageSize && suppressionService.hasSuppressionListsAfter(lastId)
+                ? Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8))
+                : null;
+
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("lists", summary ? lists.stream().map(SuppressionListSummary::of).toList() : lists);
+        page.put("next_cursor", nextCursor);
+        return ResponseEntity.ok(page);
     }
 
     /**
@@ -68,17 +204,85 @@ public class SuppressionController {
      */
     @GetMapping("/suppression-lists/{id}")
     public ResponseEntity<?> getSuppressionListById(@PathVariable String id) {
-        try {
-            SuppressionList list = suppressionService.getSuppressionListById(id);
-            if (list != null) {
-                return ResponseEntity.ok(list);
-            } else {
-                return ResponseEntity.notFound().build();
+        SuppressionList list = suppressionService.getSuppressionListById(id);
+        if (list != null) {
+            return ResponseEntity.ok(list);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Stream the identifiers of one list.
+     * GET /api/suppression-lists/{id}/identifiers?format=ndjson|csv
+     *
+     * ndjson (default): one JSON string per line; csv: an "identifier" header row, then one per line.
+     * Identifiers are written straight from the stored list through a fixed-size buffer,
+     * so memory use does not grow with the list.
+     */
+    @GetMapping("/suppression-lists/{id}/identifiers")
+    public ResponseEntity<StreamingResponseBody> streamIdentifiers(@PathVariable String id,
+                                                                   @RequestParam(defaultValue = "ndjson") String format) {
+        boolean csv = "csv".equals(format);
+        if (!csv && !"ndjson".equals(format)) {
+            // Spring only streams a declared StreamingResponseBody, so the error is one too
+            StreamingResponseBody error = out -> out.write(
+                    ("{\"error\":" + jsonString("format must be ndjson or csv") + "}").getBytes(StandardCharsets.UTF_8));
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(error);
+        }
+        SuppressionList list = suppressionService.getSuppressionListById(id);
+        if (list == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<String> identifiers = list.getIdentifiers();
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+            if (csv) {
+                writer.write("identifier\n");
+            }
+            for (String identifier : identifiers) {
+                writer.write(csv ? csvField(identifier) : jsonString(identifier));
+                writer.write('\n');
             }
-        } catch (UnsupportedOperationException e) {
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("error", "This endpoint is not implemented yet. See SuppressionService.getSuppressionListById()"));
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : APPLICATION_NDJSON)
+                .header(IDENTIFIER_COUNT_HEADER, Integer.toString(identifiers.size()))
+                .body(body);
+    }
+
+    /**
+     * Whether one list contains an identifier.
+     * GET /api/suppression-lists/{id}/identifiers/{emailHash}
+     *
+     * Response: { "list_id": "list_001", "email_hash": "a1b2...", "member": true }
+     */
+    @GetMapping("/suppression-lists/{id}/identifiers/{emailHash}")
+    public ResponseEntity<?> isListMember(@PathVariable String id, @PathVariable String emailHash) {
+        String identifier;
+        try {
+            identifier = suppressionService.normalizeEmailHash(emailHash);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "email_hash must be 64 hex characters"));
+        }
+        Boolean member = suppressionService.isListMember(id, identifier);
+        if (member == null) {
+            return ResponseEntity.notFound().build();
         }
+        return ResponseEntity.ok(Map.of("list_id", id, "email_hash", identifier, "member", member));
+    }
+
+    private static String jsonString(String value) {
+        return '"' + new String(JsonStringEncoder.getInstance().quoteAsString(value)) + '"';
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
     }
 
     /**
@@ -88,39 +292,207 @@ public class SuppressionController {
     @PutMapping("/suppression-lists/{id}")
     public ResponseEntity<?> updateSuppressionList(
             @PathVariable String id,
-            @RequestBody SuppressionList updatedList) {
+            @RequestBody SuppressionList updatedList,
+            @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        ResponseEntity<?> rejected = rejectWrite(forwardedBy);
+        if (rejected != null) {
+            return rejected;
+        }
         try {
             SuppressionList updated = suppressionService.updateSuppressionList(id, updatedList);
-            if (updated != null) {
-                return ResponseEntity.ok(updated);
-            } else {
+            if (updated == null) {
                 return ResponseEntity.notFound().build();
             }
+            List<String> pending = forwardedBy == null
+                    ? shardRouter.forward("PUT", "/api/suppression-lists/" + id, updatedList)
+                    : List.of();
+            return replicated(HttpStatus.OK, updated, pending);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
-        } catch (UnsupportedOperationException e) {
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("error", "This endpoint is not implemented yet. See SuppressionService.updateSuppressionList()"));
         }
     }
 
     /**
-     * Delete a suppression list.
-     * DELETE /api/suppression-lists/{id}
+     * Replace a list's identifiers with a complete new export, applying only what changed.
+     * PUT /api/suppression-lists/{id}/contents
+     *
+     * Body: one identifier per line (Content-Encoding: gzip accepted). The list keeps
+     * serving its old contents until the difference is applied.
+     * Response: { "list_id": "list_001", "received": 20000000, "distinct": 19990000,
+     *             "added": 100000, "removed": 100000, "unchanged": 19890000, ... }
      */
-    @DeleteMapping("/suppression-lists/{id}")
-    public ResponseEntity<?> deleteSuppressionList(@PathVariable String id) {
+    @PutMapping("/suppression-lists/{id}/contents")
+    public ResponseEntity<?> replaceListContents(
+            @PathVariable String id,
+            HttpServletRequest request,
+            @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        ResponseEntity<?> rejected = rejectWrite(forwardedBy);
+        if (rejected != null) {
+            return rejected;
+        }
+        Path spooled = null;
         try {
-            boolean deleted = suppressionService.deleteSuppressionList(id);
-            if (deleted) {
-                return ResponseEntity.noContent().build();
-            } else {
+            InputStream body = request.getInputStream();
+            if ("gzip".equalsIgnoreCase(request.getHeader("Content-Encoding"))) {
+                body = new GZIPInputStream(body, 1 << 16);
+            }
+            // Peers need the whole upload too, and the request body can only be read once
+            if (forwardedBy == null && shardRouter.isEnabled()) {
+                spooled = Files.createTempFile("falcon-contents-", ".txt");
+                Files.copy(body, spooled, StandardCopyOption.REPLACE_EXISTING);
+                body = Files.newInputStream(spooled);
+            }
+            Map<String, Object> summary;
+            try (InputStream in = body) {
+                summary = suppressionService.replaceListContents(id, in);
+            }
+            if (summary == null) {
                 return ResponseEntity.notFound().build();
             }
-        } catch (UnsupportedOperationException e) {
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("error", "This endpoint is not implemented yet. See SuppressionService.deleteSuppressionList()"));
+            List<String> pending = List.of();
+            if (spooled != null) {
+                // The router owns the spooled upload from here and deletes it once every peer has it
+                Path upload = spooled;
+                spooled = null;
+                pending = shardRouter.forwardFile("PUT", "/api/suppression-lists/" + id + "/contents", upload, "text/plain");
+            }
+            return replicated(HttpStatus.OK, summary, pending);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (IOException e) {
+            return ResponseEntity.internalServerError()
+                    .body(Map.of("error", "Failed to replace list contents: " + e.getMessage()));
+        } finally {
+            if (spooled != null) {
+                try {
+                    Files.deleteIfExists(spooled);
+                } catch (IOException ignored) {
+                    // Temporary file
+                }
+            }
+        }
+    }
+
+    /**
+     * Delete a suppression list.
+     * DELETE /api/suppression-lists/{id}
+     */
+    @DeleteMapping("/suppression-lists/{id}")
+    public ResponseEntity<?> deleteSuppressionList(
+            @PathVariable String id,
+            @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        ResponseEntity<?> rejected = rejectWrite(forwardedBy);
+        if (rejected != null) {
+            return rejected;
+        }
+        boolean deleted = suppressionService.deleteSuppressionList(id);
+        if (!deleted) {
+            return ResponseEntity.notFound().build();
         }
+        List<String> pending = forwardedBy == null
+                ? shardRouter.forward("DELETE", "/api/suppression-lists/" + id, null)
+                : List.of();
+        return replicated(HttpStatus.NO_CONTENT, null, pending);
+    }
+
+    // ==================== LIST ALGEBRA ENDPOINTS ====================
+
+    /**
+     * Overlap between two suppression lists.
+     * GET /api/suppression-lists/{id}/overlap/{otherId}
+     *
+     * Response: { "intersection_count": 120, "union_count": 980, "jaccard": 0.12, ... }
+     */
+    @GetMapping("/suppression-lists/{id}/overlap/{otherId}")
+    public ResponseEntity<?> getListOverlap(@PathVariable String id, @PathVariable String otherId) {
+        Map<String, Object> overlap = suppressionService.getListOverlap(id, otherId);
+        if (overlap == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(overlap);
+    }
+
+    /**
+     * Remove all identifiers of another list from this list.
+     * POST /api/suppression-lists/{id}/subtract/{otherId}
+     */
+    @PostMapping("/suppression-lists/{id}/subtract/{otherId}")
+    public ResponseEntity<?> subtractList(
+            @PathVariable String id,
+            @PathVariable String otherId,
+            @RequestHeader(value = ShardRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+        ResponseEntity<?> rejected = rejectWrite(forwardedBy);
+        if (rejected != null) {
+            return rejected;
+        }
+        SuppressionList updated = suppressionService.subtractList(id, otherId);
+        if (updated == null) {
+            return ResponseEntity.notFound().build();
+        }
+        List<String> pending = forwardedBy == null
+                ? shardRouter.forward("POST", "/api/suppression-lists/" + id + "/subtract/" + otherId, null)
+                : List.of();
+        return replicated(HttpStatus.OK, updated, pending);
+    }
+
+    /**
+     * Total vs. unique suppressed identifiers across an advertiser's lists.
+     * GET /api/advertisers/{advertiserId}/suppression-summary
+     */
+    @GetMapping("/advertisers/{advertiserId}/suppression-summary")
+    public ResponseEntity<Map<String, Object>> getAdvertiserSummary(@PathVariable String advertiserId) {
+        return ResponseEntity.ok(suppressionService.getAdvertiserSummary(advertiserId));
+    }
+
+    // ==================== SKETCH ANALYTICS ====================
+
+    /**
+     * Estimated unique identifiers of a list, from its HyperLogLog sketch.
+     * GET /api/analytics/lists/{id}/unique
+     *
+     * Response: { "list_id": "list_001", "estimated_unique": 48213, "standard_error": 0.008, ... }
+     */
+    @GetMapping("/analytics/lists/{id}/unique")
+    public ResponseEntity<?> estimateListCardinality(@PathVariable String id) {
+        Map<String, Object> estimate = suppressionService.estimateListCardinality(id);
+        if (estimate == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(estimate);
+    }
+
+    /**
+     * Estimated overlap between two lists.
+     * GET /api/analytics/lists/{id}/overlap/{otherId}
+     *
+     * Response: { "estimated_intersection": 1200, "estimated_union": 9800, "estimated_jaccard": 0.12, ... }
+     */
+    @GetMapping("/analytics/lists/{id}/overlap/{otherId}")
+    public ResponseEntity<?> estimateListOverlap(@PathVariable String id, @PathVariable String otherId) {
+        Map<String, Object> estimate = suppressionService.estimateListOverlap(id, otherId);
+        if (estimate == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(estimate);
+    }
+
+    /**
+     * Estimated unique identifiers suppressed by an advertiser across all its lists.
+     * GET /api/analytics/advertisers/{advertiserId}/unique
+     */
+    @GetMapping("/analytics/advertisers/{advertiserId}/unique")
+    public ResponseEntity<Map<String, Object>> estimateAdvertiserCardinality(@PathVariable String advertiserId) {
+        return ResponseEntity.ok(suppressionService.estimateAdvertiserCardinality(advertiserId));
+    }
+
+    /**
+     * Estimated overlap between the suppressed audiences of two advertisers.
+     * GET /api/analytics/advertisers/{advertiserId}/overlap/{otherAdvertiserId}
+     */
+    @GetMapping("/analytics/advertisers/{advertiserId}/overlap/{otherAdvertiserId}")
+    public ResponseEntity<Map<String, Object>> estimateAdvertiserOverlap(@PathVariable String advertiserId,
+                                                                         @PathVariable String otherAdvertiserId) {
+        return ResponseEntity.ok(suppressionService.estimateAdvertiserOverlap(advertiserId, otherAdvertiserId));
     }
 
     // ==================== PART 2: SUPPRESSION CHECKING ====================
@@ -131,20 +503,33 @@ public class SuppressionController {
      *
      * Request body: { "email_hash": "a1b2c3..." }
      * Response: { "suppressed_advertisers": ["adv1", "adv2"], "check_time_ms": 2 }
+     *
+     * With ?detail=true the response also lists the matching lists:
+     * { "suppressed_advertisers": [...], "matched_list_ids": ["list_001", "list_004"], ... }
      */
     @PostMapping("/check-suppression")
-    public ResponseEntity<?> checkSuppression(@RequestBody SuppressionCheckRequest request) {
+    public ResponseEntity<?> checkSuppression(@RequestBody SuppressionCheckRequest request,
+                                              @RequestParam(defaultValue = "false") boolean detail) {
         try {
             if (request.getEmailHash() == null || request.getEmailHash().isEmpty()) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "email_hash is required"));
             }
 
-            SuppressionCheckResult result = suppressionService.checkSuppression(request.getEmailHash());
+            String emailHash;
+            try {
+                emailHash = suppressionService.normalizeEmailHash(request.getEmailHash());
+            } catch (IllegalArgumentException e) {
+                return ResponseEntity.badRequest()
+                        .body(Map.of("error", "email_hash must be 64 hex characters"));
+            }
+
+            SuppressionCheckResult result = shardRouter.checkSuppression(emailHash, detail);
+            startupService.recordServed();
             return ResponseEntity.ok(result);
-        } catch (UnsupportedOperationException e) {
-            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED)
-                    .body(Map.of("error", "This endpoint is not implemented yet. See SuppressionService.checkSuppression()"));
+        } catch (UncheckedIOException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Suppression check unavailable: " + e.getMessage()));
         }
     }
 
@@ -157,15 +542,46 @@ public class SuppressionController {
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getStatistics() {
         Map<String, Object> stats = suppressionService.getStatistics();
+        stats.put("replication", replicationFollower.isFollower()
+                ? replicationFollower.status()
+                : replicationLog.status());
+        stats.put("startup", startupService.status());
+        stats.put("lookup_deadline", suppressionGuard.status());
+        stats.put("binary_protocol", binaryCheckServer.status());
+        stats.put("admission", admissionControl.status());
+        stats.put("serving", servingMetrics.status());
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * Ad serving counters in the Prometheus text format, for scraping.
+     * GET /api/metrics
+     */
+    @GetMapping(value = "/metrics", produces = "text/plain; version=0.0.4; charset=utf-8")
+    public ResponseEntity<String> getMetrics() {
+        return ResponseEntity.ok(servingMetrics.prometheus());
+    }
+
     /**
      * Health check endpoint.
      * GET /api/health
      */
     @GetMapping("/health")
     public ResponseEntity<Map<String, String>> healthCheck() {
+        // Not in rotation until the index is loaded and, if configured, the warmup has run
+        if (!startupService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                    "status", "STARTING",
+                    "service", "Falcon Suppression System"
+            ));
+        }
+        // A follower past its staleness bound reports itself down so it is taken out of rotation
+        if (replicationFollower.isFollower() && !replicationFollower.isWithinStalenessBound()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(Map.of(
+                    "status", "STALE",
+                    "service", "Falcon Suppression System"
+            ));
+        }
         return ResponseEntity.ok(Map.of(
                 "status", "UP",
                 "service", "Falcon Suppression System"
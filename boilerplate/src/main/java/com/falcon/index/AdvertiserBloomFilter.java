@@ -0,0 +1,159 @@
+package com.falcon.index;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter over (advertiser, identifier) pairs, used as the fail-safe answer
+ * when an exact suppression lookup misses its deadline.
+ *
+ * {@link #mightSuppress} tests an identifier against every known advertiser and
+ * returns a superset of the advertisers that actually suppress it. A false
+ * positive only over-suppresses; there are no false negatives. Pairs cannot be
+ * removed, so removals only count as stale; the owner rebuilds the filter once
+ * {@link #needsRebuild} says stale or excess pairs have pushed the
+ * false-positive rate up.
+ *
+ * About 10 bits and 7 probes per pair, for roughly 1% false positives at capacity.
+ * There is a single writer (the index lock) and readers never lock.
+ */
+public final class AdvertiserBloomFilter {
+
+    private static final int BITS_PER_PAIR = 10;
+    private static final int PROBES = 7;
+    private static final int MIN_CAPACITY = 1 << 12;
+
+    private final AtomicLongArray bits;
+    private final long mask;
+    private final int capacity;
+    private final Map<String, Long> seeds = new HashMap<>();
+    private volatile Advertisers advertisers = new Advertisers(new String[0], new long[0]);
+    private int inserted;
+    private int stale;
+
+    /**
+     * @param expectedPairs number of pairs the filter should hold at its target false-positive rate
+     */
+    public AdvertiserBloomFilter(int expectedPairs) {
+        this.capacity = Math.max(MIN_CAPACITY, expectedPairs);
+        long wanted = (long) capacity * BITS_PER_PAIR;
+        long bitCount = Long.highestOneBit(wanted - 1) << 1;
+        this.bits = new AtomicLongArray((int) Math.min(bitCount >>> 6, Integer.MAX_VALUE - 8));
+        this.mask = (long) bits.length() * 64 - 1;
+    }
+
+    // ==================== WRITES ====================
+
+    public void add(String advertiserId, String identifier) {
+        long key = mix(hash(identifier) ^ seedOf(advertiserId));
+        long h2 = (key >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (key + i * h2) & mask;
+            int word = (int) (bit >>> 6);
+            bits.set(word, bits.get(word) | (1L << bit));
+        }
+        inserted++;
+    }
+
+    /**
+     * Note that {@code count} pairs left the index; their bits stay set.
+     */
+    public void markStale(int count) {
+        stale += count;
+    }
+
+    /**
+     * True once the filter holds more pairs than it was sized for, or once
+     * at least half of the pairs it holds are gone from the index.
+     */
+    public boolean needsRebuild() {
+        return inserted > capacity || (stale > MIN_CAPACITY && stale > inserted / 2);
+    }
+
+    private long seedOf(String advertiserId) {
+        Long seed = seeds.get(advertiserId);
+        if (seed == null) {
+            seed = mix(advertiserId.hashCode() * 0x9E3779B97F4A7C15L + seeds.size());
+            seeds.put(advertiserId, seed);
+            Advertisers current = advertisers;
+            String[] ids = Arrays.copyOf(current.ids, current.ids.length + 1);
+            long[] values = Arrays.copyOf(current.seeds, current.seeds.length + 1);
+            ids[ids.length - 1] = advertiserId;
+            values[values.length - 1] = seed;
+            advertisers = new Advertisers(ids, values);
+        }
+        return seed;
+    }
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * @return every advertiser that may suppress the identifier; an immutable set
+     */
+    public Set<String> mightSuppress(String identifier) {
+        Advertisers current = advertisers;
+        long hash = hash(identifier);
+        Set<String> result = null;
+        for (int a = 0; a < current.ids.length; a++) {
+            if (test(mix(hash ^ current.seeds[a]))) {
+                if (result == null) {
+                    result = new HashSet<>();
+                }
+                result.add(current.ids[a]);
+            }
+        }
+        return result == null ? Collections.emptySet() : Collections.unmodifiableSet(result);
+    }
+
+    private boolean test(long key) {
+        long h2 = (key >>> 32) | 1;
+        for (int i = 0; i < PROBES; i++) {
+            long bit = (key + i * h2) & mask;
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ==================== STATISTICS ====================
+
+    public int insertedCount() {
+        return inserted;
+    }
+
+    public long sizeInBytes() {
+        return 16 + (long) bits.length() * Long.BYTES;
+    }
+
+    // ==================== HASHING ====================
+
+    /**
+     * Canonical hashes are already uniform, so their decoded words are folded directly;
+     * anything else goes through 64-bit FNV-1a.
+     */
+    private static long hash(String identifier) {
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        if (decoder.decode(identifier)) {
+            return decoder.w0 ^ Long.rotateLeft(decoder.w1, 16) ^ Long.rotateLeft(decoder.w2, 32)
+                    ^ Long.rotateLeft(decoder.w3, 48);
+        }
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < identifier.length(); i++) {
+            h = (h ^ identifier.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private record Advertisers(String[] ids, long[] seeds) {
+    }
+}
@@ -0,0 +1,243 @@
+package com.falcon.index;
+
+import com.falcon.model.Banner;
+import com.falcon.model.Placement;
+
+import java.util.*;
+import java.util.random.RandomGenerator;
+
+/**
+ * Immutable, placement-aware banner inventory.
+ *
+ * Built once per banner/placement configuration. Every placement gets its
+ * prebuilt candidate banners (matching size and campaign allow-list) grouped by
+ * advertiser ordinal, with per-advertiser weight totals and cumulative weight
+ * tables. Serving a request therefore only looks at the advertisers eligible for
+ * that slot, never at the whole inventory.
+ *
+ * When the configuration defines no placements at all, every placement ID is
+ * served from a single catch-all inventory of all banners.
+ *
+ * Each build carries a generation number; the ad server publishes a whole
+ * generation with one reference swap, so a request never mixes two configs.
+ */
+public final class BannerInventory {
+
+    private final long generation;
+    private final List<Banner> banners;
+    private final List<Placement> placements;
+    private final String[] advertiserIds;
+    private final Map<String, Long> bannerCountByAdvertiser;
+    private final Map<String, PlacementInventory> byPlacement;
+    private final PlacementInventory catchAll;
+
+    private BannerInventory(long generation, List<Banner> banners, List<Placement> placements, String[] advertiserIds,
+                            Map<String, Long> bannerCountByAdvertiser,
+                            Map<String, PlacementInventory> byPlacement, PlacementInventory catchAll) {
+        this.generation = generation;
+        this.banners = banners;
+        this.placements = placements;
+        this.advertiserIds = advertiserIds;
+        this.bannerCountByAdvertiser = bannerCountByAdvertiser;
+        this.byPlacement = byPlacement;
+        this.catchAll = catchAll;
+    }
+
+    public static BannerInventory build(List<Banner> banners, List<Placement> placements, long generation) {
+        List<Banner> allBanners = List.copyOf(banners);
+        List<Placement> allPlacements = List.copyOf(placements);
+
+        Map<String, Integer> advertiserOrdinals = new LinkedHashMap<>();
+        Map<String, Long> bannerCounts = new LinkedHashMap<>();
+        for (Banner banner : allBanners) {
+            advertiserOrdinals.putIfAbsent(banner.getAdvertiserId(), advertiserOrdinals.size());
+            bannerCounts.merge(banner.getAdvertiserId(), 1L, Long::sum);
+        }
+        String[] advertiserIds = advertiserOrdinals.keySet().toArray(new String[0]);
+
+        // Size → banners, so each placement only visits banners it can actually fit
+        Map<String, List<Banner>> bannersBySize = new HashMap<>();
+        for (Banner banner : allBanners) {
+            bannersBySize.computeIfAbsent(sizeKey(banner.getWidth(), banner.getHeight()), k -> new ArrayList<>()).add(banner);
+        }
+
+        Map<String, PlacementInventory> byPlacement = new HashMap<>();
+        for (Placement placement : allPlacements) {
+            Set<String> campaigns = placement.getCampaignIds() != null ? new HashSet<>(placement.getCampaignIds()) : null;
+            List<Banner> candidates = new ArrayList<>();
+            for (String size : acceptedSizes(placement)) {
+                for (Banner banner : bannersBySize.getOrDefault(size, Collections.emptyList())) {
+                    if (campaigns == null || campaigns.contains(banner.getCampaignId())) {
+                        candidates.add(banner);
+                    }
+                }
+            }
+            byPlacement.put(placement.getId(), PlacementInventory.of(candidates, advertiserOrdinals, advertiserIds));
+        }
+
+        PlacementInventory catchAll = allPlacements.isEmpty()
+                ? PlacementInventory.of(allBanners, advertiserOrdinals, advertiserIds)
+                : null;
+        return new BannerInventory(generation, allBanners, allPlacements, advertiserIds,
+                Collections.unmodifiableMap(bannerCounts), byPlacement, catchAll);
+    }
+
+    private static Set<String> acceptedSizes(Placement placement) {
+        Set<String> sizes = new LinkedHashSet<>();
+        sizes.add(sizeKey(placement.getWidth(), placement.getHeight()));
+        if (placement.getSizes() != null) {
+            for (String size : placement.getSizes()) {
+                sizes.add(size.trim().toLowerCase(Locale.ROOT));
+            }
+        }
+        return sizes;
+    }
+
+    private static String sizeKey(int width, int height) {
+        return width + "x" + height;
+    }
+
+    /**
+     * Select a banner for a placement, excluding suppressed advertisers.
+     *
+     * @return the selected banner, or null if the placement is unknown or nothing is eligible
+     */
+    public Banner select(String placementId, Set<String> suppressedAdvertisers, RandomGenerator random) {
+        PlacementInventory inventory = inventoryFor(placementId);
+        return inventory != null ? inventory.select(suppressedAdvertisers, random) : null;
+    }
+
+    /**
+     * @return the candidate inventory for a placement, or null if the placement is unknown
+     */
+    public PlacementInventory inventoryFor(String placementId) {
+        PlacementInventory inventory = byPlacement.get(placementId);
+        return inventory != null ? inventory : catchAll;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public List<Banner> getBanners() {
+        return banners;
+    }
+
+    public List<Placement> getPlacements() {
+        return placements;
+    }
+
+    public int advertiserCount() {
+        return advertiserIds.length;
+    }
+
+    /**
+     * Banners per advertiser ID, counted once when the inventory is built.
+     */
+    public Map<String, Long> getBannerCountByAdvertiser() {
+        return bannerCountByAdvertiser;
+    }
+
+    /**
+     * Candidates for one placement, grouped by advertiser.
+     */
+    public static final class PlacementInventory {
+        private final String[] advertiserIds;       // advertisers with at least one candidate
+        private final Banner[][] banners;           // [advertiser][banner]
+        private final int[][] cumulativeWeights;    // [advertiser][banner], running sum
+        private final int[] advertiserWeights;      // total weight per advertiser
+        private final int totalWeight;
+        private final int bannerCount;
+
+        private PlacementInventory(String[] advertiserIds, Banner[][] banners,
+                                   int[][] cumulativeWeights, int[] advertiserWeights, int totalWeight, int bannerCount) {
+            this.advertiserIds = advertiserIds;
+            this.banners = banners;
+            this.cumulativeWeights = cumulativeWeights;
+            this.advertiserWeights = advertiserWeights;
+            this.totalWeight = totalWeight;
+            this.bannerCount = bannerCount;
+        }
+
+        static PlacementInventory of(List<Banner> candidates, Map<String, Integer> ordinals, String[] allAdvertisers) {
+            // Group by advertiser ordinal; banners with no weight can never be picked
+            SortedMap<Integer, List<Banner>> grouped = new TreeMap<>();
+            for (Banner banner : candidates) {
+                if (banner.getWeight() > 0) {
+                    grouped.computeIfAbsent(ordinals.get(banner.getAdvertiserId()), k -> new ArrayList<>()).add(banner);
+                }
+            }
+
+            int n = grouped.size();
+            String[] advertiserIds = new String[n];
+            Banner[][] banners = new Banner[n][];
+            int[][] cumulative = new int[n][];
+            int[] advertiserWeights = new int[n];
+            int total = 0;
+            int count = 0;
+            int a = 0;
+            for (Map.Entry<Integer, List<Banner>> entry : grouped.entrySet()) {
+                List<Banner> group = entry.getValue();
+                advertiserIds[a] = allAdvertisers[entry.getKey()];
+                banners[a] = group.toArray(new Banner[0]);
+                cumulative[a] = new int[group.size()];
+                int running = 0;
+                for (int b = 0; b < group.size(); b++) {
+                    running += group.get(b).getWeight();
+                    cumulative[a][b] = running;
+                }
+                advertiserWeights[a] = running;
+                total += running;
+                count += group.size();
+                a++;
+            }
+            return new PlacementInventory(advertiserIds, banners, cumulative,
+                    advertiserWeights, total, count);
+        }
+
+        /**
+         * Weighted random selection over non-suppressed advertisers: pick an
+         * advertiser proportionally to its total weight, then a banner inside it
+         * by binary search over the cumulative table. Equivalent to a weighted
+         * pick over all eligible banners.
+         */
+        Banner select(Set<String> suppressedAdvertisers, RandomGenerator random) {
+            int eligibleWeight = totalWeight;
+            if (!suppressedAdvertisers.isEmpty()) {
+                for (int a = 0; a < advertiserIds.length; a++) {
+                    if (suppressedAdvertisers.contains(advertiserIds[a])) {
+                        eligibleWeight -= advertiserWeights[a];
+                    }
+                }
+            }
+            if (eligibleWeight <= 0) {
+                return null;
+            }
+
+            int target = random.nextInt(eligibleWeight);
+            for (int a = 0; a < advertiserIds.length; a++) {
+                if (!suppressedAdvertisers.isEmpty() && suppressedAdvertisers.contains(advertiserIds[a])) {
+                    continue;
+                }
+                if (target < advertiserWeights[a]) {
+                    int i = Arrays.binarySearch(cumulativeWeights[a], target + 1);
+                    return banners[a][i >= 0 ? i : -i - 1];
+                }
+                target -= advertiserWeights[a];
+            }
+            return null;
+        }
+
+        public int bannerCount() {
+            return bannerCount;
+        }
+
+        public int advertiserCount() {
+            return advertiserIds.length;
+        }
+
+        public List<String> advertiserIds() {
+            return List.of(advertiserIds);
+        }
+    }
+}
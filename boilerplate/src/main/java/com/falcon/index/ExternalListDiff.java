@@ -0,0 +1,294 @@
+package com.falcon.index;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * The difference between a list's current contents and a complete new copy of
+ * them that arrives as a stream, computed in bounded memory.
+ *
+ * Incoming hashes are decoded into a chunk of packed keys, which starts small and
+ * doubles as keys arrive up to {@code chunkKeys}, so a short refresh never pays for
+ * a full chunk. A full chunk is sorted, deduplicated and spilled to a run file, so
+ * memory stays at one chunk however long the stream is. {@link #diff} then merges the runs with each other
+ * and with the current (already sorted) list in a single pass and keeps only the
+ * keys that differ: a refresh with 1% churn yields a diff of 1% of the list, and
+ * that is all the caller has to apply to the index. The runs stay on disk until
+ * {@link #close}, so a diff can be recomputed against a newer version of the list.
+ *
+ * Identifiers that are not canonical hashes (lenient mode only) are held in memory.
+ * Not thread-safe.
+ */
+public final class ExternalListDiff implements Closeable {
+
+    private static final int WORDS = HashKeys.WORDS;
+    private static final int STREAM_BUFFER = 1 << 16;
+    private static final int INITIAL_CHUNK_KEYS = 1024;
+
+    private final Path directory;
+    private long[] chunk;
+    private final int chunkKeys;
+    private int chunkCount;
+    private boolean chunkSorted;
+    private final List<Path> runs = new ArrayList<>();
+    private final TreeSet<String> others = new TreeSet<>();
+    private final HashKeys.Decoder decoder = HashKeys.decoder();
+    private long received;
+
+    /**
+     * @param directory where spilled runs are written
+     * @param chunkKeys keys held in memory before a spill (32 bytes each)
+     */
+    public ExternalListDiff(Path directory, int chunkKeys) {
+        this.directory = directory;
+        this.chunkKeys = Math.max(INITIAL_CHUNK_KEYS, chunkKeys);
+        this.chunk = new long[INITIAL_CHUNK_KEYS * WORDS];
+    }
+
+    // ==================== INPUT ====================
+
+    /**
+     * Add one identifier of the new contents.
+     *
+     * @return false, adding nothing, if it is not a canonical hash
+     */
+    public boolean addHash(String identifier) throws IOException {
+        if (!decoder.decode(identifier)) {
+            return false;
+        }
+        if (chunkCount == chunkKeys) {
+            spill();
+        } else if (chunkCount * WORDS == chunk.length) {
+            chunk = Arrays.copyOf(chunk, Math.min(chunkKeys, chunkCount * 2) * WORDS);
+        }
+        int at = chunkCount++ * WORDS;
+        chunk[at] = decoder.w0;
+        chunk[at + 1] = decoder.w1;
+        chunk[at + 2] = decoder.w2;
+        chunk[at + 3] = decoder.w3;
+        chunkSorted = false;
+        received++;
+        return true;
+    }
+
+    /**
+     * Add an identifier that is not a canonical hash.
+     */
+    public void addOther(String identifier) {
+        others.add(identifier);
+        received++;
+    }
+
+    public long received() {
+        return received;
+    }
+
+    public int spilledRuns() {
+        return runs.size();
+    }
+
+    private void spill() throws IOException {
+        int n = PackedIdentifierList.sortDistinct(chunk, chunkCount);
+        Files.createDirectories(directory);
+        Path run = Files.createTempFile(directory, "refresh-", ".run");
+        runs.add(run);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run), STREAM_BUFFER))) {
+            for (int i = 0; i < n * WORDS; i++) {
+                out.writeLong(chunk[i]);
+            }
+        }
+        chunkCount = 0;
+    }
+
+    // ==================== DIFF ====================
+
+    /**
+     * Identifiers of the new contents missing from {@code current}, and those of
+     * {@code current} missing from the new contents.
+     */
+    public Diff diff(PackedIdentifierList current) throws IOException {
+        if (!chunkSorted) {
+            chunkCount = PackedIdentifierList.sortDistinct(chunk, chunkCount);
+            chunkSorted = true;
+        }
+        List<Source> sources = new ArrayList<>();
+        try {
+            sources.add(new ChunkSource(chunk, chunkCount));
+            for (Path run : runs) {
+                sources.add(new RunSource(run));
+            }
+            return merge(current, sources);
+        } finally {
+            for (Source source : sources) {
+                source.close();
+            }
+        }
+    }
+
+    private Diff merge(PackedIdentifierList current, List<Source> sources) throws IOException {
+        PriorityQueue<Source> heap = new PriorityQueue<>((a, b) ->
+                SortedRun.compare(a.w0, a.w1, a.w2, a.w3, b.w0, b.w1, b.w2, b.w3));
+        for (Source source : sources) {
+            if (source.next()) {
+                heap.add(source);
+            }
+        }
+
+        KeyBuffer added = new KeyBuffer();
+        KeyBuffer removed = new KeyBuffer();
+        long distinct = 0;
+        int i = 0;
+        boolean any = false;
+        long l0 = 0, l1 = 0, l2 = 0, l3 = 0;
+        while (!heap.isEmpty()) {
+            Source top = heap.poll();
+            long w0 = top.w0, w1 = top.w1, w2 = top.w2, w3 = top.w3;
+            if (top.next()) {
+                heap.add(top);
+            }
+            // Runs are distinct within themselves but may share keys with each other
+            if (any && w0 == l0 && w1 == l1 && w2 == l2 && w3 == l3) {
+                continue;
+            }
+            any = true;
+            l0 = w0;
+            l1 = w1;
+            l2 = w2;
+            l3 = w3;
+            distinct++;
+
+            int c = 1;
+            while (i < current.hashCount() && (c = SortedRun.compare(current.word(i, 0), current.word(i, 1),
+                    current.word(i, 2), current.word(i, 3), w0, w1, w2, w3)) < 0) {
+                removed.add(current.word(i, 0), current.word(i, 1), current.word(i, 2), current.word(i, 3));
+                i++;
+            }
+            if (i < current.hashCount() && c == 0) {
+                i++;
+            } else {
+                added.add(w0, w1, w2, w3);
+            }
+        }
+        for (; i < current.hashCount(); i++) {
+            removed.add(current.word(i, 0), current.word(i, 1), current.word(i, 2), current.word(i, 3));
+        }
+
+        List<String> currentOthers = current.others();
+        List<String> addedOthers = new ArrayList<>();
+        for (String other : others) {
+            if (Collections.binarySearch(currentOthers, other) < 0) {
+                addedOthers.add(other);
+            }
+        }
+        List<String> removedOthers = new ArrayList<>();
+        for (String other : currentOthers) {
+            if (!others.contains(other)) {
+                removedOthers.add(other);
+            }
+        }
+        return new Diff(PackedIdentifierList.ofSorted(added.keys, added.count, addedOthers),
+                PackedIdentifierList.ofSorted(removed.keys, removed.count, removedOthers),
+                distinct + others.size());
+    }
+
+    /**
+     * Delete the spilled runs.
+     */
+    @Override
+    public void close() {
+        for (Path run : runs) {
+            try {
+                Files.deleteIfExists(run);
+            } catch (IOException ignored) {
+                // Temporary file; nothing else to do
+            }
+        }
+        runs.clear();
+    }
+
+    /**
+     * @param distinct identifiers in the new contents, after deduplication
+     */
+    public record Diff(PackedIdentifierList added, PackedIdentifierList removed, long distinct) {
+    }
+
+    // ==================== MERGE SOURCES ====================
+
+    private abstract static class Source implements Closeable {
+        long w0, w1, w2, w3;
+
+        abstract boolean next() throws IOException;
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    private static final class ChunkSource extends Source {
+        private final long[] keys;
+        private final int count;
+        private int position;
+
+        ChunkSource(long[] keys, int count) {
+            this.keys = keys;
+            this.count = count;
+        }
+
+        @Override
+        boolean next() {
+            if (position == count) {
+                return false;
+            }
+            int at = position++ * WORDS;
+            w0 = keys[at];
+            w1 = keys[at + 1];
+            w2 = keys[at + 2];
+            w3 = keys[at + 3];
+            return true;
+        }
+    }
+
+    private static final class RunSource extends Source {
+        private final DataInputStream in;
+
+        RunSource(Path run) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run), STREAM_BUFFER));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            try {
+                w0 = in.readLong();
+            } catch (EOFException e) {
+                return false;
+            }
+            w1 = in.readLong();
+            w2 = in.readLong();
+            w3 = in.readLong();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private static final class KeyBuffer {
+        long[] keys = new long[64 * WORDS];
+        int count;
+
+        void add(long w0, long w1, long w2, long w3) {
+            if ((count + 1) * WORDS > keys.length) {
+                keys = Arrays.copyOf(keys, keys.length * 2);
+            }
+            int at = count++ * WORDS;
+            keys[at] = w0;
+            keys[at + 1] = w1;
+            keys[at + 2] = w2;
+            keys[at + 3] = w3;
+        }
+    }
+}
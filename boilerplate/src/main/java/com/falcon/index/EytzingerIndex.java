@@ -0,0 +1,346 @@
+package com.falcon.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Immutable, read-optimized hash → ordinal index over canonical SHA-256 identifiers.
+ *
+ * Keys are split into a leading {@code long} (searched) and a 3-word tail (only
+ * compared on a leading-word match). A 2^16-entry jump table indexed by the top
+ * 16 bits of the key selects a bucket; inside each bucket the leading words are
+ * laid out in Eytzinger (BFS) order, so the search touches consecutive cache
+ * lines near the root and prefetches well. Because SHA-256 output is uniform,
+ * buckets stay tiny and most lookups resolve in one or two cache misses.
+ *
+ * Storage is five flat primitive arrays (36 bytes per key, no per-entry objects),
+ * and the same layout is written verbatim by {@link #writeTo(Path)} so a file can
+ * be memory-mapped back with {@link #read(Path)}.
+ *
+ * The index covers ordinals {@code [0, watermark)} of the dictionary it was built
+ * from; callers fall back to the dictionary once newer ordinals exist.
+ */
+public final class EytzingerIndex {
+
+    /** Returned by {@link #find(String)} when the input is not a canonical hash. */
+    public static final int NOT_CANONICAL = -2;
+
+    private static final int PREFIX_BITS = 16;
+    private static final int BUCKETS = 1 << PREFIX_BITS;
+    private static final int FILE_MAGIC = 0x46534549; // "FSEI"
+    private static final int FILE_VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+
+    private final int[] bucketStart;   // BUCKETS + 1 offsets into the entry arrays
+    private final long[] leading;      // word 0 of each key, Eytzinger order per bucket
+    private final long[] tails;        // words 1..3 of each key
+    private final int[] ordinals;
+    private final int watermark;
+
+    private EytzingerIndex(int[] bucketStart, long[] leading, long[] tails, int[] ordinals, int watermark) {
+        this.bucketStart = bucketStart;
+        this.leading = leading;
+        this.tails = tails;
+        this.ordinals = ordinals;
+        this.watermark = watermark;
+    }
+
+    // ==================== BUILD ====================
+
+    /**
+     * Build over every canonical identifier with an ordinal below {@code watermark}.
+     * Dictionary entries below the watermark never change, so no lock is needed.
+     */
+    public static EytzingerIndex build(IdentifierDictionary dictionary, int watermark) {
+        int n = 0;
+        for (int ordinal = 0; ordinal < watermark; ordinal++) {
+            if (HashKeys.isCanonical(dictionary.identifierAt(ordinal))) {
+                n++;
+            }
+        }
+
+        // Pass 1: bucket by leading 16 bits (counting sort)
+        int[] bucketStart = new int[BUCKETS + 1];
+        long[] w0 = new long[n];
+        long[] rest = new long[n * 3];
+        int[] ords = new int[n];
+        int k = 0;
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        for (int ordinal = 0; ordinal < watermark; ordinal++) {
+            if (!decoder.decode(dictionary.identifierAt(ordinal))) {
+                continue;
+            }
+            w0[k] = decoder.w0;
+            rest[3 * k] = decoder.w1;
+            rest[3 * k + 1] = decoder.w2;
+            rest[3 * k + 2] = decoder.w3;
+            ords[k] = ordinal;
+            bucketStart[bucketOf(w0[k]) + 1]++;
+            k++;
+        }
+        for (int b = 0; b < BUCKETS; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+
+        long[] sortedW0 = new long[n];
+        long[] sortedRest = new long[n * 3];
+        int[] sortedOrds = new int[n];
+        int[] cursor = bucketStart.clone();
+        for (int i = 0; i < n; i++) {
+            int at = cursor[bucketOf(w0[i])]++;
+            sortedW0[at] = w0[i];
+            System.arraycopy(rest, 3 * i, sortedRest, 3 * at, 3);
+            sortedOrds[at] = ords[i];
+        }
+
+        // Pass 2: sort each (small) bucket, then lay it out in Eytzinger order
+        long[] leading = new long[n];
+        long[] tails = new long[n * 3];
+        int[] ordinals = new int[n];
+        for (int b = 0; b < BUCKETS; b++) {
+            int from = bucketStart[b], to = bucketStart[b + 1];
+            if (to - from > 1) {
+                sort(sortedW0, sortedRest, sortedOrds, from, to - 1);
+            }
+            layout(sortedW0, sortedRest, sortedOrds, from, 0, 1, to - from, leading, tails, ordinals);
+        }
+        return new EytzingerIndex(bucketStart, leading, tails, ordinals, watermark);
+    }
+
+    /**
+     * In-order walk of the implicit tree: the i-th smallest key lands at node k.
+     */
+    private static int layout(long[] w0, long[] rest, int[] ords, int base, int i, int k, int n,
+                              long[] leading, long[] tails, int[] ordinals) {
+        if (k > n) {
+            return i;
+        }
+        i = layout(w0, rest, ords, base, i, 2 * k, n, leading, tails, ordinals);
+        int dst = base + k - 1;
+        leading[dst] = w0[base + i];
+        System.arraycopy(rest, 3 * (base + i), tails, 3 * dst, 3);
+        ordinals[dst] = ords[base + i];
+        i++;
+        return layout(w0, rest, ords, base, i, 2 * k + 1, n, leading, tails, ordinals);
+    }
+
+    private static void sort(long[] w0, long[] rest, int[] ords, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long p0 = w0[mid], p1 = rest[3 * mid], p2 = rest[3 * mid + 1], p3 = rest[3 * mid + 2];
+            // Three-way partition, so a run of equal keys is settled in one pass:
+            // [lo, lt) < pivot, [lt, i) == pivot, (gt, hi] > pivot
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                int c = compare(w0, rest, i, p0, p1, p2, p3);
+                if (c < 0) {
+                    swap(w0, rest, ords, lt++, i++);
+                } else if (c > 0) {
+                    swap(w0, rest, ords, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            // Recurse into the smaller side, loop on the larger
+            if (lt - lo < hi - gt) {
+                sort(w0, rest, ords, lo, lt - 1);
+                lo = gt + 1;
+            } else {
+                sort(w0, rest, ords, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(w0, rest, j - 1, j) > 0; j--) {
+                swap(w0, rest, ords, j - 1, j);
+            }
+        }
+    }
+
+    private static int compare(long[] w0, long[] rest, int a, int b) {
+        int c = Long.compareUnsigned(w0[a], w0[b]);
+        for (int w = 0; c == 0 && w < 3; w++) {
+            c = Long.compareUnsigned(rest[3 * a + w], rest[3 * b + w]);
+        }
+        return c;
+    }
+
+    private static int compare(long[] w0, long[] rest, int a, long p0, long p1, long p2, long p3) {
+        int c = Long.compareUnsigned(w0[a], p0);
+        if (c == 0) {
+            c = Long.compareUnsigned(rest[3 * a], p1);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(rest[3 * a + 1], p2);
+        }
+        if (c == 0) {
+            c = Long.compareUnsigned(rest[3 * a + 2], p3);
+        }
+        return c;
+    }
+
+    private static void swap(long[] w0, long[] rest, int[] ords, int a, int b) {
+        long t = w0[a];
+        w0[a] = w0[b];
+        w0[b] = t;
+        for (int w = 0; w < 3; w++) {
+            t = rest[3 * a + w];
+            rest[3 * a + w] = rest[3 * b + w];
+            rest[3 * b + w] = t;
+        }
+        int o = ords[a];
+        ords[a] = ords[b];
+        ords[b] = o;
+    }
+
+    private static int bucketOf(long word0) {
+        return (int) (word0 >>> (64 - PREFIX_BITS));
+    }
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * Validate and decode in one pass, then probe.
+     *
+     * @return the ordinal, -1 if absent, or {@link #NOT_CANONICAL} if the string is not a canonical hash
+     */
+    public int find(String hex) {
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        if (!decoder.decode(hex)) {
+            return NOT_CANONICAL;
+        }
+        return find(decoder.w0, decoder.w1, decoder.w2, decoder.w3);
+    }
+
+    public int find(long w0, long w1, long w2, long w3) {
+        int bucket = bucketOf(w0);
+        int base = bucketStart[bucket] - 1;   // node k lives at base + k
+        int n = bucketStart[bucket + 1] - bucketStart[bucket];
+
+        int k = 1;
+        while (k <= n) {
+            k = 2 * k + (Long.compareUnsigned(leading[base + k], w0) < 0 ? 1 : 0);
+        }
+        // Undo the trailing right turns (and the final left turn) to land on the lower bound
+        k >>>= Integer.numberOfTrailingZeros(~k) + 1;
+
+        // Leading-word collisions are astronomically rare, but walk them in order if present
+        while (k != 0 && leading[base + k] == w0) {
+            int t = 3 * (base + k);
+            if (tails[t] == w1 && tails[t + 1] == w2 && tails[t + 2] == w3) {
+                return ordinals[base + k];
+            }
+            k = successor(k, n);
+        }
+        return -1;
+    }
+
+    private static int successor(int k, int n) {
+        if (2 * k + 1 <= n) {
+            k = 2 * k + 1;
+            while (2 * k <= n) {
+                k *= 2;
+            }
+            return k;
+        }
+        while ((k & 1) == 1) {
+            k >>>= 1;
+        }
+        return k >>> 1;
+    }
+
+    // ==================== PROPERTIES ====================
+
+    public int size() {
+        return leading.length;
+    }
+
+    /**
+     * Dictionary size this index was built against.
+     */
+    public int watermark() {
+        return watermark;
+    }
+
+    public long sizeInBytes() {
+        return bucketStart.length * 4L + leading.length * 8L + tails.length * 8L + ordinals.length * 4L;
+    }
+
+    // ==================== FILE FORMAT ====================
+
+    /**
+     * Write the index as a flat little-endian file: header, jump table, leading
+     * words, tails, ordinals. The layout is identical to the in-memory arrays.
+     */
+    public void writeTo(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(FILE_MAGIC).putInt(FILE_VERSION).putInt(leading.length).putInt(watermark).flip();
+            channel.write(header);
+
+            ByteBuffer chunk = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            for (int v : bucketStart) {
+                chunk = drainIfFull(channel, chunk, 4).putInt(v);
+            }
+            for (long v : leading) {
+                chunk = drainIfFull(channel, chunk, 8).putLong(v);
+            }
+            for (long v : tails) {
+                chunk = drainIfFull(channel, chunk, 8).putLong(v);
+            }
+            for (int v : ordinals) {
+                chunk = drainIfFull(channel, chunk, 4).putInt(v);
+            }
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+        }
+    }
+
+    private static ByteBuffer drainIfFull(FileChannel channel, ByteBuffer chunk, int needed) throws IOException {
+        if (chunk.remaining() < needed) {
+            chunk.flip();
+            while (chunk.hasRemaining()) {
+                channel.write(chunk);
+            }
+            chunk.clear();
+        }
+        return chunk;
+    }
+
+    /**
+     * Memory-map a file produced by {@link #writeTo(Path)} and bulk-copy it into
+     * the heap arrays (a sequential read at disk bandwidth, no parsing).
+     */
+    public static EytzingerIndex read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt() != FILE_MAGIC || mapped.getInt() != FILE_VERSION) {
+                throw new IOException("Not an Eytzinger index file: " + path);
+            }
+            int n = mapped.getInt();
+            int watermark = mapped.getInt();
+
+            int[] bucketStart = new int[BUCKETS + 1];
+            long[] leading = new long[n];
+            long[] tails = new long[n * 3];
+            int[] ordinals = new int[n];
+            mapped.asIntBuffer().get(bucketStart);
+            mapped.position(mapped.position() + bucketStart.length * 4);
+            mapped.asLongBuffer().get(leading);
+            mapped.position(mapped.position() + n * 8);
+            mapped.asLongBuffer().get(tails);
+            mapped.position(mapped.position() + n * 24);
+            mapped.asIntBuffer().get(ordinals);
+            return new EytzingerIndex(bucketStart, leading, tails, ordinals, watermark);
+        }
+    }
+}
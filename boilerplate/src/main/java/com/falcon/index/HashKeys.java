@@ -0,0 +1,218 @@
+package com.falcon.index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Fixed-width binary form of SHA-256 email hashes.
+ *
+ * A canonical identifier is exactly 64 lowercase hex characters; it maps to four
+ * big-endian longs, so unsigned comparison of the words matches lexicographic
+ * order of the hex strings. Anything else (wrong length, uppercase, non-hex) is
+ * kept as an opaque string by the index.
+ *
+ * Validation and decoding are SWAR: the string's Latin-1 bytes are copied into a
+ * per-thread scratch buffer and processed eight characters per 64-bit word, with
+ * no branches per character and no allocation.
+ */
+public final class HashKeys {
+
+    public static final int HEX_LENGTH = 64;
+    public static final int WORDS = 4;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_NIBBLES = 0x0F0F0F0F0F0F0F0FL;
+
+    private static final ThreadLocal<Decoder> DECODERS = ThreadLocal.withInitial(Decoder::new);
+
+    private HashKeys() {
+    }
+
+    // ==================== VALIDATION ====================
+
+    /**
+     * @return true if the identifier is 64 lowercase hex characters
+     */
+    public static boolean isCanonical(String identifier) {
+        return identifier != null && identifier.length() == HEX_LENGTH && decoder().load(identifier, false);
+    }
+
+    /**
+     * @return true if the identifier is 64 hex characters of either case
+     */
+    public static boolean isValid(String identifier) {
+        return identifier != null && identifier.length() == HEX_LENGTH && decoder().load(identifier, true);
+    }
+
+    /**
+     * Lower-case a valid hash; returns the same instance when it is already canonical.
+     */
+    public static String canonicalize(String validHash) {
+        return isCanonical(validHash) ? validHash : validHash.toLowerCase(java.util.Locale.ROOT);
+    }
+
+    // ==================== DECODING ====================
+
+    /**
+     * Per-thread decoder; {@link Decoder#decode(String)} fills w0..w3 without allocating.
+     */
+    public static Decoder decoder() {
+        return DECODERS.get();
+    }
+
+    /**
+     * Decode the {@code index}-th 64-bit word of a canonical identifier.
+     * The input must already have passed {@link #isCanonical(String)}.
+     */
+    public static long word(String hex, int index) {
+        Decoder decoder = decoder();
+        decoder.decode(hex);
+        return switch (index) {
+            case 0 -> decoder.w0;
+            case 1 -> decoder.w1;
+            case 2 -> decoder.w2;
+            default -> decoder.w3;
+        };
+    }
+
+    /**
+     * Decode a canonical hex identifier into 32 big-endian bytes at {@code offset}.
+     *
+     * @return false (leaving {@code out} untouched) if the identifier is not canonical
+     */
+    public static boolean decodeTo(String hex, byte[] out, int offset) {
+        Decoder decoder = decoder();
+        if (!decoder.decode(hex)) {
+            return false;
+        }
+        LONGS.set(out, offset, decoder.w0);
+        LONGS.set(out, offset + 8, decoder.w1);
+        LONGS.set(out, offset + 16, decoder.w2);
+        LONGS.set(out, offset + 24, decoder.w3);
+        return true;
+    }
+
+    /**
+     * Encode four words back into the canonical 64-character hex form.
+     */
+    public static String toHex(long w0, long w1, long w2, long w3) {
+        byte[] out = new byte[HEX_LENGTH];
+        writeHex(w0, out, 0);
+        writeHex(w1, out, 16);
+        writeHex(w2, out, 32);
+        writeHex(w3, out, 48);
+        return new String(out, java.nio.charset.StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Encode 32 bytes at {@code offset} into the canonical hex form.
+     */
+    public static String toHex(byte[] key, int offset) {
+        return toHex((long) LONGS.get(key, offset), (long) LONGS.get(key, offset + 8),
+                (long) LONGS.get(key, offset + 16), (long) LONGS.get(key, offset + 24));
+    }
+
+    private static void writeHex(long word, byte[] out, int offset) {
+        for (int i = 15; i >= 0; i--) {
+            int nibble = (int) (word & 0xF);
+            out[offset + i] = (byte) (nibble < 10 ? '0' + nibble : 'a' + nibble - 10);
+            word >>>= 4;
+        }
+    }
+
+    // ==================== SWAR KERNELS ====================
+
+    /**
+     * Per byte lane: high bit set iff byte >= c (bytes must be 7-bit).
+     */
+    private static long atLeast(long x, int c) {
+        return ((x | HIGH_BITS) - c * ONES) & HIGH_BITS;
+    }
+
+    /**
+     * Per byte lane: high bit set iff byte <= c (bytes must be 7-bit).
+     */
+    private static long atMost(long x, int c) {
+        return ((c * ONES | HIGH_BITS) - x) & HIGH_BITS;
+    }
+
+    /**
+     * Classify eight ASCII characters: returns the letter mask (high bit per
+     * a-f/A-F lane), or -1 if any lane is not a hex digit.
+     */
+    private static long letterMask(long x, boolean allowUppercase) {
+        if ((x & HIGH_BITS) != 0) {
+            return -1;
+        }
+        long digits = atLeast(x, '0') & atMost(x, '9');
+        long letters = atLeast(x, 'a') & atMost(x, 'f');
+        if (allowUppercase) {
+            letters |= atLeast(x, 'A') & atMost(x, 'F');
+        }
+        return (digits | letters) == HIGH_BITS ? letters : -1;
+    }
+
+    /**
+     * Pack eight validated hex characters into 32 bits (first character most significant).
+     */
+    private static long pack(long x, long letters) {
+        long v = (x & LOW_NIBBLES) + (letters >>> 7) * 9;   // '0'..'9' -> 0..9, 'a'/'A'.. -> 10..
+        v = (v | (v >>> 4)) & 0x00FF00FF00FF00FFL;
+        v = (v | (v >>> 8)) & 0x0000FFFF0000FFFFL;
+        return (v | (v >>> 16)) & 0x00000000FFFFFFFFL;
+    }
+
+    /**
+     * Reusable per-thread scratch space for allocation-free decoding.
+     */
+    public static final class Decoder {
+        private final byte[] chars = new byte[HEX_LENGTH];
+        public long w0, w1, w2, w3;
+
+        private Decoder() {
+        }
+
+        /**
+         * Validate and decode a canonical (lowercase) identifier into w0..w3.
+         *
+         * @return false if the identifier is not canonical
+         */
+        public boolean decode(String hex) {
+            if (hex == null || hex.length() != HEX_LENGTH || !load(hex, false)) {
+                return false;
+            }
+            w0 = word(0);
+            w1 = word(16);
+            w2 = word(32);
+            w3 = word(48);
+            return true;
+        }
+
+        @SuppressWarnings("deprecation")
+        private boolean load(String hex, boolean allowUppercase) {
+            // getBytes keeps only the low byte of each char, so reject anything outside ASCII first
+            int wide = 0;
+            for (int i = 0; i < HEX_LENGTH; i++) {
+                wide |= hex.charAt(i);
+            }
+            if (wide > 0x7F) {
+                return false;
+            }
+            hex.getBytes(0, HEX_LENGTH, chars, 0);
+            long invalid = 0;
+            for (int i = 0; i < HEX_LENGTH; i += 8) {
+                invalid |= letterMask((long) LONGS.get(chars, i), allowUppercase) == -1 ? 1 : 0;
+            }
+            return invalid == 0;
+        }
+
+        private long word(int offset) {
+            long hi = (long) LONGS.get(chars, offset);
+            long lo = (long) LONGS.get(chars, offset + 8);
+            return pack(hi, letterMask(hi, false)) << 32 | pack(lo, letterMask(lo, false));
+        }
+    }
+}
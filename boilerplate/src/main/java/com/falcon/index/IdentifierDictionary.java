@@ -0,0 +1,184 @@
+package com.falcon.index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Global dictionary assigning a dense int ordinal to every identifier seen by the index.
+ *
+ * Lists and advertiser sets are stored as bitmaps of these ordinals, so each
+ * email hash is held exactly once no matter how many lists contain it.
+ *
+ * Open-addressing table with linear probing. Writers must be externally
+ * serialized (the owning {@link SuppressionIndex} does this); readers are
+ * lock-free: a slot's ordinal is written before its key is released, and a
+ * grown table is only published once fully populated.
+ *
+ * Ordinals are never reclaimed, so the dictionary only grows. An identifier that
+ * no longer belongs to any list simply maps to the empty advertiser set until
+ * enough of them pile up that the owner rebuilds the whole index with a fresh
+ * dictionary ({@code falcon.suppression.dictionary.reclaim-dead-fraction}).
+ */
+public final class IdentifierDictionary {
+
+    private static final VarHandle SLOTS = MethodHandles.arrayElementVarHandle(String[].class);
+    private static final int INITIAL_CAPACITY = 1 << 10;
+    private static final int[] PROBE_BUCKET_STARTS = {0, 1, 2, 4, 8, 16, 32};
+    private static final String[] PROBE_BUCKETS = {"0", "1", "2-3", "4-7", "8-15", "16-31", "32+"};
+
+    private volatile Table table = new Table(INITIAL_CAPACITY);
+    private volatile String[] byOrdinal = new String[INITIAL_CAPACITY];
+    private volatile int size;
+
+    /**
+     * @return the ordinal of the identifier, or -1 if it was never interned
+     */
+    public int ordinalOf(String identifier) {
+        Table t = table;
+        int mask = t.keys.length - 1;
+        for (int i = spread(identifier.hashCode()) & mask; ; i = (i + 1) & mask) {
+            String key = (String) SLOTS.getAcquire(t.keys, i);
+            if (key == null) {
+                return -1;
+            }
+            if (key.equals(identifier)) {
+                return t.ordinals[i];
+            }
+        }
+    }
+
+    /**
+     * Return the existing ordinal of the identifier, assigning the next one if absent.
+     * Callers must hold the index write lock.
+     */
+    public int intern(String identifier) {
+        int existing = ordinalOf(identifier);
+        if (existing >= 0) {
+            return existing;
+        }
+        int ordinal = size;
+        if (ordinal == byOrdinal.length) {
+            byOrdinal = Arrays.copyOf(byOrdinal, ordinal * 2);
+        }
+        SLOTS.setRelease(byOrdinal, ordinal, identifier);
+
+        Table t = table;
+        if ((ordinal + 1) * 2 > t.keys.length) {
+            t = rehash(t, t.keys.length * 2);
+        }
+        insert(t, identifier, ordinal);
+        table = t;
+        size = ordinal + 1;
+        return ordinal;
+    }
+
+    public String identifierAt(int ordinal) {
+        return (String) SLOTS.getAcquire(byOrdinal, ordinal);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return table.keys.length;
+    }
+
+    // ==================== STATISTICS ====================
+
+    /**
+     * Approximate heap footprint: slot and ordinal arrays, plus the identifier strings
+     * counted as 64-character Latin-1 hashes (24-byte String + 80-byte array).
+     */
+    public long sizeInBytes() {
+        Table t = table;
+        return 16 + (long) t.keys.length * 4 + 16 + (long) t.ordinals.length * 4
+                + 16 + (long) byOrdinal.length * 4 + (long) size * 104;
+    }
+
+    /**
+     * Load factor and probe-length histogram of the hash table.
+     *
+     * The probe length of a key is how many slots past its home slot linear probing
+     * placed it; a lookup of that key reads that many extra slots, and a miss reads
+     * at least as many as the longest run it lands in. Tables larger than
+     * {@code maxSamples} slots are sampled at an even stride.
+     */
+    public Map<String, Object> probeStatistics(int maxSamples) {
+        Table t = table;
+        int capacity = t.keys.length;
+        int mask = capacity - 1;
+        int stride = Math.max(1, capacity / Math.max(1, maxSamples));
+        long[] buckets = new long[PROBE_BUCKETS.length];
+        long sampled = 0;
+        long totalProbe = 0;
+        int maxProbe = 0;
+        for (int i = 0; i < capacity; i += stride) {
+            String key = (String) SLOTS.getAcquire(t.keys, i);
+            if (key == null) {
+                continue;
+            }
+            int probe = (i - (spread(key.hashCode()) & mask)) & mask;
+            sampled++;
+            totalProbe += probe;
+            maxProbe = Math.max(maxProbe, probe);
+            int bucket = 0;
+            while (bucket < PROBE_BUCKETS.length - 1 && probe >= PROBE_BUCKET_STARTS[bucket + 1]) {
+                bucket++;
+            }
+            buckets[bucket]++;
+        }
+
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        for (int b = 0; b < buckets.length; b++) {
+            histogram.put(PROBE_BUCKETS[b], buckets[b]);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("capacity", capacity);
+        stats.put("size", size);
+        stats.put("load_factor", (double) size / capacity);
+        stats.put("sampled_keys", sampled);
+        stats.put("mean_probe_length", sampled == 0 ? 0.0 : (double) totalProbe / sampled);
+        stats.put("max_probe_length", maxProbe);
+        stats.put("probe_length_histogram", histogram);
+        return stats;
+    }
+
+    private static void insert(Table t, String identifier, int ordinal) {
+        int mask = t.keys.length - 1;
+        int i = spread(identifier.hashCode()) & mask;
+        while (t.keys[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t.ordinals[i] = ordinal;
+        SLOTS.setRelease(t.keys, i, identifier);
+    }
+
+    private static Table rehash(Table old, int capacity) {
+        Table grown = new Table(capacity);
+        for (int i = 0; i < old.keys.length; i++) {
+            if (old.keys[i] != null) {
+                insert(grown, old.keys[i], old.ordinals[i]);
+            }
+        }
+        return grown;
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Table {
+        final String[] keys;
+        final int[] ordinals;
+
+        Table(int capacity) {
+            this.keys = new String[capacity];
+            this.ordinals = new int[capacity];
+        }
+    }
+}
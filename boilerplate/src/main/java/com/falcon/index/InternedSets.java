@@ -0,0 +1,241 @@
+package com.falcon.index;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+
+/**
+ * Per-identifier string sets, interned: advertiser IDs for the suppression
+ * lookup, list IDs for list-level attribution.
+ *
+ * Most suppressed users share one of a handful of combinations, so each
+ * identifier ordinal stores only a small int referencing a canonical, immutable
+ * {@code Set<String>}. The lookup path is two array reads and never allocates.
+ * Set transitions ("this set plus/minus that value") are memoized, so bulk
+ * updates that move many ordinals between the same two sets build each target
+ * set once.
+ *
+ * Writers must be externally serialized. Readers are lock-free: a new set is
+ * published before any ordinal is switched to reference it.
+ *
+ * Sets are reference-counted by the ordinals assigned to them. When the last
+ * ordinal leaves a set, the set, its intern entry and its memoized transitions
+ * are released and its id is recycled, so churn in values (lists created and
+ * deleted) does not accumulate dead combinations. Memoized transitions into a
+ * released id are recognized by the id's generation and recomputed; a reader
+ * that raced with a recycle re-reads the ordinal's id and retries.
+ */
+public final class InternedSets {
+
+    private static final VarHandle IDS = MethodHandles.arrayElementVarHandle(int[].class);
+    private static final VarHandle SETS = MethodHandles.arrayElementVarHandle(Set[].class);
+
+    /** Set id 0 is always the empty set. */
+    private static final int EMPTY = 0;
+
+    // Memo entries are cheap to recompute; capped so a burst of distinct transitions cannot grow them without bound
+    private static final int MAX_TRANSITIONS = 1 << 16;
+
+    private volatile int[] setIdByOrdinal = new int[1024];
+    private volatile Set<String>[] sets;
+    // Writer-only, indexed by set id like sets
+    private int[] refCounts;
+    private int[] generations;
+    // Per source set: value -> (target generation << 32 | target id) after adding / removing the value
+    private Map<String, Long>[] additions;
+    private Map<String, Long>[] removals;
+    private int transitionCount;
+    private int[] freeIds = new int[16];
+    private int freeCount;
+    private int slotCount;
+    private int setCount;
+    private final Map<Set<String>, Integer> internTable = new HashMap<>();
+    private long setContentBytes;
+    private int nonEmptyOrdinals;
+
+    public InternedSets() {
+        sets = newSetArray(16);
+        refCounts = new int[16];
+        generations = new int[16];
+        additions = newMemoArray(16);
+        removals = newMemoArray(16);
+        intern(Collections.emptySet());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String>[] newSetArray(int length) {
+        return (Set<String>[]) new Set<?>[length];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Long>[] newMemoArray(int length) {
+        return (Map<String, Long>[]) new Map<?, ?>[length];
+    }
+
+    /**
+     * @return the set assigned to this identifier; never null
+     */
+    @SuppressWarnings("unchecked")
+    public Set<String> get(int ordinal) {
+        int[] ids = setIdByOrdinal;
+        if (ordinal < 0 || ordinal >= ids.length) {
+            return Collections.emptySet();
+        }
+        while (true) {
+            int id = (int) IDS.getAcquire(ids, ordinal);
+            Set<String> set = (Set<String>) SETS.getAcquire(sets, id);
+            // The id was released (and maybe recycled) after we read it: the ordinal has moved on
+            ids = setIdByOrdinal;
+            if (set != null && (int) IDS.getAcquire(ids, ordinal) == id) {
+                return set;
+            }
+        }
+    }
+
+    public void add(int ordinal, String value) {
+        int current = idOf(ordinal);
+        if (sets[current].contains(value)) {
+            return;
+        }
+        assign(ordinal, current, transition(current, value, true));
+    }
+
+    public void remove(int ordinal, String value) {
+        int current = idOf(ordinal);
+        if (!sets[current].contains(value)) {
+            return;
+        }
+        assign(ordinal, current, transition(current, value, false));
+    }
+
+    /**
+     * The id of set {@code current} plus or minus {@code value}, memoized per source set.
+     */
+    private int transition(int current, String value, boolean add) {
+        Map<String, Long> memo = (add ? additions : removals)[current];
+        Long cached = memo != null ? memo.get(value) : null;
+        if (cached != null) {
+            int target = (int) (long) cached;
+            if (generations[target] == (int) (cached >>> 32)) {
+                return target;
+            }
+        }
+        Set<String> set = new TreeSet<>(sets[current]);
+        if (add) {
+            set.add(value);
+        } else {
+            set.remove(value);
+        }
+        int next = set.isEmpty() ? EMPTY : intern(Collections.unmodifiableSet(set));
+        if (transitionCount >= MAX_TRANSITIONS) {
+            Arrays.fill(additions, null);
+            Arrays.fill(removals, null);
+            transitionCount = 0;
+        }
+        // intern() may have grown the memo arrays, so index them afresh
+        Map<String, Long>[] memos = add ? additions : removals;
+        if (memos[current] == null) {
+            memos[current] = new HashMap<>();
+        }
+        if (memos[current].put(value, (long) generations[next] << 32 | next) == null) {
+            transitionCount++;
+        }
+        return next;
+    }
+
+    private int idOf(int ordinal) {
+        int[] ids = setIdByOrdinal;
+        return ordinal < ids.length ? ids[ordinal] : EMPTY;
+    }
+
+    /**
+     * Number of identifiers currently suppressed by at least one advertiser.
+     */
+    public int nonEmptyCount() {
+        return nonEmptyOrdinals;
+    }
+
+    /**
+     * Number of distinct advertiser combinations currently assigned (plus the empty set).
+     */
+    public int distinctSetCount() {
+        return setCount;
+    }
+
+    /**
+     * Approximate heap footprint: the per-ordinal id array plus the interned sets,
+     * their per-id bookkeeping and the intern/transition tables (strings themselves
+     * are shared and not counted).
+     */
+    public long sizeInBytes() {
+        long tables = (internTable.size() + (long) transitionCount) * 64L;
+        return setIdByOrdinal.length * 4L + sets.length * 20L + setContentBytes + tables;
+    }
+
+    private void assign(int ordinal, int previousId, int id) {
+        int[] ids = setIdByOrdinal;
+        if (ordinal >= ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(ids.length * 2, ordinal + 1));
+            setIdByOrdinal = ids;
+        }
+        IDS.setRelease(ids, ordinal, id);
+        if (id != EMPTY) {
+            refCounts[id]++;
+        }
+        if (previousId != EMPTY && --refCounts[previousId] == 0) {
+            release(previousId);
+        }
+        if (previousId == EMPTY && id != EMPTY) {
+            nonEmptyOrdinals++;
+        } else if (previousId != EMPTY && id == EMPTY) {
+            nonEmptyOrdinals--;
+        }
+    }
+
+    private int intern(Set<String> set) {
+        Integer existing = internTable.get(set);
+        if (existing != null) {
+            return existing;
+        }
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+        } else {
+            id = slotCount++;
+            if (id == sets.length) {
+                int length = id * 2;
+                sets = Arrays.copyOf(sets, length);
+                refCounts = Arrays.copyOf(refCounts, length);
+                generations = Arrays.copyOf(generations, length);
+                additions = Arrays.copyOf(additions, length);
+                removals = Arrays.copyOf(removals, length);
+            }
+        }
+        SETS.setRelease(sets, id, set);
+        internTable.put(set, id);
+        setContentBytes += 64 + set.size() * 40L;
+        setCount++;
+        return id;
+    }
+
+    /**
+     * No ordinal references the set any more: drop it, its intern entry and the
+     * transitions memoized from it, and make its id reusable.
+     */
+    private void release(int id) {
+        Set<?> set = sets[id];
+        internTable.remove(set);
+        SETS.setRelease(sets, id, null);
+        generations[id]++;
+        transitionCount -= (additions[id] != null ? additions[id].size() : 0)
+                + (removals[id] != null ? removals[id].size() : 0);
+        additions[id] = null;
+        removals[id] = null;
+        setContentBytes -= 64 + set.size() * 40L;
+        setCount--;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        }
+        freeIds[freeCount++] = id;
+    }
+}
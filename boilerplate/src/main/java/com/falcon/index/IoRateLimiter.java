@@ -0,0 +1,51 @@
+package com.falcon.index;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-rate limiter for background I/O: callers report bytes before moving them and
+ * sleep for as long as it takes to stay under the configured rate.
+ *
+ * A single virtual clock is advanced by {@code bytes / rate}; a caller that finds it
+ * ahead of real time sleeps the difference. Idle time does not bank credit beyond
+ * one second, so a burst after a pause is bounded too.
+ */
+final class IoRateLimiter {
+
+    private final double nanosPerByte;
+    private final LongAdder throttledNanos = new LongAdder();
+    private long nextFreeNanos = System.nanoTime();
+
+    /**
+     * @param bytesPerSecond sustained rate; zero or negative disables limiting
+     */
+    IoRateLimiter(long bytesPerSecond) {
+        this.nanosPerByte = bytesPerSecond > 0 ? 1e9 / bytesPerSecond : 0;
+    }
+
+    void acquire(long bytes) {
+        if (nanosPerByte == 0 || bytes <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            nextFreeNanos = Math.max(nextFreeNanos, now - TimeUnit.SECONDS.toNanos(1));
+            waitNanos = nextFreeNanos - now;
+            nextFreeNanos += (long) (bytes * nanosPerByte);
+        }
+        if (waitNanos > 0) {
+            throttledNanos.add(waitNanos);
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    long throttledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.sum());
+    }
+}
@@ -0,0 +1,234 @@
+package com.falcon.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One {@link HyperLogLog} per suppression list, for approximate unique counts and
+ * overlaps of lists and advertisers without touching the lookup index.
+ *
+ * HyperLogLog cannot forget an element, so a change that only adds identifiers
+ * updates a copy of the list's sketch with the additions, while one that removes
+ * any rebuilds the sketch from the list's new contents. Either way the new sketch
+ * is published whole, so readers never lock and never see a half-written one.
+ *
+ * Overlaps use inclusion-exclusion on the merged sketches:
+ * |A ∩ B| = |A| + |B| - |A ∪ B|. Its absolute error is on the order of the union's,
+ * so small overlaps of large sets are noisy.
+ *
+ * Writers must be externally serialized.
+ */
+public final class ListSketches {
+
+    private final int precision;
+    private final Map<String, Entry> lists = new ConcurrentHashMap<>();
+
+    public ListSketches(int precision) {
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+            throw new IllegalArgumentException("sketch precision must be between " + HyperLogLog.MIN_PRECISION
+                    + " and " + HyperLogLog.MAX_PRECISION);
+        }
+        this.precision = precision;
+    }
+
+    // ==================== WRITES ====================
+
+    /**
+     * Record a list's new contents; {@code previous} is what the list held before
+     * (empty for a new list).
+     */
+    public void put(String listId, String advertiserId, PackedIdentifierList previous, PackedIdentifierList current) {
+        Entry existing = lists.get(listId);
+        HyperLogLog sketch;
+        if (existing == null || removesAny(previous, current)) {
+            sketch = new HyperLogLog(precision);
+            addNew(sketch, PackedIdentifierList.empty(), current);
+        } else {
+            sketch = existing.sketch.copy();
+            addNew(sketch, previous, current);
+        }
+        lists.put(listId, new Entry(advertiserId, sketch));
+    }
+
+    public void remove(String listId) {
+        lists.remove(listId);
+    }
+
+    /**
+     * Whether any identifier of {@code previous} is missing from {@code current}:
+     * one merge pass over the packed keys.
+     */
+    private static boolean removesAny(PackedIdentifierList previous, PackedIdentifierList current) {
+        int j = 0;
+        for (int i = 0; i < previous.hashCount(); i++) {
+            int c = 1;
+            while (j < current.hashCount() && (c = compareKeys(previous, i, current, j)) > 0) {
+                j++;
+            }
+            if (c != 0) {
+                return true;
+            }
+            j++;
+        }
+        for (int i = previous.hashCount(); i < previous.size(); i++) {
+            if (!current.contains(previous.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add the identifiers of {@code current} that are not in {@code previous}.
+     */
+    private static void addNew(HyperLogLog sketch, PackedIdentifierList previous, PackedIdentifierList current) {
+        int i = 0;
+        for (int j = 0; j < current.hashCount(); j++) {
+            int c = -1;
+            while (i < previous.hashCount() && (c = compareKeys(previous, i, current, j)) < 0) {
+                i++;
+            }
+            if (i < previous.hashCount() && c == 0) {
+                continue;
+            }
+            sketch.add(mix(current.word(j, 0) ^ Long.rotateLeft(current.word(j, 1), 16)
+                    ^ Long.rotateLeft(current.word(j, 2), 32) ^ Long.rotateLeft(current.word(j, 3), 48)));
+        }
+        for (int j = current.hashCount(); j < current.size(); j++) {
+            String other = current.get(j);
+            if (previous.isEmpty() || !previous.contains(other)) {
+                sketch.add(mix(fnv(other)));
+            }
+        }
+    }
+
+    private static int compareKeys(PackedIdentifierList a, int i, PackedIdentifierList b, int j) {
+        return SortedRun.compare(a.word(i, 0), a.word(i, 1), a.word(i, 2), a.word(i, 3),
+                b.word(j, 0), b.word(j, 1), b.word(j, 2), b.word(j, 3));
+    }
+
+    // ==================== ESTIMATES ====================
+
+    /**
+     * @return estimated unique identifiers of the list, or null if it has no sketch
+     */
+    public Map<String, Object> listCardinality(String listId) {
+        Entry entry = lists.get(listId);
+        if (entry == null) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("list_id", listId);
+        result.put("advertiser_id", entry.advertiserId);
+        result.put("estimated_unique", entry.sketch.estimate());
+        result.put("standard_error", entry.sketch.standardError());
+        return result;
+    }
+
+    /**
+     * @return estimated sizes, union, intersection and Jaccard of two lists; null if either is missing
+     */
+    public Map<String, Object> listOverlap(String listId, String otherListId) {
+        Entry a = lists.get(listId);
+        Entry b = lists.get(otherListId);
+        if (a == null || b == null) {
+            return null;
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("list_id", listId);
+        result.put("other_list_id", otherListId);
+        putOverlap(result, a.sketch, b.sketch);
+        return result;
+    }
+
+    /**
+     * @return estimated unique identifiers across the advertiser's lists (zero if it has none)
+     */
+    public Map<String, Object> advertiserCardinality(String advertiserId) {
+        List<String> listIds = new ArrayList<>();
+        HyperLogLog union = advertiserUnion(advertiserId, listIds);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("advertiser_id", advertiserId);
+        result.put("list_ids", listIds);
+        result.put("estimated_unique", union.estimate());
+        result.put("standard_error", union.standardError());
+        return result;
+    }
+
+    /**
+     * @return estimated overlap of the unions of two advertisers' lists
+     */
+    public Map<String, Object> advertiserOverlap(String advertiserId, String otherAdvertiserId) {
+        HyperLogLog a = advertiserUnion(advertiserId, new ArrayList<>());
+        HyperLogLog b = advertiserUnion(otherAdvertiserId, new ArrayList<>());
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("advertiser_id", advertiserId);
+        result.put("other_advertiser_id", otherAdvertiserId);
+        putOverlap(result, a, b);
+        return result;
+    }
+
+    private HyperLogLog advertiserUnion(String advertiserId, List<String> listIds) {
+        HyperLogLog union = new HyperLogLog(precision);
+        for (Map.Entry<String, Entry> list : lists.entrySet()) {
+            if (list.getValue().advertiserId.equals(advertiserId)) {
+                listIds.add(list.getKey());
+                union.merge(list.getValue().sketch);
+            }
+        }
+        Collections.sort(listIds);
+        return union;
+    }
+
+    private static void putOverlap(Map<String, Object> result, HyperLogLog a, HyperLogLog b) {
+        HyperLogLog union = a.copy();
+        union.merge(b);
+        long countA = a.estimate();
+        long countB = b.estimate();
+        long unionCount = Math.max(union.estimate(), Math.max(countA, countB));
+        // Inclusion-exclusion can go negative or past the smaller set by the estimation error
+        long intersection = Math.max(0, Math.min(countA + countB - unionCount, Math.min(countA, countB)));
+        result.put("estimated_count", countA);
+        result.put("other_estimated_count", countB);
+        result.put("estimated_union", unionCount);
+        result.put("estimated_intersection", intersection);
+        result.put("estimated_jaccard", unionCount == 0 ? 0.0 : (double) intersection / unionCount);
+        result.put("standard_error", union.standardError());
+    }
+
+    // ==================== STATISTICS ====================
+
+    public int sketchCount() {
+        return lists.size();
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Entry entry : lists.values()) {
+            bytes += entry.sketch.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // ==================== HASHING ====================
+
+    private static long fnv(String identifier) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < identifier.length(); i++) {
+            h = (h ^ identifier.charAt(i)) * 0x100000001B3L;
+        }
+        return h;
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private record Entry(String advertiserId, HyperLogLog sketch) {
+    }
+}
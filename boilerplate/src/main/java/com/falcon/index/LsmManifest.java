@@ -0,0 +1,156 @@
+package com.falcon.index;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Durable description of an {@link LsmStore}: which run files are live, in age
+ * order, and the list registry by ordinal. It is rewritten whole (temp file, sync,
+ * atomic rename) whenever runs or the registry change, so after a crash the store
+ * reopens exactly the runs of the last completed flush or compaction.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int   magic "FLSM"        int   format version
+ *   long  next file ID
+ *   int   run count           run count x long run ID (newest first)
+ *   int   list count          per ordinal:
+ *     str list ID (-1 length = retired ordinal), str advertiser ID, str metadata
+ *     long durable version (list file version whose entries are all in the runs)
+ *   long  CRC32 of everything above
+ *   str = int byte length + UTF-8 bytes
+ * </pre>
+ */
+final class LsmManifest {
+
+    static final String FILE_NAME = "MANIFEST";
+    private static final int MAGIC = 0x46534C4D;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+
+    final long nextId;
+    final List<Long> runIds;
+    final List<Entry> lists;
+
+    /**
+     * One ordinal of the registry; {@code listId} is null once the list is deleted.
+     */
+    record Entry(String listId, String advertiserId, String metadata, long durableVersion) {
+    }
+
+    LsmManifest(long nextId, List<Long> runIds, List<Entry> lists) {
+        this.nextId = nextId;
+        this.runIds = runIds;
+        this.lists = lists;
+    }
+
+    void write(Path directory) throws IOException {
+        Path temp = directory.resolve(FILE_NAME + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(nextId);
+            out.writeInt(runIds.size());
+            for (long id : runIds) {
+                out.writeLong(id);
+            }
+            out.writeInt(lists.size());
+            for (Entry entry : lists) {
+                writeString(out, entry.listId());
+                writeString(out, entry.advertiserId());
+                writeString(out, entry.metadata());
+                out.writeLong(entry.durableVersion());
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+        }
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(FILE_NAME), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * @return the manifest in {@code directory}, or null if there is none (a new store)
+     * @throws IOException if it exists but is truncated or corrupt
+     */
+    static LsmManifest read(Path directory) throws IOException {
+        Path path = directory.resolve(FILE_NAME);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (InputStream file = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an LSM manifest: " + path);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported LSM manifest format version " + version);
+            }
+            long nextId = in.readLong();
+            int runCount = readCount(in);
+            List<Long> runIds = new ArrayList<>(Math.min(runCount, 1 << 10));
+            for (int i = 0; i < runCount; i++) {
+                runIds.add(in.readLong());
+            }
+            int listCount = readCount(in);
+            List<Entry> lists = new ArrayList<>(Math.min(listCount, 1 << 10));
+            for (int i = 0; i < listCount; i++) {
+                lists.add(new Entry(readString(in), readString(in), readString(in), in.readLong()));
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("LSM manifest checksum mismatch");
+            }
+            return new LsmManifest(nextId, runIds, lists);
+        } catch (EOFException e) {
+            throw new IOException("LSM manifest is truncated");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt LSM manifest: string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt LSM manifest: negative count " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,1057 @@
+package com.falcon.index;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log-structured, disk-resident hash index: which lists hold a 32-byte hash.
+ *
+ * Writes go to an in-memory memtable of (hash, list ordinal) entries, each a
+ * membership or a tombstone. A full memtable is frozen and flushed in the
+ * background to an immutable {@link SortedRun}; runs are merged by a separate
+ * compaction thread whose disk I/O is capped by {@link IoRateLimiter}, so
+ * neither ever runs on a serving or writing thread.
+ *
+ * A lookup checks the memtables, then every run from newest to oldest; the first
+ * entry seen for a list decides it. Each run keeps its Bloom filter and sparse
+ * block index in memory, so a run costs a disk read only if its filter passes,
+ * and then exactly one block. A hash written in one batch lives in one run, so
+ * a hit usually costs one read and a miss usually none.
+ *
+ * Compaction is size-tiered: runs are grouped in tiers of {@code fanIn} times the
+ * memtable size, and {@code fanIn} adjacent runs of one tier are merged into one
+ * of the next. Merging drops shadowed entries and entries of deleted lists, and
+ * drops tombstones once the merge reaches the oldest run.
+ *
+ * Lists are numbered by ordinal; deleting a list retires its ordinal instead of
+ * writing a tombstone per identifier, and compaction purges the dead entries.
+ * Ordinals are never reused.
+ *
+ * The store is durable and owns list contents: each list's hashes live in a file of
+ * their own ({@link StoredIdentifierList}), read on demand and only softly cached,
+ * and a {@link LsmManifest} names the live runs and the list registry. Opening a
+ * directory resumes the store in it; files the manifest does not name (a run from
+ * an unfinished flush or compaction, temp files, files of deleted lists) are
+ * removed. There is no write-ahead log: a list's file is replaced before its
+ * entries go to the memtable, and the manifest records per list the last file
+ * version whose entries all reached a run. A list whose file is newer than that
+ * after a crash has the difference re-applied when the store opens.
+ *
+ * There is one writer at a time (the caller's lock); lookups never lock.
+ */
+public final class LsmStore implements Closeable {
+
+    private static final String RUN_SUFFIX = ".run";
+    private static final String LIST_SUFFIX = ".keys";
+    // Frozen memtables waiting for flush before writers are held back
+    private static final int MAX_PENDING_FLUSHES = 4;
+    private static final int MAX_LOOKUP_ATTEMPTS = 3;
+    private static final int MEMTABLE_ENTRY_BYTES = 100;
+
+    private final Path directory;
+    private final Path listDirectory;
+    private final int memtableEntries;
+    private final int fanIn;
+    private final IoRateLimiter compactionLimiter;
+    private final long compactionBytesPerSecond;
+    private final ExecutorService flusher = Executors.newSingleThreadExecutor(daemon("lsm-flush"));
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(daemon("lsm-compaction"));
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+
+    private volatile State state;
+    private volatile Registry registry = new Registry(new String[0], new String[0], Set.of());
+    // Guarded by this
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final List<ListEntry> entries = new ArrayList<>();
+    private long nextFileId;
+    private int pendingFlushes;
+    private boolean flushFailed;
+    private boolean closed;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder hitDiskReads = new LongAdder();
+    private final LongAdder missDiskReads = new LongAdder();
+    private final LongAdder bloomNegatives = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder compactions = new LongAdder();
+    private final LongAdder compactedBytes = new LongAdder();
+    private final LongAdder purgedEntries = new LongAdder();
+
+    /**
+     * @param directory                the store's files; a store already in it is reopened
+     * @param memtableEntries          entries a memtable holds before it is flushed
+     * @param fanIn                    runs of one tier merged by a compaction
+     * @param compactionBytesPerSecond cap on compaction reads plus writes; 0 = unlimited
+     * @throws IOException if the directory holds a store that cannot be read
+     */
+    public LsmStore(Path directory, int memtableEntries, int fanIn, long compactionBytesPerSecond) throws IOException {
+        if (memtableEntries < 1 || fanIn < 2) {
+            throw new IllegalArgumentException("memtable-entries must be positive and compaction-fan-in at least 2");
+        }
+        this.directory = directory;
+        this.listDirectory = directory.resolve("lists");
+        this.memtableEntries = memtableEntries;
+        this.fanIn = fanIn;
+        this.compactionBytesPerSecond = compactionBytesPerSecond;
+        this.compactionLimiter = new IoRateLimiter(compactionBytesPerSecond);
+        Files.createDirectories(listDirectory);
+        List<SortedRun> runs = open(LsmManifest.read(directory));
+        deleteUnlisted(runs);
+        synchronized (this) {
+            state = new State(new Memtable(nextFileId++), List.of(), List.copyOf(runs));
+            reconcile();
+        }
+    }
+
+    // ==================== OPEN ====================
+
+    /**
+     * Load the registry and open the runs the manifest names (none for a new store).
+     */
+    private List<SortedRun> open(LsmManifest manifest) throws IOException {
+        List<SortedRun> runs = new ArrayList<>();
+        if (manifest == null) {
+            return runs;
+        }
+        nextFileId = manifest.nextId;
+        try {
+            for (long id : manifest.runIds) {
+                runs.add(SortedRun.open(id, runPath(id)));
+            }
+        } catch (IOException e) {
+            for (SortedRun run : runs) {
+                run.close();
+            }
+            throw e;
+        }
+        int count = manifest.lists.size();
+        String[] listIds = new String[count];
+        String[] advertiserIds = new String[count];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            LsmManifest.Entry entry = manifest.lists.get(ordinal);
+            listIds[ordinal] = entry.listId();
+            advertiserIds[ordinal] = entry.advertiserId();
+            StoredIdentifierList contents = emptyList(ordinal);
+            if (entry.listId() != null) {
+                ordinals.put(entry.listId(), ordinal);
+                if (Files.exists(listPath(ordinal))) {
+                    contents = StoredIdentifierList.open(listPath(ordinal));
+                }
+            }
+            entries.add(new ListEntry(entry.metadata(), contents, entry.durableVersion()));
+        }
+        registry = new Registry(listIds, advertiserIds, listedAdvertisers(listIds, advertiserIds));
+        return runs;
+    }
+
+    /**
+     * Delete runs the manifest does not name, temp files and files of retired lists.
+     */
+    private void deleteUnlisted(List<SortedRun> runs) throws IOException {
+        Set<Path> live = new HashSet<>();
+        for (SortedRun run : runs) {
+            live.add(runPath(run.id));
+        }
+        String[] listIds = registry.listIds;
+        for (int ordinal = 0; ordinal < listIds.length; ordinal++) {
+            if (listIds[ordinal] != null) {
+                live.add(listPath(ordinal));
+            }
+        }
+        for (Path dir : List.of(directory, listDirectory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.{run,keys,tmp}")) {
+                for (Path path : files) {
+                    if (!live.contains(path)) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-apply lists whose latest file version did not fully reach a run before the
+     * store was last closed: the runs' view of the list is diffed against the file.
+     */
+    private void reconcile() throws IOException {
+        int repaired = 0;
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            ListEntry entry = entries.get(ordinal);
+            if (registry.listIds[ordinal] == null || entry.contents.version() == entry.durableVersion) {
+                continue;
+            }
+            writeChanges(ordinal, scan(state.runs, ordinal), entry.contents.load());
+            state.active.completed.put(ordinal, entry.contents.version());
+            repaired++;
+        }
+        if (repaired > 0) {
+            System.out.println("⚠ LSM store " + directory + ": re-applied " + repaired
+                    + " list(s) whose last write had not reached a run");
+        }
+    }
+
+    /**
+     * A list's contents as the runs have them: for each hash of the ordinal, the newest entry decides.
+     */
+    private static PackedIdentifierList scan(List<SortedRun> runs, int ordinal) throws IOException {
+        List<SortedRun.Cursor> cursors = new ArrayList<>(runs.size());
+        PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> {
+            SortedRun.Cursor x = cursors.get(a);
+            SortedRun.Cursor y = cursors.get(b);
+            int c = SortedRun.compare(x.w0, x.w1, x.w2, x.w3, y.w0, y.w1, y.w2, y.w3);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        long[] keys = new long[64 * HashKeys.WORDS];
+        int count = 0;
+        try {
+            for (SortedRun run : runs) {
+                SortedRun.Cursor cursor = run.cursor(null);
+                cursors.add(cursor);
+                if (nextOf(cursor, ordinal)) {
+                    heap.add(cursors.size() - 1);
+                }
+            }
+            boolean hasLast = false;
+            long l0 = 0, l1 = 0, l2 = 0, l3 = 0;
+            while (!heap.isEmpty()) {
+                int index = heap.poll();
+                SortedRun.Cursor cursor = cursors.get(index);
+                boolean shadowed = hasLast
+                        && SortedRun.compare(l0, l1, l2, l3, cursor.w0, cursor.w1, cursor.w2, cursor.w3) == 0;
+                if (!shadowed) {
+                    hasLast = true;
+                    l0 = cursor.w0;
+                    l1 = cursor.w1;
+                    l2 = cursor.w2;
+                    l3 = cursor.w3;
+                    if (cursor.member) {
+                        if ((count + 1) * HashKeys.WORDS > keys.length) {
+                            keys = Arrays.copyOf(keys, keys.length * 2);
+                        }
+                        int at = count++ * HashKeys.WORDS;
+                        keys[at] = l0;
+                        keys[at + 1] = l1;
+                        keys[at + 2] = l2;
+                        keys[at + 3] = l3;
+                    }
+                }
+                if (nextOf(cursor, ordinal)) {
+                    heap.add(index);
+                }
+            }
+        } finally {
+            for (SortedRun.Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+        return PackedIdentifierList.ofKeys(keys, count, List.of());
+    }
+
+    private static boolean nextOf(SortedRun.Cursor cursor, int ordinal) throws IOException {
+        while (cursor.next()) {
+            if (cursor.ordinal == ordinal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // ==================== WRITES ====================
+
+    /**
+     * Store a list's new contents: its file is replaced, then only hashes that entered
+     * or left the list since its last put are written to the memtable. Non-canonical
+     * identifiers are not stored.
+     *
+     * @param metadata opaque description of the list, handed back by {@link #lists()}
+     * @return the stored contents, to be read in place of {@code current}
+     * @throws UncheckedIOException if the list file or manifest cannot be written
+     */
+    public synchronized StoredIdentifierList putList(String listId, String advertiserId, String metadata,
+                                                     PackedIdentifierList current) {
+        int ordinal = ordinalOf(listId, advertiserId, metadata);
+        ListEntry entry = entries.get(ordinal);
+        PackedIdentifierList previous = entry.contents.load();
+        StoredIdentifierList stored;
+        try {
+            stored = StoredIdentifierList.write(listPath(ordinal), entry.contents.version() + 1, current);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write list " + listId + ": " + e.getMessage(), e);
+        }
+        entry.contents = stored;
+        writeChanges(ordinal, previous, current);
+        state.active.completed.put(ordinal, stored.version());
+        return stored;
+    }
+
+    /**
+     * Write a membership for every hash in {@code current} but not {@code previous},
+     * and a tombstone for every hash the other way round.
+     */
+    private void writeChanges(int ordinal, PackedIdentifierList previous, PackedIdentifierList current) {
+        int i = 0;
+        int j = 0;
+        while (i < previous.hashCount() || j < current.hashCount()) {
+            int c = i == previous.hashCount() ? 1 : j == current.hashCount() ? -1
+                    : SortedRun.compare(previous.word(i, 0), previous.word(i, 1), previous.word(i, 2), previous.word(i, 3),
+                            current.word(j, 0), current.word(j, 1), current.word(j, 2), current.word(j, 3));
+            if (c < 0) {
+                write(previous, i++, ordinal, false);
+            } else if (c > 0) {
+                write(current, j++, ordinal, true);
+            } else {
+                i++;
+                j++;
+            }
+        }
+    }
+
+    /**
+     * Retire the list's ordinal; its entries stop matching at once and are purged by compaction.
+     */
+    public synchronized void removeList(String listId) {
+        Integer ordinal = ordinals.remove(listId);
+        if (ordinal == null) {
+            return;
+        }
+        Registry current = registry;
+        String[] listIds = current.listIds.clone();
+        listIds[ordinal] = null;
+        registry = new Registry(listIds, current.advertiserIds, listedAdvertisers(listIds, current.advertiserIds));
+        ListEntry entry = entries.get(ordinal);
+        entry.metadata = null;
+        entry.contents = emptyList(ordinal);
+        writeManifest();
+        try {
+            Files.deleteIfExists(listPath(ordinal));
+        } catch (IOException e) {
+            System.err.println("⚠ Failed to delete list file " + listPath(ordinal) + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * The list's ordinal, registering it (or its new advertiser or metadata) first if needed.
+     */
+    private int ordinalOf(String listId, String advertiserId, String metadata) {
+        Registry current = registry;
+        Integer ordinal = ordinals.get(listId);
+        if (ordinal != null) {
+            ListEntry entry = entries.get(ordinal);
+            boolean moved = !current.advertiserIds[ordinal].equals(advertiserId);
+            if (moved) {
+                String[] advertiserIds = current.advertiserIds.clone();
+                advertiserIds[ordinal] = advertiserId;
+                registry = new Registry(current.listIds, advertiserIds, listedAdvertisers(current.listIds, advertiserIds));
+            }
+            if (moved || !Objects.equals(entry.metadata, metadata)) {
+                entry.metadata = metadata;
+                writeManifest();
+            }
+            return ordinal;
+        }
+        int added = current.listIds.length;
+        String[] listIds = Arrays.copyOf(current.listIds, added + 1);
+        String[] advertiserIds = Arrays.copyOf(current.advertiserIds, added + 1);
+        listIds[added] = listId;
+        advertiserIds[added] = advertiserId;
+        ordinals.put(listId, added);
+        entries.add(new ListEntry(metadata, emptyList(added), 0));
+        registry = new Registry(listIds, advertiserIds, listedAdvertisers(listIds, advertiserIds));
+        writeManifest();
+        return added;
+    }
+
+    private static Set<String> listedAdvertisers(String[] listIds, String[] advertiserIds) {
+        Set<String> listed = new HashSet<>();
+        for (int i = 0; i < listIds.length; i++) {
+            if (listIds[i] != null) {
+                listed.add(advertiserIds[i]);
+            }
+        }
+        return Collections.unmodifiableSet(listed);
+    }
+
+    private void write(PackedIdentifierList list, int index, int ordinal, boolean member) {
+        Memtable active = state.active;
+        active.entries.put(new Key(list.word(index, 0), list.word(index, 1), list.word(index, 2), list.word(index, 3),
+                ordinal), member);
+        if (++active.size >= memtableEntries) {
+            rotate();
+        }
+    }
+
+    /**
+     * Freeze the active memtable and hand it to the flusher, waiting first if
+     * too many frozen ones are already queued.
+     */
+    private void rotate() {
+        while (pendingFlushes >= MAX_PENDING_FLUSHES) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        State current = state;
+        List<Memtable> frozen = new ArrayList<>(current.frozen.size() + 1);
+        frozen.add(current.active);
+        frozen.addAll(current.frozen);
+        state = new State(new Memtable(nextFileId++), List.copyOf(frozen), current.runs);
+        pendingFlushes++;
+        Memtable full = current.active;
+        flusher.execute(() -> flush(full));
+    }
+
+    // ==================== FLUSH AND COMPACTION ====================
+
+    /**
+     * Write a frozen memtable to a run, then record in the manifest the run and the
+     * list versions whose puts completed in it. A put that spans memtables completes
+     * in the last one, and memtables are flushed in order, so by then every entry of
+     * that version is on disk. After a failed flush no version is recorded again: its
+     * entries exist only in memory, and the next open re-applies those lists.
+     */
+    private void flush(Memtable memtable) {
+        SortedRun run = null;
+        boolean failed = false;
+        boolean compactNext;
+        if (!memtable.entries.isEmpty()) {
+            try {
+                SortedRun.Writer writer = new SortedRun.Writer(memtable.id, runPath(memtable.id), memtable.size, null);
+                try {
+                    for (Map.Entry<Key, Boolean> entry : memtable.entries.entrySet()) {
+                        Key key = entry.getKey();
+                        writer.add(key.w0, key.w1, key.w2, key.w3, key.ordinal, entry.getValue());
+                    }
+                    run = writer.finish();
+                } catch (IOException | RuntimeException e) {
+                    writer.abort();
+                    throw e;
+                }
+            } catch (IOException | RuntimeException e) {
+                // The memtable stays readable; its entries are just not on disk
+                System.err.println("✗ Failed to flush memtable: " + e.getMessage());
+                failed = true;
+            }
+        }
+        synchronized (this) {
+            if (failed) {
+                flushFailed = true;
+            } else {
+                State current = state;
+                List<Memtable> frozen = new ArrayList<>(current.frozen);
+                frozen.remove(memtable);
+                List<SortedRun> runs = new ArrayList<>(current.runs.size() + 1);
+                if (run != null) {
+                    runs.add(run);
+                    flushes.increment();
+                }
+                runs.addAll(current.runs);
+                state = new State(current.active, List.copyOf(frozen), List.copyOf(runs));
+                if (!flushFailed) {
+                    memtable.completed.forEach((ordinal, version) -> {
+                        ListEntry entry = entries.get(ordinal);
+                        entry.durableVersion = Math.max(entry.durableVersion, version);
+                    });
+                }
+                try {
+                    writeManifest();
+                } catch (UncheckedIOException e) {
+                    System.err.println("✗ " + e.getMessage());
+                }
+            }
+            pendingFlushes--;
+            notifyAll();
+            // A closing store stops its executors as soon as the last flush is done
+            compactNext = run != null && !closed;
+        }
+        if (compactNext && compactionScheduled.compareAndSet(false, true)) {
+            compactor.execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        compactionScheduled.set(false);
+        try {
+            List<SortedRun> group;
+            while ((group = pickCompaction(state.runs)) != null) {
+                merge(group);
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                if (closed) {
+                    // Interrupted by close(): the merge was aborted and its input runs are untouched
+                    return;
+                }
+            }
+            System.err.println("✗ Compaction failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * The oldest {@code fanIn} adjacent runs of one tier, or null if no tier is full.
+     * Runs are newest first; a tier's runs are adjacent because newer runs are never
+     * in a higher tier than older ones.
+     */
+    private List<SortedRun> pickCompaction(List<SortedRun> runs) {
+        int end = runs.size();
+        while (end >= fanIn) {
+            int tier = tierOf(runs.get(end - 1));
+            int start = end - 1;
+            while (start > 0 && tierOf(runs.get(start - 1)) == tier) {
+                start--;
+            }
+            if (end - start >= fanIn) {
+                return runs.subList(end - fanIn, end);
+            }
+            end = start;
+        }
+        return null;
+    }
+
+    private int tierOf(SortedRun run) {
+        int tier = 0;
+        for (long size = memtableEntries; run.entries > size && tier < 30; size *= fanIn) {
+            tier++;
+        }
+        return tier;
+    }
+
+    /**
+     * Merge adjacent runs into one. For every key the newest entry wins; entries of
+     * retired lists are dropped, and so are tombstones when nothing older remains.
+     */
+    private void merge(List<SortedRun> group) throws IOException {
+        boolean reachesOldest = group.get(group.size() - 1) == state.runs.get(state.runs.size() - 1);
+        String[] live = registry.listIds;
+        long inputEntries = 0;
+        long inputBytes = 0;
+        List<SortedRun.Cursor> cursors = new ArrayList<>(group.size());
+        // Cursor order doubles as age: lower index = newer run
+        PriorityQueue<Integer> heap = new PriorityQueue<>((a, b) -> {
+            SortedRun.Cursor x = cursors.get(a);
+            SortedRun.Cursor y = cursors.get(b);
+            int c = SortedRun.compare(x.w0, x.w1, x.w2, x.w3, y.w0, y.w1, y.w2, y.w3);
+            if (c == 0) {
+                c = Integer.compare(x.ordinal, y.ordinal);
+            }
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        SortedRun.Writer writer = null;
+        SortedRun merged;
+        long purged = 0;
+        try {
+            for (SortedRun run : group) {
+                inputEntries += run.entries;
+                inputBytes += run.dataBytes();
+                SortedRun.Cursor cursor = run.cursor(compactionLimiter);
+                cursors.add(cursor);
+                if (cursor.next()) {
+                    heap.add(cursors.size() - 1);
+                }
+            }
+            long id;
+            synchronized (this) {
+                id = nextFileId++;
+            }
+            writer = new SortedRun.Writer(id, runPath(id), inputEntries, compactionLimiter);
+            boolean hasLast = false;
+            long l0 = 0, l1 = 0, l2 = 0, l3 = 0;
+            int lastOrdinal = 0;
+            while (!heap.isEmpty()) {
+                int index = heap.poll();
+                SortedRun.Cursor cursor = cursors.get(index);
+                boolean shadowed = hasLast && lastOrdinal == cursor.ordinal
+                        && SortedRun.compare(l0, l1, l2, l3, cursor.w0, cursor.w1, cursor.w2, cursor.w3) == 0;
+                if (!shadowed) {
+                    hasLast = true;
+                    l0 = cursor.w0;
+                    l1 = cursor.w1;
+                    l2 = cursor.w2;
+                    l3 = cursor.w3;
+                    lastOrdinal = cursor.ordinal;
+                    boolean dead = cursor.ordinal >= live.length || live[cursor.ordinal] == null;
+                    if (!dead && (cursor.member || !reachesOldest)) {
+                        writer.add(cursor.w0, cursor.w1, cursor.w2, cursor.w3, cursor.ordinal, cursor.member);
+                    } else {
+                        purged++;
+                    }
+                }
+                if (cursor.next()) {
+                    heap.add(index);
+                }
+            }
+            merged = writer.finish();
+        } catch (IOException | RuntimeException e) {
+            if (writer != null) {
+                writer.abort();
+            }
+            throw e;
+        } finally {
+            for (SortedRun.Cursor cursor : cursors) {
+                cursor.close();
+            }
+        }
+
+        synchronized (this) {
+            List<SortedRun> runs = new ArrayList<>(state.runs);
+            int at = runs.indexOf(group.get(0));
+            runs.removeAll(group);
+            if (merged.entries > 0) {
+                runs.add(at, merged);
+            }
+            // Counted before the swap, so status() never shows the merged runs without them
+            compactions.increment();
+            compactedBytes.add(inputBytes + merged.dataBytes());
+            purgedEntries.add(purged);
+            state = new State(state.active, state.frozen, List.copyOf(runs));
+            // Replaced runs are deleted only once the manifest no longer names them
+            writeManifest();
+        }
+        if (merged.entries == 0) {
+            merged.delete();
+        }
+        for (SortedRun run : group) {
+            run.delete();
+        }
+    }
+
+    // ==================== FILES ====================
+
+    /**
+     * Rewrite the manifest from the current runs and registry. Caller holds the lock.
+     *
+     * @throws UncheckedIOException if it cannot be written; the store in memory is unaffected
+     */
+    private void writeManifest() {
+        Registry names = registry;
+        List<LsmManifest.Entry> lists = new ArrayList<>(entries.size());
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            ListEntry entry = entries.get(ordinal);
+            lists.add(new LsmManifest.Entry(names.listIds[ordinal], names.advertiserIds[ordinal],
+                    entry.metadata, entry.durableVersion));
+        }
+        List<Long> runIds = new ArrayList<>(state.runs.size());
+        for (SortedRun run : state.runs) {
+            runIds.add(run.id);
+        }
+        try {
+            new LsmManifest(nextFileId, runIds, lists).write(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write LSM manifest: " + e.getMessage(), e);
+        }
+    }
+
+    private Path runPath(long id) {
+        return directory.resolve(String.format("%08d", id) + RUN_SUFFIX);
+    }
+
+    private Path listPath(int ordinal) {
+        return listDirectory.resolve(ordinal + LIST_SUFFIX);
+    }
+
+    private StoredIdentifierList emptyList(int ordinal) {
+        return new StoredIdentifierList(listPath(ordinal), 0, 0);
+    }
+
+    // ==================== LISTS ====================
+
+    /**
+     * A live list as last put: what to hand back to the caller when the store is reopened.
+     */
+    public record StoredList(String listId, String advertiserId, String metadata, StoredIdentifierList identifiers) {
+    }
+
+    /**
+     * Every live list, in ordinal (creation) order.
+     */
+    public synchronized List<StoredList> lists() {
+        Registry names = registry;
+        List<StoredList> lists = new ArrayList<>(ordinals.size());
+        for (int ordinal = 0; ordinal < entries.size(); ordinal++) {
+            if (names.listIds[ordinal] != null) {
+                ListEntry entry = entries.get(ordinal);
+                lists.add(new StoredList(names.listIds[ordinal], names.advertiserIds[ordinal],
+                        entry.metadata, entry.contents));
+            }
+        }
+        return lists;
+    }
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * @return advertisers whose lists hold the hash; empty for non-canonical input
+     */
+    public Set<String> lookup(String hash) {
+        Registry names = registry;
+        int[] matched = match(hash, names);
+        if (matched.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> advertisers = new HashSet<>();
+        for (int ordinal : matched) {
+            advertisers.add(names.advertiserIds[ordinal]);
+        }
+        return Collections.unmodifiableSet(advertisers);
+    }
+
+    /**
+     * @return IDs of the lists that hold the hash
+     */
+    public Set<String> lookupLists(String hash) {
+        Registry names = registry;
+        int[] matched = match(hash, names);
+        if (matched.length == 0) {
+            return Collections.emptySet();
+        }
+        Set<String> listIds = new HashSet<>();
+        for (int ordinal : matched) {
+            String listId = names.listIds[ordinal];
+            if (listId != null) {
+                listIds.add(listId);
+            }
+        }
+        return Collections.unmodifiableSet(listIds);
+    }
+
+    /**
+     * False only if no memtable holds the hash and every run's Bloom filter rules it
+     * out; answered from memory, without touching disk.
+     */
+    public boolean mightContain(String hash) {
+        HashKeys.Decoder key = HashKeys.decoder();
+        if (!key.decode(hash)) {
+            return false;
+        }
+        State current = state;
+        if (!memtableRange(current.active, key).isEmpty()) {
+            return true;
+        }
+        for (Memtable frozen : current.frozen) {
+            if (!memtableRange(frozen, key).isEmpty()) {
+                return true;
+            }
+        }
+        for (SortedRun run : current.runs) {
+            if (run.mightContain(key.w0, key.w1, key.w2, key.w3)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return advertisers that own at least one list
+     */
+    public Set<String> listedAdvertisers() {
+        return registry.listed;
+    }
+
+    /**
+     * Live list ordinals holding the hash. A run retired by compaction mid-lookup
+     * closes its channel; the lookup then starts over on the current runs.
+     */
+    private int[] match(String hash, Registry names) {
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        if (!decoder.decode(hash)) {
+            return new int[0];
+        }
+        long w0 = decoder.w0, w1 = decoder.w1, w2 = decoder.w2, w3 = decoder.w3;
+        lookups.increment();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return match(state, names.listIds, w0, w1, w2, w3);
+            } catch (ClosedChannelException e) {
+                retries.increment();
+                if (attempt == MAX_LOOKUP_ATTEMPTS) {
+                    throw new UncheckedIOException("Run retired during lookup", e);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("LSM lookup failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private int[] match(State current, String[] live, long w0, long w1, long w2, long w3) throws IOException {
+        Decisions decisions = new Decisions();
+        Key from = new Key(w0, w1, w2, w3, 0);
+        Key to = new Key(w0, w1, w2, w3, Integer.MAX_VALUE);
+        decisions.addAll(current.active.entries.subMap(from, true, to, true));
+        for (Memtable frozen : current.frozen) {
+            decisions.addAll(frozen.entries.subMap(from, true, to, true));
+        }
+        int diskReads = 0;
+        for (SortedRun run : current.runs) {
+            if (!run.mightContain(w0, w1, w2, w3)) {
+                bloomNegatives.increment();
+            } else if (run.probe(w0, w1, w2, w3, decisions)) {
+                diskReads++;
+            }
+        }
+        int[] matched = decisions.members(live);
+        if (matched.length > 0) {
+            hits.increment();
+            hitDiskReads.add(diskReads);
+        } else {
+            missDiskReads.add(diskReads);
+        }
+        return matched;
+    }
+
+    private static ConcurrentNavigableMap<Key, Boolean> memtableRange(Memtable memtable, HashKeys.Decoder key) {
+        return memtable.entries.subMap(new Key(key.w0, key.w1, key.w2, key.w3, 0), true,
+                new Key(key.w0, key.w1, key.w2, key.w3, Integer.MAX_VALUE), true);
+    }
+
+    /**
+     * First-seen-wins decisions per list ordinal, visited newest to oldest.
+     * A hash is in few lists, so flat arrays beat a set.
+     */
+    private static final class Decisions implements SortedRun.EntryVisitor {
+        private int[] ordinals = new int[8];
+        private boolean[] member = new boolean[8];
+        private int count;
+
+        void addAll(Map<Key, Boolean> entries) {
+            for (Map.Entry<Key, Boolean> entry : entries.entrySet()) {
+                visit(entry.getKey().ordinal, entry.getValue());
+            }
+        }
+
+        @Override
+        public void visit(int ordinal, boolean isMember) {
+            for (int i = 0; i < count; i++) {
+                if (ordinals[i] == ordinal) {
+                    return;
+                }
+            }
+            if (count == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, count * 2);
+                member = Arrays.copyOf(member, count * 2);
+            }
+            ordinals[count] = ordinal;
+            member[count++] = isMember;
+        }
+
+        int[] members(String[] live) {
+            int[] result = new int[count];
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (member[i] && ordinals[i] < live.length && live[ordinals[i]] != null) {
+                    result[n++] = ordinals[i];
+                }
+            }
+            return n == count ? result : Arrays.copyOf(result, n);
+        }
+    }
+
+    // ==================== STATISTICS ====================
+
+    public Map<String, Object> status() {
+        State current = state;
+        long memtable = current.active.size;
+        for (Memtable frozen : current.frozen) {
+            memtable += frozen.size;
+        }
+        long runEntries = 0;
+        long runBytes = 0;
+        long runMemory = 0;
+        Map<Integer, Integer> runsByTier = new TreeMap<>();
+        for (SortedRun run : current.runs) {
+            runEntries += run.entries;
+            runBytes += run.fileBytes;
+            runMemory += run.memoryBytes();
+            runsByTier.merge(tierOf(run), 1, Integer::sum);
+        }
+        long lookupCount = lookups.sum();
+        long hitCount = hits.sum();
+        long missCount = lookupCount - hitCount;
+
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("directory", directory.toString());
+        status.put("lists", Arrays.stream(registry.listIds).filter(Objects::nonNull).count());
+        status.put("memtable_entries", memtable);
+        status.put("frozen_memtables", current.frozen.size());
+        status.put("runs", current.runs.size());
+        status.put("runs_by_tier", runsByTier);
+        status.put("run_entries", runEntries);
+        status.put("run_disk_bytes", runBytes);
+        status.put("run_memory_bytes", runMemory);
+        status.put("lookups", lookupCount);
+        status.put("hits", hitCount);
+        status.put("disk_reads_per_hit", hitCount == 0 ? 0.0 : (double) hitDiskReads.sum() / hitCount);
+        status.put("disk_reads_per_miss", missCount == 0 ? 0.0 : (double) missDiskReads.sum() / missCount);
+        status.put("bloom_negatives", bloomNegatives.sum());
+        status.put("lookup_retries", retries.sum());
+        status.put("flushes", flushes.sum());
+        status.put("compactions", compactions.sum());
+        status.put("compacted_bytes", compactedBytes.sum());
+        status.put("purged_entries", purgedEntries.sum());
+        status.put("compaction_bytes_per_sec", compactionBytesPerSecond);
+        status.put("compaction_throttled_ms", compactionLimiter.throttledMillis());
+        return status;
+    }
+
+    /**
+     * Approximate heap held: run Bloom filters and block indexes, plus memtable
+     * entries at about 100 bytes each (key record and skip-list node).
+     */
+    public long memoryBytes() {
+        State current = state;
+        long bytes = (long) current.active.size * MEMTABLE_ENTRY_BYTES;
+        for (Memtable frozen : current.frozen) {
+            bytes += (long) frozen.size * MEMTABLE_ENTRY_BYTES;
+        }
+        for (SortedRun run : current.runs) {
+            bytes += run.memoryBytes();
+        }
+        return bytes;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    /**
+     * Flush the memtable and stop background work, leaving the store on disk to be reopened.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (!closed) {
+                closed = true;
+                Memtable active = state.active;
+                if (active.size > 0 || !active.completed.isEmpty()) {
+                    rotate();
+                }
+                while (pendingFlushes > 0) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+        stop();
+    }
+
+    /**
+     * Stop background work and delete the store's directory.
+     */
+    public void destroy() {
+        synchronized (this) {
+            closed = true;
+        }
+        stop();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        } catch (IOException e) {
+            System.err.println("⚠ Failed to delete LSM store " + directory + ": " + e.getMessage());
+        }
+    }
+
+    private void stop() {
+        flusher.shutdownNow();
+        compactor.shutdownNow();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+            compactor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (SortedRun run : state.runs) {
+            try {
+                run.close();
+            } catch (IOException e) {
+                System.err.println("⚠ Failed to close run " + run.id + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // ==================== STATE ====================
+
+    /**
+     * Memtable entries keyed by (hash, ordinal); the value is true for a member,
+     * false for a tombstone. Only the writer adds; {@code size} counts its puts.
+     * {@code id} names the run it is flushed to; {@code completed} holds the list
+     * file versions whose puts finished in it (guarded by the store's lock).
+     */
+    private static final class Memtable {
+        final long id;
+        final ConcurrentSkipListMap<Key, Boolean> entries = new ConcurrentSkipListMap<>();
+        final Map<Integer, Long> completed = new HashMap<>();
+        volatile int size;
+
+        Memtable(long id) {
+            this.id = id;
+        }
+    }
+
+    private record Key(long w0, long w1, long w2, long w3, int ordinal) implements Comparable<Key> {
+        @Override
+        public int compareTo(Key other) {
+            int c = SortedRun.compare(w0, w1, w2, w3, other.w0, other.w1, other.w2, other.w3);
+            return c != 0 ? c : Integer.compare(ordinal, other.ordinal);
+        }
+    }
+
+    /**
+     * What a lookup reads, published as one snapshot: the active memtable, frozen
+     * memtables awaiting flush and the runs, each newest first.
+     */
+    private record State(Memtable active, List<Memtable> frozen, List<SortedRun> runs) {
+    }
+
+    /**
+     * List ID and advertiser per ordinal (null list ID = deleted), and every advertiser with a live list.
+     */
+    private record Registry(String[] listIds, String[] advertiserIds, Set<String> listed) {
+    }
+
+    /**
+     * Writer-side state of one ordinal: the caller's metadata, the current list file,
+     * and the newest file version whose entries have all been flushed to runs.
+     */
+    private static final class ListEntry {
+        String metadata;
+        StoredIdentifierList contents;
+        long durableVersion;
+
+        ListEntry(String metadata, StoredIdentifierList contents, long durableVersion) {
+            this.metadata = metadata;
+            this.contents = contents;
+            this.durableVersion = durableVersion;
+        }
+    }
+}
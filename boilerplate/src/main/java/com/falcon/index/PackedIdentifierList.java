@@ -0,0 +1,379 @@
+package com.falcon.index;
+
+import java.util.*;
+
+/**
+ * Read-only list of identifiers stored as sorted, packed hash keys.
+ *
+ * Canonical hashes live in one {@code long[]}, four big-endian words (32 bytes)
+ * per identifier, in ascending order and without duplicates; anything else
+ * (lenient mode only) is kept as a sorted {@code String[]} after them. The
+ * {@link List} view encodes an element back to hex only when it is read, so a
+ * list costs its raw binary size rather than 64-character strings, and
+ * {@link #contains} is a binary search.
+ *
+ * Instances are immutable; {@link #withChanges} builds a new one by merging.
+ */
+public final class PackedIdentifierList extends AbstractList<String> implements RandomAccess {
+
+    private static final int WORDS = HashKeys.WORDS;
+    private static final String[] NO_OTHERS = new String[0];
+    private static final PackedIdentifierList EMPTY = new PackedIdentifierList(new long[0], 0, NO_OTHERS);
+
+    private final long[] keys;
+    private final int hashCount;
+    private final String[] others;
+
+    private PackedIdentifierList(long[] keys, int hashCount, String[] others) {
+        this.keys = keys;
+        this.hashCount = hashCount;
+        this.others = others;
+    }
+
+    public static PackedIdentifierList empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Pack identifiers, sorting them and dropping duplicates. Returns the argument
+     * itself if it is already packed, and a stored list's packed contents.
+     */
+    public static PackedIdentifierList of(Collection<String> identifiers) {
+        if (identifiers instanceof PackedIdentifierList packed) {
+            return packed;
+        }
+        if (identifiers instanceof StoredIdentifierList stored) {
+            return stored.load();
+        }
+        if (identifiers.isEmpty()) {
+            return EMPTY;
+        }
+        long[] keys = new long[identifiers.size() * WORDS];
+        List<String> others = new ArrayList<>(0);
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        int n = 0;
+        for (String identifier : identifiers) {
+            if (decoder.decode(identifier)) {
+                int at = n++ * WORDS;
+                keys[at] = decoder.w0;
+                keys[at + 1] = decoder.w1;
+                keys[at + 2] = decoder.w2;
+                keys[at + 3] = decoder.w3;
+            } else {
+                others.add(Objects.requireNonNull(identifier, "identifier"));
+            }
+        }
+        if (!isSorted(keys, n)) {
+            sort(keys, 0, n - 1);
+        }
+        n = dropDuplicates(keys, n);
+        return new PackedIdentifierList(n * WORDS == keys.length ? keys : Arrays.copyOf(keys, n * WORDS), n,
+                sortedDistinct(others));
+    }
+
+    // ==================== LIST VIEW ====================
+
+    @Override
+    public String get(int index) {
+        if (index < hashCount && index >= 0) {
+            int at = index * WORDS;
+            return HashKeys.toHex(keys[at], keys[at + 1], keys[at + 2], keys[at + 3]);
+        }
+        return others[Objects.checkIndex(index - hashCount, others.length)];
+    }
+
+    @Override
+    public int size() {
+        return hashCount + others.length;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return indexOf(o) >= 0;
+    }
+
+    /**
+     * Binary search; elements are unique, so this is also {@link #lastIndexOf}.
+     */
+    @Override
+    public int indexOf(Object o) {
+        if (!(o instanceof String identifier)) {
+            return -1;
+        }
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        if (decoder.decode(identifier)) {
+            return Math.max(-1, search(keys, hashCount, decoder.w0, decoder.w1, decoder.w2, decoder.w3));
+        }
+        int at = Arrays.binarySearch(others, identifier);
+        return at >= 0 ? hashCount + at : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    // ==================== RAW ACCESS ====================
+
+    /**
+     * Number of packed hash keys; they occupy indexes {@code [0, hashCount())}.
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * The {@code word}-th big-endian 64-bit word of the {@code index}-th hash key.
+     */
+    public long word(int index, int word) {
+        return keys[Objects.checkIndex(index, hashCount) * WORDS + word];
+    }
+
+    /**
+     * Approximate heap footprint of the packed keys and any non-canonical strings.
+     */
+    public long sizeInBytes() {
+        long bytes = 16 + 16 + (long) keys.length * Long.BYTES + 16 + (long) others.length * 4;
+        for (String other : others) {
+            bytes += 40 + other.length();
+        }
+        return bytes;
+    }
+
+    // ==================== MERGE ====================
+
+    /**
+     * A new list with {@code added} merged in and {@code removed} taken out.
+     * Costs one pass over this list and the change, plus sorting the change itself.
+     */
+    public PackedIdentifierList withChanges(Collection<String> added, Collection<String> removed) {
+        PackedIdentifierList add = of(added);
+        PackedIdentifierList remove = of(removed);
+        if (add.isEmpty() && remove.isEmpty()) {
+            return this;
+        }
+
+        long[] merged = new long[(hashCount + add.hashCount) * WORDS];
+        int i = 0;
+        int j = 0;
+        int r = 0;
+        int n = 0;
+        while (i < hashCount || j < add.hashCount) {
+            int c = i == hashCount ? 1 : j == add.hashCount ? -1 : compare(keys, i, add.keys, j);
+            long[] source = c <= 0 ? keys : add.keys;
+            int at = (c <= 0 ? i : j) * WORDS;
+            if (c <= 0) {
+                i++;
+            }
+            if (c >= 0) {
+                j++;
+            }
+            int index = at / WORDS;
+            int d = 1;
+            while (r < remove.hashCount && (d = compare(remove.keys, r, source, index)) < 0) {
+                r++;
+            }
+            if (r == remove.hashCount || d != 0) {
+                System.arraycopy(source, at, merged, n++ * WORDS, WORDS);
+            }
+        }
+
+        String[] mergedOthers = others;
+        if (add.others.length > 0 || remove.others.length > 0) {
+            TreeSet<String> set = new TreeSet<>(Arrays.asList(others));
+            set.addAll(Arrays.asList(add.others));
+            set.removeAll(Arrays.asList(remove.others));
+            mergedOthers = set.toArray(NO_OTHERS);
+        }
+        return new PackedIdentifierList(n * WORDS == merged.length ? merged : Arrays.copyOf(merged, n * WORDS), n,
+                mergedOthers);
+    }
+
+    /**
+     * The identifiers present in both lists, in one merge pass over the two.
+     */
+    public PackedIdentifierList intersection(PackedIdentifierList other) {
+        long[] common = new long[Math.min(hashCount, other.hashCount) * WORDS];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < hashCount && j < other.hashCount) {
+            int c = compare(keys, i, other.keys, j);
+            if (c == 0) {
+                System.arraycopy(keys, i * WORDS, common, n++ * WORDS, WORDS);
+            }
+            if (c <= 0) {
+                i++;
+            }
+            if (c >= 0) {
+                j++;
+            }
+        }
+
+        String[] commonOthers = NO_OTHERS;
+        if (others.length > 0 && other.others.length > 0) {
+            TreeSet<String> set = new TreeSet<>(Arrays.asList(others));
+            set.retainAll(Arrays.asList(other.others));
+            commonOthers = set.toArray(NO_OTHERS);
+        }
+        return new PackedIdentifierList(Arrays.copyOf(common, n * WORDS), n, commonOthers);
+    }
+
+    // ==================== SORTED CONSTRUCTION ====================
+
+    /**
+     * Wrap keys that are already sorted and distinct, as produced by
+     * {@link #sortDistinct}; the array is not copied when it is exactly full.
+     */
+    static PackedIdentifierList ofSorted(long[] keys, int hashCount, Collection<String> others) {
+        if (hashCount == 0 && others.isEmpty()) {
+            return EMPTY;
+        }
+        return new PackedIdentifierList(hashCount * WORDS == keys.length ? keys : Arrays.copyOf(keys, hashCount * WORDS),
+                hashCount, others.isEmpty() ? NO_OTHERS : sortedDistinct(new ArrayList<>(others)));
+    }
+
+    /**
+     * Wrap the first {@code hashCount} binary keys, e.g. as read back from a snapshot,
+     * sorting and de-duplicating them in place only if they are not in order already.
+     * Keys written from a packed list are, so that case costs one linear check.
+     */
+    public static PackedIdentifierList ofKeys(long[] keys, int hashCount, Collection<String> others) {
+        return ofSorted(keys, sortDistinct(keys, hashCount), others);
+    }
+
+    /**
+     * Sort the first {@code n} keys in place and drop duplicates.
+     *
+     * @return the number of distinct keys, now at the front of the array
+     */
+    static int sortDistinct(long[] keys, int n) {
+        if (!isSorted(keys, n)) {
+            sort(keys, 0, n - 1);
+        }
+        return dropDuplicates(keys, n);
+    }
+
+    /**
+     * The identifiers that are not canonical hashes, sorted.
+     */
+    List<String> others() {
+        return Arrays.asList(others);
+    }
+
+    // ==================== KEY ORDER ====================
+
+    private static int search(long[] keys, int n, long w0, long w1, long w2, long w3) {
+        int lo = 0;
+        int hi = n - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = mid * WORDS;
+            int c = Long.compareUnsigned(keys[at], w0);
+            if (c == 0) {
+                c = Long.compareUnsigned(keys[at + 1], w1);
+                if (c == 0) {
+                    c = Long.compareUnsigned(keys[at + 2], w2);
+                    if (c == 0) {
+                        c = Long.compareUnsigned(keys[at + 3], w3);
+                    }
+                }
+            }
+            if (c < 0) {
+                lo = mid + 1;
+            } else if (c > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private static int compare(long[] a, int i, long[] b, int j) {
+        for (int w = 0; w < WORDS; w++) {
+            int c = Long.compareUnsigned(a[i * WORDS + w], b[j * WORDS + w]);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isSorted(long[] keys, int n) {
+        for (int i = 1; i < n; i++) {
+            if (compare(keys, i - 1, keys, i) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Quicksort on 4-word records with a middle pivot (inputs are often nearly sorted),
+     * recursing into the smaller side; small ranges use insertion sort. The partition is
+     * three-way, so keys equal to the pivot are settled in one pass and an input that
+     * repeats one hash k times costs O(k), not O(k^2).
+     */
+    private static void sort(long[] keys, int lo, int hi) {
+        while (hi - lo > 16) {
+            long[] pivot = new long[WORDS];
+            System.arraycopy(keys, ((lo + hi) >>> 1) * WORDS, pivot, 0, WORDS);
+            // [lo, lt) < pivot, [lt, i) == pivot, (gt, hi] > pivot
+            int lt = lo, i = lo, gt = hi;
+            while (i <= gt) {
+                int c = compare(keys, i, pivot, 0);
+                if (c < 0) {
+                    swap(keys, lt++, i++);
+                } else if (c > 0) {
+                    swap(keys, i, gt--);
+                } else {
+                    i++;
+                }
+            }
+            if (lt - lo < hi - gt) {
+                sort(keys, lo, lt - 1);
+                lo = gt + 1;
+            } else {
+                sort(keys, gt + 1, hi);
+                hi = lt - 1;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && compare(keys, j - 1, keys, j) > 0; j--) {
+                swap(keys, j - 1, j);
+            }
+        }
+    }
+
+    private static void swap(long[] keys, int a, int b) {
+        for (int w = 0; w < WORDS; w++) {
+            long t = keys[a * WORDS + w];
+            keys[a * WORDS + w] = keys[b * WORDS + w];
+            keys[b * WORDS + w] = t;
+        }
+    }
+
+    private static int dropDuplicates(long[] keys, int n) {
+        if (n == 0) {
+            return 0;
+        }
+        int kept = 1;
+        for (int i = 1; i < n; i++) {
+            if (compare(keys, kept - 1, keys, i) != 0) {
+                if (kept != i) {
+                    System.arraycopy(keys, i * WORDS, keys, kept * WORDS, WORDS);
+                }
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private static String[] sortedDistinct(List<String> identifiers) {
+        if (identifiers.isEmpty()) {
+            return NO_OTHERS;
+        }
+        return new TreeSet<>(identifiers).toArray(NO_OTHERS);
+    }
+}
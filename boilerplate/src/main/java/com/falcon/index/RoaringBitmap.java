@@ -0,0 +1,584 @@
+package com.falcon.index;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Compressed bitmap of int ordinals using the Roaring layout.
+ *
+ * Values are split by their high 16 bits into chunks. Each chunk is stored as a
+ * sorted char array while sparse (up to 4096 values) and as a 1024-word bitmap
+ * once dense, so both small CRM segments and huge overlapping lists stay compact
+ * and set algebra runs chunk-by-chunk instead of value-by-value.
+ *
+ * Instances are mutable, but the suppression index treats every published bitmap
+ * as immutable: writers build a new bitmap and swap the reference, which keeps
+ * readers lock-free.
+ */
+public final class RoaringBitmap {
+
+    private static final int ARRAY_MAX_SIZE = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private char[] keys;
+    private Container[] containers;
+    private int size;
+
+    public RoaringBitmap() {
+        this.keys = new char[4];
+        this.containers = new Container[4];
+    }
+
+    private RoaringBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    // ==================== SINGLE VALUE OPERATIONS ====================
+
+    public void add(int value) {
+        char high = (char) (value >>> 16);
+        int i = indexOfKey(high);
+        if (i >= 0) {
+            containers[i] = containers[i].add((char) value);
+        } else {
+            insertContainer(-i - 1, high, new ArrayContainer().add((char) value));
+        }
+    }
+
+    public void remove(int value) {
+        int i = indexOfKey((char) (value >>> 16));
+        if (i < 0) {
+            return;
+        }
+        Container c = containers[i].remove((char) value);
+        if (c.cardinality() == 0) {
+            removeContainer(i);
+        } else {
+            containers[i] = c;
+        }
+    }
+
+    public boolean contains(int value) {
+        int i = indexOfKey((char) (value >>> 16));
+        return i >= 0 && containers[i].contains((char) value);
+    }
+
+    public int cardinality() {
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            total += containers[i].cardinality();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Visit every value in ascending (unsigned) order.
+     */
+    public void forEach(IntConsumer consumer) {
+        for (int i = 0; i < size; i++) {
+            containers[i].forEach(keys[i] << 16, consumer);
+        }
+    }
+
+    public int[] toArray() {
+        int[] out = new int[cardinality()];
+        int[] pos = new int[1];
+        forEach(v -> out[pos[0]++] = v);
+        return out;
+    }
+
+    public RoaringBitmap copy() {
+        Container[] copied = new Container[Math.max(size, 1)];
+        for (int i = 0; i < size; i++) {
+            copied[i] = containers[i].copy();
+        }
+        return new RoaringBitmap(Arrays.copyOf(keys, Math.max(size, 1)), copied, size);
+    }
+
+    /**
+     * Approximate heap footprint of the bitmap payload (keys plus containers).
+     */
+    public long sizeInBytes() {
+        long bytes = 16L + keys.length * 2L + containers.length * 4L;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    // ==================== SET ALGEBRA ====================
+
+    public static RoaringBitmap or(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap out = new RoaringBitmap(new char[Math.max(a.size + b.size, 1)],
+                new Container[Math.max(a.size + b.size, 1)], 0);
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            char ka = a.keys[i], kb = b.keys[j];
+            if (ka < kb) {
+                out.append(ka, a.containers[i++].copy());
+            } else if (ka > kb) {
+                out.append(kb, b.containers[j++].copy());
+            } else {
+                out.append(ka, a.containers[i++].or(b.containers[j++]));
+            }
+        }
+        while (i < a.size) {
+            out.append(a.keys[i], a.containers[i++].copy());
+        }
+        while (j < b.size) {
+            out.append(b.keys[j], b.containers[j++].copy());
+        }
+        return out;
+    }
+
+    public static RoaringBitmap and(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap out = new RoaringBitmap(new char[Math.max(Math.min(a.size, b.size), 1)],
+                new Container[Math.max(Math.min(a.size, b.size), 1)], 0);
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            char ka = a.keys[i], kb = b.keys[j];
+            if (ka < kb) {
+                i++;
+            } else if (ka > kb) {
+                j++;
+            } else {
+                Container c = a.containers[i++].and(b.containers[j++]);
+                if (c.cardinality() > 0) {
+                    out.append(ka, c);
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Values of {@code a} that are not in {@code b}.
+     */
+    public static RoaringBitmap andNot(RoaringBitmap a, RoaringBitmap b) {
+        RoaringBitmap out = new RoaringBitmap(new char[Math.max(a.size, 1)], new Container[Math.max(a.size, 1)], 0);
+        int j = 0;
+        for (int i = 0; i < a.size; i++) {
+            char ka = a.keys[i];
+            while (j < b.size && b.keys[j] < ka) {
+                j++;
+            }
+            Container c = (j < b.size && b.keys[j] == ka)
+                    ? a.containers[i].andNot(b.containers[j])
+                    : a.containers[i].copy();
+            if (c.cardinality() > 0) {
+                out.append(ka, c);
+            }
+        }
+        return out;
+    }
+
+    public static int andCardinality(RoaringBitmap a, RoaringBitmap b) {
+        int total = 0;
+        int i = 0, j = 0;
+        while (i < a.size && j < b.size) {
+            char ka = a.keys[i], kb = b.keys[j];
+            if (ka < kb) {
+                i++;
+            } else if (ka > kb) {
+                j++;
+            } else {
+                total += a.containers[i++].andCardinality(b.containers[j++]);
+            }
+        }
+        return total;
+    }
+
+    public static int orCardinality(RoaringBitmap a, RoaringBitmap b) {
+        return a.cardinality() + b.cardinality() - andCardinality(a, b);
+    }
+
+    // ==================== KEY TABLE HELPERS ====================
+
+    private int indexOfKey(char key) {
+        // Appends are the common case while building from ascending ordinals
+        if (size > 0 && keys[size - 1] == key) {
+            return size - 1;
+        }
+        return Arrays.binarySearch(keys, 0, size, key);
+    }
+
+    private void insertContainer(int at, char key, Container c) {
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            containers = Arrays.copyOf(containers, capacity);
+        }
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(containers, at, containers, at + 1, size - at);
+        keys[at] = key;
+        containers[at] = c;
+        size++;
+    }
+
+    private void removeContainer(int at) {
+        System.arraycopy(keys, at + 1, keys, at, size - at - 1);
+        System.arraycopy(containers, at + 1, containers, at, size - at - 1);
+        containers[--size] = null;
+    }
+
+    private void append(char key, Container c) {
+        keys[size] = key;
+        containers[size++] = c;
+    }
+
+    // ==================== CONTAINERS ====================
+
+    private abstract static class Container {
+        abstract Container add(char x);
+
+        abstract Container remove(char x);
+
+        abstract boolean contains(char x);
+
+        abstract int cardinality();
+
+        abstract Container or(Container other);
+
+        abstract Container and(Container other);
+
+        abstract Container andNot(Container other);
+
+        abstract int andCardinality(Container other);
+
+        abstract Container copy();
+
+        abstract void forEach(int high, IntConsumer consumer);
+
+        abstract long sizeInBytes();
+    }
+
+    /**
+     * Sparse chunk: sorted, duplicate-free low 16-bit values.
+     */
+    private static final class ArrayContainer extends Container {
+        private char[] values;
+        private int card;
+
+        ArrayContainer() {
+            this.values = new char[4];
+        }
+
+        ArrayContainer(char[] values, int card) {
+            this.values = values;
+            this.card = card;
+        }
+
+        @Override
+        Container add(char x) {
+            // Appending in order avoids the binary search during bulk builds
+            int i = (card == 0 || values[card - 1] < x) ? -card - 1 : Arrays.binarySearch(values, 0, card, x);
+            if (i >= 0) {
+                return this;
+            }
+            if (card == ARRAY_MAX_SIZE) {
+                return toBitmap().add(x);
+            }
+            int at = -i - 1;
+            if (card == values.length) {
+                values = Arrays.copyOf(values, Math.min(ARRAY_MAX_SIZE, Math.max(8, card * 2)));
+            }
+            System.arraycopy(values, at, values, at + 1, card - at);
+            values[at] = x;
+            card++;
+            return this;
+        }
+
+        @Override
+        Container remove(char x) {
+            int i = Arrays.binarySearch(values, 0, card, x);
+            if (i >= 0) {
+                System.arraycopy(values, i + 1, values, i, card - i - 1);
+                card--;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char x) {
+            return Arrays.binarySearch(values, 0, card, x) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        Container or(Container other) {
+            if (other instanceof BitmapContainer) {
+                return other.or(this);
+            }
+            ArrayContainer o = (ArrayContainer) other;
+            if (card + o.card > ARRAY_MAX_SIZE) {
+                return toBitmap().or(o);
+            }
+            char[] out = new char[card + o.card];
+            int i = 0, j = 0, k = 0;
+            while (i < card && j < o.card) {
+                char a = values[i], b = o.values[j];
+                if (a < b) {
+                    out[k++] = a;
+                    i++;
+                } else if (a > b) {
+                    out[k++] = b;
+                    j++;
+                } else {
+                    out[k++] = a;
+                    i++;
+                    j++;
+                }
+            }
+            while (i < card) {
+                out[k++] = values[i++];
+            }
+            while (j < o.card) {
+                out[k++] = o.values[j++];
+            }
+            return new ArrayContainer(out, k);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] out = new char[card];
+            int k = 0;
+            if (other instanceof ArrayContainer o) {
+                int i = 0, j = 0;
+                while (i < card && j < o.card) {
+                    char a = values[i], b = o.values[j];
+                    if (a < b) {
+                        i++;
+                    } else if (a > b) {
+                        j++;
+                    } else {
+                        out[k++] = a;
+                        i++;
+                        j++;
+                    }
+                }
+            } else {
+                for (int i = 0; i < card; i++) {
+                    if (other.contains(values[i])) {
+                        out[k++] = values[i];
+                    }
+                }
+            }
+            return new ArrayContainer(out, k);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] out = new char[card];
+            int k = 0;
+            for (int i = 0; i < card; i++) {
+                if (!other.contains(values[i])) {
+                    out[k++] = values[i];
+                }
+            }
+            return new ArrayContainer(out, k);
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            int total = 0;
+            for (int i = 0; i < card; i++) {
+                if (other.contains(values[i])) {
+                    total++;
+                }
+            }
+            return total;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(values, Math.max(card, 1)), card);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < card; i++) {
+                consumer.accept(high | values[i]);
+            }
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24L + values.length * 2L;
+        }
+
+        BitmapContainer toBitmap() {
+            BitmapContainer bitmap = new BitmapContainer();
+            for (int i = 0; i < card; i++) {
+                bitmap.words[values[i] >>> 6] |= 1L << values[i];
+            }
+            bitmap.card = card;
+            return bitmap;
+        }
+    }
+
+    /**
+     * Dense chunk: one bit per possible low 16-bit value.
+     */
+    private static final class BitmapContainer extends Container {
+        private final long[] words;
+        private int card;
+
+        BitmapContainer() {
+            this.words = new long[BITMAP_WORDS];
+        }
+
+        private BitmapContainer(long[] words, int card) {
+            this.words = words;
+            this.card = card;
+        }
+
+        @Override
+        Container add(char x) {
+            long before = words[x >>> 6];
+            long after = before | (1L << x);
+            if (before != after) {
+                words[x >>> 6] = after;
+                card++;
+            }
+            return this;
+        }
+
+        @Override
+        Container remove(char x) {
+            long before = words[x >>> 6];
+            long after = before & ~(1L << x);
+            if (before != after) {
+                words[x >>> 6] = after;
+                card--;
+            }
+            return card <= ARRAY_MAX_SIZE ? toArray() : this;
+        }
+
+        @Override
+        boolean contains(char x) {
+            return (words[x >>> 6] & (1L << x)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return card;
+        }
+
+        @Override
+        Container or(Container other) {
+            long[] out = words.clone();
+            if (other instanceof BitmapContainer o) {
+                int total = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    out[i] |= o.words[i];
+                    total += Long.bitCount(out[i]);
+                }
+                return new BitmapContainer(out, total);
+            }
+            BitmapContainer result = new BitmapContainer(out, card);
+            ArrayContainer o = (ArrayContainer) other;
+            for (int i = 0; i < o.card; i++) {
+                result.add(o.values[i]);
+            }
+            return result;
+        }
+
+        @Override
+        Container and(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.and(this);
+            }
+            BitmapContainer o = (BitmapContainer) other;
+            long[] out = new long[BITMAP_WORDS];
+            int total = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                out[i] = words[i] & o.words[i];
+                total += Long.bitCount(out[i]);
+            }
+            BitmapContainer result = new BitmapContainer(out, total);
+            return total <= ARRAY_MAX_SIZE ? result.toArray() : result;
+        }
+
+        @Override
+        Container andNot(Container other) {
+            long[] out = words.clone();
+            int total;
+            if (other instanceof BitmapContainer o) {
+                total = 0;
+                for (int i = 0; i < BITMAP_WORDS; i++) {
+                    out[i] &= ~o.words[i];
+                    total += Long.bitCount(out[i]);
+                }
+            } else {
+                ArrayContainer o = (ArrayContainer) other;
+                total = card;
+                for (int i = 0; i < o.card; i++) {
+                    char x = o.values[i];
+                    if ((out[x >>> 6] & (1L << x)) != 0) {
+                        out[x >>> 6] &= ~(1L << x);
+                        total--;
+                    }
+                }
+            }
+            BitmapContainer result = new BitmapContainer(out, total);
+            return total <= ARRAY_MAX_SIZE ? result.toArray() : result;
+        }
+
+        @Override
+        int andCardinality(Container other) {
+            if (other instanceof ArrayContainer) {
+                return other.andCardinality(this);
+            }
+            BitmapContainer o = (BitmapContainer) other;
+            int total = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                total += Long.bitCount(words[i] & o.words[i]);
+            }
+            return total;
+        }
+
+        @Override
+        Container copy() {
+            return new BitmapContainer(words.clone(), card);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer consumer) {
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    consumer.accept(high | (i << 6) | Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+        }
+
+        @Override
+        long sizeInBytes() {
+            return 24L + BITMAP_WORDS * 8L;
+        }
+
+        ArrayContainer toArray() {
+            char[] out = new char[Math.max(card, 1)];
+            int k = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++) {
+                long w = words[i];
+                while (w != 0) {
+                    out[k++] = (char) ((i << 6) | Long.numberOfTrailingZeros(w));
+                    w &= w - 1;
+                }
+            }
+            return new ArrayContainer(out, k);
+        }
+    }
+}
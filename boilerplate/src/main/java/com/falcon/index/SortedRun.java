@@ -0,0 +1,464 @@
+package com.falcon.index;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Immutable on-disk run of an {@link LsmStore}: (hash, list ordinal) entries in key
+ * order, each either a membership or a tombstone.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   data blocks      entries of 4 longs (hash) + int (list ordinal) + byte (1 = member, 0 = tombstone)
+ *   block index      per block: first hash (4 longs), long offset, int length
+ *   bloom filter     long words over the distinct hashes of the run
+ *   footer           long index offset, int blocks, long bloom offset, int bloom words,
+ *                    long entries, int magic "FRUN"
+ * </pre>
+ *
+ * Blocks are about {@link #BLOCK_BYTES} but never split the entries of one hash, so
+ * a hash is answered by at most one block. The block index is sparse (one key per
+ * block) and, with the Bloom filter, stays in memory: a probe for a hash the run
+ * does not hold usually stops at the filter, and one that passes costs one
+ * positional read.
+ *
+ * A finished run is synced to disk before it is opened, and {@link #open} maps an
+ * existing file back in, so runs outlive the process.
+ */
+final class SortedRun implements Closeable {
+
+    static final int ENTRY_BYTES = HashKeys.WORDS * Long.BYTES + Integer.BYTES + 1;
+    static final int BLOCK_BYTES = 4096;
+    private static final int MAGIC = 0x4652554E;
+    private static final int FOOTER_BYTES = 8 + 4 + 8 + 4 + 8 + 4;
+    private static final int INDEX_ENTRY_BYTES = HashKeys.WORDS * Long.BYTES + Long.BYTES + Integer.BYTES;
+    private static final int BLOOM_BITS_PER_KEY = 10;
+    private static final int BLOOM_PROBES = 7;
+    private static final int STREAM_BUFFER = 1 << 16;
+
+    final long id;
+    final Path path;
+    final long entries;
+    final long fileBytes;
+    private final FileChannel channel;
+    private final long[] firstKeys;
+    private final long[] blockOffsets;
+    private final int[] blockLengths;
+    private final long[] bloom;
+    private final long bloomMask;
+    private final long dataBytes;
+
+    private SortedRun(long id, Path path, long entries, long fileBytes, long[] firstKeys, long[] blockOffsets,
+                      int[] blockLengths, long[] bloom, long dataBytes) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.entries = entries;
+        this.fileBytes = fileBytes;
+        this.firstKeys = firstKeys;
+        this.blockOffsets = blockOffsets;
+        this.blockLengths = blockLengths;
+        this.bloom = bloom;
+        this.bloomMask = (long) bloom.length * 64 - 1;
+        this.dataBytes = dataBytes;
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Open a run written by an earlier {@link Writer}, reading its block index and
+     * Bloom filter into memory.
+     *
+     * @throws IOException if the file is not a complete run
+     */
+    static SortedRun open(long id, Path path) throws IOException {
+        long fileBytes = Files.size(path);
+        if (fileBytes < FOOTER_BYTES) {
+            throw new IOException("Run " + path + " is truncated");
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer footer = readFully(channel, fileBytes - FOOTER_BYTES, FOOTER_BYTES);
+            long indexOffset = footer.getLong();
+            int blocks = footer.getInt();
+            long bloomOffset = footer.getLong();
+            int bloomWords = footer.getInt();
+            long entries = footer.getLong();
+            if (footer.getInt() != MAGIC || blocks < 0 || bloomWords < 1 || indexOffset < 0
+                    || bloomOffset != indexOffset + (long) blocks * INDEX_ENTRY_BYTES
+                    || fileBytes != bloomOffset + (long) bloomWords * Long.BYTES + FOOTER_BYTES) {
+                throw new IOException("Run " + path + " is corrupt");
+            }
+            ByteBuffer index = readFully(channel, indexOffset, blocks * INDEX_ENTRY_BYTES);
+            long[] firstKeys = new long[blocks * HashKeys.WORDS];
+            long[] blockOffsets = new long[blocks];
+            int[] blockLengths = new int[blocks];
+            for (int b = 0; b < blocks; b++) {
+                for (int w = 0; w < HashKeys.WORDS; w++) {
+                    firstKeys[b * HashKeys.WORDS + w] = index.getLong();
+                }
+                blockOffsets[b] = index.getLong();
+                blockLengths[b] = index.getInt();
+            }
+            long[] bloom = new long[bloomWords];
+            readFully(channel, bloomOffset, bloomWords * Long.BYTES).asLongBuffer().get(bloom);
+            return new SortedRun(id, path, entries, fileBytes, firstKeys, blockOffsets, blockLengths, bloom, indexOffset);
+        }
+    }
+
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of run");
+            }
+        }
+        return buffer.flip();
+    }
+
+    interface EntryVisitor {
+        void visit(int ordinal, boolean member);
+    }
+
+    // ==================== LOOKUP ====================
+
+    boolean mightContain(long w0, long w1, long w2, long w3) {
+        long key = mix(fold(w0, w1, w2, w3));
+        long h2 = (key >>> 32) | 1;
+        for (int i = 0; i < BLOOM_PROBES; i++) {
+            long bit = (key + i * h2) & bloomMask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visit every entry of the hash; call after {@link #mightContain} passed.
+     *
+     * @return true if a block was read from disk, false if the block index ruled the run out
+     * @throws java.nio.channels.ClosedChannelException if the run was retired by compaction meanwhile
+     */
+    boolean probe(long w0, long w1, long w2, long w3, EntryVisitor visitor) throws IOException {
+        int block = blockOf(w0, w1, w2, w3);
+        if (block < 0) {
+            return false;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(blockLengths[block]);
+        long position = blockOffsets[block];
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Run " + path + " is truncated");
+            }
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            int c = compare(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong(), w0, w1, w2, w3);
+            int ordinal = buffer.getInt();
+            boolean member = buffer.get() != 0;
+            if (c == 0) {
+                visitor.visit(ordinal, member);
+            } else if (c > 0) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The last block whose first hash is not greater than the target, or -1.
+     */
+    private int blockOf(long w0, long w1, long w2, long w3) {
+        int lo = 0;
+        int hi = blockLengths.length - 1;
+        int found = -1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int at = mid * HashKeys.WORDS;
+            if (compare(firstKeys[at], firstKeys[at + 1], firstKeys[at + 2], firstKeys[at + 3], w0, w1, w2, w3) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    // ==================== SCAN ====================
+
+    /**
+     * Sequential reader over every entry, for compaction. Reads go through its own
+     * stream, not the lookup channel, and report their bytes to {@code limiter} (if not null).
+     */
+    Cursor cursor(IoRateLimiter limiter) throws IOException {
+        return new Cursor(this, limiter);
+    }
+
+    static final class Cursor implements Closeable {
+        final SortedRun run;
+        private final DataInputStream in;
+        private final IoRateLimiter limiter;
+        private long remaining;
+        private long unreported;
+        long w0, w1, w2, w3;
+        int ordinal;
+        boolean member;
+
+        private Cursor(SortedRun run, IoRateLimiter limiter) throws IOException {
+            this.run = run;
+            this.limiter = limiter;
+            this.remaining = run.entries;
+            this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run.path), STREAM_BUFFER));
+        }
+
+        boolean next() throws IOException {
+            if (remaining == 0) {
+                return false;
+            }
+            remaining--;
+            w0 = in.readLong();
+            w1 = in.readLong();
+            w2 = in.readLong();
+            w3 = in.readLong();
+            ordinal = in.readInt();
+            member = in.readByte() != 0;
+            unreported += ENTRY_BYTES;
+            if (unreported >= STREAM_BUFFER && limiter != null) {
+                limiter.acquire(unreported);
+                unreported = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    // ==================== WRITE ====================
+
+    /**
+     * Streams entries, in key order, into a new run file.
+     */
+    static final class Writer {
+        private final long id;
+        private final Path path;
+        private final IoRateLimiter limiter;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(BLOCK_BYTES * 2);
+        private final DataOutputStream block = new DataOutputStream(blockBytes);
+        private final long[] bloom;
+        private final long bloomMask;
+        private long[] firstKeys = new long[64 * HashKeys.WORDS];
+        private long[] blockOffsets = new long[64];
+        private int[] blockLengths = new int[64];
+        private int blocks;
+        private long offset;
+        private long entries;
+        private boolean hasLast;
+        private long l0, l1, l2, l3;
+        private int lastOrdinal;
+
+        /**
+         * @param expectedHashes upper bound on distinct hashes, for sizing the Bloom filter
+         * @param limiter        throttles the writes, or null
+         */
+        Writer(long id, Path path, long expectedHashes, IoRateLimiter limiter) throws IOException {
+            this.id = id;
+            this.path = path;
+            this.limiter = limiter;
+            this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), STREAM_BUFFER));
+            long wanted = Math.max(64, expectedHashes * BLOOM_BITS_PER_KEY);
+            long bitCount = Long.highestOneBit(wanted - 1) << 1;
+            this.bloom = new long[(int) Math.min(bitCount >>> 6, Integer.MAX_VALUE - 8)];
+            this.bloomMask = (long) bloom.length * 64 - 1;
+        }
+
+        void add(long w0, long w1, long w2, long w3, int ordinal, boolean member) throws IOException {
+            boolean newHash = !hasLast || compare(l0, l1, l2, l3, w0, w1, w2, w3) != 0;
+            if (hasLast && (newHash ? compare(l0, l1, l2, l3, w0, w1, w2, w3) > 0 : lastOrdinal >= ordinal)) {
+                throw new IllegalArgumentException("Run entries must be added in key order");
+            }
+            if (newHash) {
+                // A hash's entries stay in one block, so blocks only end between hashes
+                if (blockBytes.size() >= BLOCK_BYTES) {
+                    endBlock();
+                }
+                if (blockBytes.size() == 0) {
+                    startBlock(w0, w1, w2, w3);
+                }
+                addToBloom(w0, w1, w2, w3);
+            }
+            block.writeLong(w0);
+            block.writeLong(w1);
+            block.writeLong(w2);
+            block.writeLong(w3);
+            block.writeInt(ordinal);
+            block.writeByte(member ? 1 : 0);
+            entries++;
+            hasLast = true;
+            l0 = w0;
+            l1 = w1;
+            l2 = w2;
+            l3 = w3;
+            lastOrdinal = ordinal;
+        }
+
+        private void startBlock(long w0, long w1, long w2, long w3) {
+            if (blocks == blockLengths.length) {
+                firstKeys = Arrays.copyOf(firstKeys, firstKeys.length * 2);
+                blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2);
+                blockLengths = Arrays.copyOf(blockLengths, blocks * 2);
+            }
+            int at = blocks * HashKeys.WORDS;
+            firstKeys[at] = w0;
+            firstKeys[at + 1] = w1;
+            firstKeys[at + 2] = w2;
+            firstKeys[at + 3] = w3;
+            blockOffsets[blocks] = offset;
+        }
+
+        private void endBlock() throws IOException {
+            int length = blockBytes.size();
+            if (length == 0) {
+                return;
+            }
+            if (limiter != null) {
+                limiter.acquire(length);
+            }
+            blockBytes.writeTo(out);
+            blockBytes.reset();
+            blockLengths[blocks++] = length;
+            offset += length;
+        }
+
+        private void addToBloom(long w0, long w1, long w2, long w3) {
+            long key = mix(fold(w0, w1, w2, w3));
+            long h2 = (key >>> 32) | 1;
+            for (int i = 0; i < BLOOM_PROBES; i++) {
+                long bit = (key + i * h2) & bloomMask;
+                bloom[(int) (bit >>> 6)] |= 1L << bit;
+            }
+        }
+
+        long entries() {
+            return entries;
+        }
+
+        /**
+         * Write the block index, Bloom filter and footer, sync the file and open the run for reads.
+         */
+        SortedRun finish() throws IOException {
+            endBlock();
+            long dataBytes = offset;
+            long indexOffset = offset;
+            for (int b = 0; b < blocks; b++) {
+                for (int w = 0; w < HashKeys.WORDS; w++) {
+                    out.writeLong(firstKeys[b * HashKeys.WORDS + w]);
+                }
+                out.writeLong(blockOffsets[b]);
+                out.writeInt(blockLengths[b]);
+            }
+            long bloomOffset = indexOffset + (long) blocks * INDEX_ENTRY_BYTES;
+            for (long word : bloom) {
+                out.writeLong(word);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(blocks);
+            out.writeLong(bloomOffset);
+            out.writeInt(bloom.length);
+            out.writeLong(entries);
+            out.writeInt(MAGIC);
+            out.close();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            long fileBytes = bloomOffset + (long) bloom.length * Long.BYTES + FOOTER_BYTES;
+            return new SortedRun(id, path, entries, fileBytes, Arrays.copyOf(firstKeys, blocks * HashKeys.WORDS),
+                    Arrays.copyOf(blockOffsets, blocks), Arrays.copyOf(blockLengths, blocks), bloom, dataBytes);
+        }
+
+        /**
+         * Give up on a partly written run.
+         */
+        void abort() {
+            try {
+                out.close();
+                Files.deleteIfExists(path);
+            } catch (IOException e) {
+                System.err.println("⚠ Failed to remove partial run " + path + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // ==================== STATISTICS ====================
+
+    long dataBytes() {
+        return dataBytes;
+    }
+
+    /**
+     * Heap held for this run: block index and Bloom filter.
+     */
+    long memoryBytes() {
+        return (long) firstKeys.length * Long.BYTES + (long) blockOffsets.length * Long.BYTES
+                + (long) blockLengths.length * Integer.BYTES + (long) bloom.length * Long.BYTES;
+    }
+
+    int blockCount() {
+        return blockLengths.length;
+    }
+
+    /**
+     * Close the lookup channel and delete the file. Lookups still holding this run
+     * fail with ClosedChannelException and retry against the current runs.
+     */
+    void delete() {
+        try {
+            close();
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            System.err.println("⚠ Failed to delete run " + path + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    // ==================== KEY ORDER ====================
+
+    static int compare(long a0, long a1, long a2, long a3, long b0, long b1, long b2, long b3) {
+        int c = Long.compareUnsigned(a0, b0);
+        if (c == 0) {
+            c = Long.compareUnsigned(a1, b1);
+            if (c == 0) {
+                c = Long.compareUnsigned(a2, b2);
+                if (c == 0) {
+                    c = Long.compareUnsigned(a3, b3);
+                }
+            }
+        }
+        return c;
+    }
+
+    private static long fold(long w0, long w1, long w2, long w3) {
+        return w0 ^ Long.rotateLeft(w1, 16) ^ Long.rotateLeft(w2, 32) ^ Long.rotateLeft(w3, 48);
+    }
+
+    /**
+     * SplitMix64 finalizer.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,214 @@
+package com.falcon.index;
+
+import java.io.*;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * The identifiers of one list held by an {@link LsmStore}, kept in a file of packed
+ * keys rather than on the heap. The size is known up front; the contents are read
+ * when first needed and then held through a {@link SoftReference}, so the collector
+ * drops them again under memory pressure and the next read goes back to the file.
+ *
+ * File layout (big-endian):
+ * <pre>
+ *   int   magic "FLST"        int   format version
+ *   long  version (per-list write counter)
+ *   int   hash count          hash count x 4 longs, sorted and distinct
+ *   long  CRC32 of everything above
+ * </pre>
+ *
+ * Files are replaced by an atomic rename, so a reader sees one complete version.
+ */
+public final class StoredIdentifierList extends AbstractList<String> implements RandomAccess {
+
+    private static final int MAGIC = 0x464C5354;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 4;
+    private static final int CHUNK_WORDS = 8192;
+
+    private final Path path;
+    private final long version;
+    private final int size;
+    private volatile SoftReference<PackedIdentifierList> cached = new SoftReference<>(null);
+
+    StoredIdentifierList(Path path, long version, int size) {
+        this.path = path;
+        this.version = version;
+        this.size = size;
+    }
+
+    /**
+     * The contents, from the cache or else read from the file.
+     *
+     * @throws UncheckedIOException if the file is missing or corrupt
+     */
+    public PackedIdentifierList load() {
+        PackedIdentifierList contents = cached.get();
+        if (contents == null) {
+            if (size == 0) {
+                return PackedIdentifierList.empty();
+            }
+            try {
+                contents = read(path);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot read list contents " + path + ": " + e.getMessage(), e);
+            }
+            cached = new SoftReference<>(contents);
+        }
+        return contents;
+    }
+
+    /**
+     * Heap held by the cached contents right now (0 if they are only on disk).
+     */
+    public long cachedBytes() {
+        PackedIdentifierList contents = cached.get();
+        return contents != null ? contents.sizeInBytes() : 0;
+    }
+
+    long version() {
+        return version;
+    }
+
+    // ==================== LIST VIEW ====================
+
+    @Override
+    public String get(int index) {
+        return load().get(index);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return size > 0 && load().contains(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return size > 0 ? load().indexOf(o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return indexOf(o);
+    }
+
+    // ==================== FILE ====================
+
+    /**
+     * Write the canonical hashes of {@code contents} as the list's new file, replacing
+     * any previous one once it is complete and synced. Non-canonical identifiers are dropped.
+     */
+    static StoredIdentifierList write(Path path, long version, PackedIdentifierList contents) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (OutputStream file = Files.newOutputStream(temp)) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(version);
+            out.writeInt(contents.hashCount());
+            ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * Long.BYTES);
+            LongBuffer view = chunk.asLongBuffer();
+            for (int i = 0; i < contents.hashCount(); i++) {
+                if (!view.hasRemaining()) {
+                    out.write(chunk.array(), 0, view.position() * Long.BYTES);
+                    view.clear();
+                }
+                for (int word = 0; word < HashKeys.WORDS; word++) {
+                    view.put(contents.word(i, word));
+                }
+            }
+            out.write(chunk.array(), 0, view.position() * Long.BYTES);
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+        }
+        force(temp);
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        StoredIdentifierList stored = new StoredIdentifierList(path, version, contents.hashCount());
+        if (contents.size() == contents.hashCount()) {
+            // Only canonical hashes reach the file, so only such contents can stand in for it
+            stored.cached = new SoftReference<>(contents);
+        }
+        return stored;
+    }
+
+    /**
+     * Open an existing file without reading its keys.
+     */
+    static StoredIdentifierList open(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), HEADER_BYTES))) {
+            checkHeader(in, path);
+            long version = in.readLong();
+            int size = in.readInt();
+            if (size < 0) {
+                throw new IOException("Corrupt list file " + path);
+            }
+            return new StoredIdentifierList(path, version, size);
+        }
+    }
+
+    private static PackedIdentifierList read(Path path) throws IOException {
+        try (InputStream file = Files.newInputStream(path)) {
+            CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(file, 1 << 16), new CRC32());
+            DataInputStream in = new DataInputStream(checked);
+            checkHeader(in, path);
+            in.readLong();
+            int hashes = in.readInt();
+            if (hashes < 0 || hashes > Integer.MAX_VALUE / HashKeys.WORDS) {
+                throw new IOException("Corrupt list file " + path);
+            }
+            long[] keys = new long[hashes * HashKeys.WORDS];
+            byte[] chunk = new byte[CHUNK_WORDS * Long.BYTES];
+            LongBuffer view = ByteBuffer.wrap(chunk).asLongBuffer();
+            for (int done = 0; done < keys.length; ) {
+                int n = Math.min(CHUNK_WORDS, keys.length - done);
+                in.readFully(chunk, 0, n * Long.BYTES);
+                view.clear();
+                view.get(keys, done, n);
+                done += n;
+            }
+            long expected = checked.getChecksum().getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("List file checksum mismatch");
+            }
+            return PackedIdentifierList.ofKeys(keys, hashes, List.of());
+        } catch (EOFException e) {
+            throw new IOException("List file is truncated");
+        }
+    }
+
+    private static void checkHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a list file: " + path);
+        }
+        int format = in.readInt();
+        if (format != FORMAT_VERSION) {
+            throw new IOException("Unsupported list file format " + format + ": " + path);
+        }
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
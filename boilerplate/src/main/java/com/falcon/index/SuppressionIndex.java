@@ -0,0 +1,428 @@
+package com.falcon.index;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary-encoded suppression index.
+ *
+ * Layout:
+ * - {@link IdentifierDictionary}: email hash → dense int ordinal (each hash stored once)
+ * - per list: a {@link RoaringBitmap} of member ordinals
+ * - per advertiser: the union of that advertiser's list bitmaps, maintained incrementally
+ * - {@link InternedSets}: ordinal → interned advertiser set, the hot lookup path
+ * - a second {@link InternedSets}: ordinal → interned set of list IDs, read only
+ *   for list-level attribution ({@link #lookupLists}); one int per identifier
+ *
+ * Lookups are lock-free. Mutations are serialized on this instance and only touch
+ * the ordinals that actually enter or leave an advertiser's union, so adding a
+ * list that mostly overlaps existing CRM segments costs little more than its delta.
+ * Published bitmaps are never mutated, so list algebra can run without locking.
+ *
+ * Optionally an immutable {@link EytzingerIndex} can front the dictionary for
+ * canonical hashes. It is rebuilt off the write path and only consulted while it
+ * still covers every dictionary ordinal; in between, lookups use the dictionary.
+ *
+ * Also optionally, an {@link AdvertiserBloomFilter} shadows the advertiser unions
+ * as the fail-safe answer for lookups that miss their deadline. Pairs are added
+ * as advertisers gain identifiers, and the filter is rebuilt from the unions once
+ * removals have made it too loose.
+ */
+public class SuppressionIndex {
+
+    private static final RoaringBitmap EMPTY = new RoaringBitmap();
+
+    private final IdentifierDictionary dictionary = new IdentifierDictionary();
+    private final InternedSets advertiserSets = new InternedSets();
+    private final InternedSets listSets = new InternedSets();
+    private final Map<String, ListEntry> lists = new ConcurrentHashMap<>();
+    private final Map<String, RoaringBitmap> advertiserUnions = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> listIdsByAdvertiser = new HashMap<>();
+    // Advertisers with at least one list, even an empty one; replaced whenever that changes
+    private volatile Set<String> listedAdvertisers = Collections.emptySet();
+    private volatile AdvertiserBloomFilter bloomFilter;
+
+    private final Object readIndexLock = new Object();
+    private volatile EytzingerIndex readIndex;
+
+    // ==================== LOOKUP ====================
+
+    /**
+     * @return advertisers suppressing this identifier; an immutable, shared set
+     */
+    public Set<String> lookup(String identifier) {
+        int ordinal = ordinalOf(identifier);
+        return ordinal < 0 ? Collections.emptySet() : advertiserSets.get(ordinal);
+    }
+
+    /**
+     * @return IDs of the lists containing this identifier; an immutable, shared set
+     */
+    public Set<String> lookupLists(String identifier) {
+        int ordinal = ordinalOf(identifier);
+        return ordinal < 0 ? Collections.emptySet() : listSets.get(ordinal);
+    }
+
+    /**
+     * Fail-safe approximate lookup: a superset of {@link #lookup}, answered from the
+     * Bloom filter alone.
+     *
+     * @return advertisers that may suppress the identifier, or null if the filter is disabled
+     */
+    public Set<String> mightSuppress(String identifier) {
+        AdvertiserBloomFilter filter = bloomFilter;
+        return filter != null ? filter.mightSuppress(identifier) : null;
+    }
+
+    /**
+     * @return advertisers owning at least one list; an immutable set
+     */
+    public Set<String> listedAdvertisers() {
+        return listedAdvertisers;
+    }
+
+    private int ordinalOf(String identifier) {
+        EytzingerIndex sorted = readIndex;
+        if (sorted != null && sorted.watermark() == dictionary.size()) {
+            int ordinal = sorted.find(identifier);
+            if (ordinal != EytzingerIndex.NOT_CANONICAL) {
+                return ordinal;
+            }
+        }
+        return dictionary.ordinalOf(identifier);
+    }
+
+    // ==================== READ-OPTIMIZED INDEX ====================
+
+    /**
+     * Build a fresh {@link EytzingerIndex} over the current dictionary and publish it.
+     * Runs without blocking writers; writes that land meanwhile leave it stale until
+     * the next rebuild.
+     */
+    public void rebuildReadIndex() {
+        synchronized (readIndexLock) {
+            int watermark = dictionary.size();
+            EytzingerIndex current = readIndex;
+            if (current == null || current.watermark() != watermark) {
+                readIndex = EytzingerIndex.build(dictionary, watermark);
+            }
+        }
+    }
+
+    /**
+     * @return true if the read-optimized index exists and covers every identifier
+     */
+    public boolean isReadIndexCurrent() {
+        EytzingerIndex sorted = readIndex;
+        return sorted != null && sorted.watermark() == dictionary.size();
+    }
+
+    public long readIndexBytes() {
+        EytzingerIndex sorted = readIndex;
+        return sorted != null ? sorted.sizeInBytes() : 0;
+    }
+
+    // ==================== BLOOM FILTER ====================
+
+    /**
+     * Start maintaining the Bloom filter, built from the current advertiser unions.
+     */
+    public synchronized void enableBloomFilter() {
+        rebuildBloomFilter();
+    }
+
+    public long bloomFilterBytes() {
+        AdvertiserBloomFilter filter = bloomFilter;
+        return filter != null ? filter.sizeInBytes() : 0;
+    }
+
+    private void rebuildBloomFilter() {
+        int pairs = 0;
+        for (RoaringBitmap union : advertiserUnions.values()) {
+            pairs += union.cardinality();
+        }
+        // Twice the current pairs, so growth rebuilds are geometric
+        AdvertiserBloomFilter filter = new AdvertiserBloomFilter(pairs * 2);
+        for (Map.Entry<String, RoaringBitmap> entry : advertiserUnions.entrySet()) {
+            String advertiserId = entry.getKey();
+            entry.getValue().forEach(ordinal -> filter.add(advertiserId, dictionary.identifierAt(ordinal)));
+        }
+        bloomFilter = filter;
+    }
+
+    private void maintainBloomFilter() {
+        AdvertiserBloomFilter filter = bloomFilter;
+        if (filter != null && filter.needsRebuild()) {
+            rebuildBloomFilter();
+        }
+    }
+
+    // ==================== MUTATIONS ====================
+
+    /**
+     * Add a list, or replace the contents and owner of an existing one.
+     */
+    public synchronized void putList(String listId, String advertiserId, Collection<String> identifiers) {
+        RoaringBitmap members = new RoaringBitmap();
+        for (String identifier : identifiers) {
+            members.add(dictionary.intern(identifier));
+        }
+        publish(listId, advertiserId, members);
+    }
+
+    /**
+     * Replace a list with an already-encoded member bitmap (e.g. the result of list algebra).
+     * The bitmap must not be modified by the caller afterwards.
+     */
+    public synchronized void putList(String listId, String advertiserId, RoaringBitmap members) {
+        publish(listId, advertiserId, members);
+    }
+
+    /**
+     * Apply an incremental change to a list, creating it if needed. Only the delta
+     * is encoded, so cost follows the change size rather than the list size.
+     */
+    public synchronized void applyDelta(String listId, String advertiserId,
+                                        Collection<String> added, Collection<String> removed) {
+        ListEntry previous = lists.get(listId);
+        RoaringBitmap members = previous != null ? previous.members.copy() : new RoaringBitmap();
+        for (String identifier : removed) {
+            int ordinal = dictionary.ordinalOf(identifier);
+            if (ordinal >= 0) {
+                members.remove(ordinal);
+            }
+        }
+        for (String identifier : added) {
+            members.add(dictionary.intern(identifier));
+        }
+        publish(listId, advertiserId, members);
+    }
+
+    public synchronized boolean removeList(String listId) {
+        ListEntry removed = lists.remove(listId);
+        if (removed == null) {
+            return false;
+        }
+        removed.members.forEach(ordinal -> listSets.remove(ordinal, listId));
+        detach(removed.advertiserId, listId);
+        release(removed.advertiserId, removed.members);
+        maintainBloomFilter();
+        return true;
+    }
+
+    private void publish(String listId, String advertiserId, RoaringBitmap members) {
+        ListEntry previous = lists.get(listId);
+
+        RoaringBitmap union = advertiserUnions.getOrDefault(advertiserId, EMPTY);
+        RoaringBitmap gained = RoaringBitmap.andNot(members, union);
+        gained.forEach(ordinal -> advertiserSets.add(ordinal, advertiserId));
+        AdvertiserBloomFilter filter = bloomFilter;
+        if (filter != null) {
+            gained.forEach(ordinal -> filter.add(advertiserId, dictionary.identifierAt(ordinal)));
+        }
+        if (!gained.isEmpty()) {
+            advertiserUnions.put(advertiserId, RoaringBitmap.or(union, gained));
+        }
+
+        RoaringBitmap listGained = previous != null ? RoaringBitmap.andNot(members, previous.members) : members;
+        listGained.forEach(ordinal -> listSets.add(ordinal, listId));
+        if (previous != null) {
+            RoaringBitmap.andNot(previous.members, members).forEach(ordinal -> listSets.remove(ordinal, listId));
+        }
+
+        lists.put(listId, new ListEntry(advertiserId, members));
+        if (!listIdsByAdvertiser.containsKey(advertiserId)) {
+            listIdsByAdvertiser.put(advertiserId, new HashSet<>());
+            listedAdvertisers = Set.copyOf(listIdsByAdvertiser.keySet());
+        }
+        listIdsByAdvertiser.get(advertiserId).add(listId);
+
+        if (previous != null) {
+            if (previous.advertiserId.equals(advertiserId)) {
+                release(advertiserId, RoaringBitmap.andNot(previous.members, members));
+            } else {
+                detach(previous.advertiserId, listId);
+                release(previous.advertiserId, previous.members);
+            }
+        }
+        maintainBloomFilter();
+    }
+
+    /**
+     * Drop candidates from an advertiser's union unless another of its lists still holds them.
+     */
+    private void release(String advertiserId, RoaringBitmap candidates) {
+        RoaringBitmap lost = candidates;
+        for (String otherId : listIdsByAdvertiser.getOrDefault(advertiserId, Collections.emptySet())) {
+            if (lost.isEmpty()) {
+                return;
+            }
+            lost = RoaringBitmap.andNot(lost, lists.get(otherId).members);
+        }
+        if (lost.isEmpty()) {
+            return;
+        }
+        lost.forEach(ordinal -> advertiserSets.remove(ordinal, advertiserId));
+        AdvertiserBloomFilter filter = bloomFilter;
+        if (filter != null) {
+            filter.markStale(lost.cardinality());
+        }
+        RoaringBitmap remaining = RoaringBitmap.andNot(advertiserUnions.getOrDefault(advertiserId, EMPTY), lost);
+        if (remaining.isEmpty()) {
+            advertiserUnions.remove(advertiserId);
+        } else {
+            advertiserUnions.put(advertiserId, remaining);
+        }
+    }
+
+    private void detach(String advertiserId, String listId) {
+        Set<String> ids = listIdsByAdvertiser.get(advertiserId);
+        if (ids != null) {
+            ids.remove(listId);
+            if (ids.isEmpty()) {
+                listIdsByAdvertiser.remove(advertiserId);
+                listedAdvertisers = Set.copyOf(listIdsByAdvertiser.keySet());
+            }
+        }
+    }
+
+    // ==================== LIST ALGEBRA ====================
+
+    /**
+     * @return the member bitmap of a list, or null if the list is not indexed
+     */
+    public RoaringBitmap listMembers(String listId) {
+        ListEntry entry = lists.get(listId);
+        return entry != null ? entry.members : null;
+    }
+
+    /**
+     * @return the union of all lists owned by an advertiser (empty if none)
+     */
+    public RoaringBitmap advertiserMembers(String advertiserId) {
+        return advertiserUnions.getOrDefault(advertiserId, EMPTY);
+    }
+
+    public Set<String> advertiserIds() {
+        return Collections.unmodifiableSet(advertiserUnions.keySet());
+    }
+
+    /**
+     * Decode a bitmap of ordinals back into identifiers, in ordinal order.
+     */
+    public List<String> resolve(RoaringBitmap members) {
+        List<String> identifiers = new ArrayList<>(members.cardinality());
+        members.forEach(ordinal -> identifiers.add(dictionary.identifierAt(ordinal)));
+        return identifiers;
+    }
+
+    // ==================== STATISTICS ====================
+
+    /**
+     * Number of distinct identifiers suppressed by at least one advertiser.
+     */
+    public int identifierCount() {
+        return advertiserSets.nonEmptyCount();
+    }
+
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    public int distinctAdvertiserSetCount() {
+        return advertiserSets.distinctSetCount();
+    }
+
+    public int distinctListSetCount() {
+        return listSets.distinctSetCount();
+    }
+
+    /**
+     * Bytes held by the per-identifier list attribution (not touched by {@link #lookup}).
+     */
+    public long listAttributionBytes() {
+        return listSets.sizeInBytes();
+    }
+
+    /**
+     * Bytes held by list and advertiser bitmaps combined.
+     */
+    public long bitmapBytes() {
+        long bytes = 0;
+        for (ListEntry entry : lists.values()) {
+            bytes += entry.members.sizeInBytes();
+        }
+        for (RoaringBitmap union : advertiserUnions.values()) {
+            bytes += union.sizeInBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Approximate bytes held by each index structure, and their total.
+     */
+    public Map<String, Object> memoryBreakdown() {
+        long listBitmaps = 0;
+        for (ListEntry entry : lists.values()) {
+            listBitmaps += entry.members.sizeInBytes();
+        }
+        long advertiserBitmaps = 0;
+        for (RoaringBitmap union : advertiserUnions.values()) {
+            advertiserBitmaps += union.sizeInBytes();
+        }
+        Map<String, Object> bytes = new LinkedHashMap<>();
+        bytes.put("dictionary", dictionary.sizeInBytes());
+        bytes.put("advertiser_sets", advertiserSets.sizeInBytes());
+        bytes.put("list_attribution", listSets.sizeInBytes());
+        bytes.put("list_bitmaps", listBitmaps);
+        bytes.put("advertiser_unions", advertiserBitmaps);
+        bytes.put("read_index", readIndexBytes());
+        bytes.put("bloom_filter", bloomFilterBytes());
+        long total = 0;
+        for (Object value : bytes.values()) {
+            total += (Long) value;
+        }
+        bytes.put("total", total);
+        return bytes;
+    }
+
+    /**
+     * Per advertiser: its lists, their summed and unique identifier counts, and the
+     * bytes of its list bitmaps plus its union.
+     */
+    public Map<String, Map<String, Object>> advertiserBreakdown() {
+        Map<String, Map<String, Object>> byAdvertiser = new TreeMap<>();
+        for (ListEntry entry : lists.values()) {
+            Map<String, Object> advertiser = byAdvertiser.computeIfAbsent(entry.advertiserId, id -> {
+                RoaringBitmap union = advertiserMembers(id);
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("lists", 0);
+                stats.put("list_entries", 0L);
+                stats.put("unique_identifiers", union.cardinality());
+                stats.put("bitmap_bytes", union.sizeInBytes());
+                return stats;
+            });
+            advertiser.merge("lists", 1, (a, b) -> (Integer) a + (Integer) b);
+            advertiser.merge("list_entries", (long) entry.members.cardinality(), (a, b) -> (Long) a + (Long) b);
+            advertiser.merge("bitmap_bytes", entry.members.sizeInBytes(), (a, b) -> (Long) a + (Long) b);
+        }
+        return byAdvertiser;
+    }
+
+    /**
+     * Load factor and probe-length histogram of the identifier dictionary.
+     */
+    public Map<String, Object> dictionaryProbeStatistics(int maxSamples) {
+        return dictionary.probeStatistics(maxSamples);
+    }
+
+    private static final class ListEntry {
+        final String advertiserId;
+        final RoaringBitmap members;
+
+        ListEntry(String advertiserId, RoaringBitmap members) {
+            this.advertiserId = advertiserId;
+            this.members = members;
+        }
+    }
+}
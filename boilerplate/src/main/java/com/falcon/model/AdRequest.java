@@ -42,7 +42,15 @@ public class AdRequest {
     public String toString() {
         return "AdRequest{" +
                 "placementId='" + placementId + '\'' +
-                ", userEmailHash='" + (userEmailHash != null ? userEmailHash.substring(0, 8) + "..." : "null") + '\'' +
+                ", userEmailHash='" + abbreviate(userEmailHash) + '\'' +
                 '}';
     }
+
+    // Only the first 8 characters; shorter or malformed hashes are printed as-is
+    private static String abbreviate(String hash) {
+        if (hash == null) {
+            return "null";
+        }
+        return hash.length() > 8 ? hash.substring(0, 8) + "..." : hash;
+    }
 }
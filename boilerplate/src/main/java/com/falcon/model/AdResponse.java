@@ -63,6 +63,9 @@ public class AdResponse {
         @JsonProperty("check_time_ms")
         private long checkTimeMs;
 
+        // Set when a fail-safe policy answered instead of the exact lookup
+        private String fallback;
+
         public SuppressionInfo() {
         }
 
@@ -71,6 +74,12 @@ public class AdResponse {
             this.checkTimeMs = checkTimeMs;
         }
 
+        public SuppressionInfo(java.util.Set<String> suppressedAdvertisers, long checkTimeMs, String fallback) {
+            this.suppressedAdvertisers = suppressedAdvertisers;
+            this.checkTimeMs = checkTimeMs;
+            this.fallback = fallback;
+        }
+
         public java.util.Set<String> getSuppressedAdvertisers() {
             return suppressedAdvertisers;
         }
@@ -86,5 +95,13 @@ public class AdResponse {
         public void setCheckTimeMs(long checkTimeMs) {
             this.checkTimeMs = checkTimeMs;
         }
+
+        public String getFallback() {
+            return fallback;
+        }
+
+        public void setFallback(String fallback) {
+            this.fallback = fallback;
+        }
     }
 }
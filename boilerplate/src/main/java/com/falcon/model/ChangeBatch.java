@@ -0,0 +1,69 @@
+package com.falcon.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * A page of the replication change stream, as returned by GET /api/replication/changes.
+ *
+ * {@code epoch} identifies the leader run that assigned the sequence numbers; a
+ * restarted leader numbers from 1 again under a new epoch. {@code truncated} means
+ * the requested position is older than the leader's retained log or ahead of its
+ * head; either way the follower has to bootstrap again before tailing.
+ */
+public class ChangeBatch {
+
+    private List<ChangeEvent> events;
+
+    private String epoch;
+
+    @JsonProperty("last_seq")
+    private long lastSeq;
+
+    private boolean truncated;
+
+    // Constructors
+    public ChangeBatch() {
+    }
+
+    public ChangeBatch(List<ChangeEvent> events, String epoch, long lastSeq, boolean truncated) {
+        this.events = events;
+        this.epoch = epoch;
+        this.lastSeq = lastSeq;
+        this.truncated = truncated;
+    }
+
+    // Getters and Setters
+    public List<ChangeEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<ChangeEvent> events) {
+        this.events = events;
+    }
+
+    public String getEpoch() {
+        return epoch;
+    }
+
+    public void setEpoch(String epoch) {
+        this.epoch = epoch;
+    }
+
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    public void setLastSeq(long lastSeq) {
+        this.lastSeq = lastSeq;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public void setTruncated(boolean truncated) {
+        this.truncated = truncated;
+    }
+}
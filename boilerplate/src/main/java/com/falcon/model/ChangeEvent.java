@@ -0,0 +1,150 @@
+package com.falcon.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * One list mutation in the replication change stream.
+ *
+ * UPSERT carries the list metadata plus the identifiers that entered and left
+ * the list; DELETE only the list ID. Sequence numbers are assigned by the leader
+ * and increase by one per event.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChangeEvent {
+
+    public enum Type {
+        UPSERT,
+        DELETE
+    }
+
+    private long seq;
+    private Type type;
+
+    @JsonProperty("list_id")
+    private String listId;
+
+    @JsonProperty("advertiser_id")
+    private String advertiserId;
+
+    private String name;
+
+    @JsonProperty("created_at")
+    private Instant createdAt;
+
+    private List<String> added;
+    private List<String> removed;
+
+    @JsonProperty("timestamp_ms")
+    private long timestampMs;
+
+    // Constructors
+    public ChangeEvent() {
+    }
+
+    public static ChangeEvent upsert(SuppressionList list, List<String> added, List<String> removed) {
+        ChangeEvent event = new ChangeEvent();
+        event.type = Type.UPSERT;
+        event.listId = list.getId();
+        event.advertiserId = list.getAdvertiserId();
+        event.name = list.getName();
+        event.createdAt = list.getCreatedAt();
+        event.added = added;
+        event.removed = removed;
+        return event;
+    }
+
+    public static ChangeEvent delete(String listId) {
+        ChangeEvent event = new ChangeEvent();
+        event.type = Type.DELETE;
+        event.listId = listId;
+        return event;
+    }
+
+    // Getters and Setters
+    public long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(Type type) {
+        this.type = type;
+    }
+
+    public String getListId() {
+        return listId;
+    }
+
+    public void setListId(String listId) {
+        this.listId = listId;
+    }
+
+    public String getAdvertiserId() {
+        return advertiserId;
+    }
+
+    public void setAdvertiserId(String advertiserId) {
+        this.advertiserId = advertiserId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public List<String> getAdded() {
+        return added;
+    }
+
+    public void setAdded(List<String> added) {
+        this.added = added;
+    }
+
+    public List<String> getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(List<String> removed) {
+        this.removed = removed;
+    }
+
+    public long getTimestampMs() {
+        return timestampMs;
+    }
+
+    public void setTimestampMs(long timestampMs) {
+        this.timestampMs = timestampMs;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "seq=" + seq +
+                ", type=" + type +
+                ", listId='" + listId + '\'' +
+                ", added=" + (added != null ? added.size() : 0) +
+                ", removed=" + (removed != null ? removed.size() : 0) +
+                '}';
+    }
+}
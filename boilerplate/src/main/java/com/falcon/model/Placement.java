@@ -0,0 +1,109 @@
+package com.falcon.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Represents an ad slot on a publisher site.
+ *
+ * A placement only accepts banners of its sizes (width x height, plus any extra
+ * "WxH" entries in {@code sizes}) and, when {@code campaign_ids} is set, only
+ * banners from those campaigns.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Placement {
+    private String id;
+
+    @JsonProperty("site_id")
+    private String siteId;
+
+    private String name;
+    private int width;
+    private int height;
+
+    // Additional accepted sizes, formatted "WxH" (e.g. "300x600")
+    private List<String> sizes;
+
+    @JsonProperty("campaign_ids")
+    private List<String> campaignIds;
+
+    // Constructors
+    public Placement() {
+    }
+
+    public Placement(String id, String siteId, String name, int width, int height) {
+        this.id = id;
+        this.siteId = siteId;
+        this.name = name;
+        this.width = width;
+        this.height = height;
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getSiteId() {
+        return siteId;
+    }
+
+    public void setSiteId(String siteId) {
+        this.siteId = siteId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public List<String> getSizes() {
+        return sizes;
+    }
+
+    public void setSizes(List<String> sizes) {
+        this.sizes = sizes;
+    }
+
+    public List<String> getCampaignIds() {
+        return campaignIds;
+    }
+
+    public void setCampaignIds(List<String> campaignIds) {
+        this.campaignIds = campaignIds;
+    }
+
+    @Override
+    public String toString() {
+        return "Placement{" +
+                "id='" + id + '\'' +
+                ", siteId='" + siteId + '\'' +
+                ", size=" + width + "x" + height +
+                '}';
+    }
+}
@@ -29,7 +29,15 @@ public class SuppressionCheckRequest {
     @Override
     public String toString() {
         return "SuppressionCheckRequest{" +
-                "emailHash='" + (emailHash != null ? emailHash.substring(0, 8) + "..." : "null") + '\'' +
+                "emailHash='" + abbreviate(emailHash) + '\'' +
                 '}';
     }
+
+    // Only the first 8 characters; shorter or malformed hashes are printed as-is
+    private static String abbreviate(String hash) {
+        if (hash == null) {
+            return "null";
+        }
+        return hash.length() > 8 ? hash.substring(0, 8) + "..." : hash;
+    }
 }
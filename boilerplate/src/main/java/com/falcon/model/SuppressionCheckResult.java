@@ -5,14 +5,23 @@ import java.util.Set;
 
 /**
  * Result of a suppression check showing which advertisers should be suppressed.
+ *
+ * {@code matched_list_ids} is only filled in detail mode and omitted otherwise.
+ * {@code fallback} names the fail-safe policy that answered when the exact lookup
+ * missed its deadline or failed; it is omitted for exact answers.
  */
 public class SuppressionCheckResult {
     @JsonProperty("suppressed_advertisers")
     private Set<String> suppressedAdvertisers;
 
+    @JsonProperty("matched_list_ids")
+    private Set<String> matchedListIds;
+
     @JsonProperty("check_time_ms")
     private long checkTimeMs;
 
+    private String fallback;
+
     // Constructors
     public SuppressionCheckResult() {
     }
@@ -22,6 +31,12 @@ public class SuppressionCheckResult {
         this.checkTimeMs = checkTimeMs;
     }
 
+    public SuppressionCheckResult(Set<String> suppressedAdvertisers, Set<String> matchedListIds, long checkTimeMs) {
+        this.suppressedAdvertisers = suppressedAdvertisers;
+        this.matchedListIds = matchedListIds;
+        this.checkTimeMs = checkTimeMs;
+    }
+
     // Getters and Setters
     public Set<String> getSuppressedAdvertisers() {
         return suppressedAdvertisers;
@@ -31,6 +46,14 @@ public class SuppressionCheckResult {
         this.suppressedAdvertisers = suppressedAdvertisers;
     }
 
+    public Set<String> getMatchedListIds() {
+        return matchedListIds;
+    }
+
+    public void setMatchedListIds(Set<String> matchedListIds) {
+        this.matchedListIds = matchedListIds;
+    }
+
     public long getCheckTimeMs() {
         return checkTimeMs;
     }
@@ -39,11 +62,21 @@ public class SuppressionCheckResult {
         this.checkTimeMs = checkTimeMs;
     }
 
+    public String getFallback() {
+        return fallback;
+    }
+
+    public void setFallback(String fallback) {
+        this.fallback = fallback;
+    }
+
     @Override
     public String toString() {
         return "SuppressionCheckResult{" +
                 "suppressedAdvertisers=" + suppressedAdvertisers +
+                ", matchedListIds=" + matchedListIds +
                 ", checkTimeMs=" + checkTimeMs +
+                ", fallback='" + fallback + '\'' +
                 '}';
     }
 }
@@ -1,5 +1,7 @@
 package com.falcon.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+
 import java.time.Instant;
 import java.util.List;
 
@@ -11,9 +13,14 @@ import java.util.List;
  */
 public class SuppressionList {
     private String id;
+
+    @JsonProperty("advertiser_id")
     private String advertiserId;
+
     private String name;
     private List<String> identifiers;
+
+    @JsonProperty("created_at")
     private Instant createdAt;
 
     // Constructors
@@ -0,0 +1,93 @@
+package com.falcon.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+
+/**
+ * A suppression list without its identifiers, as returned by
+ * GET /api/suppression-lists?view=summary.
+ */
+public class SuppressionListSummary {
+    private String id;
+
+    @JsonProperty("advertiser_id")
+    private String advertiserId;
+
+    private String name;
+
+    @JsonProperty("identifier_count")
+    private int identifierCount;
+
+    @JsonProperty("created_at")
+    private Instant createdAt;
+
+    // Constructors
+    public SuppressionListSummary() {
+    }
+
+    public SuppressionListSummary(String id, String advertiserId, String name, int identifierCount, Instant createdAt) {
+        this.id = id;
+        this.advertiserId = advertiserId;
+        this.name = name;
+        this.identifierCount = identifierCount;
+        this.createdAt = createdAt;
+    }
+
+    public static SuppressionListSummary of(SuppressionList list) {
+        return new SuppressionListSummary(list.getId(), list.getAdvertiserId(), list.getName(),
+                list.getIdentifiers() != null ? list.getIdentifiers().size() : 0, list.getCreatedAt());
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAdvertiserId() {
+        return advertiserId;
+    }
+
+    public void setAdvertiserId(String advertiserId) {
+        this.advertiserId = advertiserId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getIdentifierCount() {
+        return identifierCount;
+    }
+
+    public void setIdentifierCount(int identifierCount) {
+        this.identifierCount = identifierCount;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "SuppressionListSummary{" +
+                "id='" + id + '\'' +
+                ", advertiserId='" + advertiserId + '\'' +
+                ", name='" + name + '\'' +
+                ", identifierCount=" + identifierCount +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+}
@@ -1,80 +1,199 @@
 package com.falcon.service;
 
+import com.falcon.index.BannerInventory;
 import com.falcon.model.Banner;
+import com.falcon.model.Placement;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * Ad Server Service - DO NOT MODIFY THIS FILE
+ * Ad Server Service.
  *
- * This class simulates an external ad server that you cannot control.
+ * Stands in for the external ad server. Its contract with the rest of the
+ * application is {@link #serveAd}: suppressed advertiser IDs go in through the
+ * {@code suppress_advertisers} custom parameter, and no banner of theirs comes out.
  * It handles:
- * - Loading banner configurations
+ * - Loading banner and placement configurations
+ * - Matching banners to placements by size and campaign (prebuilt per placement)
  * - Weighted random banner selection
  * - Filtering banners based on custom parameters (including suppressed advertisers)
- *
- * Your task is to integrate with this ad server by passing the correct
- * custom parameters containing suppressed advertiser IDs.
  */
 @Service
 public class AdServer {
-    private List<Banner> allBanners;
+    private static final String CONFIG_FILE = "ad_server_config.json";
+
+    // Current inventory generation; replaced wholesale, never mutated
+    private volatile BannerInventory inventory = BannerInventory.build(List.of(), List.of(), 0);
     private final ObjectMapper objectMapper;
-    private final Random random;
+    private final String mockDataPath;
+    private final boolean watchConfig;
+    private final long reloadDebounceMs;
+    private WatchService configWatcher;
 
-    public AdServer(ObjectMapper objectMapper) {
+    public AdServer(ObjectMapper objectMapper,
+                    @Value("${falcon.mock-data.path:../mock-data}") String mockDataPath,
+                    @Value("${falcon.ad-server.watch-config:true}") boolean watchConfig,
+                    @Value("${falcon.ad-server.reload-debounce-ms:250}") long reloadDebounceMs) {
         this.objectMapper = objectMapper;
-        this.random = new Random();
+        this.mockDataPath = mockDataPath;
+        this.watchConfig = watchConfig;
+        this.reloadDebounceMs = reloadDebounceMs;
     }
 
     /**
-     * Load banner configurations at startup from mock data.
+     * Load banner and placement configurations at startup from mock data,
+     * build the placement inventory index, and start watching the config file.
      */
     @PostConstruct
     public void loadBanners() {
         try {
-            // Try to load from external mock-data directory first
-            InputStream inputStream;
-            try {
-                inputStream = new ClassPathResource("../../mock-data/ad_server_config.json").getInputStream();
-            } catch (IOException e) {
-                // Fallback to classpath
-                inputStream = getClass().getClassLoader().getResourceAsStream("ad_server_config.json");
-            }
-
-            if (inputStream == null) {
-                throw new RuntimeException("Could not find ad_server_config.json");
-            }
+            BannerInventory loaded = reloadConfig();
+            System.out.println("✓ AdServer loaded " + loaded.getBanners().size() + " banners for "
+                    + loaded.getPlacements().size() + " placements");
+        } catch (IOException e) {
+            System.err.println("✗ Failed to load ad server config: " + e.getMessage());
+        }
+        startConfigWatcher();
+    }
 
+    /**
+     * Re-read ad_server_config.json, build a complete new inventory generation
+     * (placement candidates, advertiser groups, cumulative weight tables) and
+     * publish it with a single reference swap.
+     *
+     * Runs entirely off the serving path: in-flight serveAd() calls keep the
+     * generation they already read. If the file cannot be parsed the current
+     * generation stays in place.
+     *
+     * @return the newly published inventory
+     */
+    public synchronized BannerInventory reloadConfig() throws IOException {
+        List<Banner> banners = new ArrayList<>();
+        List<Placement> placements = new ArrayList<>();
+        try (InputStream inputStream = MockData.open(mockDataPath, CONFIG_FILE)) {
             JsonNode root = objectMapper.readTree(inputStream);
-            JsonNode bannersNode = root.get("banners");
 
-            allBanners = new ArrayList<>();
-            if (bannersNode.isArray()) {
+            JsonNode bannersNode = root.get("banners");
+            if (bannersNode != null && bannersNode.isArray()) {
                 for (JsonNode bannerNode : bannersNode) {
-                    Banner banner = objectMapper.treeToValue(bannerNode, Banner.class);
-                    allBanners.add(banner);
+                    banners.add(objectMapper.treeToValue(bannerNode, Banner.class));
                 }
             }
 
-            System.out.println("✓ AdServer loaded " + allBanners.size() + " banners");
+            JsonNode placementsNode = root.get("placements");
+            if (placementsNode != null && placementsNode.isArray()) {
+                for (JsonNode placementNode : placementsNode) {
+                    placements.add(objectMapper.treeToValue(placementNode, Placement.class));
+                }
+            }
+        }
+        return publish(banners, placements);
+    }
+
+    /**
+     * Rebuild the placement inventory index from the given banners and placements
+     * (e.g. after a placement's accepted sizes or campaigns change).
+     */
+    public synchronized BannerInventory refreshInventory(List<Banner> banners, List<Placement> placements) {
+        return publish(banners, placements);
+    }
+
+    private BannerInventory publish(List<Banner> banners, List<Placement> placements) {
+        BannerInventory next = BannerInventory.build(banners, placements, inventory.getGeneration() + 1);
+        inventory = next;
+        return next;
+    }
+
+    // ==================== CONFIG FILE WATCHER ====================
+
+    /**
+     * Watch the config file's directory and reload on change. Editors often write
+     * a file in several steps, so events are debounced before reloading.
+     */
+    private void startConfigWatcher() {
+        Path configFile = Path.of(mockDataPath, CONFIG_FILE).toAbsolutePath();
+        if (!watchConfig || !Files.isRegularFile(configFile)) {
+            return;
+        }
+        try {
+            configWatcher = configFile.getFileSystem().newWatchService();
+            configFile.getParent().register(configWatcher,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
         } catch (IOException e) {
-            System.err.println("✗ Failed to load ad server config: " + e.getMessage());
-            allBanners = new ArrayList<>();
+            System.err.println("✗ Could not watch " + configFile + ": " + e.getMessage());
+            return;
+        }
+
+        Thread watcher = new Thread(() -> watchConfig(configWatcher, configFile.getFileName()), "ad-config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        System.out.println("✓ AdServer watching " + configFile + " for changes");
+    }
+
+    private void watchConfig(WatchService watchService, Path fileName) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = touches(key, fileName);
+                key.reset();
+                if (!changed) {
+                    continue;
+                }
+                // Debounce: absorb the rest of the write burst before reloading
+                Thread.sleep(reloadDebounceMs);
+                for (WatchKey more = watchService.poll(); more != null; more = watchService.poll()) {
+                    more.pollEvents();
+                    more.reset();
+                }
+                try {
+                    BannerInventory loaded = reloadConfig();
+                    System.out.println("✓ AdServer reloaded config: generation " + loaded.getGeneration()
+                            + ", " + loaded.getBanners().size() + " banners");
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("✗ Ad server config reload failed, keeping generation "
+                            + inventory.getGeneration() + ": " + e.getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private static boolean touches(WatchKey key, Path fileName) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (fileName.equals(event.context())) {
+                touched = true;
+            }
+        }
+        return touched;
+    }
+
+    @PreDestroy
+    public void stopConfigWatcher() throws IOException {
+        if (configWatcher != null) {
+            configWatcher.close();
         }
     }
 
     /**
      * Serve an ad banner for a placement, filtering out suppressed advertisers.
      *
+     * Only the placement's prebuilt candidates are considered, so the work per
+     * request depends on the slot's inventory, not on the total banner count.
+     *
      * @param placementId The placement requesting an ad
      * @param customParams Custom parameters including "suppress_advertisers"
      * @return Selected banner, or null if no eligible banner found
@@ -83,17 +202,9 @@ public class AdServer {
         // Get suppressed advertiser IDs from custom parameters
         Set<String> suppressedAdvertisers = extractSuppressedAdvertisers(customParams);
 
-        // Filter banners: exclude those from suppressed advertisers
-        List<Banner> eligibleBanners = allBanners.stream()
-                .filter(banner -> !suppressedAdvertisers.contains(banner.getAdvertiserId()))
-                .collect(Collectors.toList());
-
-        if (eligibleBanners.isEmpty()) {
-            return null;  // No eligible banners after suppression
-        }
-
-        // Weighted random selection
-        return selectBannerWeighted(eligibleBanners);
+        // Weighted random selection among the placement's non-suppressed candidates.
+        // The inventory reference is read once, so a concurrent reload cannot split this call.
+        return inventory.select(placementId, suppressedAdvertisers, ThreadLocalRandom.current());
     }
 
     /**
@@ -116,53 +227,38 @@ public class AdServer {
     }
 
     /**
-     * Select a banner using weighted random selection.
-     * Banners with higher weights have proportionally higher chances of being selected.
+     * Get all loaded banners (for testing/debugging).
      */
-    private Banner selectBannerWeighted(List<Banner> banners) {
-        if (banners.isEmpty()) {
-            return null;
-        }
-
-        if (banners.size() == 1) {
-            return banners.get(0);
-        }
-
-        // Calculate total weight
-        int totalWeight = banners.stream()
-                .mapToInt(Banner::getWeight)
-                .sum();
-
-        // Random selection based on weights
-        int randomValue = random.nextInt(totalWeight);
-        int cumulativeWeight = 0;
+    public List<Banner> getAllBanners() {
+        return new ArrayList<>(inventory.getBanners());
+    }
 
-        for (Banner banner : banners) {
-            cumulativeWeight += banner.getWeight();
-            if (randomValue < cumulativeWeight) {
-                return banner;
-            }
-        }
+    /**
+     * Generation number of the inventory currently being served.
+     */
+    public long getInventoryGeneration() {
+        return inventory.getGeneration();
+    }
 
-        // Fallback (should never reach here)
-        return banners.get(0);
+    /**
+     * Get all configured placements.
+     */
+    public List<Placement> getPlacements() {
+        return inventory.getPlacements();
     }
 
     /**
-     * Get all loaded banners (for testing/debugging).
+     * Number of candidate banners a placement can serve, or -1 if the placement is unknown.
      */
-    public List<Banner> getAllBanners() {
-        return new ArrayList<>(allBanners);
+    public int getCandidateCount(String placementId) {
+        BannerInventory.PlacementInventory placementInventory = inventory.inventoryFor(placementId);
+        return placementInventory != null ? placementInventory.bannerCount() : -1;
     }
 
     /**
-     * Get count of banners by advertiser ID.
+     * Get count of banners by advertiser ID (precomputed per inventory generation).
      */
     public Map<String, Long> getBannerCountByAdvertiser() {
-        return allBanners.stream()
-                .collect(Collectors.groupingBy(
-                        Banner::getAdvertiserId,
-                        Collectors.counting()
-                ));
+        return inventory.getBannerCountByAdvertiser();
     }
 }
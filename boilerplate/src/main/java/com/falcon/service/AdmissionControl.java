@@ -0,0 +1,207 @@
+package com.falcon.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive concurrency limits that shed excess load at the door instead of letting
+ * it queue inside Tomcat, where every request, admitted or not, gets slower.
+ *
+ * Requests fall into two classes, each with its own limit on requests in flight:
+ *
+ *   serving - POST /api/serve-ad and /api/check-suppression
+ *   writes  - list mutations; lower priority: besides their own, smaller limit,
+ *             they are turned away whenever serving is using more than
+ *             {@code writes.yield-fraction} of its limit, so a CRUD flood cannot
+ *             take the threads, locks or CPU ad serving needs
+ *
+ * Each limit adapts TCP Vegas-style. The shortest recent latency of the class is
+ * taken as its no-queueing latency; a smoothed latency of {@code latency} at limit
+ * L then implies about {@code L * (1 - minLatency / latency)} requests queued.
+ * Below {@code alpha * log10(L)} queued the limit grows by one; above
+ * {@code beta * log10(L)} it shrinks by one; a request slower than
+ * {@code max-latency-ms} cuts it by 10%. Samples taken while less than half the
+ * limit is in use are ignored, so an idle server neither inflates the limit nor
+ * collapses it over a GC pause.
+ * The no-queueing latency is the minimum over two rotating windows, so it can rise
+ * again if the work per request does (a bigger index, a slower disk).
+ *
+ * A rejected request costs one atomic read and a canned response; it never reaches
+ * the controller, so no suppression lookup is made for it.
+ */
+@Service
+public class AdmissionControl {
+
+    public enum RequestClass { SERVING, WRITES }
+
+    private final boolean enabled;
+    private final double writesYieldFraction;
+    private final Limit serving;
+    private final Limit writes;
+
+    public AdmissionControl(@Value("${falcon.admission.enabled:true}") boolean enabled,
+                            @Value("${falcon.admission.serving.initial-limit:32}") int servingInitial,
+                            @Value("${falcon.admission.serving.min-limit:16}") int servingMin,
+                            @Value("${falcon.admission.serving.max-limit:180}") int servingMax,
+                            @Value("${falcon.admission.writes.initial-limit:4}") int writesInitial,
+                            @Value("${falcon.admission.writes.max-limit:8}") int writesMax,
+                            @Value("${falcon.admission.writes.yield-fraction:0.75}") double writesYieldFraction,
+                            @Value("${falcon.admission.alpha:3}") int alpha,
+                            @Value("${falcon.admission.beta:6}") int beta,
+                            @Value("${falcon.admission.max-latency-ms:250}") long maxLatencyMs,
+                            @Value("${falcon.admission.min-latency-window-ms:10000}") long windowMs) {
+        if (servingMin < 1 || servingMin > servingMax || writesMax < 1 || alpha >= beta) {
+            throw new IllegalArgumentException("falcon.admission limits need 1 <= min-limit <= max-limit and alpha < beta");
+        }
+        this.enabled = enabled;
+        this.writesYieldFraction = writesYieldFraction;
+        long maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        long windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.serving = new Limit(servingInitial, servingMin, servingMax, alpha, beta, maxLatencyNanos, windowNanos);
+        this.writes = new Limit(writesInitial, 1, writesMax, alpha, beta, maxLatencyNanos, windowNanos);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admit a request or turn it away. An admitted request must be followed by
+     * exactly one {@link #release} of the same class.
+     */
+    public boolean tryAcquire(RequestClass requestClass) {
+        if (requestClass == RequestClass.SERVING) {
+            return serving.tryAcquire();
+        }
+        if (serving.inFlight.get() > serving.limit * writesYieldFraction) {
+            writes.yielded.increment();
+            writes.rejected.increment();
+            return false;
+        }
+        return writes.tryAcquire();
+    }
+
+    /**
+     * @param latencyNanos time the request spent in the application
+     */
+    public void release(RequestClass requestClass, long latencyNanos) {
+        (requestClass == RequestClass.SERVING ? serving : writes).release(latencyNanos);
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            status.put("serving", serving.status());
+            Map<String, Object> writeStatus = writes.status();
+            writeStatus.put("yielded_to_serving", writes.yielded.sum());
+            status.put("writes", writeStatus);
+        }
+        return status;
+    }
+
+    // ==================== LIMIT ====================
+
+    /**
+     * One class's in-flight counter and Vegas limit. Admission is lock-free; the
+     * limit is recomputed under the monitor on each completion.
+     */
+    private static final class Limit {
+        final int minLimit;
+        final int maxLimit;
+        final int alpha;
+        final int beta;
+        final long maxLatencyNanos;
+        final long windowNanos;
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        volatile int limit;
+
+        long windowStart = System.nanoTime();
+        long windowMin = Long.MAX_VALUE;
+        long previousWindowMin = Long.MAX_VALUE;
+        long smoothedLatency;
+        int lastQueue;
+
+        final LongAdder admitted = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder yielded = new LongAdder();
+
+        Limit(int initial, int minLimit, int maxLimit, int alpha, int beta, long maxLatencyNanos, long windowNanos) {
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.alpha = alpha;
+            this.beta = beta;
+            this.maxLatencyNanos = maxLatencyNanos;
+            this.windowNanos = windowNanos;
+            this.limit = Math.max(minLimit, Math.min(maxLimit, initial));
+        }
+
+        boolean tryAcquire() {
+            int current;
+            do {
+                current = inFlight.get();
+                if (current >= limit) {
+                    rejected.increment();
+                    return false;
+                }
+            } while (!inFlight.compareAndSet(current, current + 1));
+            admitted.increment();
+            return true;
+        }
+
+        void release(long latencyNanos) {
+            int inFlightBefore = inFlight.getAndDecrement();
+            update(Math.max(1, latencyNanos), inFlightBefore);
+        }
+
+        private synchronized void update(long latency, int inFlightBefore) {
+            long now = System.nanoTime();
+            if (now - windowStart > windowNanos) {
+                previousWindowMin = windowMin;
+                windowMin = Long.MAX_VALUE;
+                windowStart = now;
+            }
+            windowMin = Math.min(windowMin, latency);
+            long minLatency = Math.min(windowMin, previousWindowMin);
+            smoothedLatency = smoothedLatency == 0 ? latency : smoothedLatency + (latency - smoothedLatency) / 8;
+
+            int current = limit;
+            // Latency at low utilization is not queueing behind this limit (GC, a cold cache): no signal
+            if (inFlightBefore * 2 < current) {
+                return;
+            }
+            double scale = Math.max(1, Math.log10(current));
+            int queue = (int) Math.ceil(current * (1 - (double) minLatency / smoothedLatency));
+            lastQueue = queue;
+            int next = current;
+            if (latency > maxLatencyNanos) {
+                next = (int) (current * 0.9);
+            } else if (queue > beta * scale) {
+                next = current - 1;
+            } else if (queue < alpha * scale) {
+                next = current + 1;
+            }
+            limit = Math.max(minLimit, Math.min(maxLimit, next));
+        }
+
+        synchronized Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            long minLatency = Math.min(windowMin, previousWindowMin);
+            status.put("limit", limit);
+            status.put("in_flight", inFlight.get());
+            status.put("min_latency_us", minLatency == Long.MAX_VALUE ? 0 : minLatency / 1000);
+            status.put("smoothed_latency_us", smoothedLatency / 1000);
+            status.put("estimated_queue", lastQueue);
+            status.put("admitted", admitted.sum());
+            status.put("rejected", rejected.sum());
+            return status;
+        }
+    }
+}
@@ -0,0 +1,533 @@
+package com.falcon.service;
+
+import com.falcon.index.HashKeys;
+import com.falcon.model.SuppressionCheckResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compact binary protocol for suppression checks, on its own port next to REST.
+ *
+ * Clients keep a TCP connection open and pipeline frames on it: there is no need
+ * to wait for a reply before sending the next request. Every frame is a big-endian
+ * {@code int} length (of what follows) and a body of {@code byte type, int request id,
+ * payload}; a reply carries the request id of the frame it answers. Replies to
+ * in-memory lookups come back in request order, but ones that wait on disk or
+ * another shard are sent when ready, so clients match replies by id.
+ *
+ * <pre>
+ * CHECK             0x01  int count, count x 32-byte raw hash (SHA-256, not hex)
+ *   CHECK_RESULT    0x81  int dictionary size, int count,
+ *                         per hash: short n, n x int advertiser ordinal
+ * DICTIONARY        0x02  int first ordinal
+ *   DICTIONARY_RESULT 0x82 int dictionary size, int first ordinal, int count,
+ *                         per entry: short length, UTF-8 advertiser ID
+ * ERROR             0xFF  short length, UTF-8 message
+ * </pre>
+ *
+ * Advertisers are sent as ordinals rather than IDs. An ordinal is assigned the
+ * first time the advertiser appears in a reply and never changes or gets reused
+ * while the server runs, so a client fetches the dictionary once per connection
+ * and afterwards only the tail past its cached size (a CHECK_RESULT reports the
+ * current size, so the client can tell when it is behind).
+ *
+ * Answers are exactly those of POST /api/check-suppression: a batch whose lookups
+ * fail (an unreachable shard, an I/O error) gets an ERROR reply. A malformed frame
+ * gets an ERROR reply with request id -1, and the connection is closed.
+ *
+ * One selector thread ("binary-protocol") does all socket I/O. In-memory lookups
+ * are answered inline on it; lookups that leave memory complete on the LSM lookup
+ * pool or the HTTP client and hand their encoded reply back to the selector. A
+ * connection stops being read while too many of its replies are unsent or pending,
+ * so a client that does not read its replies cannot make the server buffer without bound.
+ */
+@Service
+public class BinaryCheckServer {
+
+    static final byte CHECK = 0x01;
+    static final byte DICTIONARY = 0x02;
+    static final byte CHECK_RESULT = (byte) 0x81;
+    static final byte DICTIONARY_RESULT = (byte) 0x82;
+    static final byte ERROR = (byte) 0xFF;
+
+    public static final int HASH_BYTES = 32;
+    public static final int MAX_BATCH = 4096;
+    public static final int MAX_DICTIONARY_ENTRIES = 1024;
+    private static final int HEADER_BYTES = 1 + 4;
+    private static final int MAX_FRAME = HEADER_BYTES + 4 + MAX_BATCH * HASH_BYTES;
+    private static final int BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_PENDING_BATCHES = 256;
+
+    private final ShardRouter shardRouter;
+    private final StartupService startupService;
+    private final boolean enabled;
+    private final String bindAddress;
+    private final int port;
+    private final int maxQueuedBytes;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    private volatile String[] advertisers = new String[16];
+    private volatile int advertiserCount;
+
+    private final Queue<Runnable> selectorTasks = new ConcurrentLinkedQueue<>();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile Thread loop;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private volatile int openConnections;
+
+    public BinaryCheckServer(ShardRouter shardRouter,
+                             StartupService startupService,
+                             @Value("${falcon.binary.enabled:false}") boolean enabled,
+                             @Value("${falcon.binary.address:0.0.0.0}") String bindAddress,
+                             @Value("${falcon.binary.port:9090}") int port,
+                             @Value("${falcon.binary.max-queued-kb:4096}") int maxQueuedKb) {
+        this.shardRouter = shardRouter;
+        this.startupService = startupService;
+        this.enabled = enabled;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.maxQueuedBytes = Math.max(BUFFER_BYTES, maxQueuedKb * 1024);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(bindAddress, port), 1024);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen for the binary protocol on port " + port, e);
+        }
+        Thread thread = new Thread(this::run, "binary-protocol");
+        thread.setDaemon(true);
+        loop = thread;
+        thread.start();
+        System.out.println("✓ Binary check protocol listening on " + bindAddress + ":" + port);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = loop;
+        loop = null;
+        if (thread == null) {
+            return;
+        }
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", enabled);
+        if (enabled) {
+            status.put("port", port);
+            status.put("open_connections", openConnections);
+            status.put("accepted_connections", accepted.sum());
+            status.put("frames", frames.sum());
+            status.put("checks", checks.sum());
+            status.put("errors", errors.sum());
+            status.put("advertiser_ordinals", advertiserCount);
+        }
+        return status;
+    }
+
+    // ==================== SELECTOR LOOP ====================
+
+    private void run() {
+        try {
+            while (loop != null) {
+                selector.select();
+                for (Runnable task; (task = selectorTasks.poll()) != null; ) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable()) {
+                            connection.read();
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            connection.flush();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        connection.close();
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            System.out.println("✗ Binary check protocol stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+            openConnections = 0;
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            accepted.increment();
+            openConnections++;
+        }
+    }
+
+    /**
+     * Run on the selector thread and wake it; used by lookups completing elsewhere.
+     */
+    private void onSelector(Runnable task) {
+        selectorTasks.add(task);
+        selector.wakeup();
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Already closing
+        }
+    }
+
+    // ==================== CONNECTIONS ====================
+
+    /**
+     * One client connection. Only the selector thread touches it.
+     */
+    private final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        ByteBuffer in = ByteBuffer.allocate(BUFFER_BYTES);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_BYTES);
+        int pendingBatches;
+        boolean closing;
+        boolean closed;
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                close();
+                return;
+            }
+            process();
+            flush();
+        }
+
+        /**
+         * Handle every complete frame in the input buffer, stopping early while the
+         * connection is over its reply budget.
+         */
+        void process() {
+            in.flip();
+            while (!closing && !overBudget() && in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < HEADER_BYTES || length > MAX_FRAME) {
+                    fail("Frame length " + length + " outside 5.." + MAX_FRAME);
+                    break;
+                }
+                if (in.remaining() < 4 + length) {
+                    if (in.capacity() < 4 + length) {
+                        in = ByteBuffer.allocate(4 + length).put(in).flip();
+                    }
+                    break;
+                }
+                int frameEnd = in.position() + 4 + length;
+                in.position(in.position() + 4);
+                byte type = in.get();
+                int requestId = in.getInt();
+                frames.increment();
+                handle(type, requestId, frameEnd);
+                in.position(frameEnd);
+            }
+            in.compact();
+            updateInterest();
+        }
+
+        void handle(byte type, int requestId, int frameEnd) {
+            switch (type) {
+                case CHECK -> check(requestId, frameEnd);
+                case DICTIONARY -> {
+                    if (frameEnd - in.position() != 4) {
+                        error(requestId, "DICTIONARY payload must be one int");
+                        return;
+                    }
+                    dictionary(requestId, in.getInt());
+                }
+                default -> error(requestId, "Unknown frame type 0x" + Integer.toHexString(type & 0xFF));
+            }
+        }
+
+        void check(int requestId, int frameEnd) {
+            int count = frameEnd - in.position() >= 4 ? in.getInt() : -1;
+            if (count < 0 || count > MAX_BATCH || frameEnd - in.position() != (long) count * HASH_BYTES) {
+                error(requestId, "CHECK payload must be a count of at most " + MAX_BATCH
+                        + " followed by that many 32-byte hashes");
+                return;
+            }
+            List<CompletableFuture<SuppressionCheckResult>> lookups = new ArrayList<>(count);
+            boolean done = true;
+            byte[] bytes = in.array();
+            int offset = in.arrayOffset() + in.position();
+            for (int i = 0; i < count; i++) {
+                CompletableFuture<SuppressionCheckResult> lookup =
+                        shardRouter.checkSuppressionAsync(HashKeys.toHex(bytes, offset + i * HASH_BYTES));
+                lookups.add(lookup);
+                done &= lookup.isDone();
+            }
+            checks.add(count);
+            startupService.recordServed();
+            if (done) {
+                reply(encodeCheck(requestId, lookups));
+                return;
+            }
+            pendingBatches++;
+            CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).whenComplete((ignored, error) -> {
+                ByteBuffer encoded = encodeCheck(requestId, lookups);
+                onSelector(() -> {
+                    pendingBatches--;
+                    reply(encoded);
+                    try {
+                        resume();
+                    } catch (RuntimeException e) {
+                        close();
+                    }
+                });
+            });
+        }
+
+        void dictionary(int requestId, int first) {
+            // Count first: any array read after it holds at least that many names
+            int size = advertiserCount;
+            String[] names = advertisers;
+            if (first < 0 || first > size) {
+                error(requestId, "First ordinal " + first + " outside 0.." + size);
+                return;
+            }
+            int count = Math.min(MAX_DICTIONARY_ENTRIES, size - first);
+            byte[][] encoded = new byte[count][];
+            int bytes = 4 + HEADER_BYTES + 12;
+            for (int i = 0; i < count; i++) {
+                encoded[i] = names[first + i].getBytes(StandardCharsets.UTF_8);
+                bytes += 2 + encoded[i].length;
+            }
+            ByteBuffer frame = frame(bytes, DICTIONARY_RESULT, requestId)
+                    .putInt(size)
+                    .putInt(first)
+                    .putInt(count);
+            for (byte[] name : encoded) {
+                frame.putShort((short) name.length).put(name);
+            }
+            reply(frame.flip());
+        }
+
+        void error(int requestId, String message) {
+            errors.increment();
+            reply(encodeError(requestId, message));
+        }
+
+        /**
+         * Reply to an unparseable stream and close once the reply is sent.
+         */
+        void fail(String message) {
+            error(-1, message);
+            closing = true;
+        }
+
+        void reply(ByteBuffer frame) {
+            if (closed) {
+                return;
+            }
+            if (out.remaining() < frame.remaining()) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + frame.remaining()));
+                out = grown.put(out.flip());
+            }
+            out.put(frame);
+        }
+
+        void flush() throws IOException {
+            if (closed) {
+                return;
+            }
+            out.flip();
+            channel.write(out);
+            out.compact();
+            if (out.position() == 0 && closing) {
+                close();
+                return;
+            }
+            resume();
+        }
+
+        /**
+         * Pick up frames left in the buffer while over budget, once back under it,
+         * and re-arm the selector for whatever is left to read or write.
+         */
+        void resume() {
+            if (closed) {
+                return;
+            }
+            if (!closing && !overBudget() && in.position() >= 4) {
+                process();
+            }
+            updateInterest();
+        }
+
+        boolean overBudget() {
+            return out.position() >= maxQueuedBytes || pendingBatches >= MAX_PENDING_BATCHES;
+        }
+
+        void updateInterest() {
+            if (closed || !key.isValid()) {
+                return;
+            }
+            int ops = 0;
+            if (!closing && !overBudget()) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (out.position() > 0) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            key.cancel();
+            closeQuietly(channel);
+            openConnections--;
+        }
+    }
+
+    // ==================== ENCODING ====================
+
+    private ByteBuffer encodeCheck(int requestId, List<CompletableFuture<SuppressionCheckResult>> lookups) {
+        List<Set<String>> results = new ArrayList<>(lookups.size());
+        int bytes = 4 + HEADER_BYTES + 8;
+        try {
+            for (CompletableFuture<SuppressionCheckResult> lookup : lookups) {
+                Set<String> suppressed = lookup.join().getSuppressedAdvertisers();
+                results.add(suppressed != null ? suppressed : Set.of());
+                bytes += 2 + 4 * results.get(results.size() - 1).size();
+            }
+        } catch (CompletionException e) {
+            errors.increment();
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return encodeError(requestId, "Suppression check unavailable: " + cause.getMessage());
+        }
+
+        int[][] advertiserOrdinals = new int[results.size()][];
+        for (int i = 0; i < advertiserOrdinals.length; i++) {
+            int[] row = new int[results.get(i).size()];
+            int j = 0;
+            for (String advertiserId : results.get(i)) {
+                row[j++] = ordinalOf(advertiserId);
+            }
+            advertiserOrdinals[i] = row;
+        }
+        // Read after assigning, so every ordinal in the reply is below the reported size
+        ByteBuffer frame = frame(bytes, CHECK_RESULT, requestId)
+                .putInt(advertiserCount)
+                .putInt(advertiserOrdinals.length);
+        for (int[] row : advertiserOrdinals) {
+            frame.putShort((short) row.length);
+            for (int ordinal : row) {
+                frame.putInt(ordinal);
+            }
+        }
+        return frame.flip();
+    }
+
+    private static ByteBuffer encodeError(int requestId, String message) {
+        byte[] text = message.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(text.length, Short.MAX_VALUE);
+        return frame(4 + HEADER_BYTES + 2 + length, ERROR, requestId)
+                .putShort((short) length)
+                .put(text, 0, length)
+                .flip();
+    }
+
+    private static ByteBuffer frame(int bytes, byte type, int requestId) {
+        return ByteBuffer.allocate(bytes)
+                .putInt(bytes - 4)
+                .put(type)
+                .putInt(requestId);
+    }
+
+    // ==================== ADVERTISER ORDINALS ====================
+
+    private int ordinalOf(String advertiserId) {
+        Integer ordinal = ordinals.get(advertiserId);
+        return ordinal != null ? ordinal : assignOrdinal(advertiserId);
+    }
+
+    /**
+     * The name is stored before the ordinal is published, so a dictionary read that
+     * sees the count never finds a gap.
+     */
+    private synchronized int assignOrdinal(String advertiserId) {
+        Integer existing = ordinals.get(advertiserId);
+        if (existing != null) {
+            return existing;
+        }
+        int ordinal = advertiserCount;
+        String[] names = advertisers;
+        if (ordinal == names.length) {
+            names = Arrays.copyOf(names, ordinal * 2);
+        }
+        names[ordinal] = advertiserId;
+        advertisers = names;
+        advertiserCount = ordinal + 1;
+        ordinals.put(advertiserId, ordinal);
+        return ordinal;
+    }
+}
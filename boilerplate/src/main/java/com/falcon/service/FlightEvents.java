@@ -0,0 +1,96 @@
+package com.falcon.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Custom JDK Flight Recorder events, under the "Falcon" category.
+ *
+ * They cost nothing measurable unless a recording enables them, e.g.
+ * {@code -XX:StartFlightRecording} at startup or {@code jcmd <pid> JFR.start} on a
+ * running node. Suppression checks are only committed when slower than
+ * {@code falcon.jfr.check-threshold-us}, so the hot path stays quiet in a
+ * recording and only tail latency shows up.
+ */
+final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    @Name("com.falcon.SuppressionCheck")
+    @Label("Suppression Check")
+    @Category({"Falcon", "Suppression"})
+    @Description("A suppression check slower than falcon.jfr.check-threshold-us")
+    @StackTrace(false)
+    static final class SuppressionCheck extends Event {
+        @Label("Detail")
+        boolean detail;
+
+        @Label("Storage")
+        String storage;
+
+        @Label("Suppressed Advertisers")
+        int suppressedAdvertisers;
+
+        @Label("Matched Lists")
+        int matchedLists;
+    }
+
+    @Name("com.falcon.IndexBuild")
+    @Label("Index Build")
+    @Category({"Falcon", "Index"})
+    @Description("Startup load of the suppression index, a rebuild of the sorted read index, or a rebuild that reclaims dead identifiers")
+    static final class IndexBuild extends Event {
+        @Label("Kind")
+        String kind;
+
+        @Label("Lists")
+        int lists;
+
+        @Label("Identifiers")
+        long identifiers;
+
+        @Label("Index Size")
+        @DataAmount
+        long bytes;
+    }
+
+    @Name("com.falcon.SnapshotSwap")
+    @Label("Snapshot Swap")
+    @Category({"Falcon", "Index"})
+    @Description("Every local list replaced by a verified binary snapshot")
+    static final class SnapshotSwap extends Event {
+        @Label("Sequence")
+        long seq;
+
+        @Label("Lists")
+        int lists;
+
+        @Label("Identifiers")
+        long identifiers;
+    }
+
+    @Name("com.falcon.BulkUpload")
+    @Label("Bulk Upload")
+    @Category({"Falcon", "Index"})
+    @Description("Identifiers written to the index by a list create, update or shard import")
+    @StackTrace(false)
+    static final class BulkUpload extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("List ID")
+        String listId;
+
+        @Label("Identifiers Before")
+        long previousIdentifiers;
+
+        @Label("Identifiers After")
+        long identifiers;
+    }
+}
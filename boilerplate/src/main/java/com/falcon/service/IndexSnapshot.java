@@ -0,0 +1,226 @@
+package com.falcon.service;
+
+import com.falcon.index.HashKeys;
+import com.falcon.index.PackedIdentifierList;
+import com.falcon.model.SuppressionList;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary snapshot of every suppression list at one change-stream sequence.
+ *
+ * Layout (big-endian):
+ * <pre>
+ *   int   magic "FSNP"        int   format version
+ *   long  seq                 str   leader epoch (format 2+)
+ *   long  written_at (epoch ms)
+ *   int   list count
+ *   per list:
+ *     str id, str advertiser_id, str name (-1 length = null)
+ *     long created_at (epoch ms, Long.MIN_VALUE = null)
+ *     int  hash count         hash count x 4 longs (decoded 64-hex key)
+ *     int  other count        other count x str (identifiers not in canonical form)
+ *   long  CRC32 of everything above
+ *   str = int byte length + UTF-8 bytes
+ * </pre>
+ *
+ * Canonical hashes take 32 bytes instead of 64 characters of JSON and are
+ * written in {@link PackedIdentifierList} order: sorted, then any other
+ * identifiers (lenient mode only). Both directions move key words in bulk
+ * between the packed list's {@code long[]} and the stream, so a snapshot never
+ * holds identifiers as strings.
+ *
+ * Format 1 snapshots, which predate leader epochs, are still read; their epoch is null.
+ */
+final class IndexSnapshot {
+
+    static final int MAGIC = 0x46534E50;
+    static final int FORMAT_VERSION = 2;
+    private static final int FIRST_VERSION_WITH_EPOCH = 2;
+    private static final int MAX_STRING_BYTES = 1 << 20;
+    // Key words moved per bulk read or write
+    private static final int CHUNK_WORDS = 8192;
+    // Key arrays start at most this large and grow as words arrive, so a corrupt count cannot force a huge allocation
+    private static final int MAX_INITIAL_WORDS = 1 << 22;
+
+    final long seq;
+    final String epoch;
+    final long writtenAtMillis;
+    final List<SuppressionList> lists;
+
+    private IndexSnapshot(long seq, String epoch, long writtenAtMillis, List<SuppressionList> lists) {
+        this.seq = seq;
+        this.epoch = epoch;
+        this.writtenAtMillis = writtenAtMillis;
+        this.lists = lists;
+    }
+
+    // ==================== WRITE ====================
+
+    /**
+     * @return number of identifiers written
+     */
+    static long write(OutputStream target, long seq, String epoch, List<SuppressionList> lists) throws IOException {
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(target, 1 << 16), new CRC32());
+        DataOutputStream out = new DataOutputStream(checked);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(seq);
+        writeString(out, epoch);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(lists.size());
+
+        long identifiers = 0;
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_WORDS * Long.BYTES);
+        for (SuppressionList list : lists) {
+            writeString(out, list.getId());
+            writeString(out, list.getAdvertiserId());
+            writeString(out, list.getName());
+            out.writeLong(list.getCreatedAt() != null ? list.getCreatedAt().toEpochMilli() : Long.MIN_VALUE);
+
+            // Stored lists are already packed: copy their key words as they are
+            PackedIdentifierList packed = PackedIdentifierList.of(list.getIdentifiers());
+            out.writeInt(packed.hashCount());
+            writeKeys(out, packed, chunk);
+            out.writeInt(packed.size() - packed.hashCount());
+            for (int i = packed.hashCount(); i < packed.size(); i++) {
+                writeString(out, packed.get(i));
+            }
+            identifiers += list.getIdentifiers().size();
+        }
+        out.flush();
+        out.writeLong(checked.getChecksum().getValue());
+        out.flush();
+        return identifiers;
+    }
+
+    private static void writeKeys(DataOutputStream out, PackedIdentifierList packed, ByteBuffer chunk) throws IOException {
+        LongBuffer view = chunk.asLongBuffer();
+        for (int i = 0; i < packed.hashCount(); i++) {
+            if (!view.hasRemaining()) {
+                out.write(chunk.array(), 0, view.position() * Long.BYTES);
+                view.clear();
+            }
+            for (int word = 0; word < HashKeys.WORDS; word++) {
+                view.put(packed.word(i, word));
+            }
+        }
+        out.write(chunk.array(), 0, view.position() * Long.BYTES);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    // ==================== READ ====================
+
+    /**
+     * Parse a snapshot, verifying magic, version and checksum before returning anything.
+     *
+     * @throws IOException if the stream is truncated, corrupt or of another format version
+     */
+    static IndexSnapshot read(InputStream source) throws IOException {
+        try {
+            return readVerified(source);
+        } catch (EOFException e) {
+            throw new IOException("Snapshot is truncated");
+        }
+    }
+
+    private static IndexSnapshot readVerified(InputStream source) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(new BufferedInputStream(source, 1 << 16), new CRC32());
+        DataInputStream in = new DataInputStream(checked);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not an index snapshot");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported snapshot format version " + version);
+        }
+        long seq = in.readLong();
+        String epoch = version >= FIRST_VERSION_WITH_EPOCH ? readString(in) : null;
+        long writtenAt = in.readLong();
+        int listCount = readCount(in);
+
+        List<SuppressionList> lists = new ArrayList<>(Math.min(listCount, 1 << 10));
+        byte[] chunk = new byte[CHUNK_WORDS * Long.BYTES];
+        for (int i = 0; i < listCount; i++) {
+            String id = readString(in);
+            String advertiserId = readString(in);
+            String name = readString(in);
+            long createdAt = in.readLong();
+
+            int hashes = readCount(in);
+            if (hashes > Integer.MAX_VALUE / HashKeys.WORDS) {
+                throw new IOException("Corrupt snapshot: hash count " + hashes);
+            }
+            long[] keys = readKeys(in, hashes * HashKeys.WORDS, chunk);
+            int otherCount = readCount(in);
+            List<String> others = new ArrayList<>(Math.min(otherCount, 1 << 10));
+            for (int o = 0; o < otherCount; o++) {
+                others.add(readString(in));
+            }
+            lists.add(new SuppressionList(id, advertiserId, name, PackedIdentifierList.ofKeys(keys, hashes, others),
+                    createdAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(createdAt)));
+        }
+
+        long expected = checked.getChecksum().getValue();
+        if (in.readLong() != expected) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        return new IndexSnapshot(seq, epoch, writtenAt, lists);
+    }
+
+    private static long[] readKeys(DataInputStream in, int words, byte[] chunk) throws IOException {
+        long[] keys = new long[Math.min(words, MAX_INITIAL_WORDS)];
+        LongBuffer view = ByteBuffer.wrap(chunk).asLongBuffer();
+        for (int done = 0; done < words; ) {
+            int n = Math.min(CHUNK_WORDS, words - done);
+            in.readFully(chunk, 0, n * Long.BYTES);
+            if (done + n > keys.length) {
+                keys = Arrays.copyOf(keys, (int) Math.min(words, 2L * keys.length));
+            }
+            view.clear();
+            view.get(keys, done, n);
+            done += n;
+        }
+        return keys;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new IOException("Corrupt snapshot: string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readCount(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt snapshot: negative count " + count);
+        }
+        return count;
+    }
+}
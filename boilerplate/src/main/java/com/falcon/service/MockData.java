@@ -0,0 +1,29 @@
+package com.falcon.service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Locates mock-data files: the configured directory ({@code falcon.mock-data.path})
+ * on disk first, then the classpath root as a fallback for packaged builds.
+ */
+final class MockData {
+
+    private MockData() {
+    }
+
+    static InputStream open(String directory, String fileName) throws IOException {
+        Path path = Path.of(directory, fileName);
+        if (Files.isReadable(path)) {
+            return Files.newInputStream(path);
+        }
+        InputStream inputStream = MockData.class.getClassLoader().getResourceAsStream(fileName);
+        if (inputStream == null) {
+            throw new FileNotFoundException("Could not find " + fileName + " in " + path.toAbsolutePath() + " or on the classpath");
+        }
+        return inputStream;
+    }
+}
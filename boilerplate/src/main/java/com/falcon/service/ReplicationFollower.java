@@ -0,0 +1,286 @@
+package com.falcon.service;
+
+import com.falcon.model.ChangeBatch;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Follower side of list replication: tails the leader's change stream.
+ *
+ * A fresh follower first loads a binary snapshot from
+ * {@code falcon.replication.snapshot-source} (the leader unless another replica is
+ * named) and takes the snapshot's sequence as its position. A single daemon thread
+ * then long-polls {@code /api/replication/changes} from there and applies each
+ * batch through {@link SuppressionService#applyChanges}. If the follower ever falls
+ * behind the leader's retained log it loads a snapshot again. So it does when the
+ * leader restarts: a batch from another leader epoch than the loaded snapshot's, or
+ * a leader head below the applied sequence, means the sequence numbers no longer
+ * line up. Until the new snapshot is in, the follower does not count as caught up.
+ * A snapshot source that is itself still on the old epoch is skipped in favour of
+ * the leader for the next attempt.
+ *
+ * Staleness is zero while the follower is caught up and waiting on the leader,
+ * and otherwise the time since it last was; /api/health turns 503 past the bound.
+ */
+@Service
+public class ReplicationFollower {
+
+    private final SuppressionService suppressionService;
+    private final SnapshotService snapshotService;
+    private final ReplicationLog replicationLog;
+    private final ObjectMapper objectMapper;
+    private final String leaderUrl;
+    private final String snapshotSource;
+    private final String followerId;
+    private final long pollWaitMs;
+    private final int batchSize;
+    private final long maxStalenessMs;
+    // Covers the response headers only; the body streams for as long as the transfer takes
+    private static final long SNAPSHOT_TIMEOUT_MS = 60_000;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    private volatile Thread tailer;
+    private volatile long appliedSeq;
+    private volatile String appliedEpoch;
+    private volatile long leaderSeq;
+    private volatile long caughtUpAtMillis;
+    private volatile boolean caughtUp;
+    private volatile long pollStartedMillis;
+    private volatile long bootstraps;
+    private volatile long epochChanges;
+    private volatile String lastError;
+
+    public ReplicationFollower(SuppressionService suppressionService,
+                               SnapshotService snapshotService,
+                               ReplicationLog replicationLog,
+                               ObjectMapper objectMapper,
+                               @Value("${falcon.replication.leader-url:}") String leaderUrl,
+                               @Value("${falcon.replication.snapshot-source:}") String snapshotSource,
+                               @Value("${falcon.replication.follower-id:}") String followerId,
+                               @Value("${server.port:8080}") int serverPort,
+                               @Value("${falcon.replication.poll-wait-ms:5000}") long pollWaitMs,
+                               @Value("${falcon.replication.batch-size:500}") int batchSize,
+                               @Value("${falcon.replication.max-staleness-ms:30000}") long maxStalenessMs) {
+        this.suppressionService = suppressionService;
+        this.snapshotService = snapshotService;
+        this.replicationLog = replicationLog;
+        this.objectMapper = objectMapper;
+        this.leaderUrl = trimSlash(leaderUrl);
+        this.snapshotSource = snapshotSource.isBlank() ? this.leaderUrl : trimSlash(snapshotSource);
+        this.followerId = followerId.isBlank() ? defaultFollowerId(serverPort) : followerId;
+        this.pollWaitMs = pollWaitMs;
+        this.batchSize = batchSize;
+        this.maxStalenessMs = maxStalenessMs;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!replicationLog.isFollower()) {
+            return;
+        }
+        if (leaderUrl.isBlank()) {
+            throw new IllegalArgumentException("falcon.replication.leader-url is required for followers");
+        }
+        Thread thread = new Thread(this::tail, "replication-follower");
+        thread.setDaemon(true);
+        tailer = thread;
+        thread.start();
+        System.out.println("✓ Following " + leaderUrl + " as " + followerId);
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread thread = tailer;
+        tailer = null;
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    // ==================== TAILING ====================
+
+    private void tail() {
+        long backoffMs = 100;
+        boolean needsSnapshot = true;
+        boolean snapshotFromLeader = false;
+        boolean freshSnapshot = false;
+        while (tailer != null) {
+            try {
+                if (needsSnapshot) {
+                    caughtUp = false;
+                    bootstrap(snapshotFromLeader ? leaderUrl : snapshotSource);
+                    needsSnapshot = false;
+                    freshSnapshot = true;
+                }
+                pollStartedMillis = System.currentTimeMillis();
+                ChangeBatch batch = poll();
+                if (batch.isTruncated()) {
+                    System.out.println("⚠ Seq " + appliedSeq + " is outside the leader's log (head " + batch.getLastSeq()
+                            + "); reloading snapshot");
+                    needsSnapshot = true;
+                    snapshotFromLeader = false;
+                    continue;
+                }
+                if (!Objects.equals(batch.getEpoch(), appliedEpoch) || batch.getLastSeq() < appliedSeq) {
+                    System.out.println("⚠ Leader epoch is " + batch.getEpoch() + " at seq " + batch.getLastSeq()
+                            + ", local data is " + appliedEpoch + " at seq " + appliedSeq + "; reloading snapshot");
+                    leaderSeq = batch.getLastSeq();
+                    epochChanges++;
+                    // The snapshot just loaded was already stale: its source has not moved on yet
+                    snapshotFromLeader = freshSnapshot;
+                    needsSnapshot = true;
+                    continue;
+                }
+                snapshotFromLeader = false;
+                freshSnapshot = false;
+                if (!batch.getEvents().isEmpty()) {
+                    suppressionService.applyChanges(batch.getEvents());
+                    appliedSeq = batch.getEvents().get(batch.getEvents().size() - 1).getSeq();
+                }
+                leaderSeq = batch.getLastSeq();
+                caughtUp = appliedSeq >= leaderSeq;
+                if (caughtUp) {
+                    caughtUpAtMillis = System.currentTimeMillis();
+                }
+                lastError = null;
+                backoffMs = 100;
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                // Connection failures often carry no message
+                lastError = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                caughtUp = false;
+                System.err.println("✗ Replication poll failed: " + lastError);
+                try {
+                    Thread.sleep(backoffMs);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMs = Math.min(backoffMs * 2, 5_000);
+            }
+        }
+    }
+
+    private ChangeBatch poll() throws IOException, InterruptedException {
+        String url = leaderUrl + "/api/replication/changes?after=" + appliedSeq + "&max=" + batchSize
+                + "&wait_ms=" + pollWaitMs + "&follower=" + URLEncoder.encode(followerId, StandardCharsets.UTF_8);
+        return objectMapper.readValue(get(url, pollWaitMs + 5_000, HttpResponse.BodyHandlers.ofByteArray()),
+                ChangeBatch.class);
+    }
+
+    /**
+     * Stream a snapshot from the source straight into the index; nothing changes locally
+     * unless the whole snapshot arrives intact.
+     */
+    private void bootstrap(String source) throws IOException, InterruptedException {
+        String url = source + "/api/replication/snapshot";
+        try (InputStream in = get(url, SNAPSHOT_TIMEOUT_MS, HttpResponse.BodyHandlers.ofInputStream())) {
+            appliedSeq = snapshotService.load(in, source);
+        }
+        appliedEpoch = suppressionService.changeEpoch();
+        bootstraps++;
+    }
+
+    private <T> T get(String url, long timeoutMs, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .timeout(Duration.ofMillis(timeoutMs))
+                .GET()
+                .build();
+        HttpResponse<T> response = client.send(request, handler);
+        if (response.statusCode() != 200) {
+            if (response.body() instanceof InputStream body) {
+                body.close();
+            }
+            throw new IOException("GET " + url + " returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    // ==================== STATUS ====================
+
+    public boolean isFollower() {
+        return replicationLog.isFollower();
+    }
+
+    public String leaderUrl() {
+        return leaderUrl;
+    }
+
+    public boolean hasLoadedSnapshot() {
+        return bootstraps > 0;
+    }
+
+    /**
+     * Zero while caught up with a long-poll outstanding (the leader answers it as soon as
+     * anything changes); otherwise the time since the follower was last caught up.
+     */
+    public long stalenessMs() {
+        long now = System.currentTimeMillis();
+        if (caughtUp && now - pollStartedMillis <= pollWaitMs + 1_000) {
+            return 0;
+        }
+        long caughtUpAt = caughtUpAtMillis;
+        return caughtUpAt == 0 ? Long.MAX_VALUE : now - caughtUpAt;
+    }
+
+    /**
+     * True once the follower has caught up and has not been out of date for longer than the configured bound.
+     */
+    public boolean isWithinStalenessBound() {
+        return stalenessMs() <= maxStalenessMs;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("role", "follower");
+        status.put("follower_id", followerId);
+        status.put("leader", leaderUrl);
+        status.put("epoch", appliedEpoch);
+        status.put("applied_seq", appliedSeq);
+        status.put("leader_seq", leaderSeq);
+        status.put("lag_events", Math.max(0, leaderSeq - appliedSeq));
+        long staleness = stalenessMs();
+        status.put("staleness_ms", staleness == Long.MAX_VALUE ? -1 : staleness);
+        status.put("within_staleness_bound", isWithinStalenessBound());
+        status.put("bootstraps", bootstraps);
+        status.put("epoch_changes", epochChanges);
+        if (lastError != null) {
+            status.put("last_error", lastError);
+        }
+        return status;
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+
+    private static String defaultFollowerId(int serverPort) {
+        try {
+            return InetAddress.getLocalHost().getHostName() + ":" + serverPort;
+        } catch (IOException e) {
+            return "follower:" + serverPort;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.falcon.service;
+
+import com.falcon.model.ChangeBatch;
+import com.falcon.model.ChangeEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Leader-side change stream for list mutations.
+ *
+ * Every mutation applied by {@link SuppressionService} on the leader is appended
+ * here (inside the service's write lock, so sequence order is apply order) and
+ * kept in a fixed-size ring buffer. Followers long-poll {@link #read} with the
+ * last sequence they applied, which doubles as their acknowledgement; that is
+ * what per-follower lag is computed from.
+ *
+ * Sequence numbers live only as long as the process: a restarted leader counts
+ * from 1 again. Each run therefore draws a random epoch that travels with every
+ * batch and snapshot, so a follower can tell a new leader run from the one it
+ * was tailing and bootstrap again instead of skipping or misapplying events.
+ *
+ * Roles ({@code falcon.replication.role}): {@code standalone} (default, nothing is
+ * logged), {@code leader}, {@code follower}.
+ */
+@Service
+public class ReplicationLog {
+
+    private final String role;
+    private final String epoch = UUID.randomUUID().toString();
+    private final ChangeEvent[] ring;
+    private final Map<String, FollowerProgress> followers = new ConcurrentHashMap<>();
+    private long lastSeq;
+
+    public ReplicationLog(@Value("${falcon.replication.role:standalone}") String role,
+                          @Value("${falcon.replication.log-capacity:100000}") int capacity) {
+        this.role = role.trim().toLowerCase(Locale.ROOT);
+        if (!List.of("standalone", "leader", "follower").contains(this.role)) {
+            throw new IllegalArgumentException("falcon.replication.role must be standalone, leader or follower");
+        }
+        this.ring = new ChangeEvent[isLeader() ? Math.max(1, capacity) : 1];
+    }
+
+    public String role() {
+        return role;
+    }
+
+    public boolean isLeader() {
+        return "leader".equals(role);
+    }
+
+    public boolean isFollower() {
+        return "follower".equals(role);
+    }
+
+    /**
+     * This leader run's identifier; sequence numbers are only comparable within one epoch.
+     */
+    public String epoch() {
+        return epoch;
+    }
+
+    // ==================== APPEND ====================
+
+    /**
+     * Assign the next sequence number and publish the event to waiting followers.
+     * No-op unless this node is the leader.
+     */
+    public synchronized void append(ChangeEvent event) {
+        if (!isLeader()) {
+            return;
+        }
+        event.setSeq(++lastSeq);
+        event.setTimestampMs(System.currentTimeMillis());
+        ring[(int) (lastSeq % ring.length)] = event;
+        notifyAll();
+    }
+
+    public synchronized long lastSeq() {
+        return lastSeq;
+    }
+
+    private long oldestRetainedSeq() {
+        return Math.max(1, lastSeq - ring.length + 1);
+    }
+
+    // ==================== TAILING ====================
+
+    /**
+     * Events after {@code afterSeq}, waiting up to {@code waitMs} for the first one.
+     *
+     * @param followerId identifies the caller for lag reporting (may be null)
+     */
+    public ChangeBatch read(long afterSeq, int max, long waitMs, String followerId) throws InterruptedException {
+        if (followerId != null) {
+            followers.computeIfAbsent(followerId, k -> new FollowerProgress()).acknowledge(afterSeq);
+        }
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + waitMs;
+            long remaining = waitMs;
+            // A position past the head was handed out by an earlier run of this leader
+            if (afterSeq > lastSeq) {
+                return new ChangeBatch(List.of(), epoch, lastSeq, true);
+            }
+            while (lastSeq <= afterSeq && remaining > 0) {
+                wait(remaining);
+                remaining = deadline - System.currentTimeMillis();
+            }
+            if (afterSeq + 1 < oldestRetainedSeq()) {
+                return new ChangeBatch(List.of(), epoch, lastSeq, true);
+            }
+            long end = Math.min(lastSeq, afterSeq + Math.max(1, max));
+            List<ChangeEvent> events = new ArrayList<>((int) Math.max(0, end - afterSeq));
+            for (long seq = afterSeq + 1; seq <= end; seq++) {
+                events.add(ring[(int) (seq % ring.length)]);
+            }
+            return new ChangeBatch(events, epoch, lastSeq, false);
+        }
+    }
+
+    /**
+     * Role, log position and per-follower lag (leader and standalone nodes).
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("role", role);
+        if (isLeader()) {
+            status.put("epoch", epoch);
+            status.put("last_seq", lastSeq());
+            status.put("followers", followerLag());
+        }
+        return status;
+    }
+
+    /**
+     * Per-follower replication lag, keyed by follower ID.
+     */
+    public Map<String, Object> followerLag() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> lag = new TreeMap<>();
+        synchronized (this) {
+            followers.forEach((id, progress) -> {
+                long acked = progress.ackedSeq;
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("acked_seq", acked);
+                entry.put("lag_events", lastSeq - acked);
+                // Age of the oldest event the follower has not acknowledged yet
+                long lagMs = 0;
+                if (acked < lastSeq && acked + 1 >= oldestRetainedSeq()) {
+                    lagMs = now - ring[(int) ((acked + 1) % ring.length)].getTimestampMs();
+                }
+                entry.put("lag_ms", lagMs);
+                entry.put("last_poll_ms_ago", now - progress.lastPollMillis);
+                lag.put(id, entry);
+            });
+        }
+        return lag;
+    }
+
+    private static final class FollowerProgress {
+        volatile long ackedSeq;
+        volatile long lastPollMillis;
+
+        void acknowledge(long seq) {
+            ackedSeq = seq;
+            lastPollMillis = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.falcon.service;
+
+import com.falcon.model.Banner;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ad serving counters: fill rate, why requests went unfilled, and who was shown
+ * or suppressed how often.
+ *
+ * Every counter is a {@link LongAdder}, which stripes its cells across
+ * contending threads, so request threads recording at the same time do not
+ * fight over one cache line. Per-advertiser and per-banner counters live in
+ * concurrent maps that are only written the first time an ID is seen; after
+ * that a record is a lock-free map read plus an adder increment. Counters are
+ * never reset and survive inventory reloads, as Prometheus counters must.
+ *
+ * No-fill causes:
+ *
+ *   all_suppressed - the placement had candidates, but every candidate's
+ *                    advertiser was suppressed for the user
+ *   no_inventory   - the placement is unknown or has no servable banners
+ *   shed           - turned away by admission control before any lookup
+ */
+@Service
+public class ServingMetrics {
+
+    public enum NoFillReason {
+        ALL_SUPPRESSED("all_suppressed"),
+        NO_INVENTORY("no_inventory"),
+        SHED("shed");
+
+        private final String label;
+
+        NoFillReason(String label) {
+            this.label = label;
+        }
+    }
+
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+    private final LongAdder[] noFills = new LongAdder[NoFillReason.values().length];
+    private final ConcurrentHashMap<String, LongAdder> impressionsByAdvertiser = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, BannerCounter> impressionsByBanner = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LongAdder> suppressionsByAdvertiser = new ConcurrentHashMap<>();
+
+    public ServingMetrics() {
+        for (int i = 0; i < noFills.length; i++) {
+            noFills[i] = new LongAdder();
+        }
+    }
+
+    // ==================== RECORDING (HOT PATH) ====================
+
+    /**
+     * Record an ad request that got a banner.
+     */
+    public void recordFill(Banner banner, Collection<String> suppressedAdvertisers) {
+        requests.increment();
+        fills.increment();
+        counter(impressionsByAdvertiser, banner.getAdvertiserId()).increment();
+        BannerCounter bannerCounter = impressionsByBanner.get(banner.getId());
+        if (bannerCounter == null) {
+            bannerCounter = impressionsByBanner.computeIfAbsent(banner.getId(),
+                    id -> new BannerCounter(banner.getAdvertiserId()));
+        }
+        bannerCounter.count.increment();
+        recordSuppressions(suppressedAdvertisers);
+    }
+
+    /**
+     * Record an ad request that got no banner.
+     */
+    public void recordNoFill(NoFillReason reason, Collection<String> suppressedAdvertisers) {
+        requests.increment();
+        noFills[reason.ordinal()].increment();
+        recordSuppressions(suppressedAdvertisers);
+    }
+
+    private void recordSuppressions(Collection<String> suppressedAdvertisers) {
+        if (suppressedAdvertisers == null) {
+            return;
+        }
+        for (String advertiserId : suppressedAdvertisers) {
+            counter(suppressionsByAdvertiser, advertiserId).increment();
+        }
+    }
+
+    private static LongAdder counter(ConcurrentHashMap<String, LongAdder> counters, String key) {
+        // get() first: computeIfAbsent may lock the bin even when the key is present
+        LongAdder counter = counters.get(key);
+        return counter != null ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    // ==================== EXPORT ====================
+
+    public Map<String, Object> status() {
+        long requestCount = requests.sum();
+        long fillCount = fills.sum();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("requests", requestCount);
+        status.put("fills", fillCount);
+        status.put("fill_rate", requestCount == 0 ? 0.0 : (double) fillCount / requestCount);
+        Map<String, Long> noFill = new LinkedHashMap<>();
+        for (NoFillReason reason : NoFillReason.values()) {
+            noFill.put(reason.label, noFills[reason.ordinal()].sum());
+        }
+        status.put("no_fill", noFill);
+        status.put("impressions_by_advertiser", sums(impressionsByAdvertiser));
+        Map<String, Long> byBanner = new TreeMap<>();
+        impressionsByBanner.forEach((id, counter) -> byBanner.put(id, counter.count.sum()));
+        status.put("impressions_by_banner", byBanner);
+        status.put("suppressions_by_advertiser", sums(suppressionsByAdvertiser));
+        return status;
+    }
+
+    /**
+     * The counters in the Prometheus text exposition format (version 0.0.4).
+     */
+    public String prometheus() {
+        StringBuilder out = new StringBuilder(1024);
+        header(out, "falcon_ad_requests_total", "Ad requests answered, filled or not.");
+        out.append("falcon_ad_requests_total ").append(requests.sum()).append('\n');
+        header(out, "falcon_ad_fills_total", "Ad requests answered with a banner.");
+        out.append("falcon_ad_fills_total ").append(fills.sum()).append('\n');
+        header(out, "falcon_ad_no_fills_total", "Ad requests answered without a banner, by cause.");
+        for (NoFillReason reason : NoFillReason.values()) {
+            out.append("falcon_ad_no_fills_total{reason=\"").append(reason.label).append("\"} ")
+                    .append(noFills[reason.ordinal()].sum()).append('\n');
+        }
+        header(out, "falcon_advertiser_impressions_total", "Banners served, by advertiser.");
+        sums(impressionsByAdvertiser).forEach((id, count) -> {
+            out.append("falcon_advertiser_impressions_total{advertiser_id=\"");
+            escape(out, id).append("\"} ").append(count).append('\n');
+        });
+        header(out, "falcon_banner_impressions_total", "Banners served, by banner.");
+        new TreeMap<>(impressionsByBanner).forEach((id, counter) -> {
+            out.append("falcon_banner_impressions_total{banner_id=\"");
+            escape(out, id).append("\",advertiser_id=\"");
+            escape(out, counter.advertiserId).append("\"} ").append(counter.count.sum()).append('\n');
+        });
+        header(out, "falcon_advertiser_suppressions_total", "Ad requests that suppressed an advertiser for the user.");
+        sums(suppressionsByAdvertiser).forEach((id, count) -> {
+            out.append("falcon_advertiser_suppressions_total{advertiser_id=\"");
+            escape(out, id).append("\"} ").append(count).append('\n');
+        });
+        return out.toString();
+    }
+
+    private static Map<String, Long> sums(ConcurrentHashMap<String, LongAdder> counters) {
+        Map<String, Long> sums = new TreeMap<>();
+        counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+        return sums;
+    }
+
+    private static void header(StringBuilder out, String name, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+    }
+
+    private static StringBuilder escape(StringBuilder out, String labelValue) {
+        for (int i = 0; i < labelValue.length(); i++) {
+            char c = labelValue.charAt(i);
+            switch (c) {
+                case '\\' -> out.append("\\\\");
+                case '"' -> out.append("\\\"");
+                case '\n' -> out.append("\\n");
+                default -> out.append(c);
+            }
+        }
+        return out;
+    }
+
+    private static final class BannerCounter {
+        final String advertiserId;
+        final LongAdder count = new LongAdder();
+
+        BannerCounter(String advertiserId) {
+            this.advertiserId = advertiserId;
+        }
+    }
+}
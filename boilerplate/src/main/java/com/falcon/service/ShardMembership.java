@@ -0,0 +1,293 @@
+package com.falcon.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Partition ownership for sharded mode.
+ *
+ * Identifiers fall into 256 partitions by their leading byte (the first two hex
+ * characters of the hash). Each partition is owned by one node, chosen by
+ * rendezvous hashing over the member URLs, so a membership change only moves
+ * the partitions whose winner changed (about 1/N of them).
+ *
+ * During a rebalance a node proxies lookups for partitions it gained to their
+ * previous owner until it has imported them, and keeps serving partitions it lost
+ * until their new owner confirms the import (plus the handoff grace period).
+ *
+ * With {@code falcon.shard.nodes} empty, sharding is off and this node owns everything.
+ * A node whose own URL is not in the list joins the cluster owning nothing: it
+ * routes every lookup and takes partitions only once a membership change adds it.
+ */
+@Service
+public class ShardMembership {
+
+    public static final int PARTITIONS = 256;
+
+    private final String self;
+    private volatile Assignment assignment;
+
+    public ShardMembership(@Value("${falcon.shard.self:}") String self,
+                           @Value("${falcon.shard.nodes:}") String nodes) {
+        this.self = normalize(self);
+        List<String> members = parseNodes(nodes);
+        if (!members.isEmpty() && this.self.isEmpty()) {
+            throw new IllegalArgumentException("falcon.shard.self is required when falcon.shard.nodes is set");
+        }
+        boolean[] stored = new boolean[PARTITIONS];
+        String[] owners = ownersFor(members);
+        for (int p = 0; p < PARTITIONS; p++) {
+            stored[p] = members.isEmpty() || this.self.equals(owners[p]);
+        }
+        this.assignment = new Assignment(members, owners, new String[PARTITIONS], stored);
+    }
+
+    // ==================== ROUTING ====================
+
+    public boolean isEnabled() {
+        return !assignment.nodes.isEmpty();
+    }
+
+    public String self() {
+        return self;
+    }
+
+    public List<String> nodes() {
+        return assignment.nodes;
+    }
+
+    /**
+     * @return the node that owns this identifier's partition, or null when sharding is off
+     */
+    public String ownerOf(String identifier) {
+        return assignment.owners[partitionOf(identifier)];
+    }
+
+    /**
+     * @return the previous owner while this node is still importing the identifier's partition, else null
+     */
+    public String handoffSourceOf(String identifier) {
+        return assignment.handoffFrom[partitionOf(identifier)];
+    }
+
+    /**
+     * Whether this node keeps this identifier (owned, or lost but still within the handoff grace period).
+     */
+    public boolean stores(String identifier) {
+        return storesPartition(partitionOf(identifier));
+    }
+
+    public boolean storesPartition(int partition) {
+        return assignment.stored[partition];
+    }
+
+    public int ownedPartitionCount() {
+        Assignment current = assignment;
+        int owned = 0;
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (current.nodes.isEmpty() || self.equals(current.owners[p])) {
+                owned++;
+            }
+        }
+        return owned;
+    }
+
+    public int pendingHandoffCount() {
+        int pending = 0;
+        for (String source : assignment.handoffFrom) {
+            if (source != null) {
+                pending++;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Partition of an identifier: its leading byte for hex hashes, a stable string hash otherwise.
+     */
+    public static int partitionOf(String identifier) {
+        if (identifier.length() >= 2) {
+            int hi = Character.digit(identifier.charAt(0), 16);
+            int lo = Character.digit(identifier.charAt(1), 16);
+            if (hi >= 0 && lo >= 0) {
+                return hi << 4 | lo;
+            }
+        }
+        int h = identifier.hashCode() * 0x9E3779B9;
+        return (h ^ h >>> 16) & (PARTITIONS - 1);
+    }
+
+    // ==================== MEMBERSHIP CHANGES ====================
+
+    /**
+     * Install a new member list.
+     *
+     * @return partitions this node gained, grouped by their previous owner
+     */
+    public synchronized Map<String, List<Integer>> update(List<String> nodes) {
+        List<String> members = new ArrayList<>();
+        for (String node : nodes) {
+            String normalized = normalize(node);
+            if (!normalized.isEmpty() && !members.contains(normalized)) {
+                members.add(normalized);
+            }
+        }
+        if (!members.contains(self)) {
+            throw new IllegalArgumentException("Member list must include this node (" + self + ")");
+        }
+
+        Assignment previous = assignment;
+        String[] owners = ownersFor(members);
+        String[] handoffFrom = previous.handoffFrom.clone();
+        boolean[] stored = previous.stored.clone();
+        Map<String, List<Integer>> gained = new LinkedHashMap<>();
+        for (int p = 0; p < PARTITIONS; p++) {
+            String before = previous.nodes.isEmpty() ? self : previous.owners[p];
+            if (self.equals(owners[p]) && !self.equals(before)) {
+                handoffFrom[p] = before;
+                stored[p] = true;
+                gained.computeIfAbsent(before, k -> new ArrayList<>()).add(p);
+            } else if (!self.equals(owners[p]) && handoffFrom[p] != null) {
+                // Lost before its import finished: what is here is incomplete, so nobody may import or read it
+                handoffFrom[p] = null;
+                stored[p] = false;
+            }
+        }
+        assignment = new Assignment(List.copyOf(members), owners, handoffFrom, stored);
+        return gained;
+    }
+
+    /**
+     * Of {@code partitions}, those this node still has to import from {@code source}.
+     */
+    public List<Integer> awaitingHandoff(String source, Collection<Integer> partitions) {
+        String[] handoffFrom = assignment.handoffFrom;
+        List<Integer> awaiting = new ArrayList<>();
+        for (int p : partitions) {
+            if (source.equals(handoffFrom[p])) {
+                awaiting.add(p);
+            }
+        }
+        return awaiting;
+    }
+
+    /**
+     * Mark partitions imported from {@code source} as served locally; partitions a
+     * later membership change assigned elsewhere meanwhile are left alone.
+     */
+    public synchronized void completeHandoff(String source, Collection<Integer> partitions) {
+        Assignment current = assignment;
+        String[] handoffFrom = current.handoffFrom.clone();
+        for (int p : partitions) {
+            if (source.equals(handoffFrom[p])) {
+                handoffFrom[p] = null;
+            }
+        }
+        assignment = new Assignment(current.nodes, current.owners, handoffFrom, current.stored);
+    }
+
+    /**
+     * Give up on every pending import and serve those partitions from local data
+     * (for when a previous owner is gone for good and its lists were re-uploaded).
+     *
+     * @return number of partitions whose import was abandoned
+     */
+    public synchronized int abandonHandoffs() {
+        Assignment current = assignment;
+        int abandoned = 0;
+        for (String source : current.handoffFrom) {
+            if (source != null) {
+                abandoned++;
+            }
+        }
+        assignment = new Assignment(current.nodes, current.owners, new String[PARTITIONS], current.stored);
+        return abandoned;
+    }
+
+    /**
+     * Stop storing the given partitions, unless this node owns them again by now.
+     */
+    public synchronized void releasePartitions(Collection<Integer> partitions) {
+        Assignment current = assignment;
+        boolean[] stored = current.stored.clone();
+        for (int p : partitions) {
+            if (!current.nodes.isEmpty() && !self.equals(current.owners[p])) {
+                stored[p] = false;
+            }
+        }
+        assignment = new Assignment(current.nodes, current.owners, current.handoffFrom, stored);
+    }
+
+    // ==================== RENDEZVOUS HASHING ====================
+
+    private static String[] ownersFor(List<String> nodes) {
+        String[] owners = new String[PARTITIONS];
+        if (nodes.isEmpty()) {
+            return owners;
+        }
+        long[] nodeHashes = new long[nodes.size()];
+        for (int n = 0; n < nodes.size(); n++) {
+            nodeHashes[n] = fnv64(nodes.get(n));
+        }
+        for (int p = 0; p < PARTITIONS; p++) {
+            int best = 0;
+            long bestScore = Long.MIN_VALUE;
+            for (int n = 0; n < nodes.size(); n++) {
+                long score = mix64(nodeHashes[n] ^ (p + 1) * 0x9E3779B97F4A7C15L);
+                if (score > bestScore) {
+                    bestScore = score;
+                    best = n;
+                }
+            }
+            owners[p] = nodes.get(best);
+        }
+        return owners;
+    }
+
+    private static long fnv64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h = (h ^ s.charAt(i)) * 0x100000001b3L;
+        }
+        return h;
+    }
+
+    // SplitMix64 finalizer
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static List<String> parseNodes(String nodes) {
+        List<String> members = new ArrayList<>();
+        for (String node : nodes.split(",")) {
+            String normalized = normalize(node);
+            if (!normalized.isEmpty() && !members.contains(normalized)) {
+                members.add(normalized);
+            }
+        }
+        return List.copyOf(members);
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url == null ? "" : url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    private static final class Assignment {
+        final List<String> nodes;
+        final String[] owners;        // partition -> owning node
+        final String[] handoffFrom;   // partition -> previous owner while this node imports it
+        final boolean[] stored;       // partitions whose identifiers this node keeps
+
+        Assignment(List<String> nodes, String[] owners, String[] handoffFrom, boolean[] stored) {
+            this.nodes = nodes;
+            this.owners = owners;
+            this.handoffFrom = handoffFrom;
+            this.stored = stored;
+        }
+    }
+}
@@ -0,0 +1,621 @@
+package com.falcon.service;
+
+import com.falcon.model.SuppressionCheckResult;
+import com.falcon.model.SuppressionList;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Routes suppression lookups and list writes between shard nodes.
+ *
+ * Lookups go to the partition owner: answered locally when this node owns the
+ * hash, otherwise one keep-alive HTTP GET to {@code /api/shard/lookup/{hash}},
+ * whose reply is the comma-separated advertiser IDs in plain text.
+ *
+ * List writes are applied locally and then fanned out to every peer with the
+ * {@link #FORWARDED_HEADER} set; each node keeps the identifiers it stores.
+ * Every peer has an ordered outbox, so a write a peer misses is retried rather
+ * than lost, and the caller is told which peers do not have it yet.
+ * Membership changes pull newly owned partitions from their previous owners, which
+ * release them {@code falcon.shard.handoff-grace-ms} after the import is confirmed.
+ */
+@Service
+public class ShardRouter {
+
+    public static final String FORWARDED_HEADER = "X-Falcon-Forwarded";
+    // On a write's response: peers it has not reached yet
+    public static final String PENDING_PEERS_HEADER = "X-Falcon-Pending-Peers";
+
+    private static final long MAX_IMPORT_RETRY_MS = 60_000;
+
+    private final SuppressionService suppressionService;
+    private final ShardMembership membership;
+    private final ObjectMapper objectMapper;
+    private final Duration timeout;
+    private final long handoffGraceMs;
+    private final int maxPendingForwards;
+    private final long maxForwardBackoffMs;
+    private final HttpClient client;
+    private final Map<String, Outbox> outboxes = new ConcurrentHashMap<>();
+    private final ExecutorService forwardExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "shard-forward");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final ScheduledExecutorService handoffScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "shard-handoff");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ShardRouter(SuppressionService suppressionService,
+                       ShardMembership membership,
+                       ObjectMapper objectMapper,
+                       @Value("${falcon.shard.timeout-ms:200}") long timeoutMs,
+                       @Value("${falcon.shard.handoff-grace-ms:30000}") long handoffGraceMs,
+                       @Value("${falcon.shard.forward.max-pending:1000}") int maxPendingForwards,
+                       @Value("${falcon.shard.forward.max-backoff-ms:30000}") long maxForwardBackoffMs) {
+        this.suppressionService = suppressionService;
+        this.membership = membership;
+        this.objectMapper = objectMapper;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.handoffGraceMs = handoffGraceMs;
+        this.maxPendingForwards = maxPendingForwards;
+        this.maxForwardBackoffMs = maxForwardBackoffMs;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        handoffScheduler.shutdownNow();
+        forwardExecutor.shutdownNow();
+    }
+
+    public boolean isEnabled() {
+        return membership.isEnabled();
+    }
+
+    // ==================== LOOKUPS ====================
+
+    /**
+     * Check suppression on whichever node owns the hash.
+     *
+     * @param emailHash a normalized email hash
+     * @throws UncheckedIOException if the owning node cannot be reached
+     */
+    public SuppressionCheckResult checkSuppression(String emailHash) {
+        return checkSuppression(emailHash, false);
+    }
+
+    /**
+     * @param detail also report the IDs of the lists containing the hash
+     */
+    public SuppressionCheckResult checkSuppression(String emailHash, boolean detail) {
+        if (!membership.isEnabled()) {
+            return suppressionService.checkSuppression(emailHash, detail);
+        }
+        if (!detail) {
+            return await(checkSuppressionAsync(emailHash));
+        }
+        String owner = membership.ownerOf(emailHash);
+        return membership.self().equals(owner) ? checkOwned(emailHash, detail) : remoteCheck(owner, emailHash, detail);
+    }
+
+    /**
+     * Answer a lookup this node owns; while the partition is still being imported,
+     * ask its previous owner instead.
+     */
+    public SuppressionCheckResult checkOwned(String emailHash, boolean detail) {
+        if (!membership.stores(emailHash)) {
+            // Released, or never fully imported: an empty answer here would read as "not suppressed"
+            throw new UncheckedIOException(new IOException("Partition of " + emailHash + " is not stored on " + membership.self()));
+        }
+        String source = membership.handoffSourceOf(emailHash);
+        return source != null
+                ? remoteCheck(source, emailHash, detail)
+                : suppressionService.checkSuppression(emailHash, detail);
+    }
+
+    /**
+     * Like {@link #checkSuppression(String)}, without blocking the caller on a remote owner.
+     * In-memory answers come back already completed (see
+     * {@link SuppressionService#checkSuppressionAsync}); a remote one completes when the owner
+     * replies, or exceptionally with {@link UncheckedIOException} if it cannot be reached.
+     * Concurrent remote lookups of the same hash share one request to the owner.
+     */
+    public CompletableFuture<SuppressionCheckResult> checkSuppressionAsync(String emailHash) {
+        String node = null;
+        if (membership.isEnabled()) {
+            String owner = membership.ownerOf(emailHash);
+            node = membership.self().equals(owner) ? membership.handoffSourceOf(emailHash) : owner;
+        }
+        if (node == null) {
+            return suppressionService.checkSuppressionAsync(emailHash);
+        }
+        String owner = node;
+        return suppressionService.coalesce(emailHash, () -> remoteCheckAsync(owner, emailHash));
+    }
+
+    private CompletableFuture<SuppressionCheckResult> remoteCheckAsync(String node, String emailHash) {
+        long startTime = System.nanoTime();
+        return client.sendAsync(lookupRequest(node, emailHash, false), HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    if (error != null) {
+                        Throwable cause = error instanceof CompletionException && error.getCause() != null
+                                ? error.getCause() : error;
+                        throw new UncheckedIOException("Shard " + node + " unavailable: " + cause.getMessage(),
+                                cause instanceof IOException io ? io : new IOException(cause));
+                    }
+                    if (response.statusCode() >= 300) {
+                        throw new UncheckedIOException(new IOException(node + " returned " + response.statusCode()));
+                    }
+                    return parseLookup(response.body(), false, startTime);
+                });
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private SuppressionCheckResult remoteCheck(String node, String emailHash, boolean detail) {
+        long startTime = System.nanoTime();
+        return parseLookup(send(lookupRequest(node, emailHash, detail), node), detail, startTime);
+    }
+
+    private HttpRequest lookupRequest(String node, String emailHash, boolean detail) {
+        String path = "/api/shard/lookup/" + emailHash + (detail ? "?detail=true" : "");
+        return HttpRequest.newBuilder(URI.create(node + path))
+                .timeout(timeout)
+                .GET()
+                .build();
+    }
+
+    /**
+     * Line 1: advertiser IDs; line 2 (detail only): list IDs.
+     */
+    private static SuppressionCheckResult parseLookup(String body, boolean detail, long startTime) {
+        String[] lines = body.split("\n", -1);
+        Set<String> advertisers = parseIds(lines[0]);
+        Set<String> listIds = detail ? parseIds(lines.length > 1 ? lines[1] : "") : null;
+        return new SuppressionCheckResult(advertisers, listIds, (System.nanoTime() - startTime) / 1_000_000);
+    }
+
+    private static Set<String> parseIds(String line) {
+        return line.isEmpty()
+                ? Collections.emptySet()
+                : Collections.unmodifiableSet(new TreeSet<>(Arrays.asList(line.split(","))));
+    }
+
+    // ==================== WRITE FAN-OUT ====================
+
+    /**
+     * Replay a list write on every peer.
+     *
+     * @return peers that have not acknowledged the write yet; it stays queued for them
+     * @see Outbox
+     */
+    public List<String> forward(String method, String path, Object body) {
+        if (!membership.isEnabled()) {
+            return List.of();
+        }
+        byte[] json;
+        try {
+            json = body == null ? null : objectMapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return forward(new ForwardedWrite(method, path, "application/json", timeout.multipliedBy(10),
+                json == null ? HttpRequest.BodyPublishers::noBody : () -> HttpRequest.BodyPublishers.ofByteArray(json),
+                null));
+    }
+
+    /**
+     * Replay a write whose body was spooled to {@code file} (a streamed upload) on every
+     * peer. Peers parse and apply the whole upload before answering, hence the long timeout.
+     * The router takes over the file and deletes it once no peer still needs it.
+     *
+     * @return peers that have not acknowledged the write yet; it stays queued for them
+     */
+    public List<String> forwardFile(String method, String path, Path file, String contentType) {
+        return forward(new ForwardedWrite(method, path, contentType, Duration.ofMinutes(10),
+                () -> HttpRequest.BodyPublishers.ofFile(file), file));
+    }
+
+    /**
+     * The peer whose outbox is full, or null if every peer keeps up. While one is
+     * full, new list writes are refused rather than applied here without it.
+     */
+    public String backloggedPeer() {
+        for (Outbox outbox : outboxes.values()) {
+            if (outbox.pending() >= maxPendingForwards) {
+                return outbox.peer;
+            }
+        }
+        return null;
+    }
+
+    public Map<String, Object> forwardStatus() {
+        Map<String, Object> peers = new LinkedHashMap<>();
+        for (Outbox outbox : outboxes.values()) {
+            peers.put(outbox.peer, outbox.status());
+        }
+        return peers;
+    }
+
+    private List<String> forward(ForwardedWrite write) {
+        List<String> peers = new ArrayList<>();
+        for (String node : membership.nodes()) {
+            if (!node.equals(membership.self())) {
+                peers.add(node);
+            }
+        }
+        outboxes.keySet().retainAll(peers);
+        write.holders.set(peers.size() + 1);
+        Map<String, CompletableFuture<Boolean>> attempts = new LinkedHashMap<>();
+        for (String peer : peers) {
+            attempts.put(peer, outboxes.computeIfAbsent(peer, Outbox::new).enqueue(write));
+        }
+        write.release();
+
+        // Peers are sent to in parallel; wait for all of them up to one request timeout
+        List<String> pending = new ArrayList<>();
+        long deadline = System.nanoTime() + write.timeout.toNanos();
+        for (Map.Entry<String, CompletableFuture<Boolean>> attempt : attempts.entrySet()) {
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                if (!attempt.getValue().get(remaining, TimeUnit.NANOSECONDS)) {
+                    pending.add(attempt.getKey());
+                }
+            } catch (TimeoutException | ExecutionException e) {
+                pending.add(attempt.getKey());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.add(attempt.getKey());
+            }
+        }
+        return pending;
+    }
+
+    private interface BodySource {
+        HttpRequest.BodyPublisher publisher() throws IOException;
+    }
+
+    /**
+     * One write to replay, shared by every peer's outbox; a spooled body file is
+     * deleted when the last holder lets go of it.
+     */
+    private static final class ForwardedWrite {
+        final String method;
+        final String path;
+        final String contentType;
+        final Duration timeout;
+        final BodySource body;
+        final Path file;
+        final AtomicInteger holders = new AtomicInteger(1);
+
+        ForwardedWrite(String method, String path, String contentType, Duration timeout, BodySource body, Path file) {
+            this.method = method;
+            this.path = path;
+            this.contentType = contentType;
+            this.timeout = timeout;
+            this.body = body;
+            this.file = file;
+        }
+
+        void release() {
+            if (holders.decrementAndGet() == 0 && file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException ignored) {
+                    // Temporary file
+                }
+            }
+        }
+    }
+
+    private record QueuedWrite(ForwardedWrite write, CompletableFuture<Boolean> firstAttempt) {
+    }
+
+    /**
+     * Writes on their way to one peer, oldest first.
+     *
+     * One sender at a time drains the outbox, so a peer applies writes in the order
+     * they were made here. A write the peer does not take (unreachable, timed out,
+     * or shed with a 503) stays at the head and is retried with exponential backoff
+     * up to {@code falcon.shard.forward.max-backoff-ms}; later writes queue behind it
+     * instead of overtaking it. A timed-out write may have been applied anyway, so
+     * peers treat replays as idempotent. A peer that leaves the membership loses its outbox.
+     */
+    private final class Outbox {
+        final String peer;
+        private final ArrayDeque<QueuedWrite> queue = new ArrayDeque<>();
+        private boolean sending;
+        private int failedAttempts;
+        private long delivered;
+        private long rejected;
+        private String lastError;
+
+        Outbox(String peer) {
+            this.peer = peer;
+        }
+
+        /**
+         * @return completes with whether the peer took the write on its first attempt
+         */
+        synchronized CompletableFuture<Boolean> enqueue(ForwardedWrite write) {
+            CompletableFuture<Boolean> firstAttempt = new CompletableFuture<>();
+            queue.add(new QueuedWrite(write, firstAttempt));
+            if (failedAttempts > 0) {
+                // Stuck behind a write the peer has not taken; it will be retried, not sent now
+                firstAttempt.complete(false);
+            }
+            if (!sending) {
+                sending = true;
+                forwardExecutor.execute(this::drain);
+            }
+            return firstAttempt;
+        }
+
+        synchronized int pending() {
+            return queue.size();
+        }
+
+        private void drain() {
+            while (true) {
+                QueuedWrite head;
+                synchronized (this) {
+                    head = queue.peek();
+                    if (head == null || outboxes.get(peer) != this) {
+                        discard();
+                        return;
+                    }
+                }
+                int status;
+                try {
+                    status = client.send(request(head.write()), HttpResponse.BodyHandlers.discarding()).statusCode();
+                } catch (IOException e) {
+                    retryLater(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+                    return;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // Still the sender: hand the head to a later drain, or step down if shutting down
+                    if (forwardExecutor.isShutdown()) {
+                        synchronized (this) {
+                            sending = false;
+                        }
+                    } else {
+                        retryLater("interrupted");
+                    }
+                    return;
+                }
+                // Overloaded or failing peers may take it later; any other refusal is final
+                if (status >= 500 || status == 408 || status == 429) {
+                    retryLater(peer + " returned " + status);
+                    return;
+                }
+                // A retried DELETE finds the list gone if the first attempt did reach the peer
+                boolean accepted = status < 300 || status == 404 && "DELETE".equals(head.write().method);
+                if (!accepted) {
+                    System.err.println("✗ " + peer + " rejected forwarded " + head.write().method + " "
+                            + head.write().path + " with " + status);
+                }
+                synchronized (this) {
+                    queue.poll();
+                    if (failedAttempts > 0) {
+                        System.out.println("✓ Peer " + peer + " reachable again after " + failedAttempts + " failed forwards");
+                    }
+                    failedAttempts = 0;
+                    if (accepted) {
+                        delivered++;
+                    } else {
+                        rejected++;
+                    }
+                }
+                head.firstAttempt().complete(accepted);
+                head.write().release();
+            }
+        }
+
+        private HttpRequest request(ForwardedWrite write) throws IOException {
+            return HttpRequest.newBuilder(URI.create(peer + write.path))
+                    .timeout(write.timeout)
+                    .header("Content-Type", write.contentType)
+                    .header(FORWARDED_HEADER, membership.self())
+                    .method(write.method, write.body.publisher())
+                    .build();
+        }
+
+        private synchronized void retryLater(String error) {
+            failedAttempts++;
+            lastError = error;
+            for (QueuedWrite queued : queue) {
+                queued.firstAttempt().complete(false);
+            }
+            long backoff = Math.min(maxForwardBackoffMs, 100L << Math.min(failedAttempts - 1, 20));
+            if (failedAttempts == 1) {
+                System.err.println("⚠ Failed to forward " + queue.peek().write().method + " " + queue.peek().write().path
+                        + " to " + peer + ", retrying (" + queue.size() + " queued): " + error);
+            }
+            handoffScheduler.schedule(() -> forwardExecutor.execute(this::drain), backoff, TimeUnit.MILLISECONDS);
+        }
+
+        // Called with the monitor held: the peer left, or nothing is left to send
+        private void discard() {
+            if (!queue.isEmpty()) {
+                System.err.println("⚠ Dropped " + queue.size() + " writes queued for " + peer + ", no longer a member");
+            }
+            for (QueuedWrite queued : queue) {
+                queued.firstAttempt().complete(false);
+                queued.write().release();
+            }
+            queue.clear();
+            sending = false;
+        }
+
+        synchronized Map<String, Object> status() {
+            Map<String, Object> status = new LinkedHashMap<>();
+            status.put("queued", queue.size());
+            status.put("delivered", delivered);
+            status.put("rejected", rejected);
+            status.put("failed_attempts", failedAttempts);
+            if (failedAttempts > 0) {
+                status.put("last_error", lastError);
+            }
+            return status;
+        }
+    }
+
+    // ==================== REBALANCING ====================
+
+    /**
+     * Install a new member list and pull newly owned partitions from their previous
+     * owners.
+     *
+     * A partition is served locally only once its import succeeded; until then its
+     * lookups keep going to the previous owner (and to the lookup fallback if that
+     * fails), and the import is retried with backoff. The previous owner keeps the
+     * partition until the import is confirmed to it.
+     */
+    public Map<String, Object> rebalance(List<String> nodes) {
+        long startTime = System.nanoTime();
+        Map<String, List<Integer>> gained = membership.update(nodes);
+
+        int imported = 0;
+        int gainedPartitions = 0;
+        List<String> failedSources = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : gained.entrySet()) {
+            gainedPartitions += entry.getValue().size();
+            int count = importPartitions(entry.getKey(), entry.getValue(), 0);
+            if (count < 0) {
+                failedSources.add(entry.getKey());
+            } else {
+                imported += count;
+            }
+        }
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("✓ Rebalanced to " + membership.nodes().size() + " nodes: gained " + gainedPartitions
+                + " partitions, imported " + imported + " identifiers in " + durationMs + "ms");
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("nodes", membership.nodes());
+        result.put("owned_partitions", membership.ownedPartitionCount());
+        result.put("gained_partitions", gainedPartitions);
+        result.put("imported_identifiers", imported);
+        result.put("failed_sources", failedSources);
+        result.put("pending_handoffs", membership.pendingHandoffCount());
+        result.put("duration_ms", durationMs);
+        return result;
+    }
+
+    /**
+     * Import partitions from their previous owner, or schedule another attempt.
+     *
+     * @return identifiers imported, or -1 if the import failed and will be retried
+     */
+    private int importPartitions(String source, List<Integer> partitions, int attempt) {
+        // A later membership change may have moved some of them on meanwhile
+        List<Integer> awaiting = membership.awaitingHandoff(source, partitions);
+        if (awaiting.isEmpty()) {
+            return 0;
+        }
+        int imported;
+        try {
+            imported = suppressionService.importSlices(fetchPartitions(source, awaiting));
+        } catch (IOException | UncheckedIOException e) {
+            long delayMs = Math.min(MAX_IMPORT_RETRY_MS, 1000L << Math.min(attempt, 16));
+            System.err.println("✗ Failed to import " + awaiting.size() + " partitions from " + source
+                    + " (attempt " + (attempt + 1) + ", retrying in " + delayMs + "ms): " + e.getMessage());
+            handoffScheduler.schedule(() -> importPartitions(source, awaiting, attempt + 1), delayMs, TimeUnit.MILLISECONDS);
+            return -1;
+        }
+        membership.completeHandoff(source, awaiting);
+        if (attempt > 0) {
+            System.out.println("✓ Imported " + awaiting.size() + " partitions from " + source + " on attempt " + (attempt + 1));
+        }
+        try {
+            send(HttpRequest.newBuilder(URI.create(source + "/api/shard/handoffs/complete?ids=" + partitionIds(awaiting)))
+                    .timeout(timeout.multipliedBy(10))
+                    .POST(HttpRequest.BodyPublishers.noBody())
+                    .build(), source);
+        } catch (UncheckedIOException e) {
+            // The previous owner just keeps its copy
+            System.err.println("⚠ Could not confirm handoff to " + source + ": " + e.getMessage());
+        }
+        return imported;
+    }
+
+    /**
+     * A new owner has imported these partitions from this node: stop storing them
+     * once lookups routed by the old membership have drained.
+     */
+    public void handoffCompleted(List<Integer> partitions) {
+        handoffScheduler.schedule(() -> {
+            membership.releasePartitions(partitions);
+            int dropped = suppressionService.dropUnstoredPartitions();
+            System.out.println("✓ Released " + partitions.size() + " handed-off partitions (" + dropped + " identifiers)");
+        }, handoffGraceMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static String partitionIds(List<Integer> partitions) {
+        return partitions.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    private List<SuppressionList> fetchPartitions(String node, List<Integer> partitions) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(node + "/api/shard/partitions?ids=" + partitionIds(partitions)))
+                .timeout(timeout.multipliedBy(100))
+                .GET()
+                .build();
+        return objectMapper.readValue(send(request, node), new TypeReference<List<SuppressionList>>() {});
+    }
+
+    private String send(HttpRequest request, String node) {
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() >= 300) {
+                throw new IOException(node + " returned " + response.statusCode());
+            }
+            return response.body();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Shard " + node + " unavailable: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new IOException("Interrupted calling shard " + node, e));
+        }
+    }
+}
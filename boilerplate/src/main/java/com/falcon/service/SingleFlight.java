@@ -0,0 +1,88 @@
+package com.falcon.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight request coalescing: concurrent loads of the same key share one
+ * in-flight future instead of each reaching the backend.
+ *
+ * In-flight loads live in a map striped by key hash, so unrelated keys do not
+ * contend on one table. A key leaves its stripe as soon as its load completes,
+ * so nothing is cached; callers arriving afterwards start a fresh load.
+ * Each caller gets its own copy of the shared future, so cancelling it only
+ * detaches that caller.
+ */
+final class SingleFlight<V> {
+
+    private static final int STRIPES = 16;
+
+    private final List<Map<String, CompletableFuture<V>>> stripes;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    SingleFlight() {
+        List<Map<String, CompletableFuture<V>>> tables = new ArrayList<>(STRIPES);
+        for (int i = 0; i < STRIPES; i++) {
+            tables.add(new ConcurrentHashMap<>());
+        }
+        stripes = List.copyOf(tables);
+    }
+
+    /**
+     * Join the in-flight load of {@code key}, or start one with {@code loader}.
+     */
+    CompletableFuture<V> load(String key, Supplier<CompletableFuture<V>> loader) {
+        requests.increment();
+        Map<String, CompletableFuture<V>> stripe = stripes.get(stripeOf(key));
+        CompletableFuture<V> shared = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = stripe.putIfAbsent(key, shared);
+        if (inFlight != null) {
+            return inFlight.copy();
+        }
+
+        loads.increment();
+        CompletableFuture<V> source;
+        try {
+            source = loader.get();
+        } catch (RuntimeException e) {
+            source = CompletableFuture.failedFuture(e);
+        }
+        source.whenComplete((value, error) -> {
+            stripe.remove(key, shared);
+            if (error != null) {
+                shared.completeExceptionally(error);
+            } else {
+                shared.complete(value);
+            }
+        });
+        return shared.copy();
+    }
+
+    private static int stripeOf(String key) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    // ==================== STATISTICS ====================
+
+    /**
+     * @return requests, backend loads, coalesced requests and the fraction of requests coalesced
+     */
+    Map<String, Object> status() {
+        long requested = requests.sum();
+        long loaded = loads.sum();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("requests", requested);
+        status.put("backend_reads", loaded);
+        status.put("coalesced", requested - loaded);
+        status.put("coalescing_ratio", requested == 0 ? 0.0 : (double) (requested - loaded) / requested);
+        return status;
+    }
+}
@@ -0,0 +1,204 @@
+package com.falcon.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Binary index snapshots on local disk, for bootstrapping replicas and new nodes.
+ *
+ * {@link #export} writes the current lists to {@code falcon.replication.snapshot-dir}
+ * and hands out the file so the controller can stream it straight from the page
+ * cache. While the change stream has not moved (same leader epoch and sequence), repeated exports reuse the same
+ * file; the two most recent files are kept so in-flight downloads stay intact.
+ */
+@Service
+public class SnapshotService {
+
+    private static final int RETAINED_FILES = 2;
+
+    private final SuppressionService suppressionService;
+    private final ReplicationLog replicationLog;
+    private final Path directory;
+
+    private SnapshotFile latest;
+    private volatile Map<String, Object> lastExport;
+    private volatile Map<String, Object> lastImport;
+
+    public SnapshotService(SuppressionService suppressionService,
+                           ReplicationLog replicationLog,
+                           @Value("${falcon.replication.snapshot-dir:${java.io.tmpdir}/falcon-snapshots-${server.port:8080}}") String directory) {
+        this.suppressionService = suppressionService;
+        this.replicationLog = replicationLog;
+        this.directory = Path.of(directory);
+    }
+
+    /**
+     * A snapshot file on disk and the change-stream position (leader epoch and sequence) it reflects.
+     */
+    public static final class SnapshotFile {
+        private final Path path;
+        private final long seq;
+        private final String epoch;
+        private final long bytes;
+
+        SnapshotFile(Path path, long seq, String epoch, long bytes) {
+            this.path = path;
+            this.seq = seq;
+            this.epoch = epoch;
+            this.bytes = bytes;
+        }
+
+        public Path path() {
+            return path;
+        }
+
+        public long seq() {
+            return seq;
+        }
+
+        public String epoch() {
+            return epoch;
+        }
+
+        public long bytes() {
+            return bytes;
+        }
+    }
+
+    // ==================== EXPORT ====================
+
+    /**
+     * The latest snapshot, written now unless the existing file is still current.
+     * Standalone nodes have no change stream to compare against, so they always write a fresh one.
+     */
+    public synchronized SnapshotFile export() throws IOException {
+        boolean replicated = replicationLog.isLeader() || replicationLog.isFollower();
+        if (replicated && latest != null && latest.seq == suppressionService.changeSeq()
+                && Objects.equals(latest.epoch, suppressionService.changeEpoch()) && Files.exists(latest.path)) {
+            return latest;
+        }
+
+        long startTime = System.nanoTime();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, "snapshot-", ".tmp");
+        // Read before writing: if a reload lands in between, the next export just writes again
+        String epoch = suppressionService.changeEpoch();
+        long seq;
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            seq = suppressionService.writeSnapshot(out);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Path target = directory.resolve(String.format("snapshot-%020d-%d.bin", seq, System.currentTimeMillis()));
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        latest = new SnapshotFile(target, seq, epoch, Files.size(target));
+        pruneOldFiles();
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        lastExport = summary(seq, latest.bytes, durationMs);
+        System.out.println("✓ Wrote index snapshot at seq " + seq + " (" + latest.bytes + " bytes) in " + durationMs + "ms");
+        return latest;
+    }
+
+    /**
+     * Keep the newest files by write time. Not by sequence: it starts over when a leader
+     * restarts, and files of the earlier run would outrank the one just written.
+     */
+    private void pruneOldFiles() {
+        try (Stream<Path> files = Files.list(directory)) {
+            List<Path> snapshots = files
+                    .filter(path -> path.getFileName().toString().matches("snapshot-\\d+-\\d+\\.bin"))
+                    .sorted(Comparator.comparingLong(SnapshotService::writtenAt))
+                    .toList();
+            for (int i = 0; i < snapshots.size() - RETAINED_FILES; i++) {
+                Files.deleteIfExists(snapshots.get(i));
+            }
+        } catch (IOException e) {
+            System.err.println("⚠ Failed to prune old snapshots: " + e.getMessage());
+        }
+    }
+
+    // Milliseconds in the file name (snapshot-<seq>-<millis>.bin)
+    private static long writtenAt(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(name.lastIndexOf('-') + 1, name.length() - ".bin".length()));
+    }
+
+    // ==================== IMPORT ====================
+
+    /**
+     * Replace every local list with the snapshot read from {@code in}.
+     *
+     * @return the sequence number the snapshot reflects
+     * @throws IOException if the snapshot is unreadable; local lists are left untouched
+     */
+    public long load(InputStream in, String source) throws IOException {
+        long startTime = System.nanoTime();
+        CountingInputStream counting = new CountingInputStream(in);
+        long seq = suppressionService.loadSnapshot(counting);
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+
+        Map<String, Object> summary = summary(seq, counting.count, durationMs);
+        summary.put("source", source);
+        lastImport = summary;
+        System.out.println("✓ Loaded index snapshot at seq " + seq + " from " + source
+                + " (" + counting.count + " bytes) in " + durationMs + "ms");
+        return seq;
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("directory", directory.toAbsolutePath().toString());
+        if (lastExport != null) {
+            status.put("last_export", lastExport);
+        }
+        if (lastImport != null) {
+            status.put("last_import", lastImport);
+        }
+        return status;
+    }
+
+    private static Map<String, Object> summary(long seq, long bytes, long durationMs) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("seq", seq);
+        summary.put("bytes", bytes);
+        summary.put("duration_ms", durationMs);
+        summary.put("at", System.currentTimeMillis());
+        return summary;
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.falcon.service;
+
+import com.falcon.model.Placement;
+import com.falcon.model.SuppressionList;
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Startup readiness and JIT warmup.
+ *
+ * /api/health reports STARTING (503) until the node is ready to take traffic:
+ * the index is loaded (on a follower, the first snapshot has arrived) and, with
+ * {@code falcon.startup.warmup.enabled}, a synthetic warmup has run. The warmup
+ * sends a few loopback requests through the web stack, then calls
+ * {@link SuppressionService#checkSuppression} and {@link AdServer#serveAd} on a
+ * mix of listed and random hashes until the JIT stops compiling (total
+ * compilation time flat for a few rounds) or {@code max-ms} passes. Neither call
+ * changes any state. Loopback requests carry {@link #WARMUP_HEADER}, which the
+ * controllers honour only before readiness, so warmup ad requests stay out of
+ * the serving metrics.
+ *
+ * With {@code falcon.startup.exit-after-warmup} the process exits once warm;
+ * the {@code cds} Maven profile uses this as the training run that dumps the
+ * AppCDS archive.
+ *
+ * Times are measured from JVM start and exposed under "startup" in /api/stats.
+ */
+@Service
+public class StartupService {
+
+    /** Marks loopback warmup requests; ignored once the node is ready. */
+    public static final String WARMUP_HEADER = "X-Falcon-Warmup";
+
+    private static final int LOOPBACK_REQUESTS = 200;
+    private static final int QUIET_ROUNDS = 3;
+    private static final int SAMPLE_HITS = 4096;
+
+    private final SuppressionService suppressionService;
+    private final AdServer adServer;
+    private final ReplicationFollower replicationFollower;
+    private final boolean warmupEnabled;
+    private final long warmupMaxMs;
+    private final int warmupBatchSize;
+    private final long quietCompileMs;
+    private final boolean exitAfterWarmup;
+
+    private final long jvmStartMillis = ManagementFactory.getRuntimeMXBean().getStartTime();
+    private volatile boolean ready;
+    private volatile long contextReadyMillis;
+    private volatile long readyMillis;
+    private volatile long firstRequestMillis;
+    private volatile Map<String, Object> warmup;
+    // Keeps warmup results live so the JIT cannot drop the calls as dead code
+    private volatile long sink;
+
+    public StartupService(SuppressionService suppressionService,
+                          AdServer adServer,
+                          ReplicationFollower replicationFollower,
+                          @Value("${falcon.startup.warmup.enabled:false}") boolean warmupEnabled,
+                          @Value("${falcon.startup.warmup.max-ms:15000}") long warmupMaxMs,
+                          @Value("${falcon.startup.warmup.batch-size:10000}") int warmupBatchSize,
+                          @Value("${falcon.startup.warmup.quiet-compile-ms:5}") long quietCompileMs,
+                          @Value("${falcon.startup.exit-after-warmup:false}") boolean exitAfterWarmup) {
+        this.suppressionService = suppressionService;
+        this.adServer = adServer;
+        this.replicationFollower = replicationFollower;
+        this.warmupEnabled = warmupEnabled;
+        this.warmupMaxMs = warmupMaxMs;
+        this.warmupBatchSize = warmupBatchSize;
+        this.quietCompileMs = quietCompileMs;
+        this.exitAfterWarmup = exitAfterWarmup;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady(ApplicationReadyEvent event) {
+        contextReadyMillis = System.currentTimeMillis();
+        if (!warmupEnabled && !replicationFollower.isFollower() && !exitAfterWarmup) {
+            markReady();
+            return;
+        }
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        Thread thread = new Thread(() -> prepare(context), "startup-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void prepare(ConfigurableApplicationContext context) {
+        try {
+            awaitIndex();
+            if (warmupEnabled || exitAfterWarmup) {
+                warmUp(context);
+            }
+            markReady();
+        } catch (InterruptedException e) {
+            return;
+        }
+        if (exitAfterWarmup) {
+            System.out.println("✓ Training run complete, exiting");
+            System.exit(SpringApplication.exit(context, () -> 0));
+        }
+    }
+
+    /**
+     * A follower has nothing to serve until its first snapshot has loaded.
+     */
+    private void awaitIndex() throws InterruptedException {
+        while (replicationFollower.isFollower() && !replicationFollower.hasLoadedSnapshot()) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void markReady() {
+        readyMillis = System.currentTimeMillis();
+        ready = true;
+        System.out.println("✓ Ready for traffic " + (readyMillis - jvmStartMillis) + "ms after JVM start");
+    }
+
+    // ==================== WARMUP ====================
+
+    private void warmUp(ConfigurableApplicationContext context) throws InterruptedException {
+        long startTime = System.nanoTime();
+        List<String> hashes = sampleHashes();
+        List<String> placements = adServer.getPlacements().stream().map(Placement::getId).toList();
+        int loopback = 0;
+        if (context instanceof WebServerApplicationContext web && web.getWebServer() != null) {
+            loopback = warmUpLoopback(web.getWebServer().getPort(), hashes, placements);
+        }
+
+        CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+        boolean monitored = jit != null && jit.isCompilationTimeMonitoringSupported();
+        long compileStart = monitored ? jit.getTotalCompilationTime() : 0;
+        long lastCompile = compileStart;
+        long deadline = startTime + warmupMaxMs * 1_000_000;
+        long iterations = 0;
+        int quietRounds = 0;
+        int rounds = 0;
+        while (System.nanoTime() < deadline && quietRounds < QUIET_ROUNDS) {
+            runRound(hashes, placements, iterations);
+            iterations += warmupBatchSize;
+            rounds++;
+            if (monitored) {
+                long compile = jit.getTotalCompilationTime();
+                quietRounds = compile - lastCompile <= quietCompileMs ? quietRounds + 1 : 0;
+                lastCompile = compile;
+            } else if (rounds >= 10) {
+                break;
+            }
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("loopback_requests", loopback);
+        summary.put("iterations", iterations);
+        summary.put("rounds", rounds);
+        summary.put("settled", quietRounds >= QUIET_ROUNDS);
+        summary.put("compile_time_ms", monitored ? lastCompile - compileStart : -1);
+        summary.put("duration_ms", durationMs);
+        warmup = summary;
+        System.out.println("✓ Warmed up with " + iterations + " lookups in " + durationMs + "ms"
+                + (quietRounds >= QUIET_ROUNDS ? " (JIT settled)" : " (time limit reached)"));
+    }
+
+    private void runRound(List<String> hashes, List<String> placements, long offset) {
+        long acc = 0;
+        Map<String, Object> params = new HashMap<>(2);
+        for (int i = 0; i < warmupBatchSize; i++) {
+            long n = offset + i;
+            String hash = hashes.get((int) (n % hashes.size()));
+            Set<String> suppressed = suppressionService.checkSuppression(hash).getSuppressedAdvertisers();
+            acc += suppressed.size();
+            if (!placements.isEmpty()) {
+                if (suppressed.isEmpty()) {
+                    params.remove("suppress_advertisers");
+                } else {
+                    params.put("suppress_advertisers", suppressed);
+                }
+                acc += Objects.hashCode(adServer.serveAd(placements.get((int) (n % placements.size())), params));
+            }
+            if ((n & 7) == 0) {
+                acc += suppressionService.checkSuppression(hash, true).getSuppressedAdvertisers().size();
+            }
+        }
+        sink += acc;
+    }
+
+    /**
+     * Drive the HTTP path (Tomcat, MVC dispatch, Jackson) so its classes are loaded
+     * and initialised before the first real request.
+     *
+     * @return number of requests answered
+     */
+    private int warmUpLoopback(int port, List<String> hashes, List<String> placements) throws InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(2))
+                .build();
+        String base = "http://127.0.0.1:" + port + "/api";
+        int answered = 0;
+        for (int i = 0; i < LOOPBACK_REQUESTS; i++) {
+            String hash = hashes.get(i % hashes.size());
+            String body = placements.isEmpty() || (i & 1) == 0
+                    ? "{\"email_hash\":\"" + hash + "\"}"
+                    : "{\"placement_id\":\"" + placements.get(i % placements.size())
+                            + "\",\"user_email_hash\":\"" + hash + "\"}";
+            String path = placements.isEmpty() || (i & 1) == 0 ? "/check-suppression" : "/serve-ad";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(base + path))
+                    .timeout(Duration.ofSeconds(5))
+                    .header("Content-Type", "application/json")
+                    .header(WARMUP_HEADER, "true")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    answered++;
+                }
+            } catch (IOException e) {
+                System.err.println("⚠ Loopback warmup request failed: " + e.getMessage());
+                break;
+            }
+        }
+        return answered;
+    }
+
+    /**
+     * Listed identifiers (hits) interleaved with random hashes (misses).
+     */
+    private List<String> sampleHashes() {
+        List<String> hits = new ArrayList<>();
+        for (SuppressionList list : suppressionService.getSuppressionListsAfter(null, 64)) {
+            List<String> identifiers = list.getIdentifiers();
+            int step = Math.max(1, identifiers.size() / (SAMPLE_HITS / 64));
+            for (int i = 0; i < identifiers.size() && hits.size() < SAMPLE_HITS; i += step) {
+                hits.add(identifiers.get(i));
+            }
+        }
+        Random random = new Random(42);
+        List<String> hashes = new ArrayList<>(hits.size() * 2 + 1);
+        for (int i = 0; i < Math.max(hits.size(), SAMPLE_HITS / 4); i++) {
+            if (i < hits.size()) {
+                hashes.add(hits.get(i));
+            }
+            hashes.add(String.format("%016x%016x%016x%016x",
+                    random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()));
+        }
+        return hashes;
+    }
+
+    // ==================== STATUS ====================
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Whether a request is this node's own warmup traffic: tagged with {@link #WARMUP_HEADER}
+     * and received before readiness, so clients cannot use the tag to hide requests.
+     */
+    public boolean isWarmup(String warmupHeader) {
+        return !ready && "true".equals(warmupHeader);
+    }
+
+    /**
+     * Note a served ad or suppression check; the first one after readiness gives time-to-first-request.
+     */
+    public void recordServed() {
+        if (firstRequestMillis == 0 && ready) {
+            firstRequestMillis = System.currentTimeMillis();
+        }
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("ready", ready);
+        if (contextReadyMillis != 0) {
+            status.put("context_ready_ms", contextReadyMillis - jvmStartMillis);
+        }
+        if (readyMillis != 0) {
+            status.put("ready_ms", readyMillis - jvmStartMillis);
+        }
+        if (firstRequestMillis != 0) {
+            status.put("first_request_ms", firstRequestMillis - jvmStartMillis);
+        }
+        String archive = sharedArchiveFile();
+        if (archive != null) {
+            status.put("cds_archive", archive);
+        }
+        if (warmup != null) {
+            status.put("warmup", warmup);
+        }
+        return status;
+    }
+
+    private static String sharedArchiveFile() {
+        try {
+            HotSpotDiagnosticMXBean hotspot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+            String file = hotspot != null ? hotspot.getVMOption("SharedArchiveFile").getValue() : "";
+            return file.isEmpty() ? null : file;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.falcon.service;
+
+import com.falcon.model.SuppressionCheckResult;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Deadline-bounded suppression lookups for ad serving.
+ *
+ * Each lookup gets {@code falcon.suppression.lookup-deadline-ms}. If the exact answer
+ * is not back in time, or the lookup fails, the request is answered by the
+ * fail-safe {@code falcon.suppression.fallback} policy instead. A slow or dead shard
+ * therefore costs the ad request at most the deadline, and never lets it serve
+ * without suppression:
+ *
+ *   bloom                 - local Bloom filter of (advertiser, identifier) pairs: every
+ *                           advertiser that suppresses the hash, plus ~1% false positives
+ *   last-cached           - the last exact answer seen for this hash, if still cached
+ *   suppression-free-only - suppress every advertiser that has a list, so only
+ *                           advertisers without lists can serve
+ *
+ * When bloom or last-cached cannot answer (the hash's partition is not fully stored
+ * on this node, or it is not cached), suppression-free-only is used. Every fallback
+ * is counted.
+ *
+ * In-memory lookups answer inline and never wait; the deadline applies to answers
+ * that come from another node or from local disk (LSM storage).
+ */
+@Service
+public class SuppressionGuard {
+
+    public enum FallbackPolicy {
+        BLOOM, LAST_CACHED, SUPPRESSION_FREE_ONLY;
+
+        static FallbackPolicy parse(String value) {
+            return valueOf(value.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+        }
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final SuppressionService suppressionService;
+    private final ShardRouter shardRouter;
+    private final ShardMembership membership;
+    private final long deadlineNanos;
+    private final FallbackPolicy policy;
+
+    // Direct-mapped cache of recent exact answers, only filled under LAST_CACHED
+    private final AtomicReferenceArray<CachedResult> cache;
+    private final int cacheMask;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder deadlineExceeded = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Map<FallbackPolicy, LongAdder> fallbacks = new LinkedHashMap<>();
+
+    public SuppressionGuard(SuppressionService suppressionService,
+                            ShardRouter shardRouter,
+                            ShardMembership membership,
+                            @Value("${falcon.suppression.lookup-deadline-ms:5}") long deadlineMs,
+                            @Value("${falcon.suppression.fallback:bloom}") String fallback,
+                            @Value("${falcon.suppression.fallback.cache-size:65536}") int cacheSize) {
+        this.suppressionService = suppressionService;
+        this.shardRouter = shardRouter;
+        this.membership = membership;
+        this.deadlineNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMs);
+        this.policy = FallbackPolicy.parse(fallback);
+        int slots = policy == FallbackPolicy.LAST_CACHED ? Integer.highestOneBit(Math.max(1, cacheSize - 1)) << 1 : 1;
+        this.cache = new AtomicReferenceArray<>(slots);
+        this.cacheMask = slots - 1;
+        for (FallbackPolicy p : FallbackPolicy.values()) {
+            fallbacks.put(p, new LongAdder());
+        }
+    }
+
+    /**
+     * Check suppression within the deadline.
+     *
+     * @param emailHash a normalized email hash
+     * @return the exact result, or a fail-safe one with {@code fallback} set
+     */
+    public SuppressionCheckResult check(String emailHash) {
+        long startTime = System.nanoTime();
+        lookups.increment();
+        CompletableFuture<SuppressionCheckResult> future = shardRouter.checkSuppressionAsync(emailHash);
+        try {
+            SuppressionCheckResult result = future.isDone()
+                    ? future.get()
+                    : future.get(Math.max(0, deadlineNanos - (System.nanoTime() - startTime)), TimeUnit.NANOSECONDS);
+            remember(emailHash, result);
+            return result;
+        } catch (TimeoutException e) {
+            deadlineExceeded.increment();
+            // A late answer still refreshes the cache for the next request
+            future.thenAccept(late -> remember(emailHash, late));
+        } catch (ExecutionException e) {
+            failures.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failures.increment();
+        }
+        return fallback(emailHash, startTime);
+    }
+
+    private SuppressionCheckResult fallback(String emailHash, long startTime) {
+        FallbackPolicy used = FallbackPolicy.SUPPRESSION_FREE_ONLY;
+        Set<String> suppressed = null;
+        // The filter only knows partitions stored here, and not those still being imported
+        if (policy == FallbackPolicy.BLOOM && membership.stores(emailHash) && membership.handoffSourceOf(emailHash) == null) {
+            suppressed = suppressionService.mightSuppress(emailHash);
+        } else if (policy == FallbackPolicy.LAST_CACHED) {
+            CachedResult cached = cache.get(slotOf(emailHash));
+            suppressed = cached != null && cached.emailHash().equals(emailHash) ? cached.advertisers() : null;
+        }
+        if (suppressed != null) {
+            used = policy;
+        } else {
+            suppressed = suppressionService.listedAdvertisers();
+        }
+        fallbacks.get(used).increment();
+
+        SuppressionCheckResult result = new SuppressionCheckResult(suppressed, (System.nanoTime() - startTime) / 1_000_000);
+        result.setFallback(used.label());
+        return result;
+    }
+
+    private void remember(String emailHash, SuppressionCheckResult result) {
+        if (policy == FallbackPolicy.LAST_CACHED) {
+            cache.set(slotOf(emailHash), new CachedResult(emailHash, result.getSuppressedAdvertisers()));
+        }
+    }
+
+    private int slotOf(String emailHash) {
+        int h = emailHash.hashCode();
+        return (h ^ (h >>> 16)) & cacheMask;
+    }
+
+    // ==================== STATUS ====================
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("deadline_ms", TimeUnit.NANOSECONDS.toMillis(deadlineNanos));
+        status.put("fallback_policy", policy.label());
+        status.put("lookups", lookups.sum());
+        status.put("deadline_exceeded", deadlineExceeded.sum());
+        status.put("failures", failures.sum());
+        Map<String, Object> used = new LinkedHashMap<>();
+        fallbacks.forEach((p, count) -> used.put(p.label(), count.sum()));
+        status.put("fallbacks", used);
+        return status;
+    }
+
+    private record CachedResult(String emailHash, Set<String> advertisers) {
+    }
+}
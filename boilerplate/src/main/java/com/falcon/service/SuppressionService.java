@@ -1,181 +1,850 @@
 package com.falcon.service;
 
+import com.falcon.index.ExternalListDiff;
+import com.falcon.index.HashKeys;
+import com.falcon.index.ListSketches;
+import com.falcon.index.LsmStore;
+import com.falcon.index.PackedIdentifierList;
+import com.falcon.index.RoaringBitmap;
+import com.falcon.index.StoredIdentifierList;
+import com.falcon.index.SuppressionIndex;
+import com.falcon.model.ChangeEvent;
 import com.falcon.model.SuppressionCheckResult;
 import com.falcon.model.SuppressionList;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
- * Suppression Service - YOUR IMPLEMENTATION SPACE
+ * Suppression Service
  *
  * This service manages suppression lists and performs real-time suppression checking.
  *
- * YOUR TASKS:
- * ===========
+ * Storage: lists are kept in an in-memory sorted map keyed by list ID, so pages
+ * of lists can be read from a cursor without sorting or copying the whole set.
+ * Stored identifiers are a {@link PackedIdentifierList}: sorted, de-duplicated
+ * 32-byte keys behind a read-only List view, so list contents cost their binary
+ * size and API responses encode hex lazily.
  *
- * PART 1: Implement CRUD operations for suppression lists
- * - createSuppressionList()
- * - getAllSuppressionLists()
- * - getSuppressionListById()
- * - updateSuppressionList()
- * - deleteSuppressionList()
+ * Index: a {@link SuppressionIndex} that dictionary-encodes identifiers to int
+ * ordinals and stores every list, and every advertiser's union of lists, as a
+ * Roaring bitmap. Suppression checks are a dictionary probe plus an interned
+ * advertiser-set read; list-level operations (overlap, union, subtraction) run
+ * directly on the bitmaps.
  *
- * PART 2: Implement efficient suppression checking
- * - loadSuppressionLists() - Build an efficient index at startup
- * - checkSuppression() - Fast lookup (< 10ms) of suppressed advertisers
+ * Writes are serialized on this service so storage and index change together;
+ * reads never block.
  *
- * PART 3: (Optional) Implement one advanced feature
- * - Time-based expiration
- * - Audit logging
- * - Caching layer
+ * With {@code falcon.suppression.read-index=eytzinger} an immutable sorted-array
+ * index ({@link com.falcon.index.EytzingerIndex}) serves canonical hashes instead
+ * of the hash dictionary. It is rebuilt in the background shortly after writes;
+ * until then lookups fall back to the dictionary.
+ *
+ * Hash validation ({@code falcon.suppression.hash-validation}): in {@code strict}
+ * mode (default) request hashes and list identifiers must be 64 hex characters;
+ * they are lower-cased on the way in, and malformed identifiers in the startup
+ * data are dropped. {@code lenient} accepts any non-empty string verbatim.
+ *
+ * Sharded mode ({@link ShardMembership}): every node keeps the metadata of every
+ * list but only the identifiers of the partitions it stores, so list reads on a
+ * node return its slice. Routing and write fan-out live in {@link ShardRouter}.
+ *
+ * Replication ({@link ReplicationLog}): on a leader every write also appends a
+ * change event carrying only the identifiers that entered or left the list; a
+ * follower bootstraps from a binary snapshot ({@link #writeSnapshot}) and then
+ * applies those events via {@link #applyChanges}.
+ *
+ * Disk-resident storage ({@code falcon.suppression.storage=lsm}): hash lookups are
+ * served by an {@link LsmStore} on local disk instead of the in-heap index, which
+ * is then left empty, so lookup data can outgrow RAM. The store also owns list
+ * contents: a list's identifiers are the store's on-disk view of them, paged in
+ * when list algebra or a read needs them, and a restart reopens the store rather
+ * than rebuilding it. Lookups that may read disk run on a dedicated pool
+ * ({@link #checkSuppressionAsync}) under the serving deadline.
+ *
+ * Index loads and rebuilds, snapshot swaps, bulk list writes and slow suppression
+ * checks are recorded as JDK Flight Recorder events ({@link FlightEvents});
+ * {@link #getStatistics} breaks heap use down by structure and advertiser.
+ *
+ * Analytics: every list also keeps a HyperLogLog sketch ({@link ListSketches}),
+ * kept current on every write path, so unique counts and overlaps of lists and
+ * advertisers are estimated in milliseconds without touching the index.
  */
 @Service
 public class SuppressionService {
 
-    // Storage for suppression lists (Part 1)
-    // TODO: Choose your storage mechanism:
-    //   - In-memory Map (simplest)
-    //   - H2 database (good practice)
-    //   - JSON file persistence
-    //   - SQLite
-    private final Map<String, SuppressionList> suppressionListsStorage = new HashMap<>();
-
-    // Index for fast lookups (Part 2)
-    // TODO: Design an efficient index structure
-    // Recommended: Map<String, Set<String>> where:
-    //   Key = email_hash
-    //   Value = Set of advertiser_ids that suppress this email
-    private Map<String, Set<String>> suppressionIndex;
+    // Lists and everything derived from them; a snapshot load replaces it as a whole
+    private volatile ListState state;
+    private final ExecutorService lsmLookups;
+    // How a fresh ListState is built
+    private final boolean bloomFallback;
+    private final int sketchPrecision;
+    private final Path lsmDirectory;
+    private final int lsmMemtableEntries;
+    private final int lsmCompactionFanIn;
+    private final long lsmCompactionBytesPerSecond;
+    private long lsmGeneration;
+    // Whether startup reopened a store written by an earlier run, whose lists replace the mock data
+    private boolean lsmResumed;
+    // Replaced LSM stores stay open this long for lookups still running on them
+    private static final long RETIRED_STORE_GRACE_MS = 30_000;
+    // Suppression checks at least this slow are committed as JFR events
+    private final long checkThresholdNanos;
+
+    // Dictionary slots examined for the probe-length histogram in /api/stats
+    private static final int PROBE_SAMPLE_SLOTS = 1 << 16;
 
     private final ObjectMapper objectMapper;
+    private final String mockDataPath;
+
+    // Read-optimized index: "hash" (dictionary only) or "eytzinger"
+    private final boolean sortedReadIndex;
+    private final long readIndexRebuildDelayMs;
+    // Rebuild the index with a fresh dictionary once this fraction of its ordinals is in no list; 0 = never
+    private final double reclaimDeadFraction;
+    private final boolean strictHashes;
+    private final ShardMembership shardMembership;
+    private final ReplicationLog replicationLog;
+    // Position in the leader's change stream reflected by a follower's (or snapshot-loaded) data
+    private volatile long replicatedSeq;
+    // Leader run that replicatedSeq belongs to; null until a snapshot carrying one is loaded
+    private volatile String replicatedEpoch;
+    private final AtomicBoolean indexMaintenancePending = new AtomicBoolean();
+
+    // Full-refresh uploads: where sorted runs spill, and how many keys are sorted in memory
+    private final Path refreshSpillDirectory;
+    private final int refreshChunkEntries;
 
-    public SuppressionService(ObjectMapper objectMapper) {
+    // Concurrent slow-path lookups of one hash share a single in-flight read
+    private final SingleFlight<SuppressionCheckResult> inFlightLookups = new SingleFlight<>();
+    private final ScheduledExecutorService indexMaintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "suppression-index-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SuppressionService(ObjectMapper objectMapper,
+                              ShardMembership shardMembership,
+                              ReplicationLog replicationLog,
+                              @Value("${falcon.mock-data.path:../mock-data}") String mockDataPath,
+                              @Value("${falcon.suppression.read-index:hash}") String readIndex,
+                              @Value("${falcon.suppression.read-index.rebuild-delay-ms:1000}") long readIndexRebuildDelayMs,
+                              @Value("${falcon.suppression.dictionary.reclaim-dead-fraction:0.3}") double reclaimDeadFraction,
+                              @Value("${falcon.suppression.hash-validation:strict}") String hashValidation,
+                              @Value("${falcon.suppression.fallback:bloom}") String fallback,
+                              @Value("${falcon.suppression.storage:memory}") String storage,
+                              @Value("${falcon.suppression.lsm.directory:${java.io.tmpdir}/falcon-lsm-${server.port:8080}}") String lsmDirectory,
+                              @Value("${falcon.suppression.lsm.memtable-entries:500000}") int memtableEntries,
+                              @Value("${falcon.suppression.lsm.compaction-fan-in:4}") int compactionFanIn,
+                              @Value("${falcon.suppression.lsm.compaction-mb-per-sec:32}") long compactionMbPerSec,
+                              @Value("${falcon.suppression.lsm.lookup-threads:16}") int lookupThreads,
+                              @Value("${falcon.jfr.check-threshold-us:1000}") long checkThresholdUs,
+                              @Value("${falcon.analytics.sketch-precision:14}") int sketchPrecision,
+                              @Value("${falcon.suppression.refresh.spill-directory:${java.io.tmpdir}/falcon-refresh-${server.port:8080}}") String refreshSpillDirectory,
+                              @Value("${falcon.suppression.refresh.chunk-entries:1000000}") int refreshChunkEntries) {
         this.objectMapper = objectMapper;
+        this.refreshSpillDirectory = Path.of(refreshSpillDirectory);
+        this.refreshChunkEntries = refreshChunkEntries;
+        this.sketchPrecision = sketchPrecision;
+        this.checkThresholdNanos = TimeUnit.MICROSECONDS.toNanos(checkThresholdUs);
+        this.shardMembership = shardMembership;
+        this.replicationLog = replicationLog;
+        this.mockDataPath = mockDataPath;
+        this.strictHashes = !"lenient".equalsIgnoreCase(hashValidation);
+        boolean lsm = "lsm".equalsIgnoreCase(storage);
+        if (lsm && !strictHashes) {
+            throw new IllegalStateException("falcon.suppression.storage=lsm requires strict hash validation");
+        }
+        // The LSM tier replaces the in-heap lookups, including the sorted read index
+        this.sortedReadIndex = !lsm && "eytzinger".equalsIgnoreCase(readIndex);
+        this.readIndexRebuildDelayMs = readIndexRebuildDelayMs;
+        this.reclaimDeadFraction = reclaimDeadFraction;
+        this.bloomFallback = !lsm && "bloom".equalsIgnoreCase(fallback);
+        this.lsmDirectory = lsm ? Path.of(lsmDirectory) : null;
+        this.lsmMemtableEntries = memtableEntries;
+        this.lsmCompactionFanIn = compactionFanIn;
+        this.lsmCompactionBytesPerSecond = compactionMbPerSec * 1024 * 1024;
+        try {
+            if (lsm) {
+                // A follower's store would be stale until its bootstrap replaces it, so it starts empty
+                Long current = replicationLog.isFollower() ? null : currentGeneration(this.lsmDirectory);
+                deleteGenerations(this.lsmDirectory, current);
+                lsmGeneration = current != null ? current : 0;
+                lsmResumed = current != null;
+            }
+            this.state = newState();
+            if (lsm) {
+                markCurrent(state.lsm);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open LSM directory " + lsmDirectory, e);
+        }
+        if (lsm) {
+            this.lsmLookups = Executors.newFixedThreadPool(lookupThreads, r -> {
+                Thread thread = new Thread(r, "lsm-lookup");
+                thread.setDaemon(true);
+                return thread;
+            });
+            System.out.println("✓ LSM storage in " + lsmDirectory);
+        } else {
+            this.lsmLookups = null;
+        }
+    }
+
+    /**
+     * Empty lists, index and sketches; on the LSM tier, the store of the next generation
+     * directory (at startup, the one CURRENT names, which may already hold lists).
+     */
+    private ListState newState() throws IOException {
+        SuppressionIndex index = new SuppressionIndex();
+        if (bloomFallback) {
+            index.enableBloomFilter();
+        }
+        LsmStore lsm = null;
+        if (lsmDirectory != null) {
+            lsm = new LsmStore(lsmDirectory.resolve(Long.toString(lsmGeneration++)), lsmMemtableEntries,
+                    lsmCompactionFanIn, lsmCompactionBytesPerSecond);
+        }
+        return new ListState(new ConcurrentSkipListMap<>(), index, new ListSketches(sketchPrecision), lsm);
+    }
+
+    /**
+     * The generation the file {@code CURRENT} names: the store last published, or null if there is none.
+     */
+    private static Long currentGeneration(Path root) throws IOException {
+        Path current = root.resolve("CURRENT");
+        if (!Files.exists(current)) {
+            return null;
+        }
+        String generation = Files.readString(current, StandardCharsets.UTF_8).trim();
+        if (!generation.matches("\\d+")) {
+            throw new IOException("Corrupt " + current + ": " + generation);
+        }
+        return Long.parseLong(generation);
+    }
+
+    /**
+     * Point {@code CURRENT} at a store, so the next start reopens it.
+     */
+    private void markCurrent(LsmStore store) throws IOException {
+        Path temp = lsmDirectory.resolve("CURRENT.tmp");
+        Files.writeString(temp, store.directory().getFileName().toString(), StandardCharsets.UTF_8);
+        Files.move(temp, lsmDirectory.resolve("CURRENT"), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Drop every generation but {@code keep}: stores replaced by a snapshot load, or
+     * built for one that never became current.
+     */
+    private static void deleteGenerations(Path root, Long keep) throws IOException {
+        Files.createDirectories(root);
+        try (DirectoryStream<Path> generations = Files.newDirectoryStream(root, path -> Files.isDirectory(path)
+                && path.getFileName().toString().matches("\\d+"))) {
+            for (Path generation : generations) {
+                if (keep != null && generation.getFileName().toString().equals(Long.toString(keep))) {
+                    continue;
+                }
+                try (Stream<Path> files = Files.walk(generation)) {
+                    for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                        Files.delete(path);
+                    }
+                }
+            }
+        }
     }
 
     /**
      * PART 2: Load suppression lists and build index at startup.
      *
-     * TODO: Implement this method to:
-     * 1. Load suppression lists from mock-data/sample_suppression_lists.json
-     * 2. Build an efficient index for fast lookups
-     * 3. Store lists in your chosen storage mechanism
-     *
-     * Performance requirement: Should complete in < 1 second for 1000s of lists
+     * Reads mock-data/sample_suppression_lists.json, stores every list and
+     * indexes its identifiers.
      */
     @PostConstruct
     public void loadSuppressionLists() {
+        if (replicationLog.isFollower()) {
+            System.out.println("Follower: suppression lists will be replicated from the leader");
+            return;
+        }
+        if (lsmResumed) {
+            reopenLists();
+            return;
+        }
         System.out.println("Loading suppression lists...");
 
-        try {
-            // TODO: Load from mock-data/sample_suppression_lists.json
-            // Try external path first, then classpath as fallback
-            InputStream inputStream;
-            try {
-                inputStream = new ClassPathResource("../../mock-data/sample_suppression_lists.json").getInputStream();
-            } catch (IOException e) {
-                inputStream = getClass().getClassLoader().getResourceAsStream("sample_suppression_lists.json");
-            }
-
-            if (inputStream != null) {
-                List<SuppressionList> lists = objectMapper.readValue(
-                    inputStream,
-                    new TypeReference<List<SuppressionList>>() {}
-                );
+        try (InputStream inputStream = MockData.open(mockDataPath, "sample_suppression_lists.json")) {
+            List<SuppressionList> lists = objectMapper.readValue(
+                inputStream,
+                new TypeReference<List<SuppressionList>>() {}
+            );
 
-                // TODO: Store lists and build index
-                // Example structure:
-                // suppressionIndex = new HashMap<>();
-                // for (SuppressionList list : lists) {
-                //     String advertiserId = list.getAdvertiserId();
-                //     for (String identifier : list.getIdentifiers()) {
-                //         suppressionIndex.computeIfAbsent(identifier, k -> new HashSet<>()).add(advertiserId);
-                //     }
-                // }
+            FlightEvents.IndexBuild build = new FlightEvents.IndexBuild();
+            build.begin();
+            long startTime = System.nanoTime();
+            int droppedIdentifiers = 0;
+            synchronized (this) {
+                for (SuppressionList list : lists) {
+                    if (list.getId() == null || list.getAdvertiserId() == null || list.getIdentifiers() == null) {
+                        System.err.println("⚠ Skipping malformed suppression list: " + list);
+                        continue;
+                    }
+                    if (strictHashes) {
+                        List<String> identifiers = new ArrayList<>(list.getIdentifiers().size());
+                        for (String identifier : list.getIdentifiers()) {
+                            if (HashKeys.isValid(identifier)) {
+                                identifiers.add(HashKeys.canonicalize(identifier));
+                            }
+                        }
+                        droppedIdentifiers += list.getIdentifiers().size() - identifiers.size();
+                        list.setIdentifiers(identifiers);
+                    }
+                    list.setIdentifiers(PackedIdentifierList.of(storedSlice(list.getIdentifiers())));
+                    state.lists.put(list.getId(), list);
+                    indexList(list, PackedIdentifierList.empty());
+                    replicationLog.append(ChangeEvent.upsert(list, list.getIdentifiers(), List.of()));
+                }
+            }
+            if (sortedReadIndex) {
+                state.index.rebuildReadIndex();
+            }
+            long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+            build.end();
+            if (build.shouldCommit()) {
+                build.kind = "startup-load";
+                build.lists = state.lists.size();
+                build.identifiers = listStorageIdentifiers(state);
+                build.bytes = state.lsm != null ? state.lsm.memoryBytes() : state.index.bitmapBytes();
+                build.commit();
+            }
 
-                System.out.println("✓ Loaded " + lists.size() + " suppression lists");
-                System.out.println("⚠ WARNING: Index building not implemented yet!");
+            System.out.println("✓ Loaded " + state.lists.size() + " suppression lists");
+            if (droppedIdentifiers > 0) {
+                System.out.println("⚠ Dropped " + droppedIdentifiers + " identifiers that are not 64-character hex hashes");
+            }
+            if (state.lsm != null) {
+                System.out.println("✓ Wrote " + listStorageIdentifiers(state) + " identifiers to LSM storage in " + durationMs + "ms");
+            } else {
+                System.out.println("✓ Built " + (sortedReadIndex ? "eytzinger" : "hash") + " index with "
+                        + state.index.identifierCount() + " identifiers in " + durationMs + "ms");
             }
         } catch (IOException e) {
             System.err.println("✗ Failed to load suppression lists: " + e.getMessage());
         }
     }
 
+    /**
+     * Take the lists over from the LSM store reopened at startup. Their identifiers stay
+     * on disk; only the sketches are rebuilt, reading each list once.
+     */
+    private synchronized void reopenLists() {
+        long startTime = System.nanoTime();
+        long identifiers = 0;
+        for (LsmStore.StoredList stored : state.lsm.lists()) {
+            SuppressionList list;
+            try {
+                list = objectMapper.readValue(stored.metadata(), SuppressionList.class);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Corrupt metadata of stored list " + stored.listId(), e);
+            }
+            list.setId(stored.listId());
+            list.setAdvertiserId(stored.advertiserId());
+            list.setIdentifiers(stored.identifiers());
+            state.lists.put(list.getId(), list);
+            state.sketches.put(list.getId(), list.getAdvertiserId(), PackedIdentifierList.empty(), stored(list));
+            replicationLog.append(ChangeEvent.upsert(list, list.getIdentifiers(), List.of()));
+            identifiers += list.getIdentifiers().size();
+        }
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("✓ Reopened " + state.lists.size() + " suppression lists (" + identifiers
+                + " identifiers) from LSM storage in " + durationMs + "ms");
+    }
+
     // ==================== PART 1: CRUD OPERATIONS ====================
 
     /**
      * Create a new suppression list.
      *
-     * TODO: Implement this method
-     * - Validate input (non-null advertiser_id, name, identifiers)
-     * - Generate unique ID if not provided
-     * - Set created_at timestamp
-     * - Store in your chosen storage
-     * - Update the suppression index
+     * Generates an ID and created_at timestamp when absent, then indexes the identifiers.
      *
      * @return The created suppression list with generated ID
+     * @throws IllegalArgumentException if required fields are missing or the ID is taken
      */
-    public SuppressionList createSuppressionList(SuppressionList list) {
-        // TODO: Implement CRUD - Create
-        throw new UnsupportedOperationException("createSuppressionList() not implemented yet");
+    public synchronized SuppressionList createSuppressionList(SuppressionList list) {
+        validate(list);
+        if (list.getId() == null || list.getId().isBlank()) {
+            list.setId("list_" + UUID.randomUUID());
+        } else if (state.lists.containsKey(list.getId())) {
+            throw new IllegalArgumentException("Suppression list already exists: " + list.getId());
+        }
+        if (list.getCreatedAt() == null) {
+            list.setCreatedAt(Instant.now());
+        }
+        FlightEvents.BulkUpload upload = new FlightEvents.BulkUpload();
+        upload.begin();
+        list.setIdentifiers(PackedIdentifierList.of(storedSlice(normalizeIdentifiers(list.getIdentifiers()))));
+
+        state.lists.put(list.getId(), list);
+        indexList(list, PackedIdentifierList.empty());
+        replicationLog.append(ChangeEvent.upsert(list, list.getIdentifiers(), List.of()));
+        scheduleIndexMaintenance();
+        commitUpload(upload, "create", list.getId(), 0, list.getIdentifiers().size());
+        return list;
     }
 
     /**
-     * Get all suppression lists.
-     *
-     * TODO: Implement this method
-     * @return List of all suppression lists
+     * Get all suppression lists, ordered by ID.
      */
     public List<SuppressionList> getAllSuppressionLists() {
-        // TODO: Implement CRUD - Read all
-        throw new UnsupportedOperationException("getAllSuppressionLists() not implemented yet");
+        return new ArrayList<>(state.lists.values());
+    }
+
+    /**
+     * Up to {@code limit} lists with IDs after {@code afterId} (from the start if null), ordered by ID.
+     */
+    public List<SuppressionList> getSuppressionListsAfter(String afterId, int limit) {
+        Collection<SuppressionList> remaining = afterId == null
+                ? state.lists.values()
+                : state.lists.tailMap(afterId, false).values();
+        List<SuppressionList> page = new ArrayList<>(Math.min(limit, 1024));
+        for (SuppressionList list : remaining) {
+            if (page.size() == limit) {
+                break;
+            }
+            page.add(list);
+        }
+        return page;
+    }
+
+    public boolean hasSuppressionListsAfter(String id) {
+        return state.lists.higherKey(id) != null;
     }
 
     /**
      * Get a specific suppression list by ID.
      *
-     * TODO: Implement this method
      * @return The suppression list, or null if not found
      */
     public SuppressionList getSuppressionListById(String id) {
-        // TODO: Implement CRUD - Read one
-        throw new UnsupportedOperationException("getSuppressionListById() not implemented yet");
+        return state.lists.get(id);
     }
 
     /**
-     * Update a suppression list (add/remove identifiers).
+     * Membership of one identifier in one list: a binary search over the list's packed keys.
      *
-     * TODO: Implement this method
-     * - Update the storage
-     * - Rebuild the index for affected identifiers
+     * @return null if the list does not exist
+     */
+    public Boolean isListMember(String listId, String identifier) {
+        SuppressionList list = state.lists.get(listId);
+        return list != null ? list.getIdentifiers().contains(identifier) : null;
+    }
+
+    /**
+     * Update a suppression list.
+     *
+     * Fields present in {@code updatedList} replace the stored ones; the ID and
+     * created_at are preserved. Only identifiers entering or leaving the list touch
+     * the index.
      *
      * @return The updated suppression list, or null if not found
      */
-    public SuppressionList updateSuppressionList(String id, SuppressionList updatedList) {
-        // TODO: Implement CRUD - Update
-        throw new UnsupportedOperationException("updateSuppressionList() not implemented yet");
+    public synchronized SuppressionList updateSuppressionList(String id, SuppressionList updatedList) {
+        SuppressionList existing = state.lists.get(id);
+        if (existing == null) {
+            return null;
+        }
+        FlightEvents.BulkUpload upload = new FlightEvents.BulkUpload();
+        upload.begin();
+        PackedIdentifierList identifiers = null;
+        if (updatedList.getIdentifiers() != null) {
+            if (updatedList.getIdentifiers().contains(null)) {
+                throw new IllegalArgumentException("identifiers must not contain null values");
+            }
+            identifiers = PackedIdentifierList.of(storedSlice(normalizeIdentifiers(updatedList.getIdentifiers())));
+        }
+
+        SuppressionList merged = new SuppressionList(
+                id,
+                updatedList.getAdvertiserId() != null ? updatedList.getAdvertiserId() : existing.getAdvertiserId(),
+                updatedList.getName() != null ? updatedList.getName() : existing.getName(),
+                identifiers != null ? identifiers : existing.getIdentifiers(),
+                existing.getCreatedAt()
+        );
+
+        state.lists.put(id, merged);
+        indexList(merged, stored(existing));
+        if (identifiers != null) {
+            replicationLog.append(ChangeEvent.upsert(merged,
+                    difference(identifiers, existing.getIdentifiers()), difference(existing.getIdentifiers(), identifiers)));
+        } else {
+            replicationLog.append(ChangeEvent.upsert(merged, List.of(), List.of()));
+        }
+        scheduleIndexMaintenance();
+        if (identifiers != null) {
+            commitUpload(upload, "update", id, existing.getIdentifiers().size(), identifiers.size());
+        }
+        return merged;
     }
 
     /**
-     * Delete a suppression list.
-     *
-     * TODO: Implement this method
-     * - Remove from storage
-     * - Remove from index
+     * Delete a suppression list and remove its identifiers from the index.
      *
      * @return true if deleted, false if not found
      */
-    public boolean deleteSuppressionList(String id) {
-        // TODO: Implement CRUD - Delete
-        throw new UnsupportedOperationException("deleteSuppressionList() not implemented yet");
+    public synchronized boolean deleteSuppressionList(String id) {
+        if (state.lists.remove(id) == null) {
+            return false;
+        }
+        unindexList(id);
+        replicationLog.append(ChangeEvent.delete(id));
+        scheduleIndexMaintenance();
+        return true;
+    }
+
+    /**
+     * Replace a list's identifiers with a complete new copy read from {@code in}, one
+     * identifier per line, applying only the difference.
+     *
+     * The stream is sorted externally (see {@link ExternalListDiff}) and merged with
+     * the list's sorted contents outside the write lock; only the resulting adds and
+     * removes are applied, so the list never disappears from lookups and a refresh
+     * with 1% churn costs about 1% of a full rewrite in index updates. If the list
+     * changed while the diff was computed, it is recomputed against the new version.
+     *
+     * @return a summary of the change, or null if the list does not exist
+     * @throws IllegalArgumentException in strict mode, naming the first malformed line
+     */
+    public Map<String, Object> replaceListContents(String id, InputStream in) throws IOException {
+        if (!state.lists.containsKey(id)) {
+            return null;
+        }
+        long startTime = System.nanoTime();
+        FlightEvents.BulkUpload upload = new FlightEvents.BulkUpload();
+        upload.begin();
+        try (ExternalListDiff incoming = new ExternalListDiff(refreshSpillDirectory, refreshChunkEntries)) {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+            long lineNumber = 0;
+            for (String line; (line = reader.readLine()) != null; ) {
+                lineNumber++;
+                String identifier = line.strip();
+                if (identifier.isEmpty()) {
+                    continue;
+                }
+                if (strictHashes) {
+                    if (!HashKeys.isValid(identifier)) {
+                        throw new IllegalArgumentException("line " + lineNumber + " is not a 64-character hex hash");
+                    }
+                    identifier = HashKeys.canonicalize(identifier);
+                }
+                if (shardMembership.isEnabled() && !shardMembership.stores(identifier)) {
+                    continue;
+                }
+                if (!incoming.addHash(identifier)) {
+                    incoming.addOther(identifier);
+                }
+            }
+
+            while (true) {
+                SuppressionList existing = state.lists.get(id);
+                if (existing == null) {
+                    return null;
+                }
+                ExternalListDiff.Diff diff = incoming.diff(stored(existing));
+                synchronized (this) {
+                    if (state.lists.get(id) != existing) {
+                        continue;
+                    }
+                    PackedIdentifierList previous = stored(existing);
+                    PackedIdentifierList current = previous.withChanges(diff.added(), diff.removed());
+                    SuppressionList replaced = new SuppressionList(id, existing.getAdvertiserId(), existing.getName(),
+                            current, existing.getCreatedAt());
+
+                    state.lists.put(id, replaced);
+                    if (state.lsm != null) {
+                        indexList(replaced, previous);
+                    } else {
+                        state.sketches.put(id, replaced.getAdvertiserId(), previous, current);
+                        state.index.applyDelta(id, replaced.getAdvertiserId(), diff.added(), diff.removed());
+                    }
+                    replicationLog.append(ChangeEvent.upsert(replaced, diff.added(), diff.removed()));
+                    if (!diff.added().isEmpty() || !diff.removed().isEmpty()) {
+                        scheduleIndexMaintenance();
+                    }
+                    commitUpload(upload, "replace", id, previous.size(), current.size());
+
+                    Map<String, Object> summary = new LinkedHashMap<>();
+                    summary.put("list_id", id);
+                    summary.put("received", incoming.received());
+                    summary.put("distinct", diff.distinct());
+                    summary.put("added", diff.added().size());
+                    summary.put("removed", diff.removed().size());
+                    summary.put("unchanged", diff.distinct() - diff.added().size());
+                    summary.put("identifiers", current.size());
+                    summary.put("spilled_runs", incoming.spilledRuns());
+                    summary.put("elapsed_ms", (System.nanoTime() - startTime) / 1_000_000);
+                    return summary;
+                }
+            }
+        }
+    }
+
+    private void validate(SuppressionList list) {
+        if (list == null) {
+            throw new IllegalArgumentException("Request body is required");
+        }
+        if (list.getAdvertiserId() == null || list.getAdvertiserId().isBlank()) {
+            throw new IllegalArgumentException("advertiser_id is required");
+        }
+        if (list.getName() == null || list.getName().isBlank()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (list.getIdentifiers() == null) {
+            throw new IllegalArgumentException("identifiers is required");
+        }
+        if (list.getIdentifiers().contains(null)) {
+            throw new IllegalArgumentException("identifiers must not contain null values");
+        }
+    }
+
+    /**
+     * Copy identifiers, lower-casing them; in strict mode every one must be a 64-character hex hash.
+     *
+     * @throws IllegalArgumentException naming the first malformed identifier
+     */
+    private List<String> normalizeIdentifiers(List<String> identifiers) {
+        if (!strictHashes) {
+            return new ArrayList<>(identifiers);
+        }
+        List<String> normalized = new ArrayList<>(identifiers.size());
+        for (int i = 0; i < identifiers.size(); i++) {
+            String identifier = identifiers.get(i);
+            if (!HashKeys.isValid(identifier)) {
+                throw new IllegalArgumentException("identifiers[" + i + "] is not a 64-character hex hash");
+            }
+            normalized.add(HashKeys.canonicalize(identifier));
+        }
+        return normalized;
+    }
+
+    /**
+     * A complete identifier list in stored form (normalized, distinct, sorted),
+     * whichever partitions this node keeps.
+     *
+     * @throws IllegalArgumentException as for {@link #createSuppressionList}
+     */
+    public List<String> canonicalIdentifiers(List<String> identifiers) {
+        return PackedIdentifierList.of(normalizeIdentifiers(identifiers));
+    }
+
+    /**
+     * The identifiers this node keeps; all of them unless sharding is enabled.
+     */
+    private List<String> storedSlice(List<String> identifiers) {
+        if (!shardMembership.isEnabled()) {
+            return identifiers;
+        }
+        List<String> slice = new ArrayList<>();
+        for (String identifier : identifiers) {
+            if (shardMembership.stores(identifier)) {
+                slice.add(identifier);
+            }
+        }
+        return slice;
+    }
+
+    /**
+     * The stored identifiers of a list (empty if the list does not exist).
+     */
+    private static PackedIdentifierList stored(SuppressionList list) {
+        return list != null ? PackedIdentifierList.of(list.getIdentifiers()) : PackedIdentifierList.empty();
+    }
+
+    /**
+     * Validate a request email hash and return its canonical (lowercase) form.
+     *
+     * @throws IllegalArgumentException in strict mode if the hash is not 64 hex characters
+     */
+    public String normalizeEmailHash(String emailHash) {
+        if (!strictHashes) {
+            return emailHash;
+        }
+        if (!HashKeys.isValid(emailHash)) {
+            throw new IllegalArgumentException("email hash must be 64 hex characters");
+        }
+        return HashKeys.canonicalize(emailHash);
+    }
+
+    // ==================== INDEX WRITES ====================
+
+    /**
+     * Index a list's new contents. {@code previous} is what the index held for it
+     * (empty for a new list). On the LSM tier the store takes the contents over: the
+     * list's identifiers become the store's on-disk view of them.
+     */
+    private void indexList(SuppressionList list, PackedIdentifierList previous) {
+        indexList(state, list, previous);
+    }
+
+    private void indexList(ListState target, SuppressionList list, PackedIdentifierList previous) {
+        PackedIdentifierList current = stored(list);
+        target.sketches.put(list.getId(), list.getAdvertiserId(), previous, current);
+        if (target.lsm != null) {
+            list.setIdentifiers(target.lsm.putList(list.getId(), list.getAdvertiserId(), describe(list), current));
+        } else {
+            target.index.putList(list.getId(), list.getAdvertiserId(), current);
+        }
+    }
+
+    /**
+     * A list's fields other than its identifiers, as the LSM store keeps them for the next start.
+     */
+    private String describe(SuppressionList list) {
+        try {
+            return objectMapper.writeValueAsString(new SuppressionList(list.getId(), list.getAdvertiserId(),
+                    list.getName(), null, list.getCreatedAt()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize suppression list " + list.getId(), e);
+        }
+    }
+
+    private static void commitUpload(FlightEvents.BulkUpload upload, String operation, String listId,
+                                     long previousIdentifiers, long identifiers) {
+        upload.end();
+        if (upload.shouldCommit()) {
+            upload.operation = operation;
+            upload.listId = listId;
+            upload.previousIdentifiers = previousIdentifiers;
+            upload.identifiers = identifiers;
+            upload.commit();
+        }
+    }
+
+    private void unindexList(String listId) {
+        state.sketches.remove(listId);
+        if (state.lsm != null) {
+            state.lsm.removeList(listId);
+        } else {
+            state.index.removeList(listId);
+        }
+    }
+
+    // ==================== INDEX MAINTENANCE ====================
+
+    /**
+     * Coalesce bursts of writes into one background pass: reclaim dead dictionary
+     * ordinals if too many have piled up, then rebuild the sorted index.
+     */
+    private void scheduleIndexMaintenance() {
+        boolean due = lsmDirectory == null && (sortedReadIndex || reclaimDeadFraction > 0);
+        if (!due || !indexMaintenancePending.compareAndSet(false, true)) {
+            return;
+        }
+        indexMaintenance.schedule(() -> {
+            indexMaintenancePending.set(false);
+            try {
+                reclaimDeadIdentifiers();
+            } catch (RuntimeException e) {
+                System.err.println("✗ Failed to reclaim dead identifiers: " + e.getMessage());
+            }
+            if (!sortedReadIndex) {
+                return;
+            }
+            try {
+                ListState current = state;
+                FlightEvents.IndexBuild build = new FlightEvents.IndexBuild();
+                build.begin();
+                current.index.rebuildReadIndex();
+                build.end();
+                if (build.shouldCommit()) {
+                    build.kind = "read-index";
+                    build.lists = current.lists.size();
+                    build.identifiers = current.index.dictionarySize();
+                    build.bytes = current.index.readIndexBytes();
+                    build.commit();
+                }
+            } catch (RuntimeException e) {
+                System.err.println("✗ Failed to rebuild read index: " + e.getMessage());
+            }
+        }, readIndexRebuildDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The dictionary never drops an ordinal, so identifiers that left every list keep
+     * their slot, their Eytzinger entry and their Bloom filter bits. Past
+     * {@code falcon.suppression.dictionary.reclaim-dead-fraction} dead ordinals, build a
+     * fresh index from the lists, off to the side like a snapshot load, and publish it
+     * in one write of {@link #state}. Writers wait meanwhile; lookups do not.
+     */
+    private synchronized void reclaimDeadIdentifiers() {
+        ListState current = state;
+        int ordinals = current.index.dictionarySize();
+        int dead = ordinals - current.index.identifierCount();
+        if (reclaimDeadFraction <= 0 || ordinals == 0 || (double) dead / ordinals < reclaimDeadFraction) {
+            return;
+        }
+        FlightEvents.IndexBuild build = new FlightEvents.IndexBuild();
+        build.begin();
+        long startTime = System.nanoTime();
+        SuppressionIndex index = new SuppressionIndex();
+        if (bloomFallback) {
+            index.enableBloomFilter();
+        }
+        for (SuppressionList list : current.lists.values()) {
+            index.putList(list.getId(), list.getAdvertiserId(), stored(list));
+        }
+        if (sortedReadIndex) {
+            index.rebuildReadIndex();
+        }
+        state = new ListState(current.lists, index, current.sketches, current.lsm);
+        build.end();
+        if (build.shouldCommit()) {
+            build.kind = "reclaim";
+            build.lists = current.lists.size();
+            build.identifiers = index.dictionarySize();
+            build.bytes = index.bitmapBytes();
+            build.commit();
+        }
+        long durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        System.out.println("✓ Reclaimed " + dead + " dead identifiers: dictionary " + ordinals + " -> "
+                + index.dictionarySize() + " in " + durationMs + "ms");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexMaintenance.shutdownNow();
+        if (state.lsm != null) {
+            lsmLookups.shutdownNow();
+            state.lsm.close();
+        }
     }
 
     // ==================== PART 2: SUPPRESSION CHECKING ====================
@@ -183,61 +852,554 @@ public class SuppressionService {
     /**
      * Check which advertisers should be suppressed for a given email hash.
      *
-     * TODO: Implement this method with efficient lookup
-     * Performance requirement: < 10ms response time
-     *
-     * Algorithm:
-     * 1. Look up emailHash in your index
-     * 2. Return the set of advertiser IDs that suppress this email
-     * 3. Track the execution time for performance metrics
+     * One dictionary probe and one array read; the returned set is shared and immutable.
      *
      * @param emailHash The user's email hash (SHA-256, 64 hex characters)
      * @return Result containing suppressed advertisers and performance metrics
      */
     public SuppressionCheckResult checkSuppression(String emailHash) {
-        long startTime = System.currentTimeMillis();
+        FlightEvents.SuppressionCheck event = new FlightEvents.SuppressionCheck();
+        event.begin();
+        long startTime = System.nanoTime();
+
+        ListState current = state;
+        Set<String> suppressedAdvertisers = current.lsm != null ? current.lsm.lookup(emailHash) : current.index.lookup(emailHash);
+
+        long elapsed = System.nanoTime() - startTime;
+        if (elapsed >= checkThresholdNanos) {
+            commitSlowCheck(event, false, suppressedAdvertisers, null);
+        }
+        return new SuppressionCheckResult(suppressedAdvertisers, elapsed / 1_000_000);
+    }
 
-        // TODO: Implement efficient suppression check
-        // Example implementation:
-        // Set<String> suppressedAdvertisers = suppressionIndex.getOrDefault(emailHash, Collections.emptySet());
-        // long duration = System.currentTimeMillis() - startTime;
-        // return new SuppressionCheckResult(suppressedAdvertisers, duration);
+    /**
+     * Check suppression, optionally also reporting which lists contain the hash.
+     *
+     * Detail mode does a second, separate probe of the per-identifier list sets;
+     * the plain path is exactly {@link #checkSuppression(String)}.
+     */
+    public SuppressionCheckResult checkSuppression(String emailHash, boolean detail) {
+        if (!detail) {
+            return checkSuppression(emailHash);
+        }
+        FlightEvents.SuppressionCheck event = new FlightEvents.SuppressionCheck();
+        event.begin();
+        long startTime = System.nanoTime();
 
-        long duration = System.currentTimeMillis() - startTime;
+        Set<String> suppressedAdvertisers;
+        Set<String> matchedListIds;
+        ListState current = state;
+        if (current.lsm != null) {
+            suppressedAdvertisers = current.lsm.lookup(emailHash);
+            matchedListIds = current.lsm.lookupLists(emailHash);
+        } else {
+            suppressedAdvertisers = current.index.lookup(emailHash);
+            matchedListIds = current.index.lookupLists(emailHash);
+        }
 
-        throw new UnsupportedOperationException("checkSuppression() not implemented yet");
+        long elapsed = System.nanoTime() - startTime;
+        if (elapsed >= checkThresholdNanos) {
+            commitSlowCheck(event, true, suppressedAdvertisers, matchedListIds);
+        }
+        return new SuppressionCheckResult(suppressedAdvertisers, matchedListIds, elapsed / 1_000_000);
     }
 
-    // ==================== PART 3: ADVANCED FEATURES (OPTIONAL) ====================
+    private void commitSlowCheck(FlightEvents.SuppressionCheck event, boolean detail,
+                                 Set<String> suppressedAdvertisers, Set<String> matchedListIds) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.detail = detail;
+            event.storage = state.lsm != null ? "lsm" : "memory";
+            event.suppressedAdvertisers = suppressedAdvertisers.size();
+            event.matchedLists = matchedListIds != null ? matchedListIds.size() : 0;
+            event.commit();
+        }
+    }
 
     /**
-     * OPTIONAL: Implement ONE advanced feature here
+     * {@link #checkSuppression(String)} as a future. In-memory lookups come back
+     * already completed; on the LSM tier a lookup may read disk, so it runs on the
+     * lookup pool, coalesced with concurrent lookups of the same hash, and the
+     * caller decides how long to wait.
+     */
+    public CompletableFuture<SuppressionCheckResult> checkSuppressionAsync(String emailHash) {
+        if (state.lsm != null) {
+            return coalesce(emailHash, () -> CompletableFuture.supplyAsync(() -> checkSuppression(emailHash), lsmLookups));
+        }
+        try {
+            return CompletableFuture.completedFuture(checkSuppression(emailHash));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Run a lookup that leaves this node's memory (a remote shard or local disk),
+     * sharing it with every concurrent lookup of the same hash so a burst costs one
+     * backend read. In-memory lookups are cheaper than coalescing and do not come
+     * through here.
+     */
+    public CompletableFuture<SuppressionCheckResult> coalesce(String emailHash,
+                                                              Supplier<CompletableFuture<SuppressionCheckResult>> lookup) {
+        return inFlightLookups.load(emailHash, lookup);
+    }
+
+    /**
+     * Fail-safe approximate check from the Bloom filter: never misses an advertiser
+     * that suppresses the hash, but may add some that do not.
      *
-     * Option 1: Time-Based Expiration
-     * - Add expires_at field to SuppressionList
-     * - Filter out expired lists in checkSuppression()
-     * - Add cleanup job for expired lists
+     * On the LSM tier the per-run filters only know the hash, not its advertisers:
+     * a hash they rule out suppresses nobody, anything else suppresses every listed
+     * advertiser.
      *
-     * Option 2: Audit Logging
-     * - Log every suppression check with timestamp, email_hash, results
-     * - Provide method to query audit logs
+     * @return possibly suppressing advertisers, or null if the Bloom filter is disabled
+     */
+    public Set<String> mightSuppress(String emailHash) {
+        ListState current = state;
+        if (current.lsm != null) {
+            return current.lsm.mightContain(emailHash) ? current.lsm.listedAdvertisers() : Collections.emptySet();
+        }
+        return current.index.mightSuppress(emailHash);
+    }
+
+    /**
+     * @return advertisers that own at least one suppression list
+     */
+    public Set<String> listedAdvertisers() {
+        ListState current = state;
+        return current.lsm != null ? current.lsm.listedAdvertisers() : current.index.listedAdvertisers();
+    }
+
+    // ==================== LIST ALGEBRA ====================
+
+    /**
+     * Overlap between two lists, computed on their bitmaps (on the LSM tier, by
+     * merging their packed identifiers).
+     *
+     * @return counts for both lists, their intersection and union; null if either list is missing
+     */
+    public Map<String, Object> getListOverlap(String listId, String otherListId) {
+        ListState current = state;
+        if (current.lsm != null) {
+            SuppressionList list = current.lists.get(listId);
+            SuppressionList other = current.lists.get(otherListId);
+            if (list == null || other == null) {
+                return null;
+            }
+            PackedIdentifierList a = stored(list);
+            PackedIdentifierList b = stored(other);
+            return overlap(listId, otherListId, a.size(), b.size(), a.intersection(b).size());
+        }
+        RoaringBitmap a = current.index.listMembers(listId);
+        RoaringBitmap b = current.index.listMembers(otherListId);
+        if (a == null || b == null) {
+            return null;
+        }
+        return overlap(listId, otherListId, a.cardinality(), b.cardinality(), RoaringBitmap.andCardinality(a, b));
+    }
+
+    private static Map<String, Object> overlap(String listId, String otherListId, int listCount, int otherListCount,
+                                               int intersection) {
+        int union = listCount + otherListCount - intersection;
+
+        Map<String, Object> overlap = new LinkedHashMap<>();
+        overlap.put("list_id", listId);
+        overlap.put("other_list_id", otherListId);
+        overlap.put("list_count", listCount);
+        overlap.put("other_list_count", otherListCount);
+        overlap.put("intersection_count", intersection);
+        overlap.put("union_count", union);
+        overlap.put("jaccard", union == 0 ? 0.0 : (double) intersection / union);
+        return overlap;
+    }
+
+    /**
+     * Remove every identifier of {@code otherListId} from {@code listId}.
      *
-     * Option 3: Caching Layer
-     * - Implement LRU cache for recent checks
-     * - Track cache hit/miss rates
-     * - Configure TTL (e.g., 5 minutes)
+     * @return The updated list, or null if either list is missing
+     */
+    public synchronized SuppressionList subtractList(String listId, String otherListId) {
+        SuppressionList existing = state.lists.get(listId);
+        if (state.lsm != null) {
+            SuppressionList other = state.lists.get(otherListId);
+            if (existing == null || other == null) {
+                return null;
+            }
+            PackedIdentifierList removedIdentifiers = stored(existing).intersection(stored(other));
+            SuppressionList updated = new SuppressionList(listId, existing.getAdvertiserId(), existing.getName(),
+                    stored(existing).withChanges(List.of(), removedIdentifiers), existing.getCreatedAt());
+            state.lists.put(listId, updated);
+            indexList(updated, stored(existing));
+            replicationLog.append(ChangeEvent.upsert(updated, List.of(), removedIdentifiers));
+            return updated;
+        }
+        RoaringBitmap members = state.index.listMembers(listId);
+        RoaringBitmap removed = state.index.listMembers(otherListId);
+        if (existing == null || members == null || removed == null) {
+            return null;
+        }
+
+        RoaringBitmap remaining = RoaringBitmap.andNot(members, removed);
+        List<String> removedIdentifiers = state.index.resolve(RoaringBitmap.and(members, removed));
+        SuppressionList updated = new SuppressionList(
+                listId,
+                existing.getAdvertiserId(),
+                existing.getName(),
+                stored(existing).withChanges(List.of(), removedIdentifiers),
+                existing.getCreatedAt()
+        );
+
+        state.lists.put(listId, updated);
+        state.sketches.put(listId, existing.getAdvertiserId(), stored(existing), stored(updated));
+        state.index.putList(listId, existing.getAdvertiserId(), remaining);
+        replicationLog.append(ChangeEvent.upsert(updated, List.of(), removedIdentifiers));
+        scheduleIndexMaintenance();
+        return updated;
+    }
+
+    /**
+     * Per-advertiser view: how many identifiers its lists hold in total vs. uniquely.
      */
+    public Map<String, Object> getAdvertiserSummary(String advertiserId) {
+        List<String> listIds = new ArrayList<>();
+        long totalEntries = 0;
+        // The LSM tier keeps no per-advertiser bitmap, so the union is merged from the lists
+        PackedIdentifierList union = PackedIdentifierList.empty();
+        ListState current = state;
+        for (SuppressionList list : current.lists.values()) {
+            if (advertiserId.equals(list.getAdvertiserId())) {
+                listIds.add(list.getId());
+                if (current.lsm != null) {
+                    totalEntries += list.getIdentifiers().size();
+                    union = union.withChanges(list.getIdentifiers(), List.of());
+                } else {
+                    RoaringBitmap members = current.index.listMembers(list.getId());
+                    totalEntries += members != null ? members.cardinality() : 0;
+                }
+            }
+        }
 
-    // TODO: Implement your chosen advanced feature here
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("advertiser_id", advertiserId);
+        summary.put("list_ids", listIds);
+        summary.put("total_list_entries", totalEntries);
+        summary.put("unique_identifiers", current.lsm != null
+                ? union.size() : current.index.advertiserMembers(advertiserId).cardinality());
+        return summary;
+    }
+
+    // ==================== SKETCH ANALYTICS ====================
+
+    /**
+     * @return estimated unique identifiers of a list, or null if it does not exist
+     */
+    public Map<String, Object> estimateListCardinality(String listId) {
+        return state.sketches.listCardinality(listId);
+    }
+
+    /**
+     * @return estimated overlap of two lists, or null if either does not exist
+     */
+    public Map<String, Object> estimateListOverlap(String listId, String otherListId) {
+        return state.sketches.listOverlap(listId, otherListId);
+    }
+
+    public Map<String, Object> estimateAdvertiserCardinality(String advertiserId) {
+        return state.sketches.advertiserCardinality(advertiserId);
+    }
+
+    public Map<String, Object> estimateAdvertiserOverlap(String advertiserId, String otherAdvertiserId) {
+        return state.sketches.advertiserOverlap(advertiserId, otherAdvertiserId);
+    }
+
+    // ==================== SHARD HANDOFF ====================
+
+    /**
+     * Export the identifiers of the given partitions, one slice per list that has any.
+     */
+    public List<SuppressionList> exportPartitions(Set<Integer> partitions) {
+        List<SuppressionList> slices = new ArrayList<>();
+        for (SuppressionList list : getAllSuppressionLists()) {
+            List<String> identifiers = new ArrayList<>();
+            for (String identifier : list.getIdentifiers()) {
+                if (partitions.contains(ShardMembership.partitionOf(identifier))) {
+                    identifiers.add(identifier);
+                }
+            }
+            if (!identifiers.isEmpty()) {
+                slices.add(new SuppressionList(list.getId(), list.getAdvertiserId(), list.getName(),
+                        identifiers, list.getCreatedAt()));
+            }
+        }
+        return slices;
+    }
+
+    /**
+     * Merge list slices pulled from another node into local storage and the index.
+     *
+     * @return number of identifiers imported
+     */
+    public synchronized int importSlices(List<SuppressionList> slices) {
+        int imported = 0;
+        for (SuppressionList slice : slices) {
+            if (slice.getId() == null || slice.getAdvertiserId() == null || slice.getIdentifiers() == null) {
+                continue;
+            }
+            FlightEvents.BulkUpload upload = new FlightEvents.BulkUpload();
+            upload.begin();
+            SuppressionList existing = state.lists.get(slice.getId());
+            PackedIdentifierList before = stored(existing);
+            PackedIdentifierList identifiers = before.withChanges(storedSlice(slice.getIdentifiers()), List.of());
+            imported += identifiers.size() - before.size();
+
+            SuppressionList merged = existing != null
+                    ? new SuppressionList(existing.getId(), existing.getAdvertiserId(), existing.getName(),
+                            identifiers, existing.getCreatedAt())
+                    : new SuppressionList(slice.getId(), slice.getAdvertiserId(), slice.getName(),
+                            identifiers, slice.getCreatedAt());
+            state.lists.put(merged.getId(), merged);
+            indexList(merged, before);
+            replicationLog.append(ChangeEvent.upsert(merged, storedSlice(slice.getIdentifiers()), List.of()));
+            commitUpload(upload, "shard-import", merged.getId(), before.size(), identifiers.size());
+        }
+        scheduleIndexMaintenance();
+        return imported;
+    }
+
+    /**
+     * Drop identifiers of partitions this node no longer stores.
+     *
+     * @return number of identifiers dropped
+     */
+    public synchronized int dropUnstoredPartitions() {
+        int dropped = 0;
+        for (SuppressionList list : getAllSuppressionLists()) {
+            PackedIdentifierList kept = PackedIdentifierList.of(storedSlice(list.getIdentifiers()));
+            if (kept.size() != list.getIdentifiers().size()) {
+                dropped += list.getIdentifiers().size() - kept.size();
+                SuppressionList trimmed = new SuppressionList(list.getId(), list.getAdvertiserId(), list.getName(),
+                        kept, list.getCreatedAt());
+                state.lists.put(list.getId(), trimmed);
+                indexList(trimmed, stored(list));
+                replicationLog.append(ChangeEvent.upsert(trimmed, List.of(), difference(list.getIdentifiers(), kept)));
+            }
+        }
+        if (dropped > 0) {
+            scheduleIndexMaintenance();
+        }
+        return dropped;
+    }
+
+    // ==================== REPLICATION ====================
+
+    /**
+     * Apply change events from the leader's stream, in sequence order.
+     * Only the identifiers named in each event touch storage and the index.
+     */
+    public synchronized void applyChanges(List<ChangeEvent> events) {
+        for (ChangeEvent event : events) {
+            replicatedSeq = event.getSeq();
+            if (event.getType() == ChangeEvent.Type.DELETE) {
+                if (state.lists.remove(event.getListId()) != null) {
+                    unindexList(event.getListId());
+                }
+                continue;
+            }
+            List<String> added = storedSlice(event.getAdded() != null ? event.getAdded() : List.of());
+            List<String> removed = event.getRemoved() != null ? event.getRemoved() : List.of();
+
+            SuppressionList existing = state.lists.get(event.getListId());
+            SuppressionList updated = new SuppressionList(event.getListId(), event.getAdvertiserId(), event.getName(),
+                    stored(existing).withChanges(added, removed), event.getCreatedAt());
+
+            state.lists.put(updated.getId(), updated);
+            if (state.lsm != null) {
+                indexList(updated, stored(existing));
+            } else {
+                state.sketches.put(updated.getId(), updated.getAdvertiserId(), stored(existing), stored(updated));
+                state.index.applyDelta(updated.getId(), updated.getAdvertiserId(), added, removed);
+            }
+        }
+        if (!events.isEmpty()) {
+            scheduleIndexMaintenance();
+        }
+    }
+
+    /**
+     * Change-stream position of the data on this node: the log head on a leader,
+     * the last applied event on a follower, the loaded snapshot's on a standalone node.
+     */
+    public long changeSeq() {
+        return replicationLog.isLeader() ? replicationLog.lastSeq() : replicatedSeq;
+    }
+
+    /**
+     * Leader epoch that {@link #changeSeq} counts in: this run's on a leader, the one
+     * of the last loaded snapshot elsewhere (null if there is none).
+     */
+    public String changeEpoch() {
+        return replicationLog.isLeader() ? replicationLog.epoch() : replicatedEpoch;
+    }
+
+    /**
+     * Write every list as a binary snapshot. The lists and their sequence number are
+     * captured under the write lock; serialization runs outside it, so writes keep going.
+     *
+     * @return the sequence number the snapshot reflects
+     */
+    public long writeSnapshot(OutputStream out) throws IOException {
+        long seq;
+        String epoch;
+        List<SuppressionList> lists;
+        synchronized (this) {
+            seq = changeSeq();
+            epoch = changeEpoch();
+            lists = getAllSuppressionLists();
+        }
+        IndexSnapshot.write(out, seq, epoch, lists);
+        return seq;
+    }
+
+    /**
+     * Replace all local lists with a snapshot read from {@code in}. The snapshot is fully
+     * read and verified before anything local changes; its leader epoch becomes {@link #changeEpoch}.
+     *
+     * @return the sequence number the snapshot reflects
+     * @throws IOException if the snapshot is truncated or corrupt; local lists are then untouched
+     */
+    public long loadSnapshot(InputStream in) throws IOException {
+        IndexSnapshot snapshot = IndexSnapshot.read(in);
+        resetLists(snapshot.lists, snapshot.seq, snapshot.epoch);
+        return snapshot.seq;
+    }
+
+    /**
+     * Build lists, index and sketches for the snapshot off to the side, then publish them
+     * in one write of {@link #state}. Lookups keep answering from the previous lists until
+     * then; a replaced LSM store is closed once lookups still running on it are done.
+     */
+    private synchronized void resetLists(List<SuppressionList> lists, long seq, String epoch) throws IOException {
+        FlightEvents.SnapshotSwap swap = new FlightEvents.SnapshotSwap();
+        swap.begin();
+        ListState fresh = newState();
+        try {
+            for (SuppressionList list : lists) {
+                list.setIdentifiers(PackedIdentifierList.of(storedSlice(list.getIdentifiers())));
+                fresh.lists.put(list.getId(), list);
+                indexList(fresh, list, PackedIdentifierList.empty());
+            }
+            if (sortedReadIndex) {
+                fresh.index.rebuildReadIndex();
+            }
+        } catch (RuntimeException e) {
+            if (fresh.lsm != null) {
+                fresh.lsm.destroy();
+            }
+            throw e;
+        }
+        if (fresh.lsm != null) {
+            try {
+                markCurrent(fresh.lsm);
+            } catch (IOException e) {
+                fresh.lsm.destroy();
+                throw e;
+            }
+        }
+        ListState replaced = state;
+        state = fresh;
+        replicatedSeq = seq;
+        replicatedEpoch = epoch;
+        if (replaced.lsm != null) {
+            indexMaintenance.schedule(replaced.lsm::destroy, RETIRED_STORE_GRACE_MS, TimeUnit.MILLISECONDS);
+        }
+        swap.end();
+        if (swap.shouldCommit()) {
+            swap.seq = seq;
+            swap.lists = lists.size();
+            swap.identifiers = listStorageIdentifiers(fresh);
+            swap.commit();
+        }
+    }
+
+    private static List<String> difference(List<String> from, List<String> minus) {
+        Collection<String> excluded = minus instanceof PackedIdentifierList ? minus : new HashSet<>(minus);
+        List<String> result = new ArrayList<>();
+        for (String identifier : from) {
+            if (!excluded.contains(identifier)) {
+                result.add(identifier);
+            }
+        }
+        return result;
+    }
 
     // ==================== HELPER METHODS ====================
 
+    // Heap held by the stored lists' packed identifiers
+    private static long listStorageBytes(ListState current) {
+        long bytes = 0;
+        for (SuppressionList list : current.lists.values()) {
+            bytes += heapBytes(list);
+        }
+        return bytes;
+    }
+
+    // On the LSM tier only what is cached counts; asking must not read the list from disk
+    private static long heapBytes(SuppressionList list) {
+        return list.getIdentifiers() instanceof StoredIdentifierList onDisk
+                ? onDisk.cachedBytes() : stored(list).sizeInBytes();
+    }
+
     /**
-     * Rebuild the entire suppression index from stored lists.
-     * Useful after bulk updates or for testing.
+     * Where the heap goes: bytes per index structure, list storage and the LSM
+     * tier's in-memory part; per-advertiser counts and bytes; the dictionary's
+     * load factor and probe lengths; and the JVM heap itself.
      */
-    private void rebuildIndex() {
-        // TODO: Implement index rebuilding
+    private static Map<String, Object> memoryBreakdown(ListState current) {
+        Map<String, Object> structures = current.index.memoryBreakdown();
+        long listStorage = listStorageBytes(current);
+        long lsmMemory = current.lsm != null ? current.lsm.memoryBytes() : 0;
+        long indexTotal = (Long) structures.remove("total");
+        structures.put("list_storage", listStorage);
+        structures.put("lsm", lsmMemory);
+        structures.put("list_sketches", current.sketches.sizeInBytes());
+        structures.put("total", indexTotal + listStorage + lsmMemory + current.sketches.sizeInBytes());
+
+        Map<String, Map<String, Object>> advertisers = current.index.advertiserBreakdown();
+        for (SuppressionList list : current.lists.values()) {
+            Map<String, Object> advertiser = advertisers.computeIfAbsent(list.getAdvertiserId(), id -> {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("lists", 0);
+                stats.put("list_entries", 0L);
+                stats.put("bitmap_bytes", 0L);
+                return stats;
+            });
+            if (current.lsm != null) {
+                advertiser.merge("lists", 1, (a, b) -> (Integer) a + (Integer) b);
+                advertiser.merge("list_entries", (long) list.getIdentifiers().size(), (a, b) -> (Long) a + (Long) b);
+            }
+            advertiser.merge("list_storage_bytes", heapBytes(list), (a, b) -> (Long) a + (Long) b);
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        Map<String, Object> jvm = new LinkedHashMap<>();
+        jvm.put("used", heap.getUsed());
+        jvm.put("committed", heap.getCommitted());
+        jvm.put("max", heap.getMax());
+
+        Map<String, Object> memory = new LinkedHashMap<>();
+        memory.put("bytes_by_structure", structures);
+        memory.put("advertisers", advertisers);
+        memory.put("dictionary", current.index.dictionaryProbeStatistics(PROBE_SAMPLE_SLOTS));
+        memory.put("heap", jvm);
+        return memory;
+    }
+
+    private static long listStorageIdentifiers(ListState current) {
+        long identifiers = 0;
+        for (SuppressionList list : current.lists.values()) {
+            identifiers += list.getIdentifiers().size();
+        }
+        return identifiers;
     }
 
     /**
@@ -245,10 +1407,61 @@ public class SuppressionService {
      * Useful for monitoring and debugging.
      */
     public Map<String, Object> getStatistics() {
+        ListState current = state;
         Map<String, Object> stats = new HashMap<>();
-        stats.put("total_lists", suppressionListsStorage.size());
-        stats.put("total_identifiers", suppressionIndex != null ? suppressionIndex.size() : 0);
-        // TODO: Add more statistics
+        stats.put("total_lists", current.lists.size());
+        stats.put("total_identifiers", current.lsm != null ? listStorageIdentifiers(current) : current.index.identifierCount());
+        stats.put("dictionary_size", current.index.dictionarySize());
+        stats.put("distinct_advertiser_sets", current.index.distinctAdvertiserSetCount());
+        stats.put("bitmap_bytes", current.index.bitmapBytes());
+        stats.put("list_storage_bytes", listStorageBytes(current));
+        stats.put("list_attribution_bytes", current.index.listAttributionBytes());
+        stats.put("distinct_list_sets", current.index.distinctListSetCount());
+        stats.put("bloom_filter_bytes", current.index.bloomFilterBytes());
+        stats.put("lookup_coalescing", inFlightLookups.status());
+        stats.put("storage", current.lsm != null ? "lsm" : "memory");
+        if (current.lsm != null) {
+            stats.put("lsm", current.lsm.status());
+        }
+        stats.put("read_index", sortedReadIndex ? "eytzinger" : "hash");
+        if (sortedReadIndex) {
+            stats.put("read_index_current", current.index.isReadIndexCurrent());
+            stats.put("read_index_bytes", current.index.readIndexBytes());
+        }
+        stats.put("memory", memoryBreakdown(current));
+        if (shardMembership.isEnabled()) {
+            Map<String, Object> shard = new LinkedHashMap<>();
+            shard.put("self", shardMembership.self());
+            shard.put("nodes", shardMembership.nodes());
+            shard.put("owned_partitions", shardMembership.ownedPartitionCount());
+            shard.put("pending_handoffs", shardMembership.pendingHandoffCount());
+            stats.put("shard", shard);
+        }
         return stats;
     }
+
+    /**
+     * Lists plus the structures derived from them. Writers change the parts in place
+     * under the service lock; a snapshot load builds a new instance and publishes it
+     * with one write of {@link #state}, so readers see either the old lists and index
+     * or the new ones, never a partly reset mix.
+     */
+    private static final class ListState {
+        // Lists keyed and ordered by list ID
+        final ConcurrentNavigableMap<String, SuppressionList> lists;
+        // Fast lookups: email_hash -> advertiser_ids, plus per-list bitmaps
+        final SuppressionIndex index;
+        // Per-list cardinality sketches for the analytics endpoints
+        final ListSketches sketches;
+        // Disk-resident replacement for the index's hash lookups; null unless storage=lsm
+        final LsmStore lsm;
+
+        ListState(ConcurrentNavigableMap<String, SuppressionList> lists, SuppressionIndex index,
+                  ListSketches sketches, LsmStore lsm) {
+            this.lists = lists;
+            this.index = index;
+            this.sketches = sketches;
+            this.lsm = lsm;
+        }
+    }
 }
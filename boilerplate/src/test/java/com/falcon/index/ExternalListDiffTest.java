@@ -0,0 +1,172 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ExternalListDiff} against set difference when the new contents are spilled to
+ * several runs, with duplicates inside a chunk, across runs and between the runs and
+ * the chunk still in memory.
+ */
+class ExternalListDiffTest {
+
+    // The smallest chunk the diff accepts
+    private static final int CHUNK_KEYS = 1024;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void diffMatchesSetDifferenceAcrossSpilledRuns() throws Exception {
+        Random random = new Random(101);
+        List<String> pool = hashes(random, 6_000);
+        List<String> stream = new ArrayList<>();
+        for (String hash : pool.subList(0, 4_000)) {
+            // Up to three copies each, scattered, so copies land in different runs
+            int copies = 1 + random.nextInt(3);
+            for (int c = 0; c < copies; c++) {
+                stream.add(hash);
+            }
+        }
+        Collections.shuffle(stream, random);
+        List<String> others = List.of("alice@example.com", "bob@example.com", "ABCDEF");
+        TreeSet<String> current = new TreeSet<>(pool.subList(3_000, 6_000));
+        current.addAll(List.of("bob@example.com", "carol@example.com"));
+
+        try (ExternalListDiff diff = new ExternalListDiff(directory, CHUNK_KEYS)) {
+            for (String hash : stream) {
+                assertTrue(diff.addHash(hash));
+            }
+            for (String other : others) {
+                assertFalse(diff.addHash(other));
+                diff.addOther(other);
+            }
+            diff.addOther("alice@example.com");
+            assertTrue(diff.spilledRuns() >= 3, "runs: " + diff.spilledRuns());
+            assertEquals(stream.size() + others.size() + 1, diff.received());
+
+            TreeSet<String> incoming = new TreeSet<>(stream);
+            incoming.addAll(others);
+            assertDiff(incoming, current, diff.diff(PackedIdentifierList.of(current)));
+
+            // The runs are kept, so the same contents diff again against a newer list
+            TreeSet<String> newer = new TreeSet<>(pool.subList(0, 1_000));
+            newer.addAll(pool.subList(5_000, 6_000));
+            assertDiff(incoming, newer, diff.diff(PackedIdentifierList.of(newer)));
+            assertDiff(incoming, new TreeSet<>(), diff.diff(PackedIdentifierList.empty()));
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count(), "close() removes the spilled runs");
+        }
+    }
+
+    @Test
+    void oneHashRepeatedAcrossEveryRunCountsOnce() throws Exception {
+        String hash = hashes(new Random(103), 1).get(0);
+        try (ExternalListDiff diff = new ExternalListDiff(directory, CHUNK_KEYS)) {
+            for (int i = 0; i < 5 * CHUNK_KEYS + 7; i++) {
+                diff.addHash(hash);
+            }
+            assertEquals(5, diff.spilledRuns());
+            ExternalListDiff.Diff result = diff.diff(PackedIdentifierList.empty());
+            assertEquals(1, result.distinct());
+            assertEquals(List.of(hash), result.added());
+            assertTrue(result.removed().isEmpty());
+
+            result = diff.diff(PackedIdentifierList.of(List.of(hash)));
+            assertTrue(result.added().isEmpty());
+            assertTrue(result.removed().isEmpty());
+        }
+    }
+
+    @Test
+    void inputsAroundTheChunkBoundary() throws Exception {
+        Random random = new Random(107);
+        for (int size : new int[]{0, 1, CHUNK_KEYS - 1, CHUNK_KEYS, CHUNK_KEYS + 1, 2 * CHUNK_KEYS, 3 * CHUNK_KEYS + 1}) {
+            List<String> hashes = hashes(random, size);
+            TreeSet<String> current = new TreeSet<>(hashes.subList(0, size / 2));
+            current.addAll(hashes(random, 10));
+            try (ExternalListDiff diff = new ExternalListDiff(directory, CHUNK_KEYS)) {
+                for (String hash : hashes) {
+                    diff.addHash(hash);
+                }
+                assertEquals(Math.max(0, (size - 1) / CHUNK_KEYS), diff.spilledRuns(), "size " + size);
+                assertDiff(new TreeSet<>(hashes), current, diff.diff(PackedIdentifierList.of(current)));
+            }
+        }
+    }
+
+    @Test
+    void chunkGrowsUpToItsLimitBeforeSpilling() throws Exception {
+        Random random = new Random(113);
+        // Not a power of two times the initial size, so the last growth step is capped
+        int chunkKeys = 5_000;
+        for (int size : new int[]{CHUNK_KEYS + 1, 4 * CHUNK_KEYS + 1, chunkKeys, chunkKeys + 1, 12_000}) {
+            List<String> hashes = hashes(random, size);
+            TreeSet<String> current = new TreeSet<>(hashes.subList(size / 3, size));
+            try (ExternalListDiff diff = new ExternalListDiff(directory, chunkKeys)) {
+                for (String hash : hashes) {
+                    diff.addHash(hash);
+                }
+                assertEquals((size - 1) / chunkKeys, diff.spilledRuns(), "size " + size);
+                assertDiff(new TreeSet<>(hashes), current, diff.diff(PackedIdentifierList.of(current)));
+            }
+        }
+    }
+
+    @Test
+    void addingAfterADiffKeepsEarlierInput() throws Exception {
+        Random random = new Random(109);
+        List<String> first = hashes(random, 1_500);
+        List<String> second = hashes(random, 1_500);
+        try (ExternalListDiff diff = new ExternalListDiff(directory, CHUNK_KEYS)) {
+            for (String hash : first) {
+                diff.addHash(hash);
+            }
+            diff.diff(PackedIdentifierList.empty());
+            for (String hash : second) {
+                diff.addHash(hash);
+            }
+            // Repeats of the first batch after the diff sorted the chunk
+            for (String hash : first.subList(0, 700)) {
+                diff.addHash(hash);
+            }
+
+            TreeSet<String> incoming = new TreeSet<>(first);
+            incoming.addAll(second);
+            List<String> current = first.subList(0, 10);
+            assertDiff(incoming, new TreeSet<>(current), diff.diff(PackedIdentifierList.of(current)));
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private static void assertDiff(TreeSet<String> incoming, TreeSet<String> current, ExternalListDiff.Diff diff) {
+        TreeSet<String> added = new TreeSet<>(incoming);
+        added.removeAll(current);
+        TreeSet<String> removed = new TreeSet<>(current);
+        removed.removeAll(incoming);
+        assertEquals(PackedIdentifierList.of(added), diff.added());
+        assertEquals(PackedIdentifierList.of(removed), diff.removed());
+        assertEquals(incoming.size(), diff.distinct());
+    }
+
+    private static List<String> hashes(Random random, int count) {
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hashes.add(HashKeys.toHex(random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()));
+        }
+        return hashes;
+    }
+}
@@ -0,0 +1,146 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link EytzingerIndex#find} against the dictionary it was built from: buckets of every
+ * small size (complete and partial trees), keys sharing a leading word, absent keys on
+ * either side of present ones, and ordinals past the watermark.
+ */
+class EytzingerIndexTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsEveryKeyAndOnlyThose() {
+        Random random = new Random(11);
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        List<long[]> keys = new ArrayList<>();
+
+        // Scattered keys: buckets of zero or one entry
+        for (int i = 0; i < 5_000; i++) {
+            keys.add(randomKey(random));
+        }
+        // One bucket per size 2..64, so the search runs on every tree shape up to six levels
+        for (int size = 2; size <= 64; size++) {
+            long prefix = (long) (0x1000 + size) << 48;
+            for (int i = 0; i < size; i++) {
+                long[] key = randomKey(random);
+                key[0] = prefix | (key[0] >>> 16);
+                keys.add(key);
+            }
+        }
+        // Keys that only differ after the leading word, mixed into a busy bucket
+        long shared = (0x2000L << 48) | 0x1234;
+        for (int i = 0; i < 9; i++) {
+            long[] key = randomKey(random);
+            key[0] = shared;
+            keys.add(key);
+            long[] neighbour = randomKey(random);
+            neighbour[0] = shared + (i % 2 == 0 ? -(i + 1) : i + 1);
+            keys.add(neighbour);
+        }
+        for (long[] key : keys) {
+            dictionary.intern(hex(key));
+        }
+        // Non-canonical identifiers hold ordinals but never enter the index
+        dictionary.intern("user@example.com");
+        dictionary.intern(hex(keys.get(0)).toUpperCase());
+
+        EytzingerIndex index = EytzingerIndex.build(dictionary, dictionary.size());
+        assertEquals(keys.size(), index.size());
+        assertEquals(dictionary.size(), index.watermark());
+        assertFindsExactly(dictionary, keys, index, random);
+    }
+
+    @Test
+    void keysPastTheWatermarkAreNotIndexed() {
+        Random random = new Random(3);
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        List<long[]> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            long[] key = randomKey(random);
+            keys.add(key);
+            dictionary.intern(hex(key));
+        }
+        EytzingerIndex index = EytzingerIndex.build(dictionary, 60);
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(i < 60 ? i : -1, index.find(hex(keys.get(i))));
+        }
+    }
+
+    @Test
+    void rejectsNonCanonicalInput() {
+        EytzingerIndex index = EytzingerIndex.build(new IdentifierDictionary(), 0);
+        String valid = hex(randomKey(new Random(1)));
+        assertEquals(-1, index.find(valid));
+        assertEquals(EytzingerIndex.NOT_CANONICAL, index.find(valid.toUpperCase()));
+        assertEquals(EytzingerIndex.NOT_CANONICAL, index.find(valid.substring(1)));
+        assertEquals(EytzingerIndex.NOT_CANONICAL, index.find(valid.substring(1) + "g"));
+        assertEquals(EytzingerIndex.NOT_CANONICAL, index.find(null));
+    }
+
+    @Test
+    void fileRoundTripAnswersTheSame() throws Exception {
+        Random random = new Random(5);
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        List<long[]> keys = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            long[] key = randomKey(random);
+            keys.add(key);
+            dictionary.intern(hex(key));
+        }
+        Path file = directory.resolve("index.bin");
+        EytzingerIndex.build(dictionary, dictionary.size()).writeTo(file);
+        EytzingerIndex read = EytzingerIndex.read(file);
+        assertEquals(keys.size(), read.size());
+        assertFindsExactly(dictionary, keys, read, random);
+    }
+
+    // ==================== HELPERS ====================
+
+    private static void assertFindsExactly(IdentifierDictionary dictionary, List<long[]> keys,
+                                           EytzingerIndex index, Random random) {
+        for (long[] key : keys) {
+            int expected = dictionary.ordinalOf(hex(key));
+            assertEquals(expected, index.find(hex(key)));
+            assertEquals(expected, index.find(key[0], key[1], key[2], key[3]));
+
+            // Absent neighbours: same leading word with another tail, and the adjacent leading words
+            assertAbsent(dictionary, index, key[0], key[1], key[2], key[3] ^ 1);
+            assertAbsent(dictionary, index, key[0] + 1, key[1], key[2], key[3]);
+            assertAbsent(dictionary, index, key[0] - 1, key[1], key[2], key[3]);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            long[] key = randomKey(random);
+            assertAbsent(dictionary, index, key[0], key[1], key[2], key[3]);
+        }
+        // Extremes of the first and last bucket
+        assertAbsent(dictionary, index, 0, 0, 0, 0);
+        assertAbsent(dictionary, index, -1, -1, -1, -1);
+    }
+
+    private static void assertAbsent(IdentifierDictionary dictionary, EytzingerIndex index,
+                                     long w0, long w1, long w2, long w3) {
+        if (dictionary.ordinalOf(HashKeys.toHex(w0, w1, w2, w3)) < 0) {
+            assertEquals(-1, index.find(w0, w1, w2, w3));
+        }
+    }
+
+    private static long[] randomKey(Random random) {
+        return new long[]{random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()};
+    }
+
+    private static String hex(long[] key) {
+        return HashKeys.toHex(key[0], key[1], key[2], key[3]);
+    }
+}
@@ -0,0 +1,150 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The SWAR validation and decoding in {@link HashKeys} against a plain per-character
+ * reference, for every character value at every position of the string.
+ */
+class HashKeysTest {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Test
+    void everyCharacterAtEveryPositionMatchesTheReference() {
+        Random random = new Random(17);
+        char[] chars = randomHex(random).toCharArray();
+        for (int position = 0; position < HashKeys.HEX_LENGTH; position++) {
+            char original = chars[position];
+            // All of Latin-1, plus characters whose low byte is a hex digit
+            for (int c = 0; c <= 0x1FF; c++) {
+                check(withChar(chars, position, (char) c));
+            }
+            for (char c : new char[]{'İ', 'š', 'Ɂ', '〰', '０', '￿'}) {
+                check(withChar(chars, position, c));
+            }
+            chars[position] = original;
+        }
+    }
+
+    @Test
+    void randomKeysDecodeLikeTheReference() {
+        Random random = new Random(23);
+        for (int i = 0; i < 20_000; i++) {
+            String hex = randomHex(random);
+            check(hex);
+            check(hex.toUpperCase());
+            String mixed = mixCase(hex, random);
+            check(mixed);
+            assertEquals(hex, HashKeys.canonicalize(mixed));
+        }
+        // Word edges: every nibble 0 and every nibble f
+        check("0".repeat(64));
+        check("f".repeat(64));
+        check("0123456789abcdef".repeat(4));
+    }
+
+    @Test
+    void wrongLengthsAreRejected() {
+        String hex = randomHex(new Random(29));
+        for (int length = 0; length < 80; length++) {
+            if (length == HashKeys.HEX_LENGTH) {
+                continue;
+            }
+            String s = length < 64 ? hex.substring(0, length) : hex + hex.substring(0, length - 64);
+            assertFalse(HashKeys.isValid(s), s);
+            assertFalse(HashKeys.isCanonical(s), s);
+            assertFalse(HashKeys.decoder().decode(s), s);
+            assertFalse(HashKeys.decodeTo(s, new byte[32], 0), s);
+        }
+        assertFalse(HashKeys.isValid(null));
+        assertFalse(HashKeys.isCanonical(null));
+        assertFalse(HashKeys.decoder().decode(null));
+    }
+
+    @Test
+    void canonicalizeKeepsCanonicalInstances() {
+        String hex = randomHex(new Random(31));
+        assertSame(hex, HashKeys.canonicalize(hex));
+        assertEquals(hex, HashKeys.canonicalize(hex.toUpperCase()));
+    }
+
+    // ==================== REFERENCE ====================
+
+    private static void check(String s) {
+        boolean canonical = referenceValid(s, false);
+        assertEquals(canonical, HashKeys.isCanonical(s), s);
+        assertEquals(referenceValid(s, true), HashKeys.isValid(s), s);
+
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        byte[] bytes = new byte[40];
+        assertEquals(canonical, decoder.decode(s), s);
+        assertEquals(canonical, HashKeys.decodeTo(s, bytes, 3), s);
+        if (!canonical) {
+            assertArrayEquals(new byte[40], bytes, "decodeTo must leave the output untouched");
+            return;
+        }
+        long[] expected = referenceWords(s);
+        assertArrayEquals(expected, new long[]{decoder.w0, decoder.w1, decoder.w2, decoder.w3}, s);
+        for (int w = 0; w < HashKeys.WORDS; w++) {
+            assertEquals(expected[w], HashKeys.word(s, w), s);
+        }
+        for (int i = 0; i < 32; i++) {
+            assertEquals((byte) (expected[i / 8] >>> (56 - 8 * (i % 8))), bytes[3 + i], s);
+        }
+        assertEquals(s, HashKeys.toHex(expected[0], expected[1], expected[2], expected[3]));
+        assertEquals(s, HashKeys.toHex(bytes, 3));
+    }
+
+    private static boolean referenceValid(String s, boolean allowUppercase) {
+        if (s.length() != HashKeys.HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            boolean ok = (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f')
+                    || (allowUppercase && c >= 'A' && c <= 'F');
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] referenceWords(String s) {
+        long[] words = new long[HashKeys.WORDS];
+        for (int w = 0; w < HashKeys.WORDS; w++) {
+            words[w] = Long.parseUnsignedLong(s.substring(16 * w, 16 * w + 16), 16);
+        }
+        return words;
+    }
+
+    // ==================== HELPERS ====================
+
+    private static String randomHex(Random random) {
+        char[] chars = new char[HashKeys.HEX_LENGTH];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = HEX[random.nextInt(16)];
+        }
+        return new String(chars);
+    }
+
+    private static String mixCase(String hex, Random random) {
+        char[] chars = hex.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            if (random.nextBoolean()) {
+                chars[i] = Character.toUpperCase(chars[i]);
+            }
+        }
+        return new String(chars);
+    }
+
+    private static String withChar(char[] chars, int position, char c) {
+        chars[position] = c;
+        return new String(chars);
+    }
+}
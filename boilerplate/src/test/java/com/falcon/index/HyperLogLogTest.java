@@ -0,0 +1,115 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Accuracy of {@link HyperLogLog} against its documented standard error, from small
+ * cardinalities through the former linear counting switch at 2.5 x 2^precision to many
+ * times the register count, plus merge and copy semantics.
+ */
+class HyperLogLogTest {
+
+    private static final int TRIALS = 20;
+
+    @Test
+    void errorStaysWithinTheStandardErrorAcrossCardinalities() {
+        for (int precision : new int[]{10, 12, 14}) {
+            int m = 1 << precision;
+            double standardError = new HyperLogLog(precision).standardError();
+            assertEquals(1.04 / Math.sqrt(m), standardError, 1e-12);
+            for (double multiple : new double[]{0.1, 1, 2.5, 3, 10, 50}) {
+                int n = (int) (multiple * m);
+                double sum = 0;
+                double squares = 0;
+                for (int trial = 0; trial < TRIALS; trial++) {
+                    SplittableRandom random = new SplittableRandom(precision * 1_000_003L + n * 31L + trial);
+                    HyperLogLog sketch = new HyperLogLog(precision);
+                    for (int i = 0; i < n; i++) {
+                        sketch.add(random.nextLong());
+                    }
+                    double error = (sketch.estimate() - n) / (double) n;
+                    String where = "precision " + precision + ", n " + n + ", trial " + trial;
+                    assertTrue(Math.abs(error) < 5 * standardError, where + ": error " + error);
+                    sum += error;
+                    squares += error * error;
+                }
+                String where = "precision " + precision + ", n " + n;
+                // The mean of 20 trials has a spread of ~0.22 standard errors: a bias of one is systematic
+                assertTrue(Math.abs(sum / TRIALS) < standardError, where + ": bias " + sum / TRIALS);
+                assertTrue(Math.sqrt(squares / TRIALS) < 1.5 * standardError,
+                        where + ": RMS error " + Math.sqrt(squares / TRIALS));
+            }
+        }
+    }
+
+    @Test
+    void smallCardinalitiesAreNearlyExact() {
+        assertEquals(0, new HyperLogLog(14).estimate());
+        SplittableRandom random = new SplittableRandom(83);
+        HyperLogLog sketch = new HyperLogLog(14);
+        for (int n = 1; n <= 100; n++) {
+            sketch.add(random.nextLong());
+            assertEquals(n, sketch.estimate(), 1, "n " + n);
+        }
+    }
+
+    @Test
+    void duplicatesDoNotCount() {
+        SplittableRandom random = new SplittableRandom(89);
+        long[] hashes = new long[5_000];
+        HyperLogLog sketch = new HyperLogLog(12);
+        for (int i = 0; i < hashes.length; i++) {
+            hashes[i] = random.nextLong();
+            sketch.add(hashes[i]);
+        }
+        long estimate = sketch.estimate();
+        for (int round = 0; round < 3; round++) {
+            for (long hash : hashes) {
+                sketch.add(hash);
+            }
+        }
+        assertEquals(estimate, sketch.estimate());
+    }
+
+    @Test
+    void mergeIsTheSketchOfTheUnion() {
+        SplittableRandom random = new SplittableRandom(97);
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            long hash = random.nextLong();
+            // Two thirds overlap between the sides
+            if (i % 3 != 0) {
+                left.add(hash);
+            }
+            if (i % 3 != 1) {
+                right.add(hash);
+            }
+            union.add(hash);
+        }
+        HyperLogLog merged = left.copy();
+        merged.merge(right);
+        assertEquals(union.estimate(), merged.estimate());
+        // The copy was merged, not the original
+        assertNotEquals(left.estimate(), merged.estimate());
+        assertThrows(IllegalArgumentException.class, () -> merged.merge(new HyperLogLog(13)));
+    }
+
+    @Test
+    void precisionIsBounded() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MIN_PRECISION - 1));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(HyperLogLog.MAX_PRECISION + 1));
+        // The longest possible run of zeros still fits a register at either end
+        for (int precision : new int[]{HyperLogLog.MIN_PRECISION, HyperLogLog.MAX_PRECISION}) {
+            HyperLogLog sketch = new HyperLogLog(precision);
+            sketch.add(0);
+            sketch.add(-1L >>> precision);
+            assertTrue(sketch.estimate() > 0);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link LsmStore} lookups against a model of list contents while memtables flush and
+ * runs compact underneath, the purging of tombstones and of retired ordinals by
+ * compaction, and reopening a store after a clean close and after a crash.
+ */
+class LsmStoreTest {
+
+    private static final int MEMTABLE_ENTRIES = 16;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void lookupsFollowPutsAndRemovesThroughFlushAndCompaction() throws Exception {
+        Random random = new Random(61);
+        List<String> pool = hashes(random, 300);
+        Map<String, Set<String>> model = new TreeMap<>();
+
+        LsmStore store = new LsmStore(directory, MEMTABLE_ENTRIES, 2, 0);
+        for (int round = 0; round < 400; round++) {
+            String listId = "list_" + random.nextInt(6);
+            if (random.nextInt(10) == 0) {
+                // Re-creating the list later gives it a fresh ordinal; the old one is retired
+                store.removeList(listId);
+                model.remove(listId);
+            } else {
+                Set<String> contents = new HashSet<>(model.getOrDefault(listId, Set.of()));
+                // Grow, shrink or replace, so hashes keep entering and leaving lists
+                int mode = random.nextInt(3);
+                if (mode != 0) {
+                    contents.removeIf(h -> random.nextInt(3) == 0);
+                }
+                if (mode != 1) {
+                    contents.addAll(sample(pool, random, random.nextInt(40)));
+                }
+                store.putList(listId, advertiserOf(listId), "{}", PackedIdentifierList.of(contents));
+                model.put(listId, contents);
+            }
+            for (String hash : sample(pool, random, 30)) {
+                assertLookup(model, store, hash);
+            }
+        }
+        awaitQuiet(store, 2);
+        assertTrue(((Number) store.status().get("compactions")).longValue() > 0);
+        for (String hash : pool) {
+            assertLookup(model, store, hash);
+        }
+        assertLists(model, store);
+
+        store.close();
+        LsmStore reopened = new LsmStore(directory, MEMTABLE_ENTRIES, 2, 0);
+        for (String hash : pool) {
+            assertLookup(model, reopened, hash);
+        }
+        assertLists(model, reopened);
+        reopened.close();
+    }
+
+    @Test
+    void tombstonesShadowAndArePurgedAtTheOldestRun() throws Exception {
+        Random random = new Random(67);
+        List<String> a = hashes(random, 2 * MEMTABLE_ENTRIES);
+        List<String> b = hashes(random, MEMTABLE_ENTRIES);
+        LsmStore store = new LsmStore(directory, MEMTABLE_ENTRIES, 2, 0);
+
+        // Two full memtables of members, merged into one run
+        store.putList("a", "adv_a", null, PackedIdentifierList.of(a));
+        awaitQuiet(store, 2);
+        assertEquals(1, runs(store));
+
+        // A run of tombstones for half of list a, then one of members for list b: merged
+        // together first (tombstones kept, older runs remain) and then into the oldest run
+        List<String> kept = a.subList(MEMTABLE_ENTRIES, a.size());
+        store.putList("a", "adv_a", null, PackedIdentifierList.of(kept));
+        for (String hash : a.subList(0, MEMTABLE_ENTRIES)) {
+            assertEquals(Set.of(), store.lookupLists(hash));
+        }
+        store.putList("b", "adv_b", null, PackedIdentifierList.of(b));
+        awaitQuiet(store, 2);
+
+        assertEquals(1, runs(store));
+        // Only live memberships are left: the shadowed members and their tombstones are gone
+        assertEquals(2L * MEMTABLE_ENTRIES, ((Number) store.status().get("run_entries")).longValue());
+        for (String hash : a.subList(0, MEMTABLE_ENTRIES)) {
+            assertEquals(Set.of(), store.lookupLists(hash));
+            assertFalse(store.mightContain(hash) && !store.lookupLists(hash).isEmpty());
+        }
+        for (String hash : kept) {
+            assertEquals(Set.of("a"), store.lookupLists(hash));
+        }
+        for (String hash : b) {
+            assertEquals(Set.of("adv_b"), store.lookup(hash));
+        }
+
+        // Emptying every list leaves nothing on disk once the tombstones reach the oldest run
+        store.putList("a", "adv_a", null, PackedIdentifierList.empty());
+        store.putList("b", "adv_b", null, PackedIdentifierList.empty());
+        awaitQuiet(store, 2);
+        assertEquals(0, runs(store));
+        for (String hash : a) {
+            assertEquals(Set.of(), store.lookupLists(hash));
+        }
+        store.close();
+    }
+
+    @Test
+    void retiredOrdinalsStopMatchingAndAreDroppedByCompaction() throws Exception {
+        Random random = new Random(71);
+        List<String> shared = hashes(random, MEMTABLE_ENTRIES / 2);
+        List<String> onlyA = hashes(random, MEMTABLE_ENTRIES / 2);
+        List<String> onlyB = hashes(random, MEMTABLE_ENTRIES / 2);
+        List<String> a = new ArrayList<>(shared);
+        a.addAll(onlyA);
+        List<String> b = new ArrayList<>(shared);
+        b.addAll(onlyB);
+
+        LsmStore store = new LsmStore(directory, MEMTABLE_ENTRIES, 2, 0);
+        store.putList("a", "adv_a", null, PackedIdentifierList.of(a));
+        awaitQuiet(store, 2);
+        assertEquals(1, runs(store));
+
+        store.removeList("a");
+        // Effective at once, before any compaction
+        for (String hash : a) {
+            assertEquals(Set.of(), store.lookup(hash));
+        }
+        assertEquals(Set.of(), store.listedAdvertisers());
+
+        // Re-created under the same ID, the list starts empty on a new ordinal
+        store.putList("a", "adv_a", null, PackedIdentifierList.empty());
+        store.putList("b", "adv_b", null, PackedIdentifierList.of(b));
+        awaitQuiet(store, 2);
+
+        assertEquals(1, runs(store));
+        assertEquals((long) MEMTABLE_ENTRIES, ((Number) store.status().get("run_entries")).longValue());
+        assertTrue(((Number) store.status().get("purged_entries")).longValue() >= MEMTABLE_ENTRIES);
+        for (String hash : shared) {
+            assertEquals(Set.of("b"), store.lookupLists(hash));
+        }
+        for (String hash : onlyA) {
+            assertEquals(Set.of(), store.lookupLists(hash));
+        }
+        assertEquals(Set.of("adv_a", "adv_b"), store.listedAdvertisers());
+        store.close();
+    }
+
+    @Test
+    void reopenRestoresRegistryAndContentsAndRemovesStrayFiles() throws Exception {
+        Random random = new Random(73);
+        List<String> a = hashes(random, 40);
+        List<String> b = hashes(random, 5);
+        LsmStore store = new LsmStore(directory, MEMTABLE_ENTRIES, 4, 0);
+        store.putList("a", "adv_a", "{\"name\":\"A\"}", PackedIdentifierList.of(a));
+        store.putList("b", "adv_b", "{\"name\":\"B\"}", PackedIdentifierList.of(b));
+        store.putList("gone", "adv_c", null, PackedIdentifierList.of(hashes(random, 3)));
+        store.removeList("gone");
+        // Moving a list to another advertiser is recorded too
+        store.putList("b", "adv_c", "{\"name\":\"B2\"}", PackedIdentifierList.of(b));
+        store.close();
+
+        Path strayRun = directory.resolve("99999999.run");
+        Path strayTemp = directory.resolve("lists").resolve("0.keys.tmp");
+        Files.write(strayRun, new byte[]{1, 2, 3});
+        Files.write(strayTemp, new byte[]{1, 2, 3});
+
+        LsmStore reopened = new LsmStore(directory, MEMTABLE_ENTRIES, 4, 0);
+        assertFalse(Files.exists(strayRun));
+        assertFalse(Files.exists(strayTemp));
+
+        List<LsmStore.StoredList> lists = reopened.lists();
+        assertEquals(List.of("a", "b"), lists.stream().map(LsmStore.StoredList::listId).toList());
+        assertEquals("adv_a", lists.get(0).advertiserId());
+        assertEquals("{\"name\":\"A\"}", lists.get(0).metadata());
+        assertEquals("adv_c", lists.get(1).advertiserId());
+        assertEquals("{\"name\":\"B2\"}", lists.get(1).metadata());
+        assertEquals(PackedIdentifierList.of(a), lists.get(0).identifiers().load());
+        assertEquals(PackedIdentifierList.of(b), lists.get(1).identifiers().load());
+        for (String hash : a) {
+            assertEquals(Set.of("adv_a"), reopened.lookup(hash));
+        }
+        for (String hash : b) {
+            assertEquals(Set.of("adv_c"), reopened.lookup(hash));
+        }
+        assertEquals(Set.of("adv_a", "adv_c"), reopened.listedAdvertisers());
+        reopened.close();
+    }
+
+    @Test
+    void writesThatNeverReachedARunAreReappliedAfterACrash() throws Exception {
+        Random random = new Random(79);
+        List<String> a = hashes(random, 3 * MEMTABLE_ENTRIES);
+        List<String> added = hashes(random, 3);
+        LsmStore store = new LsmStore(directory, MEMTABLE_ENTRIES, 4, 0);
+        store.putList("a", "adv_a", null, PackedIdentifierList.of(a));
+        awaitQuiet(store, 4);
+
+        // Both changes stay in the memtable: a shrink (tombstones) and a grow (members)
+        List<String> current = new ArrayList<>(a.subList(2, a.size()));
+        current.addAll(added);
+        store.putList("a", "adv_a", null, PackedIdentifierList.of(current));
+        store.putList("b", "adv_b", null, PackedIdentifierList.of(added.subList(0, 1)));
+        assertEquals(0L, ((Number) store.status().get("frozen_memtables")).longValue());
+        assertTrue(((Number) store.status().get("memtable_entries")).longValue() > 0);
+
+        // Abandoned without close(), as after kill -9: the memtable is lost
+        LsmStore recovered = new LsmStore(directory, MEMTABLE_ENTRIES, 4, 0);
+        for (String hash : a.subList(0, 2)) {
+            assertEquals(Set.of(), recovered.lookupLists(hash));
+        }
+        for (String hash : a.subList(2, a.size())) {
+            assertEquals(Set.of("a"), recovered.lookupLists(hash));
+        }
+        assertEquals(Set.of("a", "b"), recovered.lookupLists(added.get(0)));
+        assertEquals(Set.of("a"), recovered.lookupLists(added.get(1)));
+        assertEquals(PackedIdentifierList.of(current), recovered.lists().get(0).identifiers().load());
+
+        // The re-applied difference is durable once flushed: a further reopen needs no repair
+        recovered.close();
+        LsmStore again = new LsmStore(directory, MEMTABLE_ENTRIES, 4, 0);
+        assertEquals(0L, ((Number) again.status().get("memtable_entries")).longValue());
+        for (String hash : current) {
+            assertTrue(again.lookupLists(hash).contains("a"), hash);
+        }
+        for (String hash : a.subList(0, 2)) {
+            assertEquals(Set.of(), again.lookupLists(hash));
+        }
+        again.close();
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * Wait until no memtable awaits a flush and no tier is full, i.e. background work is done.
+     */
+    @SuppressWarnings("unchecked")
+    private static void awaitQuiet(LsmStore store, int fanIn) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            Map<String, Object> status = store.status();
+            Map<Integer, Integer> tiers = (Map<Integer, Integer>) status.get("runs_by_tier");
+            if (((Number) status.get("frozen_memtables")).intValue() == 0
+                    && tiers.values().stream().allMatch(count -> count < fanIn)) {
+                return;
+            }
+            Thread.sleep(5);
+        }
+        fail("LSM store did not settle: " + store.status());
+    }
+
+    private static int runs(LsmStore store) {
+        return ((Number) store.status().get("runs")).intValue();
+    }
+
+    private static void assertLookup(Map<String, Set<String>> model, LsmStore store, String hash) {
+        Set<String> lists = new HashSet<>();
+        Set<String> advertisers = new HashSet<>();
+        model.forEach((listId, contents) -> {
+            if (contents.contains(hash)) {
+                lists.add(listId);
+                advertisers.add(advertiserOf(listId));
+            }
+        });
+        assertEquals(lists, store.lookupLists(hash), hash);
+        assertEquals(advertisers, store.lookup(hash), hash);
+        if (!lists.isEmpty()) {
+            assertTrue(store.mightContain(hash));
+        }
+    }
+
+    private static void assertLists(Map<String, Set<String>> model, LsmStore store) {
+        Map<String, PackedIdentifierList> stored = new HashMap<>();
+        for (LsmStore.StoredList list : store.lists()) {
+            assertEquals(advertiserOf(list.listId()), list.advertiserId());
+            stored.put(list.listId(), list.identifiers().load());
+        }
+        assertEquals(model.keySet(), stored.keySet());
+        model.forEach((listId, contents) -> assertEquals(PackedIdentifierList.of(contents), stored.get(listId)));
+    }
+
+    private static String advertiserOf(String listId) {
+        return "adv_" + (listId.hashCode() & 1);
+    }
+
+    private static List<String> hashes(Random random, int count) {
+        List<String> hashes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            hashes.add(HashKeys.toHex(random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()));
+        }
+        return hashes;
+    }
+
+    private static List<String> sample(List<String> pool, Random random, int count) {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            out.add(pool.get(random.nextInt(pool.size())));
+        }
+        return out;
+    }
+}
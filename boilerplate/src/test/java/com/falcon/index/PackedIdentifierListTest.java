@@ -0,0 +1,211 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link PackedIdentifierList} against a sorted set of strings: packing with duplicates,
+ * {@link PackedIdentifierList#sortDistinct} on the raw keys, and merging through
+ * {@link PackedIdentifierList#withChanges}. Lowercase hex sorts like the unsigned key
+ * words, so the expected order is the set's, hashes first and other identifiers after.
+ */
+class PackedIdentifierListTest {
+
+    /** Never produced by the seeded generators below. */
+    private static final String ABSENT = "0".repeat(63) + "1";
+
+    @Test
+    void ofSortsAndDropsDuplicates() {
+        Random random = new Random(41);
+        List<String> input = new ArrayList<>();
+        for (int i = 0; i < 2_000; i++) {
+            String hash = randomHash(random);
+            int copies = 1 + random.nextInt(3);
+            for (int c = 0; c < copies; c++) {
+                input.add(hash);
+            }
+        }
+        input.add("user@example.com");
+        input.add("user@example.com");
+        input.add("ABC");
+        Collections.shuffle(input, random);
+
+        PackedIdentifierList packed = PackedIdentifierList.of(input);
+        assertMatches(new TreeSet<>(input), packed);
+        assertSame(packed, PackedIdentifierList.of(packed));
+        assertSame(PackedIdentifierList.empty(), PackedIdentifierList.of(List.of()));
+    }
+
+    @Test
+    void sortDistinctHandlesOrderedReversedAndRepeatedKeys() {
+        Random random = new Random(43);
+        long[][] cases = {
+                keys(random, 0, false),
+                keys(random, 1, false),
+                keys(random, 500, false),
+                sortedKeys(random, 500, false),
+                sortedKeys(random, 500, true),
+                keys(random, 500, true),
+                repeated(randomKey(random), 100_000),
+        };
+        for (long[] keys : cases) {
+            int n = keys.length / HashKeys.WORDS;
+            TreeSet<String> expected = new TreeSet<>();
+            for (int i = 0; i < n; i++) {
+                expected.add(hex(keys, i));
+            }
+            // Trailing slack beyond n must be ignored
+            long[] padded = Arrays.copyOf(keys, keys.length + HashKeys.WORDS);
+            padded[keys.length] = -1;
+
+            int distinct = PackedIdentifierList.sortDistinct(padded, n);
+            assertEquals(expected.size(), distinct);
+            List<String> actual = new ArrayList<>();
+            for (int i = 0; i < distinct; i++) {
+                actual.add(hex(padded, i));
+            }
+            assertEquals(new ArrayList<>(expected), actual);
+
+            assertMatches(expected, PackedIdentifierList.ofKeys(keys.clone(), n, List.of()));
+        }
+    }
+
+    @Test
+    void withChangesMatchesSetAlgebra() {
+        Random random = new Random(47);
+        List<String> pool = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            pool.add(randomHash(random));
+        }
+        pool.addAll(List.of("alice@example.com", "bob@example.com", "carol@example.com", "ABCDEF"));
+
+        TreeSet<String> expected = new TreeSet<>();
+        PackedIdentifierList list = PackedIdentifierList.empty();
+        for (int round = 0; round < 200; round++) {
+            List<String> added = sample(pool, random, random.nextInt(40));
+            List<String> removed = sample(pool, random, random.nextInt(40));
+            // Repeat some of the change, as a client batch may
+            added.addAll(sample(added, random, added.size() / 2));
+            removed.addAll(sample(removed, random, removed.size() / 2));
+
+            list = list.withChanges(added, removed);
+            // Removal wins when an identifier is in both
+            expected.addAll(added);
+            expected.removeAll(removed);
+            assertMatches(expected, list);
+        }
+    }
+
+    @Test
+    void withChangesEdgeCases() {
+        Random random = new Random(53);
+        String a = randomHash(random);
+        String b = randomHash(random);
+        PackedIdentifierList list = PackedIdentifierList.of(List.of(a, b));
+
+        assertSame(list, list.withChanges(List.of(), List.of()));
+        assertMatches(new TreeSet<>(List.of(a, b)), list.withChanges(List.of(a, a), List.of(randomHash(random))));
+        assertMatches(new TreeSet<>(List.of(b)), list.withChanges(List.of(a), List.of(a, a)));
+        assertMatches(new TreeSet<>(), list.withChanges(List.of(), List.of(b, a)));
+        // Uppercase is not canonical, so it neither matches nor removes the lowercase hash
+        assertMatches(new TreeSet<>(List.of(a, b, a.toUpperCase())),
+                list.withChanges(List.of(a.toUpperCase()), List.of(b.toUpperCase())));
+    }
+
+    @Test
+    void intersectionMatchesRetainAll() {
+        Random random = new Random(59);
+        List<String> pool = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            pool.add(randomHash(random));
+        }
+        pool.addAll(List.of("x@example.com", "y@example.com"));
+        for (int round = 0; round < 50; round++) {
+            List<String> left = sample(pool, random, random.nextInt(200));
+            List<String> right = sample(pool, random, random.nextInt(200));
+            TreeSet<String> expected = new TreeSet<>(left);
+            expected.retainAll(right);
+            assertMatches(expected, PackedIdentifierList.of(left).intersection(PackedIdentifierList.of(right)));
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private static void assertMatches(TreeSet<String> expected, PackedIdentifierList actual) {
+        List<String> order = new ArrayList<>();
+        expected.stream().filter(HashKeys::isCanonical).forEach(order::add);
+        expected.stream().filter(s -> !HashKeys.isCanonical(s)).forEach(order::add);
+        assertEquals(order, new ArrayList<>(actual));
+        assertEquals(order.size(), actual.size());
+        assertEquals(order.stream().filter(HashKeys::isCanonical).count(), actual.hashCount());
+        for (int i = 0; i < order.size(); i++) {
+            assertEquals(i, actual.indexOf(order.get(i)));
+            assertTrue(actual.contains(order.get(i)));
+        }
+        assertFalse(actual.contains(ABSENT));
+    }
+
+    private static List<String> sample(List<String> pool, Random random, int count) {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            out.add(pool.get(random.nextInt(pool.size())));
+        }
+        return out;
+    }
+
+    private static long[] keys(Random random, int n, boolean withDuplicates) {
+        long[] keys = new long[n * HashKeys.WORDS];
+        for (int i = 0; i < n; i++) {
+            int from = withDuplicates && i > 0 && random.nextInt(3) == 0 ? random.nextInt(i) : -1;
+            long[] key = from >= 0 ? Arrays.copyOfRange(keys, from * HashKeys.WORDS, (from + 1) * HashKeys.WORDS)
+                    : randomKey(random);
+            System.arraycopy(key, 0, keys, i * HashKeys.WORDS, HashKeys.WORDS);
+        }
+        return keys;
+    }
+
+    private static long[] sortedKeys(Random random, int n, boolean reversed) {
+        long[] keys = keys(random, n, false);
+        PackedIdentifierList.sortDistinct(keys, n);
+        if (reversed) {
+            for (int i = 0, j = n - 1; i < j; i++, j--) {
+                for (int w = 0; w < HashKeys.WORDS; w++) {
+                    long t = keys[i * HashKeys.WORDS + w];
+                    keys[i * HashKeys.WORDS + w] = keys[j * HashKeys.WORDS + w];
+                    keys[j * HashKeys.WORDS + w] = t;
+                }
+            }
+        }
+        return keys;
+    }
+
+    private static long[] repeated(long[] key, int times) {
+        long[] keys = new long[times * HashKeys.WORDS];
+        for (int i = 0; i < times; i++) {
+            System.arraycopy(key, 0, keys, i * HashKeys.WORDS, HashKeys.WORDS);
+        }
+        return keys;
+    }
+
+    private static long[] randomKey(Random random) {
+        return new long[]{random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()};
+    }
+
+    private static String randomHash(Random random) {
+        long[] key = randomKey(random);
+        return HashKeys.toHex(key[0], key[1], key[2], key[3]);
+    }
+
+    private static String hex(long[] keys, int index) {
+        int at = index * HashKeys.WORDS;
+        return HashKeys.toHex(keys[at], keys[at + 1], keys[at + 2], keys[at + 3]);
+    }
+}
@@ -0,0 +1,197 @@
+package com.falcon.index;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Set algebra of {@link RoaringBitmap} checked against a {@link TreeSet}, with chunks on
+ * both sides of the 4096-value limit where a chunk switches between its sorted array and
+ * its 1024-word bitmap.
+ */
+class RoaringBitmapTest {
+
+    private static final int CHUNK = 1 << 16;
+
+    @Test
+    void addAndRemoveAcrossTheArrayLimit() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        TreeSet<Integer> expected = unsignedSet();
+        for (int i = 0; i < 4096; i++) {
+            bitmap.add(i * 3);
+            expected.add(i * 3);
+        }
+        assertMatches(expected, bitmap);
+
+        // 4097th value turns the chunk into a bitmap; duplicates must not count twice
+        bitmap.add(1);
+        bitmap.add(1);
+        bitmap.add(0);
+        expected.add(1);
+        assertMatches(expected, bitmap);
+
+        // Dropping back to 4096 turns it into an array again
+        bitmap.remove(1);
+        bitmap.remove(1);
+        expected.remove(1);
+        assertMatches(expected, bitmap);
+        bitmap.remove(0);
+        expected.remove(0);
+        bitmap.add(7);
+        expected.add(7);
+        assertMatches(expected, bitmap);
+    }
+
+    @Test
+    void removingTheLastValueDropsTheChunk() {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        bitmap.add(5);
+        bitmap.add(CHUNK + 5);
+        bitmap.remove(5);
+        bitmap.remove(42);
+        assertFalse(bitmap.contains(5));
+        assertTrue(bitmap.contains(CHUNK + 5));
+        bitmap.remove(CHUNK + 5);
+        assertTrue(bitmap.isEmpty());
+        assertEquals(0, bitmap.cardinality());
+    }
+
+    @Test
+    void orOfTwoArraysOverTheLimitBecomesABitmap() {
+        RoaringBitmap evens = new RoaringBitmap();
+        RoaringBitmap odds = new RoaringBitmap();
+        TreeSet<Integer> expected = unsignedSet();
+        for (int i = 0; i < 3000; i++) {
+            evens.add(2 * i);
+            odds.add(2 * i + 1);
+            expected.add(2 * i);
+            expected.add(2 * i + 1);
+        }
+        assertMatches(expected, RoaringBitmap.or(evens, odds));
+        assertEquals(6000, RoaringBitmap.orCardinality(evens, odds));
+        assertEquals(0, RoaringBitmap.andCardinality(evens, odds));
+        assertTrue(RoaringBitmap.and(evens, odds).isEmpty());
+    }
+
+    @Test
+    void shrinkingABitmapConvertsBackToAnArray() {
+        RoaringBitmap dense = range(0, 10_000);
+        RoaringBitmap almostAll = range(0, 9_990);
+        long bitmapBytes = dense.sizeInBytes();
+
+        RoaringBitmap rest = RoaringBitmap.andNot(dense, almostAll);
+        assertMatches(rangeSet(9_990, 10_000), rest);
+        assertTrue(rest.sizeInBytes() < bitmapBytes / 10, "10 values should sit in an array chunk");
+
+        RoaringBitmap overlap = RoaringBitmap.and(dense, range(9_995, 20_000));
+        assertMatches(rangeSet(9_995, 10_000), overlap);
+        assertTrue(overlap.sizeInBytes() < bitmapBytes / 10, "5 values should sit in an array chunk");
+
+        // Exactly 4096 left after andNot is still an array-sized chunk, 4097 stays a bitmap
+        assertMatches(rangeSet(0, 4096), RoaringBitmap.andNot(dense, range(4096, 10_000)));
+        assertMatches(rangeSet(0, 4097), RoaringBitmap.andNot(dense, range(4097, 10_000)));
+    }
+
+    @Test
+    void algebraMatchesTreeSetOnRandomChunks() {
+        Random random = new Random(7);
+        // Per chunk densities below, at and above the array limit
+        int[] densities = {0, 10, 4000, 4096, 4097, 5000, 40_000};
+        for (int round = 0; round < 40; round++) {
+            TreeSet<Integer> left = unsignedSet();
+            TreeSet<Integer> right = unsignedSet();
+            for (int chunk = 0; chunk < 4; chunk++) {
+                fill(left, chunk, densities[random.nextInt(densities.length)], random);
+                fill(right, chunk, densities[random.nextInt(densities.length)], random);
+            }
+            // A chunk in the top half of the unsigned range
+            fill(left, 0xFFFF, densities[random.nextInt(densities.length)], random);
+            RoaringBitmap a = of(left);
+            RoaringBitmap b = of(right);
+
+            TreeSet<Integer> union = unsignedSet();
+            union.addAll(left);
+            union.addAll(right);
+            TreeSet<Integer> intersection = unsignedSet();
+            intersection.addAll(left);
+            intersection.retainAll(right);
+            TreeSet<Integer> difference = unsignedSet();
+            difference.addAll(left);
+            difference.removeAll(right);
+
+            assertMatches(union, RoaringBitmap.or(a, b));
+            assertMatches(intersection, RoaringBitmap.and(a, b));
+            assertMatches(difference, RoaringBitmap.andNot(a, b));
+            assertEquals(intersection.size(), RoaringBitmap.andCardinality(a, b));
+            assertEquals(union.size(), RoaringBitmap.orCardinality(a, b));
+
+            // Operands are left untouched
+            assertMatches(left, a);
+            assertMatches(right, b);
+        }
+    }
+
+    @Test
+    void copyIsIndependent() {
+        RoaringBitmap original = range(0, 5000);
+        RoaringBitmap copy = original.copy();
+        copy.add(CHUNK);
+        copy.remove(0);
+        assertTrue(original.contains(0));
+        assertFalse(original.contains(CHUNK));
+        assertEquals(5000, original.cardinality());
+        assertEquals(5000, copy.cardinality());
+        assertTrue(new RoaringBitmap().copy().isEmpty());
+    }
+
+    // ==================== HELPERS ====================
+
+    private static TreeSet<Integer> unsignedSet() {
+        // The bitmap iterates in unsigned order, so chunks at or above 0x8000 come last
+        return new TreeSet<>(Integer::compareUnsigned);
+    }
+
+    private static void fill(TreeSet<Integer> set, int chunk, int count, Random random) {
+        while (count > 0) {
+            if (set.add((chunk << 16) | random.nextInt(CHUNK))) {
+                count--;
+            }
+        }
+    }
+
+    private static RoaringBitmap of(TreeSet<Integer> values) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        values.forEach(bitmap::add);
+        return bitmap;
+    }
+
+    private static RoaringBitmap range(int from, int to) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int i = from; i < to; i++) {
+            bitmap.add(i);
+        }
+        return bitmap;
+    }
+
+    private static TreeSet<Integer> rangeSet(int from, int to) {
+        TreeSet<Integer> set = unsignedSet();
+        for (int i = from; i < to; i++) {
+            set.add(i);
+        }
+        return set;
+    }
+
+    private static void assertMatches(TreeSet<Integer> expected, RoaringBitmap actual) {
+        assertEquals(expected.size(), actual.cardinality());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        int[] values = actual.toArray();
+        int i = 0;
+        for (int value : expected) {
+            assertEquals(value, values[i++]);
+            assertTrue(actual.contains(value));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.falcon.service;
+
+import com.falcon.service.AdmissionControl.RequestClass;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link AdmissionControl} fed synthetic latencies: limits cap requests in flight,
+ * grow while latency stays at its minimum, shrink once it rises with queueing or
+ * passes the hard bound, ignore samples from an underused limit, and writes give
+ * way whenever serving is busy.
+ */
+class AdmissionControlTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void requestsBeyondTheLimitAreRejectedUntilOneCompletes() {
+        AdmissionControl control = control();
+        for (int i = 0; i < 32; i++) {
+            assertTrue(control.tryAcquire(RequestClass.SERVING));
+        }
+        assertFalse(control.tryAcquire(RequestClass.SERVING));
+
+        control.release(RequestClass.SERVING, FAST);
+        assertTrue(control.tryAcquire(RequestClass.SERVING));
+        assertEquals(33L, status(control, "serving").get("admitted"));
+        assertEquals(1L, status(control, "serving").get("rejected"));
+    }
+
+    @Test
+    void limitGrowsToItsMaximumWhileLatencyStaysFlat() {
+        AdmissionControl control = control();
+        for (int round = 0; round < 200; round++) {
+            saturate(control, FAST);
+        }
+        assertEquals(180, limit(control));
+        assertEquals(0, status(control, "serving").get("estimated_queue"));
+    }
+
+    @Test
+    void limitShrinksToItsMinimumWhenLatencyRisesWithQueueing() {
+        AdmissionControl control = control();
+        for (int round = 0; round < 5; round++) {
+            saturate(control, FAST);
+        }
+        int grown = limit(control);
+        assertTrue(grown > 32);
+
+        // Ten times the no-queueing latency, still under the hard bound: most of the limit is queue
+        for (int round = 0; round < 50; round++) {
+            saturate(control, 10 * FAST);
+        }
+        assertEquals(16, limit(control));
+    }
+
+    @Test
+    void requestSlowerThanTheHardBoundCutsTheLimitByATenth() {
+        AdmissionControl control = control();
+        for (int i = 0; i < 32; i++) {
+            control.tryAcquire(RequestClass.SERVING);
+        }
+        control.release(RequestClass.SERVING, TimeUnit.MILLISECONDS.toNanos(300));
+        assertEquals(28, limit(control));
+    }
+
+    @Test
+    void samplesFromAnUnderusedLimitAreIgnored() {
+        AdmissionControl control = control();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(control.tryAcquire(RequestClass.SERVING));
+            control.release(RequestClass.SERVING, TimeUnit.SECONDS.toNanos(1));
+        }
+        assertEquals(32, limit(control));
+    }
+
+    @Test
+    void writesYieldWhileServingUsesMostOfItsLimit() {
+        AdmissionControl control = control();
+        // 0.75 of the serving limit of 32
+        for (int i = 0; i < 24; i++) {
+            control.tryAcquire(RequestClass.SERVING);
+        }
+        assertTrue(control.tryAcquire(RequestClass.WRITES));
+        control.release(RequestClass.WRITES, FAST);
+
+        control.tryAcquire(RequestClass.SERVING);
+        assertFalse(control.tryAcquire(RequestClass.WRITES));
+        assertEquals(1L, status(control, "writes").get("yielded_to_serving"));
+
+        control.release(RequestClass.SERVING, FAST);
+        assertTrue(control.tryAcquire(RequestClass.WRITES));
+    }
+
+    @Test
+    void writesHaveTheirOwnSmallerLimit() {
+        AdmissionControl control = control();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(control.tryAcquire(RequestClass.WRITES));
+        }
+        assertFalse(control.tryAcquire(RequestClass.WRITES));
+        assertTrue(control.tryAcquire(RequestClass.SERVING));
+        assertEquals(0L, status(control, "writes").get("yielded_to_serving"));
+        assertEquals(1L, status(control, "writes").get("rejected"));
+    }
+
+    @Test
+    void inconsistentSettingsAreRefused() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdmissionControl(true, 32, 64, 16, 4, 8, 0.75, 3, 6, 250, 10_000));
+        assertThrows(IllegalArgumentException.class,
+                () -> new AdmissionControl(true, 32, 16, 180, 4, 8, 0.75, 6, 6, 250, 10_000));
+    }
+
+    // ==================== HELPERS ====================
+
+    /**
+     * The defaults from application.properties.
+     */
+    private static AdmissionControl control() {
+        return new AdmissionControl(true, 32, 16, 180, 4, 8, 0.75, 3, 6, 250, 10_000);
+    }
+
+    /**
+     * Fill the serving limit, then complete every request with the same latency.
+     */
+    private static void saturate(AdmissionControl control, long latencyNanos) {
+        int admitted = 0;
+        while (control.tryAcquire(RequestClass.SERVING)) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            control.release(RequestClass.SERVING, latencyNanos);
+        }
+    }
+
+    private static int limit(AdmissionControl control) {
+        return (Integer) status(control, "serving").get("limit");
+    }
+
+    private static Map<?, ?> status(AdmissionControl control, String requestClass) {
+        return (Map<?, ?>) control.status().get(requestClass);
+    }
+}
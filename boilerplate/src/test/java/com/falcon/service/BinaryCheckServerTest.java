@@ -0,0 +1,313 @@
+package com.falcon.service;
+
+import com.falcon.model.SuppressionList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link BinaryCheckServer} spoken to over a plain socket: checks answer like the
+ * service does once ordinals are resolved through the dictionary, pipelined and split
+ * frames are parsed in order, bad frames get ERROR replies (fatal only when the
+ * stream cannot be resynchronised), and a client that stops reading replies stops
+ * being read until it catches up.
+ */
+class BinaryCheckServerTest {
+
+    private static final String HIT_A = "aa".repeat(32);
+    private static final String HIT_AB = "ab".repeat(32);
+    private static final String MISS = "ff".repeat(32);
+
+    @TempDir
+    Path directory;
+
+    private SuppressionService service;
+    private ShardRouter router;
+    private BinaryCheckServer server;
+    private int port;
+
+    @BeforeEach
+    void start() throws IOException {
+        service = TestServices.suppressionService(directory);
+        service.createSuppressionList(list("list_a", "adv_a", HIT_A, HIT_AB));
+        service.createSuppressionList(list("list_b", "adv_b", HIT_AB));
+        router = new ShardRouter(service, new ShardMembership("", ""), TestServices.objectMapper(),
+                1000, 30_000, 1000, 100);
+        server = server(4096);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+        router.shutdown();
+    }
+
+    @Test
+    void checkResultsResolveThroughTheDictionary() throws Exception {
+        try (Client client = new Client()) {
+            client.send(check(1, HIT_A, HIT_AB, MISS));
+            Frame result = client.receive();
+            assertEquals(BinaryCheckServer.CHECK_RESULT, result.type);
+            assertEquals(1, result.requestId);
+            int dictionarySize = result.payload.getInt();
+            assertEquals(2, dictionarySize);
+            List<Set<Integer>> rows = rows(result.payload);
+
+            client.send(dictionary(2, 0));
+            Frame names = client.receive();
+            assertEquals(BinaryCheckServer.DICTIONARY_RESULT, names.type);
+            assertEquals(2, names.payload.getInt());
+            assertEquals(0, names.payload.getInt());
+            List<String> dictionary = strings(names.payload, names.payload.getInt());
+
+            assertEquals(List.of(Set.of("adv_a"), Set.of("adv_a", "adv_b"), Set.of()),
+                    List.of(resolve(rows.get(0), dictionary), resolve(rows.get(1), dictionary),
+                            resolve(rows.get(2), dictionary)));
+
+            // A client that has the first entry cached fetches only the tail
+            client.send(dictionary(3, 1));
+            Frame tail = client.receive();
+            assertEquals(2, tail.payload.getInt());
+            assertEquals(1, tail.payload.getInt());
+            assertEquals(List.of(dictionary.get(1)), strings(tail.payload, tail.payload.getInt()));
+        }
+    }
+
+    @Test
+    void pipelinedAndSplitFramesAreAnsweredInOrder() throws Exception {
+        try (Client client = new Client()) {
+            byte[] frames = concat(check(7, HIT_A), check(8, MISS), dictionary(9, 0));
+            // The first frame arrives in pieces, the rest together
+            client.out.write(frames, 0, 3);
+            client.out.flush();
+            Thread.sleep(20);
+            client.out.write(frames, 3, 20);
+            client.out.flush();
+            Thread.sleep(20);
+            client.send(Arrays.copyOfRange(frames, 23, frames.length));
+
+            assertEquals(7, client.receive().requestId);
+            assertEquals(8, client.receive().requestId);
+            Frame last = client.receive();
+            assertEquals(9, last.requestId);
+            assertEquals(BinaryCheckServer.DICTIONARY_RESULT, last.type);
+        }
+    }
+
+    @Test
+    void badRequestsGetErrorsAndTheConnectionCarriesOn() throws Exception {
+        try (Client client = new Client()) {
+            // Count says two hashes, payload carries one
+            byte[] shortCheck = check(1, HIT_A);
+            ByteBuffer.wrap(shortCheck).putInt(9, 2);
+            client.send(shortCheck);
+            client.send(frame((byte) 0x33, 2, new byte[0]));
+            client.send(dictionary(3, 99));
+            client.send(check(4, HIT_A));
+
+            assertError(client.receive(), 1, "CHECK payload");
+            assertError(client.receive(), 2, "Unknown frame type 0x33");
+            assertError(client.receive(), 3, "First ordinal 99");
+            Frame answered = client.receive();
+            assertEquals(BinaryCheckServer.CHECK_RESULT, answered.type);
+            assertEquals(4, answered.requestId);
+        }
+        assertEquals(3L, server.status().get("errors"));
+    }
+
+    @Test
+    void impossibleFrameLengthClosesTheConnection() throws Exception {
+        try (Client client = new Client()) {
+            client.send(ByteBuffer.allocate(4).putInt(3).array());
+            assertError(client.receive(), -1, "Frame length 3");
+            assertThrows(EOFException.class, client::receive);
+        }
+    }
+
+    @Test
+    void clientThatStopsReadingIsThrottledUntilItCatchesUp() throws Exception {
+        server.stop();
+        server = server(64);
+        // Every hash is suppressed by 60 advertisers, so replies are far larger than requests
+        for (int i = 0; i < 60; i++) {
+            service.createSuppressionList(list("list_many_" + i, "adv_many_" + i, MISS));
+        }
+        String[] batch = new String[256];
+        Arrays.fill(batch, MISS);
+        int frames = 4000;
+        int replyBytes = 4 + 5 + 8 + batch.length * (2 + 4 * 60);
+
+        try (Client client = new Client()) {
+            CompletableFuture<Void> sender = CompletableFuture.runAsync(() -> {
+                try {
+                    for (int id = 0; id < frames; id++) {
+                        client.out.write(check(id, batch));
+                    }
+                    client.out.flush();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+
+            // Wait for the server to stop reading: the frame count stops moving
+            long processed = -1;
+            for (long now = frames(); now != processed; now = frames()) {
+                processed = now;
+                Thread.sleep(300);
+            }
+            assertFalse(sender.isDone(), "all " + frames + " frames were read without replies being taken");
+            assertTrue(processed * replyBytes < 16L * 1024 * 1024,
+                    processed + " replies of " + replyBytes + " bytes were buffered");
+
+            for (int id = 0; id < frames; id++) {
+                Frame reply = client.receive();
+                assertEquals(BinaryCheckServer.CHECK_RESULT, reply.type);
+                assertEquals(id, reply.requestId);
+            }
+            sender.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private BinaryCheckServer server(int maxQueuedKb) throws IOException {
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        StartupService startup = new StartupService(service, null, null, false, 0, 0, 0, false);
+        BinaryCheckServer started = new BinaryCheckServer(router, startup, true, "127.0.0.1", port, maxQueuedKb);
+        started.start();
+        return started;
+    }
+
+    private long frames() {
+        return (Long) server.status().get("frames");
+    }
+
+    private static SuppressionList list(String id, String advertiserId, String... identifiers) {
+        return new SuppressionList(id, advertiserId, id, new ArrayList<>(List.of(identifiers)), null);
+    }
+
+    private static byte[] check(int requestId, String... hashes) {
+        ByteBuffer payload = ByteBuffer.allocate(4 + hashes.length * BinaryCheckServer.HASH_BYTES);
+        payload.putInt(hashes.length);
+        for (String hash : hashes) {
+            payload.put(HexFormat.of().parseHex(hash));
+        }
+        return frame(BinaryCheckServer.CHECK, requestId, payload.array());
+    }
+
+    private static byte[] dictionary(int requestId, int first) {
+        return frame(BinaryCheckServer.DICTIONARY, requestId, ByteBuffer.allocate(4).putInt(first).array());
+    }
+
+    private static byte[] frame(byte type, int requestId, byte[] payload) {
+        return ByteBuffer.allocate(4 + 5 + payload.length)
+                .putInt(5 + payload.length)
+                .put(type)
+                .putInt(requestId)
+                .put(payload)
+                .array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteBuffer joined = ByteBuffer.allocate(Arrays.stream(parts).mapToInt(part -> part.length).sum());
+        for (byte[] part : parts) {
+            joined.put(part);
+        }
+        return joined.array();
+    }
+
+    private static List<Set<Integer>> rows(ByteBuffer payload) {
+        int count = payload.getInt();
+        List<Set<Integer>> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Set<Integer> row = new HashSet<>();
+            for (int n = payload.getShort(); n > 0; n--) {
+                row.add(payload.getInt());
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    private static List<String> strings(ByteBuffer payload, int count) {
+        List<String> strings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] bytes = new byte[payload.getShort()];
+            payload.get(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+        return strings;
+    }
+
+    private static Set<String> resolve(Set<Integer> ordinals, List<String> dictionary) {
+        Set<String> names = new HashSet<>();
+        for (int ordinal : ordinals) {
+            names.add(dictionary.get(ordinal));
+        }
+        return names;
+    }
+
+    private static void assertError(Frame frame, int requestId, String messagePrefix) {
+        assertEquals(BinaryCheckServer.ERROR, frame.type);
+        assertEquals(requestId, frame.requestId);
+        byte[] text = new byte[frame.payload.getShort()];
+        frame.payload.get(text);
+        String message = new String(text, StandardCharsets.UTF_8);
+        assertTrue(message.startsWith(messagePrefix), message);
+    }
+
+    private record Frame(byte type, int requestId, ByteBuffer payload) {
+    }
+
+    private final class Client implements AutoCloseable {
+        final Socket socket = new Socket("127.0.0.1", port);
+        final OutputStream out = socket.getOutputStream();
+        final DataInputStream in = new DataInputStream(socket.getInputStream());
+
+        Client() throws IOException {
+            socket.setSoTimeout(10_000);
+        }
+
+        void send(byte[] bytes) throws IOException {
+            out.write(bytes);
+            out.flush();
+        }
+
+        Frame receive() throws IOException {
+            int length = in.readInt();
+            byte type = in.readByte();
+            int requestId = in.readInt();
+            byte[] payload = new byte[length - 5];
+            in.readFully(payload);
+            return new Frame(type, requestId, ByteBuffer.wrap(payload));
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
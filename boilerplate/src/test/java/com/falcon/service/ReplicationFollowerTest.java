@@ -0,0 +1,247 @@
+package com.falcon.service;
+
+import com.falcon.model.ChangeBatch;
+import com.falcon.model.SuppressionList;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ReplicationFollower} tailing a leader played by an in-process HTTP server in
+ * front of a real leader-role {@link SuppressionService}: the follower bootstraps from
+ * a snapshot, picks up later writes through its long-poll, and after the leader restarts
+ * under a new epoch loads a snapshot again instead of applying mismatched sequences.
+ */
+class ReplicationFollowerTest {
+
+    private static final String HIT_A = "aa".repeat(32);
+    private static final String HIT_B = "bb".repeat(32);
+    private static final String HIT_C = "cc".repeat(32);
+
+    @TempDir
+    Path directory;
+
+    private Leader leader;
+    private ReplicationFollower follower;
+    private SuppressionService replica;
+
+    @AfterEach
+    void stop() {
+        if (follower != null) {
+            follower.stop();
+        }
+        if (leader != null) {
+            leader.stop();
+        }
+    }
+
+    @Test
+    void bootstrapsFromASnapshotThenAppliesChangesAsTheyHappen() throws Exception {
+        leader = new Leader(directory.resolve("leader-1"));
+        leader.service.createSuppressionList(list("list_a", "adv_a", HIT_A));
+        startFollower();
+
+        await(() -> status("bootstraps").equals(1L) && follower.isWithinStalenessBound());
+        assertEquals(Set.of("adv_a"), replica.checkSuppression(HIT_A).getSuppressedAdvertisers());
+        assertEquals(leader.log.epoch(), status("epoch"));
+
+        // The follower is parked in a long-poll; a write on the leader answers it
+        leader.service.createSuppressionList(list("list_b", "adv_b", HIT_B));
+        leader.service.deleteSuppressionList("list_a");
+        await(() -> status("applied_seq").equals(3L));
+        assertEquals(Set.of(), replica.checkSuppression(HIT_A).getSuppressedAdvertisers());
+        assertEquals(Set.of("adv_b"), replica.checkSuppression(HIT_B).getSuppressedAdvertisers());
+        assertEquals(1L, status("bootstraps"));
+        assertEquals(0L, status("lag_events"));
+        assertTrue(leader.log.followerLag().containsKey("replica-1"));
+    }
+
+    @Test
+    void leaderRestartUnderANewEpochTriggersAFreshBootstrap() throws Exception {
+        leader = new Leader(directory.resolve("leader-1"));
+        leader.service.createSuppressionList(list("list_a", "adv_a", HIT_A));
+        leader.service.createSuppressionList(list("list_b", "adv_b", HIT_B));
+        startFollower();
+        await(() -> status("applied_seq").equals(2L) && follower.isWithinStalenessBound());
+        String firstEpoch = leader.log.epoch();
+
+        // Same URL, new run: its head is past the follower's position, but the sequences mean other changes
+        leader.restart(directory.resolve("leader-2"), list("list_c", "adv_c", HIT_C),
+                list("list_x", "adv_x", HIT_A), list("list_y", "adv_y", HIT_A));
+        assertNotEquals(firstEpoch, leader.log.epoch());
+
+        await(() -> status("bootstraps").equals(2L) && follower.isWithinStalenessBound());
+        assertEquals(1L, status("epoch_changes"));
+        assertEquals(leader.log.epoch(), status("epoch"));
+        assertEquals(3L, status("applied_seq"));
+        assertNull(replica.getSuppressionListById("list_a"));
+        assertNull(replica.getSuppressionListById("list_b"));
+        assertEquals(Set.of("adv_x", "adv_y"), replica.checkSuppression(HIT_A).getSuppressedAdvertisers());
+        assertEquals(Set.of("adv_c"), replica.checkSuppression(HIT_C).getSuppressedAdvertisers());
+
+        // And it tails the new run from there
+        leader.service.createSuppressionList(list("list_b", "adv_b", HIT_B));
+        await(() -> status("applied_seq").equals(4L));
+        assertEquals(Set.of("adv_b"), replica.checkSuppression(HIT_B).getSuppressedAdvertisers());
+    }
+
+    @Test
+    void leaderRestartBehindTheFollowersPositionTriggersAFreshBootstrap() throws Exception {
+        leader = new Leader(directory.resolve("leader-1"));
+        leader.service.createSuppressionList(list("list_a", "adv_a", HIT_A));
+        leader.service.createSuppressionList(list("list_b", "adv_b", HIT_B));
+        startFollower();
+        await(() -> status("applied_seq").equals(2L) && follower.isWithinStalenessBound());
+
+        // The new run's head (1) is below the follower's position: the leader reports it as truncated
+        leader.restart(directory.resolve("leader-2"), list("list_c", "adv_c", HIT_C));
+
+        await(() -> status("bootstraps").equals(2L) && follower.isWithinStalenessBound());
+        assertEquals(leader.log.epoch(), status("epoch"));
+        assertEquals(1L, status("applied_seq"));
+        assertNull(replica.getSuppressionListById("list_a"));
+        assertEquals(Set.of("adv_c"), replica.checkSuppression(HIT_C).getSuppressedAdvertisers());
+    }
+
+    @Test
+    void unreachableLeaderLeavesTheFollowerStale() throws Exception {
+        leader = new Leader(directory.resolve("leader-1"));
+        String url = leader.url();
+        leader.stop();
+        leader = null;
+        follower = follower(url);
+        follower.start();
+
+        await(() -> status("last_error") != null);
+        assertFalse(follower.hasLoadedSnapshot());
+        assertFalse(follower.isWithinStalenessBound());
+        assertEquals(-1L, status("staleness_ms"));
+    }
+
+    // ==================== HELPERS ====================
+
+    private void startFollower() {
+        follower = follower(leader.url());
+        follower.start();
+    }
+
+    private ReplicationFollower follower(String leaderUrl) {
+        ReplicationLog followerLog = new ReplicationLog("follower", 1);
+        replica = TestServices.suppressionService(new ShardMembership("", ""), followerLog,
+                directory.resolve("follower"));
+        SnapshotService snapshots = new SnapshotService(replica, followerLog,
+                directory.resolve("follower-snapshots").toString());
+        return new ReplicationFollower(replica, snapshots, followerLog, TestServices.objectMapper(),
+                leaderUrl, "", "replica-1", 8080, 200, 500, 30_000);
+    }
+
+    private Object status(String key) {
+        return follower.status().get(key) instanceof Number n ? (Object) n.longValue() : follower.status().get(key);
+    }
+
+    private static SuppressionList list(String id, String advertiserId, String... identifiers) {
+        return new SuppressionList(id, advertiserId, id, new ArrayList<>(List.of(identifiers)), null);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * The leader's replication endpoints over a leader-role service; {@link #restart}
+     * swaps in a fresh service and log behind the same URL.
+     */
+    private static final class Leader {
+        private final ObjectMapper objectMapper = TestServices.objectMapper();
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        volatile ReplicationLog log;
+        volatile SuppressionService service;
+
+        Leader(Path directory) throws IOException {
+            restart(directory);
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/replication/snapshot", exchange -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                service.writeSnapshot(out);
+                respond(exchange, out.toByteArray());
+            });
+            server.createContext("/api/replication/changes", exchange -> {
+                Map<String, String> query = query(exchange);
+                try {
+                    ChangeBatch batch = log.read(Long.parseLong(query.get("after")),
+                            Integer.parseInt(query.get("max")), Long.parseLong(query.get("wait_ms")),
+                            query.get("follower"));
+                    respond(exchange, objectMapper.writeValueAsBytes(batch));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exchange.sendResponseHeaders(503, -1);
+                    exchange.close();
+                }
+            });
+            server.start();
+        }
+
+        /**
+         * Start a new run with the given lists already written, so followers never see it half set up.
+         */
+        void restart(Path directory, SuppressionList... lists) {
+            ReplicationLog freshLog = new ReplicationLog("leader", 100);
+            SuppressionService freshService = TestServices.suppressionService(new ShardMembership("", ""),
+                    freshLog, directory);
+            for (SuppressionList list : lists) {
+                freshService.createSuppressionList(list);
+            }
+            service = freshService;
+            log = freshLog;
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+
+        private static Map<String, String> query(HttpExchange exchange) {
+            Map<String, String> query = new HashMap<>();
+            for (String pair : exchange.getRequestURI().getQuery().split("&")) {
+                int eq = pair.indexOf('=');
+                query.put(pair.substring(0, eq), pair.substring(eq + 1));
+            }
+            return query;
+        }
+
+        private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        }
+    }
+}
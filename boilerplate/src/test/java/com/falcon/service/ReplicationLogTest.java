@@ -0,0 +1,123 @@
+package com.falcon.service;
+
+import com.falcon.model.ChangeBatch;
+import com.falcon.model.ChangeEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ReplicationLog} read the way followers long-poll it: a read waits for the
+ * next append or its deadline, positions that fell out of the ring or lie past the
+ * head are reported as truncated, and each poll acknowledges the follower's position.
+ */
+class ReplicationLogTest {
+
+    @Test
+    void readReturnsAsSoonAsAnEventIsAppended() throws Exception {
+        ReplicationLog log = new ReplicationLog("leader", 16);
+        CompletableFuture<ChangeBatch> poll = CompletableFuture.supplyAsync(() -> read(log, 0, 10, 10_000));
+        Thread.sleep(50);
+        assertFalse(poll.isDone());
+
+        log.append(ChangeEvent.delete("list_a"));
+        ChangeBatch batch = poll.get(5, TimeUnit.SECONDS);
+        assertFalse(batch.isTruncated());
+        assertEquals(log.epoch(), batch.getEpoch());
+        assertEquals(1, batch.getLastSeq());
+        assertEquals(List.of(1L), seqs(batch));
+    }
+
+    @Test
+    void readWithNothingNewReturnsEmptyAfterItsWait() throws Exception {
+        ReplicationLog log = new ReplicationLog("leader", 16);
+        log.append(ChangeEvent.delete("list_a"));
+
+        long startTime = System.nanoTime();
+        ChangeBatch batch = log.read(1, 10, 100, null);
+        long waitedMs = (System.nanoTime() - startTime) / 1_000_000;
+        assertTrue(waitedMs >= 90, "returned after " + waitedMs + "ms");
+        assertFalse(batch.isTruncated());
+        assertEquals(List.of(), batch.getEvents());
+        assertEquals(1, batch.getLastSeq());
+    }
+
+    @Test
+    void readIsCappedAtMaxAndResumesWhereItStopped() throws Exception {
+        ReplicationLog log = new ReplicationLog("leader", 16);
+        for (int i = 0; i < 5; i++) {
+            log.append(ChangeEvent.delete("list_" + i));
+        }
+
+        ChangeBatch first = log.read(0, 3, 0, null);
+        assertEquals(List.of(1L, 2L, 3L), seqs(first));
+        assertEquals(5, first.getLastSeq());
+        assertEquals(List.of(4L, 5L), seqs(log.read(3, 3, 0, null)));
+        assertEquals("list_4", log.read(4, 3, 0, null).getEvents().get(0).getListId());
+    }
+
+    @Test
+    void positionsOutsideTheRetainedLogAreTruncated() throws Exception {
+        ReplicationLog log = new ReplicationLog("leader", 4);
+        for (int i = 0; i < 10; i++) {
+            log.append(ChangeEvent.delete("list_" + i));
+        }
+
+        // Events 7..10 are retained: a follower at 6 can continue, one at 5 cannot
+        assertEquals(List.of(7L, 8L, 9L, 10L), seqs(log.read(6, 10, 0, null)));
+        assertTrue(log.read(5, 10, 0, null).isTruncated());
+        // A position handed out by an earlier run of the leader, ahead of this one's head
+        ChangeBatch ahead = log.read(42, 10, 10_000, null);
+        assertTrue(ahead.isTruncated());
+        assertEquals(10, ahead.getLastSeq());
+    }
+
+    @Test
+    void pollsAcknowledgeTheFollowersPosition() throws Exception {
+        ReplicationLog log = new ReplicationLog("leader", 16);
+        for (int i = 0; i < 5; i++) {
+            log.append(ChangeEvent.delete("list_" + i));
+        }
+        log.read(2, 10, 0, "replica-1");
+        log.read(5, 10, 0, "replica-2");
+
+        Map<String, Object> lag = log.followerLag();
+        assertEquals(3L, ((Map<?, ?>) lag.get("replica-1")).get("lag_events"));
+        assertEquals(0L, ((Map<?, ?>) lag.get("replica-2")).get("lag_events"));
+        assertEquals(0L, ((Map<?, ?>) lag.get("replica-2")).get("lag_ms"));
+    }
+
+    @Test
+    void onlyTheLeaderLogsAndEachRunHasItsOwnEpoch() throws Exception {
+        ReplicationLog follower = new ReplicationLog("follower", 16);
+        follower.append(ChangeEvent.delete("list_a"));
+        assertEquals(0, follower.lastSeq());
+
+        assertNotEquals(new ReplicationLog("leader", 16).epoch(), new ReplicationLog("leader", 16).epoch());
+        assertThrows(IllegalArgumentException.class, () -> new ReplicationLog("primary", 16));
+    }
+
+    // ==================== HELPERS ====================
+
+    private static ChangeBatch read(ReplicationLog log, long afterSeq, int max, long waitMs) {
+        try {
+            return log.read(afterSeq, max, waitMs, null);
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static List<Long> seqs(ChangeBatch batch) {
+        List<Long> seqs = new ArrayList<>();
+        for (ChangeEvent event : batch.getEvents()) {
+            seqs.add(event.getSeq());
+        }
+        return seqs;
+    }
+}
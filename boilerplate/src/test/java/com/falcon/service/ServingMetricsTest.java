@@ -0,0 +1,122 @@
+package com.falcon.service;
+
+import com.falcon.model.Banner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ServingMetrics} exported in the Prometheus text format: every family has
+ * its HELP and TYPE lines, label values are escaped and sorted, and counts recorded
+ * from many threads at once all arrive.
+ */
+class ServingMetricsTest {
+
+    @Test
+    void prometheusOutputListsEveryFamilyWithSortedEscapedLabels() {
+        ServingMetrics metrics = new ServingMetrics();
+        metrics.recordFill(banner("b2", "adv_b"), Set.of("adv_a"));
+        metrics.recordFill(banner("b1", "adv_a"), null);
+        metrics.recordFill(banner("b1", "adv_a"), List.of("adv_\"q\"\\"));
+        metrics.recordNoFill(ServingMetrics.NoFillReason.ALL_SUPPRESSED, List.of("adv_a", "adv_b"));
+        metrics.recordNoFill(ServingMetrics.NoFillReason.SHED, null);
+
+        assertEquals(String.join("\n",
+                "# HELP falcon_ad_requests_total Ad requests answered, filled or not.",
+                "# TYPE falcon_ad_requests_total counter",
+                "falcon_ad_requests_total 5",
+                "# HELP falcon_ad_fills_total Ad requests answered with a banner.",
+                "# TYPE falcon_ad_fills_total counter",
+                "falcon_ad_fills_total 3",
+                "# HELP falcon_ad_no_fills_total Ad requests answered without a banner, by cause.",
+                "# TYPE falcon_ad_no_fills_total counter",
+                "falcon_ad_no_fills_total{reason=\"all_suppressed\"} 1",
+                "falcon_ad_no_fills_total{reason=\"no_inventory\"} 0",
+                "falcon_ad_no_fills_total{reason=\"shed\"} 1",
+                "# HELP falcon_advertiser_impressions_total Banners served, by advertiser.",
+                "# TYPE falcon_advertiser_impressions_total counter",
+                "falcon_advertiser_impressions_total{advertiser_id=\"adv_a\"} 2",
+                "falcon_advertiser_impressions_total{advertiser_id=\"adv_b\"} 1",
+                "# HELP falcon_banner_impressions_total Banners served, by banner.",
+                "# TYPE falcon_banner_impressions_total counter",
+                "falcon_banner_impressions_total{banner_id=\"b1\",advertiser_id=\"adv_a\"} 2",
+                "falcon_banner_impressions_total{banner_id=\"b2\",advertiser_id=\"adv_b\"} 1",
+                "# HELP falcon_advertiser_suppressions_total Ad requests that suppressed an advertiser for the user.",
+                "# TYPE falcon_advertiser_suppressions_total counter",
+                "falcon_advertiser_suppressions_total{advertiser_id=\"adv_\\\"q\\\"\\\\\"} 1",
+                "falcon_advertiser_suppressions_total{advertiser_id=\"adv_a\"} 2",
+                "falcon_advertiser_suppressions_total{advertiser_id=\"adv_b\"} 1",
+                ""), metrics.prometheus());
+    }
+
+    @Test
+    void emptyMetricsStillExportEveryFamily() {
+        String text = new ServingMetrics().prometheus();
+
+        for (String family : List.of("falcon_ad_requests_total", "falcon_ad_fills_total", "falcon_ad_no_fills_total",
+                "falcon_advertiser_impressions_total", "falcon_banner_impressions_total",
+                "falcon_advertiser_suppressions_total")) {
+            assertTrue(text.contains("# TYPE " + family + " counter\n"), family);
+        }
+        assertTrue(text.contains("falcon_ad_requests_total 0\n"));
+        assertTrue(text.endsWith("# TYPE falcon_advertiser_suppressions_total counter\n"));
+    }
+
+    @Test
+    void concurrentRecordsAreAllCounted() throws Exception {
+        ServingMetrics metrics = new ServingMetrics();
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        if ((i & 1) == 0) {
+                            metrics.recordFill(banner("b" + (i % 3), "adv_" + (i % 3)), Set.of("adv_x"));
+                        } else {
+                            metrics.recordNoFill(ServingMetrics.NoFillReason.NO_INVENTORY, null);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Map<String, Object> status = metrics.status();
+        long total = (long) threads * perThread;
+        assertEquals(total, status.get("requests"));
+        assertEquals(total / 2, status.get("fills"));
+        assertEquals(0.5, (Double) status.get("fill_rate"), 1e-9);
+        assertEquals(total / 2, ((Map<?, ?>) status.get("no_fill")).get("no_inventory"));
+        assertEquals(total / 2, ((Map<?, ?>) status.get("suppressions_by_advertiser")).get("adv_x"));
+        long impressions = 0;
+        for (Object count : ((Map<?, ?>) status.get("impressions_by_banner")).values()) {
+            impressions += (Long) count;
+        }
+        assertEquals(total / 2, impressions);
+        assertTrue(metrics.prometheus().contains("falcon_ad_requests_total " + total + "\n"));
+    }
+
+    // ==================== HELPERS ====================
+
+    private static Banner banner(String id, String advertiserId) {
+        Banner banner = new Banner();
+        banner.setId(id);
+        banner.setAdvertiserId(advertiserId);
+        return banner;
+    }
+}
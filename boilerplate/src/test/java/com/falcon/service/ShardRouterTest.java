@@ -0,0 +1,250 @@
+package com.falcon.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link ShardRouter} against a peer node played by an in-process HTTP server: writes
+ * reach the peer in order through refusals and backoff, an outbox whose sender is
+ * interrupted mid-request keeps draining, and a gained partition is read from its
+ * previous owner until an import of it succeeds.
+ */
+class ShardRouterTest {
+
+    private static final String SELF = "http://127.0.0.1:1";
+
+    @TempDir
+    Path directory;
+
+    private Peer peer;
+    private ShardRouter router;
+
+    @AfterEach
+    void stop() {
+        if (router != null) {
+            router.shutdown();
+        }
+        if (peer != null) {
+            peer.stop();
+        }
+    }
+
+    @Test
+    void refusedWritesAreRetriedAndLaterWritesWaitBehindThem() throws Exception {
+        AtomicInteger refusals = new AtomicInteger(2);
+        peer = new Peer(exchange -> refusals.getAndDecrement() > 0 ? 503 : 200);
+        router = router(peer.url());
+
+        // The first write is refused; the rest queue behind it instead of overtaking it
+        for (int i = 0; i < 5; i++) {
+            assertEquals(List.of(peer.url()), router.forward("PUT", "/api/suppression-lists/" + i, Map.of()));
+        }
+
+        await(() -> outboxStatus("queued") == 0);
+        assertEquals(5, outboxStatus("delivered"));
+        assertEquals(0, outboxStatus("failed_attempts"));
+        assertEquals(List.of("PUT /api/suppression-lists/0", "PUT /api/suppression-lists/0",
+                "PUT /api/suppression-lists/0", "PUT /api/suppression-lists/1", "PUT /api/suppression-lists/2",
+                "PUT /api/suppression-lists/3", "PUT /api/suppression-lists/4"), peer.requests);
+        // Caught up: the next write goes out on its first attempt
+        assertEquals(List.of(), router.forward("DELETE", "/api/suppression-lists/0", null));
+    }
+
+    @Test
+    void rejectedWriteIsDroppedButOneTheListIsAlreadyGoneForIsDelivered() throws Exception {
+        peer = new Peer(exchange -> exchange.getRequestURI().getPath().endsWith("/bad") ? 400 : 404);
+        router = router(peer.url());
+
+        assertEquals(List.of(peer.url()), router.forward("PUT", "/api/suppression-lists/bad", Map.of()));
+        // A replayed DELETE of a list the peer no longer has did reach it
+        assertEquals(List.of(), router.forward("DELETE", "/api/suppression-lists/gone", null));
+        assertEquals(0, outboxStatus("queued"));
+        assertEquals(1, outboxStatus("rejected"));
+        assertEquals(1, outboxStatus("delivered"));
+    }
+
+    @Test
+    void interruptedSendIsRetriedAndTheOutboxKeepsDraining() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        peer = new Peer(exchange -> {
+            if (entered.getCount() > 0) {
+                entered.countDown();
+                release.await();
+            }
+            return 200;
+        });
+        router = router(peer.url());
+
+        CompletableFuture<List<String>> first = CompletableFuture.supplyAsync(
+                () -> router.forward("PUT", "/api/suppression-lists/a", Map.of()));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        interruptForwardThreads();
+        assertEquals(List.of(peer.url()), first.get(5, TimeUnit.SECONDS));
+        release.countDown();
+
+        await(() -> outboxStatus("queued") == 0);
+        assertEquals(1, outboxStatus("delivered"));
+        // The outbox has a sender again, so the next write goes out on its first attempt
+        assertEquals(List.of(), router.forward("PUT", "/api/suppression-lists/b", Map.of()));
+        assertEquals(2, outboxStatus("delivered"));
+        assertEquals(List.of("PUT /api/suppression-lists/a", "PUT /api/suppression-lists/a",
+                "PUT /api/suppression-lists/b"), peer.requests);
+    }
+
+    @Test
+    void gainedPartitionsStayWithTheirPreviousOwnerUntilAnImportSucceeds() throws Exception {
+        AtomicInteger exportFailures = new AtomicInteger(1);
+        CountDownLatch confirmed = new CountDownLatch(1);
+        String[] slice = new String[1];
+        peer = new Peer(exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/api/shard/partitions")) {
+                if (exportFailures.getAndDecrement() > 0) {
+                    return 503;
+                }
+                exchange.setAttribute("body", "[{\"id\":\"list_a\",\"advertiser_id\":\"adv_a\",\"name\":\"a\","
+                        + "\"identifiers\":[\"" + slice[0] + "\"]}]");
+                return 200;
+            }
+            if (path.equals("/api/shard/handoffs/complete")) {
+                confirmed.countDown();
+            }
+            return 200;
+        });
+        // This node starts outside the cluster, owning nothing, then joins it
+        ShardMembership membership = new ShardMembership(SELF, peer.url());
+        SuppressionService service = TestServices.suppressionService(membership,
+                new ReplicationLog("standalone", 1), directory);
+        router = new ShardRouter(service, membership, TestServices.objectMapper(), 200, 30_000, 1000, 100);
+
+        Map<String, Object> result = router.rebalance(List.of(SELF, peer.url()));
+        assertEquals(List.of(peer.url()), result.get("failed_sources"));
+        int gained = (Integer) result.get("gained_partitions");
+        assertTrue(gained > 0);
+        assertEquals(gained, membership.pendingHandoffCount());
+
+        int partition = -1;
+        for (int p = 0; p < ShardMembership.PARTITIONS && partition < 0; p++) {
+            if (SELF.equals(membership.ownerOf(String.format("%02x", p)))) {
+                partition = p;
+            }
+        }
+        slice[0] = String.format("%02x", partition) + "ab".repeat(31);
+        // Owned here, but lookups still go to the previous owner
+        assertEquals(peer.url(), membership.handoffSourceOf(slice[0]));
+        assertTrue(membership.stores(slice[0]));
+
+        // The retry imports the slice, then confirms it to the previous owner
+        assertTrue(confirmed.await(10, TimeUnit.SECONDS));
+        await(() -> membership.pendingHandoffCount() == 0);
+        assertNull(membership.handoffSourceOf(slice[0]));
+        assertEquals(List.of(slice[0]), service.getSuppressionListById("list_a").getIdentifiers());
+        assertEquals(Set.of("adv_a"), router.checkSuppression(slice[0]).getSuppressedAdvertisers());
+    }
+
+    // ==================== HELPERS ====================
+
+    private ShardRouter router(String... peers) {
+        StringBuilder nodes = new StringBuilder(SELF);
+        for (String node : peers) {
+            nodes.append(',').append(node);
+        }
+        ShardMembership membership = new ShardMembership(SELF, nodes.toString());
+        SuppressionService service = TestServices.suppressionService(membership,
+                new ReplicationLog("standalone", 1), directory);
+        return new ShardRouter(service, membership, TestServices.objectMapper(), 200, 30_000, 1000, 100);
+    }
+
+    private long outboxStatus(String key) {
+        Map<?, ?> status = (Map<?, ?>) router.forwardStatus().get(peer.url());
+        return status == null ? -1 : ((Number) status.get(key)).longValue();
+    }
+
+    private static void interruptForwardThreads() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals("shard-forward")) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Handler {
+        /**
+         * @return the status to reply with
+         */
+        int handle(HttpExchange exchange) throws Exception;
+    }
+
+    /**
+     * Another shard node: records "METHOD path" of each request in arrival order.
+     */
+    private static final class Peer {
+        final List<String> requests = new CopyOnWriteArrayList<>();
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        Peer(Handler handler) throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/", exchange -> {
+                String query = exchange.getRequestURI().getRawQuery();
+                requests.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath()
+                        + (query != null ? "?" + query : ""));
+                exchange.getRequestBody().readAllBytes();
+                int status;
+                try {
+                    status = handler.handle(exchange);
+                } catch (Exception e) {
+                    status = 500;
+                }
+                Object body = exchange.getAttribute("body");
+                byte[] bytes = body != null ? body.toString().getBytes(StandardCharsets.UTF_8) : new byte[0];
+                exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+                if (bytes.length > 0) {
+                    exchange.getResponseBody().write(bytes);
+                }
+                exchange.close();
+            });
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.falcon.service;
+
+import com.falcon.model.SuppressionList;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SnapshotService} exports loaded back into another node: lists, sequence and
+ * leader epoch survive the round trip, an unchanged leader reuses its last file, and
+ * a truncated or corrupted snapshot is refused without touching the local lists.
+ */
+class SnapshotServiceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void exportedSnapshotLoadsBackIntoAnotherNode() throws Exception {
+        ReplicationLog leaderLog = new ReplicationLog("leader", 100);
+        SuppressionService leader = service(leaderLog, "leader");
+        Random random = new Random(42);
+        // Large enough to take several bulk chunks of key words
+        List<String> big = hashes(random, 20_000);
+        leader.createSuppressionList(list("list_big", "adv_a", big));
+        leader.createSuppressionList(list("list_small", "adv_b", hashes(random, 3)));
+        leader.createSuppressionList(list("list_empty", "adv_c", List.of()));
+        leader.deleteSuppressionList("list_small");
+        SnapshotService leaderSnapshots = snapshots(leader, leaderLog, "leader");
+
+        SnapshotService.SnapshotFile file = leaderSnapshots.export();
+        assertEquals(4, file.seq());
+        assertEquals(leaderLog.epoch(), file.epoch());
+        assertEquals(Files.size(file.path()), file.bytes());
+
+        ReplicationLog replicaLog = new ReplicationLog("follower", 1);
+        SuppressionService replica = service(replicaLog, "replica");
+        SnapshotService replicaSnapshots = snapshots(replica, replicaLog, "replica");
+        try (InputStream in = Files.newInputStream(file.path())) {
+            assertEquals(4, replicaSnapshots.load(in, "leader"));
+        }
+
+        assertEquals(4, replica.changeSeq());
+        assertEquals(leaderLog.epoch(), replica.changeEpoch());
+        assertEquals(ids(leader.getAllSuppressionLists()), ids(replica.getAllSuppressionLists()));
+        for (SuppressionList expected : leader.getAllSuppressionLists()) {
+            SuppressionList actual = replica.getSuppressionListById(expected.getId());
+            assertEquals(expected.getAdvertiserId(), actual.getAdvertiserId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getCreatedAt().toEpochMilli(), actual.getCreatedAt().toEpochMilli());
+            assertEquals(expected.getIdentifiers(), actual.getIdentifiers());
+        }
+        assertEquals(Set.of("adv_a"), replica.checkSuppression(big.get(12_345)).getSuppressedAdvertisers());
+
+        Map<?, ?> imported = (Map<?, ?>) replicaSnapshots.status().get("last_import");
+        assertEquals(4L, imported.get("seq"));
+        assertEquals(file.bytes(), imported.get("bytes"));
+        assertEquals("leader", imported.get("source"));
+    }
+
+    @Test
+    void leaderReusesItsSnapshotUntilTheLogMovesAndKeepsTheLastTwo() throws Exception {
+        ReplicationLog leaderLog = new ReplicationLog("leader", 100);
+        SuppressionService leader = service(leaderLog, "leader");
+        SnapshotService snapshots = snapshots(leader, leaderLog, "leader");
+        Random random = new Random(7);
+
+        leader.createSuppressionList(list("list_1", "adv_a", hashes(random, 10)));
+        SnapshotService.SnapshotFile first = snapshots.export();
+        assertSame(first, snapshots.export());
+
+        for (int i = 2; i <= 4; i++) {
+            leader.createSuppressionList(list("list_" + i, "adv_a", hashes(random, 10)));
+            Thread.sleep(2);
+            SnapshotService.SnapshotFile next = snapshots.export();
+            assertEquals(i, next.seq());
+            assertNotEquals(first.path(), next.path());
+        }
+        assertEquals(2, snapshotFiles().size());
+        assertFalse(Files.exists(first.path()));
+    }
+
+    @Test
+    void damagedSnapshotIsRefusedAndLocalListsStay() throws Exception {
+        ReplicationLog leaderLog = new ReplicationLog("leader", 100);
+        SuppressionService leader = service(leaderLog, "leader");
+        Random random = new Random(3);
+        leader.createSuppressionList(list("list_new", "adv_new", hashes(random, 100)));
+        byte[] snapshot = Files.readAllBytes(snapshots(leader, leaderLog, "leader").export().path());
+
+        SuppressionService replica = TestServices.suppressionService(directory.resolve("replica"));
+        String local = hashes(random, 1).get(0);
+        replica.createSuppressionList(list("list_local", "adv_local", List.of(local)));
+        SnapshotService replicaSnapshots = snapshots(replica, new ReplicationLog("standalone", 1), "replica");
+
+        byte[] truncated = Arrays.copyOf(snapshot, snapshot.length - 9);
+        assertThrows(IOException.class, () -> replicaSnapshots.load(new ByteArrayInputStream(truncated), "test"));
+        byte[] corrupted = snapshot.clone();
+        corrupted[snapshot.length / 2] ^= 0x10;
+        assertThrows(IOException.class, () -> replicaSnapshots.load(new ByteArrayInputStream(corrupted), "test"));
+
+        assertEquals(List.of("list_local"), ids(replica.getAllSuppressionLists()));
+        assertEquals(Set.of("adv_local"), replica.checkSuppression(local).getSuppressedAdvertisers());
+        assertNull(replicaSnapshots.status().get("last_import"));
+    }
+
+    // ==================== HELPERS ====================
+
+    private SuppressionService service(ReplicationLog log, String name) {
+        return TestServices.suppressionService(new ShardMembership("", ""), log, directory.resolve(name));
+    }
+
+    private SnapshotService snapshots(SuppressionService service, ReplicationLog log, String name) {
+        return new SnapshotService(service, log, directory.resolve(name + "-snapshots").toString());
+    }
+
+    private List<Path> snapshotFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory.resolve("leader-snapshots"))) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".bin")).toList();
+        }
+    }
+
+    private static SuppressionList list(String id, String advertiserId, List<String> identifiers) {
+        return new SuppressionList(id, advertiserId, "name of " + id, new ArrayList<>(identifiers), null);
+    }
+
+    private static List<String> hashes(Random random, int count) {
+        List<String> hashes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            hashes.add(String.format("%016x%016x%016x%016x",
+                    random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong()));
+        }
+        return hashes;
+    }
+
+    private static List<String> ids(List<SuppressionList> lists) {
+        List<String> ids = new ArrayList<>();
+        for (SuppressionList list : lists) {
+            ids.add(list.getId());
+        }
+        return ids;
+    }
+}
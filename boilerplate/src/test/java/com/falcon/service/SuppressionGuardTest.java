@@ -0,0 +1,228 @@
+package com.falcon.service;
+
+import com.falcon.model.SuppressionCheckResult;
+import com.falcon.model.SuppressionList;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * {@link SuppressionGuard} in a two-node cluster whose other node is played by an
+ * in-process HTTP server: an owner that answers in time gives the exact result, and
+ * one that is slow or failing is replaced by the configured fallback, degrading to
+ * suppression-free-only when the fallback cannot answer for the hash.
+ */
+class SuppressionGuardTest {
+
+    private static final String SELF = "http://127.0.0.1:1";
+
+    @TempDir
+    Path directory;
+
+    private Owner owner;
+    private ShardMembership membership;
+    private SuppressionService service;
+    private ShardRouter router;
+    private List<Integer> lostPartitions;
+    private String lost;
+    private String otherLost;
+
+    /**
+     * This node held every partition and has lists for two hashes it is about to lose to the owner.
+     */
+    @BeforeEach
+    void start() throws IOException {
+        owner = new Owner();
+        membership = new ShardMembership(SELF, SELF);
+        lostPartitions = new ArrayList<>();
+        ShardMembership future = new ShardMembership(SELF, SELF + "," + owner.url());
+        for (int p = 0; p < ShardMembership.PARTITIONS; p++) {
+            if (owner.url().equals(future.ownerOf(String.format("%02x", p)))) {
+                lostPartitions.add(p);
+            }
+        }
+        assertTrue(lostPartitions.size() >= 2);
+        lost = String.format("%02x", lostPartitions.get(0)) + "ab".repeat(31);
+        otherLost = String.format("%02x", lostPartitions.get(1)) + "cd".repeat(31);
+
+        service = TestServices.suppressionService(membership, new ReplicationLog("standalone", 1), directory);
+        service.createSuppressionList(list("list_a", "adv_a", lost));
+        service.createSuppressionList(list("list_b", "adv_b", otherLost));
+        // Lost partitions stay stored here until the handoff to the owner completes
+        membership.update(List.of(SELF, owner.url()));
+        router = new ShardRouter(service, membership, TestServices.objectMapper(), 2_000, 30_000, 1000, 100);
+    }
+
+    @AfterEach
+    void stop() {
+        router.shutdown();
+        owner.stop();
+    }
+
+    @Test
+    void ownerAnsweringInTimeGivesTheExactResult() {
+        owner.answer = () -> "adv_a,adv_z";
+        SuppressionGuard guard = guard(5_000, "bloom");
+
+        SuppressionCheckResult result = guard.check(lost);
+        assertEquals(Set.of("adv_a", "adv_z"), result.getSuppressedAdvertisers());
+        assertNull(result.getFallback());
+        assertEquals(1L, guard.status().get("lookups"));
+        assertEquals(Map.of("bloom", 0L, "last-cached", 0L, "suppression-free-only", 0L),
+                guard.status().get("fallbacks"));
+    }
+
+    @Test
+    void slowOwnerIsReplacedByTheLocalBloomFilterWithinTheDeadline() {
+        owner.answer = () -> {
+            Thread.sleep(1_000);
+            return "";
+        };
+        SuppressionGuard guard = guard(50, "bloom");
+
+        long startTime = System.nanoTime();
+        SuppressionCheckResult result = guard.check(lost);
+        long elapsedMs = (System.nanoTime() - startTime) / 1_000_000;
+        assertTrue(elapsedMs < 900, "took " + elapsedMs + "ms");
+        assertEquals("bloom", result.getFallback());
+        assertTrue(result.getSuppressedAdvertisers().contains("adv_a"));
+        assertEquals(1L, guard.status().get("deadline_exceeded"));
+        assertEquals(1L, fallbacks(guard).get("bloom"));
+    }
+
+    @Test
+    void partitionNotStoredHereSuppressesEveryListedAdvertiser() {
+        owner.answer = () -> {
+            throw new IOException("down");
+        };
+        membership.releasePartitions(lostPartitions);
+        SuppressionGuard guard = guard(5_000, "bloom");
+
+        SuppressionCheckResult result = guard.check(lost);
+        assertEquals("suppression-free-only", result.getFallback());
+        assertEquals(Set.of("adv_a", "adv_b"), result.getSuppressedAdvertisers());
+        assertEquals(1L, guard.status().get("failures"));
+        assertEquals(1L, fallbacks(guard).get("suppression-free-only"));
+    }
+
+    @Test
+    void failingOwnerIsReplacedByTheLastExactAnswerForTheSameHash() {
+        SuppressionGuard guard = guard(5_000, "last-cached");
+        owner.answer = () -> "adv_z";
+        assertNull(guard.check(lost).getFallback());
+
+        owner.answer = () -> {
+            throw new IOException("down");
+        };
+        SuppressionCheckResult cached = guard.check(lost);
+        assertEquals("last-cached", cached.getFallback());
+        assertEquals(Set.of("adv_z"), cached.getSuppressedAdvertisers());
+        // Never answered exactly, so nothing is cached for it
+        SuppressionCheckResult uncached = guard.check(otherLost);
+        assertEquals("suppression-free-only", uncached.getFallback());
+        assertEquals(Set.of("adv_a", "adv_b"), uncached.getSuppressedAdvertisers());
+        assertEquals(2L, guard.status().get("failures"));
+    }
+
+    @Test
+    void answerArrivingAfterTheDeadlineStillFillsTheCache() throws Exception {
+        SuppressionGuard guard = guard(20, "last-cached");
+        owner.answer = () -> {
+            Thread.sleep(200);
+            return "adv_z";
+        };
+        assertEquals("suppression-free-only", guard.check(lost).getFallback());
+        assertEquals(1L, guard.status().get("deadline_exceeded"));
+
+        owner.answer = () -> {
+            throw new IOException("down");
+        };
+        await(() -> "last-cached".equals(guard.check(lost).getFallback()));
+        assertEquals(Set.of("adv_z"), guard.check(lost).getSuppressedAdvertisers());
+    }
+
+    // ==================== HELPERS ====================
+
+    private SuppressionGuard guard(long deadlineMs, String fallback) {
+        return new SuppressionGuard(service, router, membership, deadlineMs, fallback, 16);
+    }
+
+    private static Map<?, ?> fallbacks(SuppressionGuard guard) {
+        return (Map<?, ?>) guard.status().get("fallbacks");
+    }
+
+    private static SuppressionList list(String id, String advertiserId, String identifier) {
+        return new SuppressionList(id, advertiserId, id, new ArrayList<>(List.of(identifier)), null);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out waiting");
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Answer {
+        /**
+         * @return the lookup response body; throwing makes the owner reply 503
+         */
+        String get() throws Exception;
+    }
+
+    /**
+     * The node that owns the lost partitions, answering GET /api/shard/lookup/{hash}.
+     */
+    private static final class Owner {
+        volatile Answer answer = () -> "";
+        private final HttpServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+
+        Owner() throws IOException {
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setExecutor(executor);
+            server.createContext("/api/shard/lookup/", exchange -> {
+                byte[] body;
+                int status = 200;
+                try {
+                    body = answer.get().getBytes(StandardCharsets.UTF_8);
+                } catch (Exception e) {
+                    body = new byte[0];
+                    status = 503;
+                }
+                exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+                if (body.length > 0) {
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            });
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort();
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.falcon.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.nio.file.Path;
+
+/**
+ * Services wired by hand the way Spring wires them, with the defaults from
+ * application.properties unless a test needs otherwise. Mock data is not loaded.
+ */
+final class TestServices {
+
+    private TestServices() {
+    }
+
+    static ObjectMapper objectMapper() {
+        return new ObjectMapper().findAndRegisterModules();
+    }
+
+    static SuppressionService suppressionService(ShardMembership membership, ReplicationLog replicationLog,
+                                                 Path directory) {
+        return new SuppressionService(objectMapper(), membership, replicationLog,
+                directory.resolve("mock-data").toString(),
+                "hash", 1000, 0.3, "strict", "bloom", "memory",
+                directory.resolve("lsm").toString(), 500_000, 4, 32, 16,
+                1000, 14,
+                directory.resolve("refresh").toString(), 1_000_000);
+    }
+
+    static SuppressionService suppressionService(Path directory) {
+        return suppressionService(new ShardMembership("", ""), new ReplicationLog("standalone", 1), directory);
+    }
+}
@@ -0,0 +1,402 @@
+package com.falcon.tools;
+
+import com.falcon.index.HashKeys;
+import com.falcon.service.BinaryCheckServer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop throughput comparison of POST /api/check-suppression and the binary
+ * check protocol ({@link BinaryCheckServer}) against one running server.
+ *
+ * Both phases look up the same seeded mix of hashes: --hit-rate of them are
+ * identifiers from the server's lists, the rest random. REST uses --connections
+ * threads each sending one check at a time; binary uses --connections TCP
+ * connections each keeping --pipeline frames of --batch hashes in flight. Before
+ * measuring, a sample is checked through both paths and every answer compared.
+ *
+ * On a shared host the client competes with the server for CPU, so raw checks/s
+ * understates both. With --server-pid the server's CPU time (from /proc) is sampled
+ * around each phase and checks per server CPU-second is reported: the per-core
+ * throughput of the server itself.
+ *
+ * Usage (from boilerplate/, with the server running with falcon.binary.enabled=true):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.falcon.tools.BinaryCheckBenchmark \
+ *       -Dexec.args="--duration=10 --batch=64 --pipeline=8 --server-pid=$(pgrep -f falcon)"
+ *
+ * Options (defaults in brackets):
+ *   --url=[http://localhost:8080]  --binary=[localhost:9090]  --mode=[both] (rest | binary | both)
+ *   --duration=[10] s  --warmup=[3] s  --connections=[4]  --batch=[64]  --pipeline=[8]
+ *   --hashes=[100000]  --hit-rate=[0.2]  --verify=[2000]  --seed=[42]  --server-pid=
+ *
+ * Lives under src/test so it stays out of the application jar.
+ */
+public class BinaryCheckBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        String[] binary = options.getOrDefault("binary", "localhost:9090").split(":");
+        String mode = options.getOrDefault("mode", "both");
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "10"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "3"));
+        int connections = Integer.parseInt(options.getOrDefault("connections", "4"));
+        int batch = Integer.parseInt(options.getOrDefault("batch", "64"));
+        int pipeline = Integer.parseInt(options.getOrDefault("pipeline", "8"));
+        int hashCount = Integer.parseInt(options.getOrDefault("hashes", "100000"));
+        double hitRate = Double.parseDouble(options.getOrDefault("hit-rate", "0.2"));
+        int verify = Integer.parseInt(options.getOrDefault("verify", "2000"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String serverPid = options.get("server-pid");
+        InetSocketAddress binaryAddress = new InetSocketAddress(binary[0], Integer.parseInt(binary[1]));
+        if (batch < 1 || batch > BinaryCheckServer.MAX_BATCH) {
+            throw new IllegalArgumentException("--batch must be between 1 and " + BinaryCheckServer.MAX_BATCH);
+        }
+
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String[] hashes = workload(http, baseUrl, hashCount, hitRate, new SplittableRandom(seed));
+
+        if (verify > 0 && !"rest".equals(mode)) {
+            verify(http, baseUrl, binaryAddress, hashes, Math.min(verify, hashes.length));
+        }
+
+        Map<String, Phase> results = new LinkedHashMap<>();
+        if (!"binary".equals(mode)) {
+            results.put("rest", run("REST", connections, warmupSeconds, durationSeconds, serverPid,
+                    (index, stop, measured) -> restLoop(http, baseUrl, hashes, index, stop, measured)));
+        }
+        if (!"rest".equals(mode)) {
+            results.put("binary", run("binary", connections, warmupSeconds, durationSeconds, serverPid,
+                    (index, stop, measured) -> binaryLoop(binaryAddress, hashes, index, batch, pipeline, stop, measured)));
+        }
+
+        System.out.printf("%n%-8s %14s %22s%n", "", "checks/s", "checks/server-CPU-s");
+        for (Map.Entry<String, Phase> phase : results.entrySet()) {
+            System.out.printf("%-8s %,14.0f %22s%n", phase.getKey(), phase.getValue().checksPerSecond(),
+                    phase.getValue().cpuSeconds > 0 ? String.format("%,.0f", phase.getValue().checksPerCpuSecond()) : "-");
+        }
+        if (results.size() == 2) {
+            Phase rest = results.get("rest");
+            Phase bin = results.get("binary");
+            System.out.printf("binary / rest: %.1fx checks/s", bin.checksPerSecond() / rest.checksPerSecond());
+            if (rest.cpuSeconds > 0 && bin.cpuSeconds > 0) {
+                System.out.printf(", %.1fx per server CPU-second", bin.checksPerCpuSecond() / rest.checksPerCpuSecond());
+            }
+            System.out.println();
+        }
+    }
+
+    // ==================== WORKLOAD ====================
+
+    private static String[] workload(HttpClient http, String baseUrl, int count, double hitRate,
+                                     SplittableRandom random) throws Exception {
+        HttpResponse<String> response = http.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/api/suppression-lists")).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("GET /api/suppression-lists returned " + response.statusCode());
+        }
+        List<String> suppressed = new ArrayList<>();
+        for (JsonNode list : MAPPER.readTree(response.body())) {
+            list.path("identifiers").forEach(id -> {
+                if (HashKeys.isCanonical(id.asText())) {
+                    suppressed.add(id.asText());
+                }
+            });
+        }
+        if (suppressed.isEmpty() && hitRate > 0) {
+            System.out.println("⚠ Server has no suppressed hex identifiers; hit rate will be 0");
+        }
+        String[] hashes = new String[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = !suppressed.isEmpty() && random.nextDouble() < hitRate
+                    ? suppressed.get(random.nextInt(suppressed.size()))
+                    : HashKeys.toHex(random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+        }
+        System.out.printf("Workload: %,d hashes, hit rate %.2f over %,d suppressed identifiers%n",
+                count, hitRate, suppressed.size());
+        return hashes;
+    }
+
+    private static void verify(HttpClient http, String baseUrl, InetSocketAddress address,
+                               String[] hashes, int count) throws Exception {
+        int mismatches = 0;
+        try (BinaryClient client = new BinaryClient(address)) {
+            for (int start = 0; start < count; start += BinaryCheckServer.MAX_BATCH) {
+                String[] chunk = Arrays.copyOfRange(hashes, start, Math.min(count, start + BinaryCheckServer.MAX_BATCH));
+                client.sendCheck(start, chunk);
+                List<Set<String>> binaryAnswers = client.readCheck(start);
+                for (int i = 0; i < chunk.length; i++) {
+                    Set<String> restAnswer = new HashSet<>();
+                    MAPPER.readTree(checkRest(http, baseUrl, chunk[i]))
+                            .path("suppressed_advertisers").forEach(a -> restAnswer.add(a.asText()));
+                    if (!restAnswer.equals(binaryAnswers.get(i))) {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        if (mismatches > 0) {
+            throw new IllegalStateException(mismatches + " of " + count + " binary answers differ from REST");
+        }
+        System.out.printf("✓ %,d binary answers match REST%n", count);
+    }
+
+    // ==================== LOOPS ====================
+
+    private interface Loop {
+        void run(int index, AtomicBoolean stop, LongAdder measured) throws Exception;
+    }
+
+    private static Phase run(String name, int connections, int warmupSeconds, int durationSeconds,
+                             String serverPid, Loop loop) throws Exception {
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder completed = new LongAdder();
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for (int c = 0; c < connections; c++) {
+            int index = c;
+            Thread thread = new Thread(() -> {
+                try {
+                    loop.run(index, stop, completed);
+                } catch (Exception e) {
+                    failures.add(e);
+                }
+            }, "benchmark-" + name + "-" + c);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        Thread.sleep(warmupSeconds * 1000L);
+        long checksBefore = completed.sum();
+        long cpuBefore = serverCpuTicks(serverPid);
+        long start = System.nanoTime();
+        Thread.sleep(durationSeconds * 1000L);
+        long checks = completed.sum() - checksBefore;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        double cpuSeconds = serverPid != null ? (serverCpuTicks(serverPid) - cpuBefore) / (double) CLOCK_TICKS_PER_SECOND : 0;
+
+        stop.set(true);
+        for (Thread thread : threads) {
+            thread.join(5000);
+        }
+        if (!failures.isEmpty()) {
+            throw new IllegalStateException(name + " phase failed", failures.get(0));
+        }
+        Phase phase = new Phase(checks, seconds, cpuSeconds);
+        System.out.printf("%s: %,d checks in %.1fs over %d connections%s%n", name, checks, seconds, connections,
+                cpuSeconds > 0 ? String.format(", %.2f server CPU-s", cpuSeconds) : "");
+        return phase;
+    }
+
+    private static void restLoop(HttpClient http, String baseUrl, String[] hashes, int index,
+                                 AtomicBoolean stop, LongAdder completed) throws Exception {
+        for (long i = index * 7919L; !stop.get(); i++) {
+            checkRest(http, baseUrl, hashes[(int) (i % hashes.length)]);
+            completed.increment();
+        }
+    }
+
+    private static String checkRest(HttpClient http, String baseUrl, String hash) throws Exception {
+        HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/check-suppression"))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"email_hash\":\"" + hash + "\"}"))
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IOException("check-suppression returned " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private static void binaryLoop(InetSocketAddress address, String[] hashes, int index, int batch, int pipeline,
+                                   AtomicBoolean stop, LongAdder completed) throws Exception {
+        try (BinaryClient client = new BinaryClient(address)) {
+            int next = index * batch;
+            int sent = 0;
+            int received = 0;
+            for (; sent < pipeline; sent++) {
+                client.sendCheck(sent, slice(hashes, next, batch));
+                next += batch;
+            }
+            while (!stop.get()) {
+                completed.add(client.readCheckOrdinals(received++).length);
+                client.sendCheck(sent++, slice(hashes, next, batch));
+                next += batch;
+            }
+            while (received < sent) {
+                client.readCheck(received++);
+            }
+        }
+    }
+
+    private static String[] slice(String[] hashes, int from, int count) {
+        String[] slice = new String[count];
+        for (int i = 0; i < count; i++) {
+            slice[i] = hashes[Math.floorMod(from + i, hashes.length)];
+        }
+        return slice;
+    }
+
+    private static long serverCpuTicks(String pid) throws IOException {
+        if (pid == null) {
+            return 0;
+        }
+        String stat = Files.readString(Path.of("/proc", pid, "stat"));
+        // Fields after the parenthesised command name; utime and stime are fields 14 and 15
+        String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+        return Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private record Phase(long checks, double seconds, double cpuSeconds) {
+        double checksPerSecond() {
+            return checks / seconds;
+        }
+
+        double checksPerCpuSecond() {
+            return checks / cpuSeconds;
+        }
+    }
+
+    // ==================== CLIENT ====================
+
+    /**
+     * Blocking client for the binary protocol, with a local copy of the advertiser
+     * dictionary that is extended whenever a reply reports a larger one.
+     *
+     * Replies are read in order, which holds for an in-memory server; a server
+     * answering from disk or other shards may reorder them, and the id check fails.
+     */
+    static final class BinaryClient implements Closeable {
+        private final Socket socket;
+        private final DataInputStream in;
+        private final DataOutputStream out;
+        private final List<String> dictionary = new ArrayList<>();
+
+        BinaryClient(InetSocketAddress address) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(address, 2000);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        }
+
+        void sendCheck(int requestId, String[] hashes) throws IOException {
+            out.writeInt(1 + 4 + 4 + hashes.length * BinaryCheckServer.HASH_BYTES);
+            out.writeByte(0x01);
+            out.writeInt(requestId);
+            out.writeInt(hashes.length);
+            byte[] raw = new byte[BinaryCheckServer.HASH_BYTES];
+            for (String hash : hashes) {
+                HashKeys.decodeTo(hash, raw, 0);
+                out.write(raw);
+            }
+            out.flush();
+        }
+
+        List<Set<String>> readCheck(int requestId) throws IOException {
+            int[][] ordinals = readCheckOrdinals(requestId);
+            List<Set<String>> answers = new ArrayList<>(ordinals.length);
+            for (int[] row : ordinals) {
+                Set<String> advertisers = new HashSet<>();
+                for (int ordinal : row) {
+                    advertisers.add(dictionary.get(ordinal));
+                }
+                answers.add(advertisers);
+            }
+            return answers;
+        }
+
+        int[][] readCheckOrdinals(int requestId) throws IOException {
+            in.readInt();
+            expect(in, in.readByte(), (byte) 0x81, requestId, in.readInt());
+            int dictionarySize = in.readInt();
+            int[][] ordinals = new int[in.readInt()][];
+            for (int i = 0; i < ordinals.length; i++) {
+                ordinals[i] = new int[in.readShort()];
+                for (int j = 0; j < ordinals[i].length; j++) {
+                    ordinals[i][j] = in.readInt();
+                }
+            }
+            if (dictionarySize > dictionary.size()) {
+                fetchDictionary(dictionarySize);
+            }
+            return ordinals;
+        }
+
+        private void fetchDictionary(int size) throws IOException {
+            // Pipelined check replies may still be queued ahead of ours; open a side connection
+            try (Socket side = new Socket()) {
+                side.connect(socket.getRemoteSocketAddress(), 2000);
+                DataInputStream sideIn = new DataInputStream(new BufferedInputStream(side.getInputStream()));
+                DataOutputStream sideOut = new DataOutputStream(side.getOutputStream());
+                while (dictionary.size() < size) {
+                    sideOut.writeInt(1 + 4 + 4);
+                    sideOut.writeByte(0x02);
+                    sideOut.writeInt(-2);
+                    sideOut.writeInt(dictionary.size());
+                    sideOut.flush();
+                    sideIn.readInt();
+                    expect(sideIn, sideIn.readByte(), (byte) 0x82, -2, sideIn.readInt());
+                    sideIn.readInt();
+                    sideIn.readInt();
+                    int count = sideIn.readInt();
+                    for (int i = 0; i < count; i++) {
+                        byte[] name = new byte[sideIn.readShort()];
+                        sideIn.readFully(name);
+                        dictionary.add(new String(name, StandardCharsets.UTF_8));
+                    }
+                }
+            }
+        }
+
+        private static void expect(DataInputStream stream, byte type, byte expectedType, int expectedId,
+                                   int requestId) throws IOException {
+            if (type == (byte) 0xFF) {
+                byte[] message = new byte[stream.readShort()];
+                stream.readFully(message);
+                throw new IOException("Server error for request " + requestId + ": "
+                        + new String(message, StandardCharsets.UTF_8));
+            }
+            if (type != expectedType || requestId != expectedId) {
+                throw new IOException("Expected reply 0x" + Integer.toHexString(expectedType & 0xFF) + " to request "
+                        + expectedId + ", got 0x" + Integer.toHexString(type & 0xFF) + " to " + requestId);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
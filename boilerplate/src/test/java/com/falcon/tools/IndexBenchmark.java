@@ -0,0 +1,165 @@
+package com.falcon.tools;
+
+import com.falcon.index.EytzingerIndex;
+import com.falcon.index.HashKeys;
+import com.falcon.index.IdentifierDictionary;
+import com.falcon.index.SuppressionIndex;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Lookup micro-benchmark: the HashMap index from the assignment README vs. the
+ * dictionary-encoded {@link SuppressionIndex} with and without its Eytzinger read index.
+ *
+ * Lives under src/test so it stays out of the application jar. Usage (from boilerplate/):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.falcon.tools.IndexBenchmark -Dexec.args="1000000 0.2"
+ *
+ * Arguments: identifier count (default 1,000,000), hit ratio of the query mix (default 0.2).
+ * Query strings are re-copied before every round so String.hashCode() caching does
+ * not flatter the hash-based layouts; run with a fixed heap (e.g. -Xmx4g) for stable
+ * memory numbers.
+ */
+public class IndexBenchmark {
+
+    private static final int ADVERTISERS = 20;
+    private static final int QUERIES = 1 << 20;
+    private static final int WARMUP_ROUNDS = 3;
+    private static final int MEASURED_ROUNDS = 5;
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        int identifierCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        double hitRatio = args.length > 1 ? Double.parseDouble(args[1]) : 0.2;
+
+        SplittableRandom random = new SplittableRandom(42);
+        String[] identifiers = new String[identifierCount];
+        for (int i = 0; i < identifierCount; i++) {
+            identifiers[i] = randomHash(random);
+        }
+        Map<String, List<String>> listsByAdvertiser = new HashMap<>();
+        for (String identifier : identifiers) {
+            int suppressors = 1 + random.nextInt(2);
+            for (int s = 0; s < suppressors; s++) {
+                listsByAdvertiser.computeIfAbsent("adv_" + random.nextInt(ADVERTISERS), k -> new ArrayList<>()).add(identifier);
+            }
+        }
+        String[] queries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = random.nextDouble() < hitRatio ? identifiers[random.nextInt(identifierCount)] : randomHash(random);
+        }
+
+        System.out.printf("Identifiers: %,d  queries/round: %,d  hit ratio: %.2f%n%n", identifierCount, QUERIES, hitRatio);
+        System.out.printf("%-34s %12s %14s%n", "layout", "ns/lookup", "heap MB");
+
+        // 1. HashMap<String, Set<String>> as recommended in the README
+        long before = usedHeap();
+        Map<String, Set<String>> hashMap = new HashMap<>();
+        listsByAdvertiser.forEach((advertiser, members) -> {
+            for (String identifier : members) {
+                hashMap.computeIfAbsent(identifier, k -> new HashSet<>()).add(advertiser);
+            }
+        });
+        long hashMapBytes = usedHeap() - before;
+        report("HashMap<String, Set<String>>", time(queries, q -> hashMap.getOrDefault(q, Collections.emptySet()).size()), hashMapBytes);
+        hashMap.clear();
+
+        // 2. Dictionary-encoded index (hash dictionary + interned advertiser sets)
+        before = usedHeap();
+        SuppressionIndex index = new SuppressionIndex();
+        listsByAdvertiser.forEach((advertiser, members) -> index.putList("list_" + advertiser, advertiser, members));
+        long indexBytes = usedHeap() - before;
+        report("SuppressionIndex (hash)", time(queries, q -> index.lookup(q).size()), indexBytes);
+
+        // 3. Same index fronted by the Eytzinger read index
+        before = usedHeap();
+        index.rebuildReadIndex();
+        long eytzingerBytes = usedHeap() - before;
+        report("SuppressionIndex (eytzinger)", time(queries, q -> index.lookup(q).size()), eytzingerBytes);
+
+        // 4. Validate + decode alone (SWAR hex parsing, the per-request overhead of the sorted path)
+        HashKeys.Decoder decoder = HashKeys.decoder();
+        report("HashKeys.Decoder.decode", time(queries, q -> decoder.decode(q) ? (int) decoder.w3 : 0), 0);
+
+        // 5. Raw Eytzinger probe on pre-decoded keys (binary request path, no hex parsing)
+        EytzingerIndex raw = EytzingerIndex.build(dictionaryOf(identifiers), identifierCount);
+        long[] keys = new long[QUERIES * 4];
+        for (int i = 0; i < QUERIES; i++) {
+            decoder.decode(queries[i]);
+            keys[4 * i] = decoder.w0;
+            keys[4 * i + 1] = decoder.w1;
+            keys[4 * i + 2] = decoder.w2;
+            keys[4 * i + 3] = decoder.w3;
+        }
+        report("EytzingerIndex.find(long x4)", timeDecoded(raw, keys), raw.sizeInBytes());
+        System.out.println("\n(sink " + sink + ")");
+    }
+
+    private interface Probe {
+        int lookup(String query);
+    }
+
+    private static double time(String[] queries, Probe probe) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            String[] fresh = new String[queries.length];
+            for (int i = 0; i < queries.length; i++) {
+                fresh[i] = new String(queries[i].toCharArray());
+            }
+            long start = System.nanoTime();
+            long acc = 0;
+            for (String query : fresh) {
+                acc += probe.lookup(query);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink += acc;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, (double) elapsed / queries.length);
+            }
+        }
+        return best;
+    }
+
+    private static double timeDecoded(EytzingerIndex index, long[] keys) {
+        double best = Double.MAX_VALUE;
+        int n = keys.length / 4;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            long acc = 0;
+            for (int i = 0; i < n; i++) {
+                acc += index.find(keys[4 * i], keys[4 * i + 1], keys[4 * i + 2], keys[4 * i + 3]);
+            }
+            long elapsed = System.nanoTime() - start;
+            sink += acc;
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, (double) elapsed / n);
+            }
+        }
+        return best;
+    }
+
+    private static IdentifierDictionary dictionaryOf(String[] identifiers) {
+        IdentifierDictionary dictionary = new IdentifierDictionary();
+        for (String identifier : identifiers) {
+            dictionary.intern(identifier);
+        }
+        return dictionary;
+    }
+
+    private static void report(String layout, double nsPerLookup, long bytes) {
+        System.out.printf("%-34s %12.1f %14.1f%n", layout, nsPerLookup, bytes / (1024.0 * 1024.0));
+    }
+
+    private static String randomHash(SplittableRandom random) {
+        return HashKeys.toHex(random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,460 @@
+package com.falcon.tools;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load generator for /api/serve-ad (and optionally /api/check-suppression).
+ *
+ * Requests are sent at a fixed arrival rate regardless of how fast the server
+ * answers. Every request has an intended send time on that schedule, and its
+ * latency is measured from the intended time, not from when it was actually
+ * sent; a stalled server (or a stalled client) therefore shows up in the
+ * percentiles instead of silently lowering the offered load (coordinated omission).
+ * Pure service time (actual send to response) is reported alongside.
+ *
+ * Workloads:
+ *   replay    - cycle through the requests in a JSON array or JSONL file; entries are either
+ *               request bodies or test cases with a "request" field (mock-data/test_ad_requests.json)
+ *   synthetic - a Zipf-distributed population of users; users covering --hit-rate of the request
+ *               mix are identifiers from the server's suppression lists, the rest random hashes;
+ *               placements come from /api/placements
+ *
+ * Lives under src/test so it stays out of the application jar.
+ * Usage (from boilerplate/, with the server running):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.falcon.tools.LoadGenerator \
+ *       -Dexec.args="--qps=2000 --duration=60 --replay=../mock-data/test_ad_requests.json"
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test -Dexec.mainClass=com.falcon.tools.LoadGenerator \
+ *       -Dexec.args="--qps=2000 --duration=60 --users=1000000 --zipf=1.1 --hit-rate=0.2"
+ *
+ * Options (defaults in brackets):
+ *   --url=[http://localhost:8080]  --qps=[500]  --duration=[30] s  --warmup=[5] s
+ *   --replay=FILE | --users=[100000] --zipf=[1.1] --hit-rate=[0.2]
+ *   --check-ratio=[0.0]  fraction of requests sent to /api/check-suppression instead
+ *   --timeout-ms=[2000]  --max-in-flight=[4096]  --seed=[42]  --output=[load-report.json]
+ *
+ * The JSON report has a fixed layout (and the workload is seeded) so reports from two
+ * builds can be diffed directly.
+ */
+public class LoadGenerator {
+
+    private static final String SERVE_AD = "/api/serve-ad";
+    private static final String CHECK_SUPPRESSION = "/api/check-suppression";
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        String baseUrl = options.getOrDefault("url", "http://localhost:8080");
+        double qps = Double.parseDouble(options.getOrDefault("qps", "500"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        double checkRatio = Double.parseDouble(options.getOrDefault("check-ratio", "0.0"));
+        long timeoutMs = Long.parseLong(options.getOrDefault("timeout-ms", "2000"));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("max-in-flight", "4096"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Path output = Path.of(options.getOrDefault("output", "load-report.json"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.max(4, Runtime.getRuntime().availableProcessors()), daemonThreads());
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(timeoutMs))
+                .executor(executor)
+                .build();
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Workload workload = options.containsKey("replay")
+                ? Workload.replay(Path.of(options.get("replay")))
+                : Workload.synthetic(client, baseUrl, random,
+                        Integer.parseInt(options.getOrDefault("users", "100000")),
+                        Double.parseDouble(options.getOrDefault("zipf", "1.1")),
+                        Double.parseDouble(options.getOrDefault("hit-rate", "0.2")));
+
+        System.out.printf("Target %s at %.0f req/s for %ds (+%ds warmup), workload: %s%n",
+                baseUrl, qps, durationSeconds, warmupSeconds, workload.describe());
+
+        Map<String, EndpointStats> stats = new LinkedHashMap<>();
+        stats.put(SERVE_AD, new EndpointStats());
+        stats.put(CHECK_SUPPRESSION, new EndpointStats());
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicLong maxSchedulerLagNanos = new AtomicLong();
+
+        long intervalNanos = (long) (1_000_000_000L / qps);
+        long totalRequests = (long) (qps * (warmupSeconds + durationSeconds));
+        long warmupRequests = (long) (qps * warmupSeconds);
+        long start = System.nanoTime() + 100_000_000L;
+        Instant startedAt = Instant.now();
+
+        // ==================== OPEN-LOOP SCHEDULE ====================
+        for (long i = 0; i < totalRequests; i++) {
+            long intended = start + i * intervalNanos;
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            maxSchedulerLagNanos.accumulateAndGet(now - intended, Math::max);
+
+            boolean measured = i >= warmupRequests;
+            boolean check = checkRatio > 0 && random.nextDouble() < checkRatio;
+            Workload.Request next = workload.next(random);
+            String path = check ? CHECK_SUPPRESSION : SERVE_AD;
+            EndpointStats endpoint = stats.get(path);
+
+            if (!inFlight.tryAcquire()) {
+                // Client saturated: count it rather than queueing and bending the schedule
+                if (measured) {
+                    endpoint.recordError("client_overload", intended, System.nanoTime());
+                }
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(check ? next.checkBody() : next.serveBody()))
+                    .build();
+            long sent = System.nanoTime();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .whenComplete((response, error) -> {
+                        long done = System.nanoTime();
+                        inFlight.release();
+                        if (!measured) {
+                            return;
+                        }
+                        if (error != null) {
+                            endpoint.recordError(errorName(error), intended, done);
+                        } else {
+                            endpoint.record(response.statusCode(), response.body(), next.suppressed(), intended, sent, done);
+                        }
+                    });
+        }
+        long scheduleEnd = System.nanoTime();
+
+        // Drain: every outstanding request completes or times out within timeoutMs
+        if (inFlight.tryAcquire(maxInFlight, timeoutMs + 1000, TimeUnit.MILLISECONDS)) {
+            inFlight.release(maxInFlight);
+        }
+        long measuredNanos = scheduleEnd - (start + warmupRequests * intervalNanos);
+
+        // ==================== REPORT ====================
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("started_at", startedAt.toString());
+        report.put("target", baseUrl);
+        report.put("workload", workload.describe());
+        report.put("target_qps", qps);
+        report.put("duration_seconds", durationSeconds);
+        report.put("warmup_seconds", warmupSeconds);
+        long sentCount = stats.values().stream().mapToLong(s -> s.requests.sum()).sum();
+        report.put("achieved_qps", measuredNanos > 0 ? sentCount * 1e9 / measuredNanos : 0);
+        report.put("max_scheduler_lag_ms", maxSchedulerLagNanos.get() / 1e6);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        stats.forEach((path, endpoint) -> {
+            if (endpoint.requests.sum() > 0) {
+                endpoints.put(path, endpoint.toReport());
+            }
+        });
+        report.put("endpoints", endpoints);
+
+        MAPPER.writeValue(output.toFile(), report);
+        System.out.println(MAPPER.writeValueAsString(endpoints));
+        System.out.println("✓ Report written to " + output.toAbsolutePath());
+        executor.shutdownNow();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(eq < 0 ? arg.substring(2) : arg.substring(2, eq), eq < 0 ? "true" : arg.substring(eq + 1));
+        }
+        return options;
+    }
+
+    private static String errorName(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof java.net.http.HttpTimeoutException ? "timeout" : cause.getClass().getSimpleName();
+    }
+
+    private static ThreadFactory daemonThreads() {
+        return r -> {
+            Thread thread = new Thread(r, "load-generator-http");
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // ==================== WORKLOADS ====================
+
+    private interface Workload {
+
+        record Request(String placementId, String emailHash, boolean suppressed) {
+            String serveBody() {
+                Map<String, Object> body = new LinkedHashMap<>();
+                body.put("placement_id", placementId);
+                if (emailHash != null) {
+                    body.put("user_email_hash", emailHash);
+                }
+                return json(body);
+            }
+
+            String checkBody() {
+                return json(Map.of("email_hash", emailHash != null ? emailHash : ""));
+            }
+        }
+
+        Request next(SplittableRandom random);
+
+        String describe();
+
+        static Workload replay(Path file) throws IOException {
+            String content = Files.readString(file).trim();
+            List<JsonNode> entries = new ArrayList<>();
+            if (content.startsWith("[")) {
+                MAPPER.readTree(content).forEach(entries::add);
+            } else {
+                for (String line : content.split("\n")) {
+                    if (!line.isBlank()) {
+                        entries.add(MAPPER.readTree(line));
+                    }
+                }
+            }
+            List<Request> requests = new ArrayList<>();
+            for (JsonNode entry : entries) {
+                JsonNode body = entry.has("request") ? entry.get("request") : entry;
+                if (body.hasNonNull("placement_id")) {
+                    boolean expectSuppressed = entry.path("expected_behavior").path("suppressed_advertisers").size() > 0;
+                    requests.add(new Request(body.get("placement_id").asText(),
+                            body.hasNonNull("user_email_hash") ? body.get("user_email_hash").asText() : null,
+                            expectSuppressed));
+                }
+            }
+            if (requests.isEmpty()) {
+                throw new IllegalArgumentException("No requests with a placement_id in " + file);
+            }
+            return new Workload() {
+                private long cursor;
+
+                @Override
+                public Request next(SplittableRandom random) {
+                    return requests.get((int) (cursor++ % requests.size()));
+                }
+
+                @Override
+                public String describe() {
+                    return "replay " + file.getFileName() + " (" + requests.size() + " requests)";
+                }
+            };
+        }
+
+        static Workload synthetic(HttpClient client, String baseUrl, SplittableRandom random,
+                                  int users, double zipfExponent, double hitRate) throws Exception {
+            List<String> suppressed = new ArrayList<>();
+            for (JsonNode list : get(client, baseUrl + "/api/suppression-lists")) {
+                list.path("identifiers").forEach(id -> suppressed.add(id.asText()));
+            }
+            List<String> placements = new ArrayList<>();
+            for (JsonNode entry : get(client, baseUrl + "/api/placements").path("placements")) {
+                placements.add(entry.path("placement").path("id").asText());
+            }
+            if (placements.isEmpty()) {
+                placements.add("placement_001");
+            }
+            if (suppressed.isEmpty() && hitRate > 0) {
+                System.out.println("⚠ Server has no suppressed identifiers; synthetic hit rate will be 0");
+            }
+
+            double[] cumulative = new double[users];
+            double sum = 0;
+            for (int u = 0; u < users; u++) {
+                sum += 1.0 / Math.pow(u + 1, zipfExponent);
+                cumulative[u] = sum;
+            }
+
+            // Mark users suppressed so their share of the request mix (not of the population) tracks hitRate
+            String[] hashes = new String[users];
+            boolean[] isSuppressed = new boolean[users];
+            double suppressedWeight = 0;
+            for (int u = 0; u < users; u++) {
+                double weight = cumulative[u] - (u > 0 ? cumulative[u - 1] : 0);
+                isSuppressed[u] = !suppressed.isEmpty() && suppressedWeight < hitRate * cumulative[u] - weight / 2;
+                if (isSuppressed[u]) {
+                    suppressedWeight += weight;
+                }
+                hashes[u] = isSuppressed[u]
+                        ? suppressed.get(random.nextInt(suppressed.size()))
+                        : String.format("%016x%016x%016x%016x",
+                                random.nextLong(), random.nextLong(), random.nextLong(), random.nextLong());
+            }
+            double total = sum;
+            String description = String.format("synthetic zipf(s=%.2f) over %,d users, hit rate %.2f, %d placements",
+                    zipfExponent, users, hitRate, placements.size());
+
+            return new Workload() {
+                @Override
+                public Request next(SplittableRandom r) {
+                    int i = Arrays.binarySearch(cumulative, r.nextDouble() * total);
+                    int user = Math.min(i >= 0 ? i : -i - 1, users - 1);
+                    return new Request(placements.get(r.nextInt(placements.size())), hashes[user], isSuppressed[user]);
+                }
+
+                @Override
+                public String describe() {
+                    return description;
+                }
+            };
+        }
+
+        private static JsonNode get(HttpClient client, String url) throws Exception {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("GET " + url + " returned " + response.statusCode());
+            }
+            return MAPPER.readTree(response.body());
+        }
+
+        private static String json(Object value) {
+            try {
+                return MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT).writeValueAsString(value);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    // ==================== STATISTICS ====================
+
+    private static final class EndpointStats {
+        final LongAdder requests = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder noFill = new LongAdder();
+        final LongAdder suppressedUsers = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        final Histogram latency = new Histogram();       // from intended send time
+        final Histogram serviceTime = new Histogram();   // from actual send time
+
+        void record(int status, String body, boolean suppressedUser, long intended, long sent, long done) {
+            requests.increment();
+            outcomes.computeIfAbsent(String.valueOf(status), k -> new LongAdder()).increment();
+            if (status >= 400) {
+                errors.increment();
+            } else if (body != null && body.contains("No eligible ad")) {
+                noFill.increment();
+            }
+            if (suppressedUser) {
+                suppressedUsers.increment();
+            }
+            latency.record((done - intended) / 1000);
+            serviceTime.record((done - sent) / 1000);
+        }
+
+        void recordError(String cause, long intended, long done) {
+            requests.increment();
+            errors.increment();
+            outcomes.computeIfAbsent(cause, k -> new LongAdder()).increment();
+            latency.record((done - intended) / 1000);
+        }
+
+        Map<String, Object> toReport() {
+            long count = requests.sum();
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("requests", count);
+            report.put("errors", errors.sum());
+            report.put("error_rate", count > 0 ? (double) errors.sum() / count : 0);
+            report.put("no_fill", noFill.sum());
+            report.put("suppressed_user_requests", suppressedUsers.sum());
+            Map<String, Long> byOutcome = new TreeMap<>();
+            outcomes.forEach((outcome, n) -> byOutcome.put(outcome, n.sum()));
+            report.put("outcomes", byOutcome);
+            report.put("latency_ms", latency.summary());
+            report.put("service_time_ms", serviceTime.summary());
+            return report;
+        }
+    }
+
+    /**
+     * Log-linear histogram of microsecond values: 128 linear sub-buckets per power
+     * of two, i.e. under 1% relative error, lock-free recording.
+     */
+    private static final class Histogram {
+        private static final int SUB_BITS = 7;
+        private static final int SUB = 1 << SUB_BITS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long micros) {
+            long value = Math.max(0, micros);
+            counts.incrementAndGet(indexOf(value));
+            total.increment();
+            sum.add(value);
+            max.accumulateAndGet(value, Math::max);
+        }
+
+        private static int indexOf(long value) {
+            if (value < 2 * SUB) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift + 1) * SUB + (int) ((value >>> shift) - SUB);
+        }
+
+        // Highest value that falls in the bucket
+        private static long valueAt(int index) {
+            if (index < 2 * SUB) {
+                return index;
+            }
+            int shift = index / SUB - 1;
+            return (((long) (index % SUB) + SUB + 1) << shift) - 1;
+        }
+
+        long percentile(double p) {
+            long n = total.sum();
+            if (n == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(p / 100.0 * n));
+            long seen = 0;
+            for (int i = 0; i < counts.length(); i++) {
+                seen += counts.get(i);
+                if (seen >= target) {
+                    return Math.min(valueAt(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        Map<String, Object> summary() {
+            long n = total.sum();
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", n);
+            summary.put("mean", n > 0 ? sum.sum() / (double) n / 1000.0 : 0);
+            for (double p : new double[] {50, 90, 99, 99.9, 99.99}) {
+                summary.put("p" + (p == Math.rint(p) ? String.valueOf((int) p) : String.valueOf(p)), percentile(p) / 1000.0);
+            }
+            summary.put("max", max.get() / 1000.0);
+            return summary;
+        }
+    }
+}